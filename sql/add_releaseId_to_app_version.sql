@@ -0,0 +1,9 @@
+-- 部署产物版本标识
+-- 部署改为写入内容寻址的版本目录（tmp/code_deploy/.releases/{deployKey}/{releaseId}）并切换符号链接，
+-- 记录每个版本对应的 releaseId 后，回滚时无需重新构建，直接切换链接即可
+
+ALTER TABLE `app_version`
+ADD COLUMN `releaseId` VARCHAR(64) NULL COMMENT '部署产物版本标识（内容寻址目录名）' AFTER `deployUrl`;
+
+-- 查看表结构
+DESC `app_version`;
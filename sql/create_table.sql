@@ -83,6 +83,7 @@ create table app_version
     codeStorageUrl  varchar(512)                       null comment '代码内容存储URL（COS对象存储）',
     deployKey       varchar(64)                        null comment '部署标识',
     deployUrl       varchar(512)                       null comment '部署URL',
+    releaseId       varchar(64)                        null comment '部署产物版本标识（内容寻址目录名）',
     deployedTime    datetime                           null comment '部署时间',
     userId          bigint                             not null comment '部署操作用户id',
     remark          varchar(512)                       null comment '版本备注说明',
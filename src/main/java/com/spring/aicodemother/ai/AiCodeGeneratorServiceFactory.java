@@ -15,12 +15,16 @@ import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 
 import javax.swing.*;
 import java.time.Duration;
@@ -48,21 +52,62 @@ public class AiCodeGeneratorServiceFactory {
     @Resource
     private DynamicAiModelFactory dynamicAiModelFactory; // 动态AI模型工厂
 
+    @Resource
+    private MeterRegistry meterRegistry; // 缓存指标导出
+
+    /**
+     * AI 服务实例缓存的权重上限：不带工具的服务计 1，带工具的 Vue 服务再加上注册的工具数
+     */
+    @Value("${ai.service-cache.max-weight:4000}")
+    private long serviceCacheMaxWeight;
+
+    /**
+     * 对话记忆缓存的权重上限：每份记忆计 1 加上加载时的消息条数
+     */
+    @Value("${ai.chat-memory-cache.max-weight:20000}")
+    private long chatMemoryCacheMaxWeight;
+
     /**
      * AI 服务实例缓存
      * 缓存策略：
-     * - 最大缓存 1000 个实例
+     * - 按权重淘汰（ai.service-cache.max-weight），带工具的 Vue 服务权重更高
      * - 写入后 30 分钟过期
      * - 访问后 10 分钟过期
      */
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
-            })
-            .build();
+    private Cache<String, AiCodeGeneratorService> serviceCache;
+
+    /**
+     * 应用级对话记忆缓存：同一个 appId 在不同模型、不同生成类型之间共享一份记忆，
+     * 切换模型时不再重复从数据库加载历史对话
+     * 过期时间长于服务实例缓存，保证服务重建时仍能复用已加载的记忆
+     * 按加载的消息条数加权淘汰（ai.chat-memory-cache.max-weight），空记忆与长对话不再按同样的代价计算
+     */
+    private Cache<Long, AppChatMemory> chatMemoryCache;
+
+    @PostConstruct
+    public void initCaches() {
+        serviceCache = Caffeine.newBuilder()
+                .maximumWeight(serviceCacheMaxWeight)
+                .weigher((String key, AiCodeGeneratorService value) -> serviceWeight(key))
+                .expireAfterWrite(Duration.ofMinutes(30))
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .recordStats()
+                .removalListener((key, value, cause) -> {
+                    log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
+                })
+                .build();
+        chatMemoryCache = Caffeine.newBuilder()
+                .maximumWeight(chatMemoryCacheMaxWeight)
+                .weigher((Long appId, AppChatMemory value) -> value.weight())
+                .expireAfterAccess(Duration.ofMinutes(40))
+                .recordStats()
+                .removalListener((key, value, cause) -> {
+                    log.debug("对话记忆被移除，appId: {}, 原因: {}", key, cause);
+                })
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, serviceCache, "ai_code_service_cache");
+        CaffeineCacheMetrics.monitor(meterRegistry, chatMemoryCache, "ai_code_chat_memory_cache");
+    }
 
     /**
      * 根据 appId、代码生成类型和modelKey 获取服务（带缓存，支持动态模型）
@@ -96,15 +141,8 @@ public class AiCodeGeneratorServiceFactory {
     private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType, String modelKey) {
         log.info("创建AI服务实例 - appId: {}, codeGenType: {}, modelKey: {}", appId, codeGenType, modelKey);
 
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(50)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+        // 获取应用共享的对话记忆（首次使用时才从数据库加载）
+        MessageWindowChatMemory chatMemory = getOrLoadChatMemory(appId);
 
         // 使用 DynamicAiModelFactory 创建动态模型
         StreamingChatModel dynamicStreamingChatModel = dynamicAiModelFactory.getStreamingChatModel(modelKey);
@@ -144,15 +182,8 @@ public class AiCodeGeneratorServiceFactory {
      * 创建新的 AI 服务实例
      */
     private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(50)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+        // 获取应用共享的对话记忆（首次使用时才从数据库加载）
+        MessageWindowChatMemory chatMemory = getOrLoadChatMemory(appId);
         // 根据代码生成类型选择不同的模型配置
         return switch (codeGenType) {
             // Vue 项目生成使用推理模型
@@ -196,6 +227,37 @@ public class AiCodeGeneratorServiceFactory {
         };
     }
 
+    /**
+     * 获取应用共享的对话记忆，未命中时构建记忆并从数据库加载历史对话
+     */
+    private MessageWindowChatMemory getOrLoadChatMemory(long appId) {
+        return chatMemoryCache.get(appId, id -> {
+            MessageWindowChatMemory chatMemory = MessageWindowChatMemory
+                    .builder()
+                    .id(id)
+                    .chatMemoryStore(redisChatMemoryStore)
+                    .maxMessages(50)
+                    .build();
+            // 从数据库加载历史对话到记忆中，加载条数作为缓存权重（不额外读取 Redis 中的记忆）
+            int loaded = chatHistoryService.loadChatHistoryToMemory(id, chatMemory, 20);
+            return new AppChatMemory(chatMemory, 1 + Math.max(0, loaded));
+        }).chatMemory();
+    }
+
+    /**
+     * AI 服务实例的缓存权重：带工具调用的 Vue 服务需要保存每个工具的规格和执行器
+     */
+    private int serviceWeight(String cacheKey) {
+        return cacheKey.contains("_" + CodeGenTypeEnum.VUE_PROJECT.getValue())
+                ? 1 + toolManager.getAllTools().length : 1;
+    }
+
+    /**
+     * 应用对话记忆及其缓存权重
+     */
+    private record AppChatMemory(MessageWindowChatMemory chatMemory, int weight) {
+    }
+
     /**
      * 创建 AI 代码生成器服务
      *
@@ -2,9 +2,12 @@ package com.spring.aicodemother.ai.tools;
 
 import cn.hutool.json.JSONObject;
 import com.spring.aicodemother.constant.AppConstant;
+import com.spring.aicodemother.core.build.ProjectFileIndex;
+import com.spring.aicodemother.core.build.VueProjectStateTracker;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -21,6 +24,12 @@ import java.nio.file.Paths;
 @Slf4j
 public class FileDeleteTool extends BaseTool {
 
+    @Resource
+    private VueProjectStateTracker vueProjectStateTracker;
+
+    @Resource
+    private ProjectFileIndex projectFileIndex;
+
     @Tool("删除指定路径的文件")
     public String deleteFile(
             @P("文件的相对路径")
@@ -28,10 +37,10 @@ public class FileDeleteTool extends BaseTool {
             @ToolMemoryId Long appId
     ) {
         try {
+            String projectDirName = "vue_project_" + appId;
+            Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
             Path path = Paths.get(relativeFilePath);
             if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
             if (!Files.exists(path)) {
@@ -46,7 +55,9 @@ public class FileDeleteTool extends BaseTool {
                 return "错误：不允许删除重要文件 - " + fileName;
             }
             Files.delete(path);
+            projectFileIndex.onFileDeleted(projectRoot, path);
             log.info("成功删除文件: {}", path.toAbsolutePath());
+            vueProjectStateTracker.onFileDeleted(appId, path);
             return "文件删除成功: " + relativeFilePath;
         } catch (IOException e) {
             String errorMessage = "删除文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
@@ -4,17 +4,19 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import com.spring.aicodemother.constant.AppConstant;
+import com.spring.aicodemother.core.build.ProjectFileIndex;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
 
 /**
  * 文件目录读取工具
@@ -25,20 +27,8 @@ import java.util.Set;
 @Component
 public class FileDirReadTool extends BaseTool {
 
-    /**
-     * 需要忽略的文件和目录
-     */
-    private static final Set<String> IGNORED_NAMES = Set.of(
-            "node_modules", ".git", "dist", "build", ".DS_Store",
-            ".env", "target", ".mvn", ".idea", ".vscode", "coverage"
-    );
-
-    /**
-     * 需要忽略的文件扩展名
-     */
-    private static final Set<String> IGNORED_EXTENSIONS = Set.of(
-            ".log", ".tmp", ".cache", ".lock"
-    );
+    @Resource
+    private ProjectFileIndex projectFileIndex;
 
     @Tool("读取目录结构，获取指定目录下的所有文件和子目录信息")
     public String readDir(
@@ -47,35 +37,36 @@ public class FileDirReadTool extends BaseTool {
             @ToolMemoryId Long appId
     ) {
         try {
+            String projectDirName = "vue_project_" + appId;
+            Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
             Path path = Paths.get(relativeDirPath == null ? "" : relativeDirPath);
             if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeDirPath == null ? "" : relativeDirPath);
             }
             File targetDir = path.toFile();
             if (!targetDir.exists() || !targetDir.isDirectory()) {
                 return "错误：目录不存在或不是目录 - " + relativeDirPath;
             }
+            List<String> relativePaths;
+            if (path.toAbsolutePath().normalize().startsWith(projectRoot.toAbsolutePath().normalize())) {
+                // 项目内目录：直接从文件索引渲染，不再递归遍历磁盘
+                relativePaths = projectFileIndex.listFiles(projectRoot, path);
+            } else {
+                Path targetPath = targetDir.toPath();
+                relativePaths = FileUtil.loopFiles(targetDir, file -> !ProjectFileIndex.shouldIgnore(file.getName())).stream()
+                        .map(file -> targetPath.relativize(file.toPath()).toString().replace(File.separatorChar, '/'))
+                        .toList();
+            }
             StringBuilder structure = new StringBuilder();
             structure.append("项目目录结构:\n");
-            // 使用 Hutool 递归获取所有文件
-            List<File> allFiles = FileUtil.loopFiles(targetDir, file -> !shouldIgnore(file.getName()));
-            // 按路径深度和名称排序显示
-            allFiles.stream()
-                    .sorted((f1, f2) -> {
-                        int depth1 = getRelativeDepth(targetDir, f1);
-                        int depth2 = getRelativeDepth(targetDir, f2);
-                        if (depth1 != depth2) {
-                            return Integer.compare(depth1, depth2);
-                        }
-                        return f1.getPath().compareTo(f2.getPath());
-                    })
-                    .forEach(file -> {
-                        int depth = getRelativeDepth(targetDir, file);
-                        String indent = "  ".repeat(depth);
-                        // structure.append(indent).append(file.getName());
-                        structure.append(indent).append(file.getName()).append("\n");
+            // 按路径深度和名称排序显示（深度预先计算，比较时不再重复计算相对路径）
+            relativePaths.stream()
+                    .map(relativePath -> new DirEntry(relativePath, StrUtil.count(relativePath, '/')))
+                    .sorted(Comparator.comparingInt(DirEntry::depth).thenComparing(DirEntry::relativePath))
+                    .forEach(entry -> {
+                        String indent = "  ".repeat(entry.depth());
+                        String fileName = entry.relativePath().substring(entry.relativePath().lastIndexOf('/') + 1);
+                        structure.append(indent).append(fileName).append("\n");
                     });
             return structure.toString();
 
@@ -87,25 +78,12 @@ public class FileDirReadTool extends BaseTool {
     }
 
     /**
-     * 计算文件相对于根目录的深度
+     * 目录结构中的一个文件
+     *
+     * @param relativePath 相对于读取目录的路径
+     * @param depth        目录深度
      */
-    private int getRelativeDepth(File root, File file) {
-        Path rootPath = root.toPath();
-        Path filePath = file.toPath();
-        return rootPath.relativize(filePath).getNameCount() - 1;
-    }
-
-    /**
-     * 判断是否应该忽略该文件或目录
-     */
-    private boolean shouldIgnore(String fileName) {
-        // 检查是否在忽略名称列表中
-        if (IGNORED_NAMES.contains(fileName)) {
-            return true;
-        }
-
-        // 检查文件扩展名
-        return IGNORED_EXTENSIONS.stream().anyMatch(fileName::endsWith);
+    private record DirEntry(String relativePath, int depth) {
     }
 
     @Override
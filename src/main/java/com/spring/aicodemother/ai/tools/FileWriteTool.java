@@ -3,14 +3,18 @@ package com.spring.aicodemother.ai.tools;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.json.JSONObject;
 import com.spring.aicodemother.constant.AppConstant;
+import com.spring.aicodemother.core.build.ProjectFileIndex;
+import com.spring.aicodemother.core.build.VueProjectStateTracker;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -24,6 +28,12 @@ import java.nio.file.StandardOpenOption;
 @Component
 public class FileWriteTool extends BaseTool {
 
+    @Resource
+    private VueProjectStateTracker vueProjectStateTracker;
+
+    @Resource
+    private ProjectFileIndex projectFileIndex;
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -33,11 +43,11 @@ public class FileWriteTool extends BaseTool {
             @ToolMemoryId Long appId
     ) {
         try {
+            String projectDirName = "vue_project_" + appId;
+            Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
             Path path = Paths.get(relativeFilePath);
             if (!path.isAbsolute()) {
                 // 相对路径处理，创建基于 appId 的项目目录
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
             // 创建父目录（如果不存在）
@@ -45,24 +55,20 @@ public class FileWriteTool extends BaseTool {
             if (parentDir != null) {
                 Files.createDirectories(parentDir);
             }
-            // 幂等：若文件已存在且内容完全一致，则跳过写入
-            if (Files.exists(path) && Files.isRegularFile(path)) {
-                try {
-                    String existing = Files.readString(path);
-                    if (existing != null && existing.equals(content)) {
-                        log.info("检测到相同内容，跳过写入: {}", path.toAbsolutePath());
-                        return "已存在且内容相同（跳过）: " + relativeFilePath;
-                    }
-                } catch (IOException ignore) {
-                    // 读取失败不影响正常写入
-                }
+            // 幂等：若文件已存在且内容完全一致，则跳过写入（比较大小和哈希，不读取整个文件）
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            if (projectFileIndex.hasSameContent(projectRoot, path, bytes)) {
+                log.info("检测到相同内容，跳过写入: {}", path.toAbsolutePath());
+                return "已存在且内容相同（跳过）: " + relativeFilePath;
             }
 
             // 写入或覆盖文件内容（内容不同则覆盖）
-            Files.write(path, content.getBytes(),
+            Files.write(path, bytes,
                     StandardOpenOption.CREATE,
                     StandardOpenOption.TRUNCATE_EXISTING);
+            projectFileIndex.onFileWritten(projectRoot, path, bytes);
             log.info("成功写入文件: {}", path.toAbsolutePath());
+            vueProjectStateTracker.onFileWritten(appId, path);
             // 注意要返回相对路径，不能让 AI 把文件绝对路径返回给用户
             return "文件写入成功: " + relativeFilePath;
         } catch (IOException e) {
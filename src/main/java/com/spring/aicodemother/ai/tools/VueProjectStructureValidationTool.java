@@ -40,86 +40,93 @@ public class VueProjectStructureValidationTool extends BaseTool {
 
             List<String> errors = new ArrayList<>();
             List<String> warnings = new ArrayList<>();
+            validateStructure(projectDir, errors, warnings);
 
-            // 1. 检查是否有 styles/ 或 scripts/ 目录（这表示生成了原生 HTML 项目）
-            File stylesDir = new File(projectDir, "styles");
-            File scriptsDir = new File(projectDir, "scripts");
+            return formatValidationResult(errors, warnings, errors.isEmpty());
 
-            if (stylesDir.exists()) {
-                errors.add("❌ 发现 styles/ 目录！这是原生 HTML 项目的结构，不是 Vue 项目！");
-                errors.add("   → CSS 文件应该放在 src/styles/ 或组件的 <style> 标签中");
-            }
+        } catch (Exception e) {
+            log.error("验证 Vue 项目结构失败: {}", e.getMessage(), e);
+            return "❌ 验证失败: " + e.getMessage();
+        }
+    }
 
-            if (scriptsDir.exists()) {
-                errors.add("❌ 发现 scripts/ 目录！这是原生 HTML 项目的结构，不是 Vue 项目！");
-                errors.add("   → JS 文件应该放在 src/ 目录中，使用 ES Module 方式导入");
-            }
+    /**
+     * 检查项目目录结构和核心配置文件，问题分别写入 errors 和 warnings
+     * 代码质量检查节点在调用 AI 之前也会使用这里的规则做本地预检
+     */
+    public static void validateStructure(File projectDir, List<String> errors, List<String> warnings) {
+        // 1. 检查是否有 styles/ 或 scripts/ 目录（这表示生成了原生 HTML 项目）
+        File stylesDir = new File(projectDir, "styles");
+        File scriptsDir = new File(projectDir, "scripts");
+
+        if (stylesDir.exists()) {
+            errors.add("❌ 发现 styles/ 目录！这是原生 HTML 项目的结构，不是 Vue 项目！");
+            errors.add("   → CSS 文件应该放在 src/styles/ 或组件的 <style> 标签中");
+        }
 
-            // 2. 检查必需文件是否存在
-            File packageJson = new File(projectDir, "package.json");
-            File viteConfig = new File(projectDir, "vite.config.js");
-            File indexHtml = new File(projectDir, "index.html");
+        if (scriptsDir.exists()) {
+            errors.add("❌ 发现 scripts/ 目录！这是原生 HTML 项目的结构，不是 Vue 项目！");
+            errors.add("   → JS 文件应该放在 src/ 目录中，使用 ES Module 方式导入");
+        }
 
-            if (!packageJson.exists()) {
-                errors.add("❌ 缺少 package.json 文件！这是 Vue 项目的核心配置文件，必须存在");
-            }
+        // 2. 检查必需文件是否存在
+        File packageJson = new File(projectDir, "package.json");
+        File viteConfig = new File(projectDir, "vite.config.js");
+        File indexHtml = new File(projectDir, "index.html");
 
-            if (!viteConfig.exists()) {
-                errors.add("❌ 缺少 vite.config.js 文件！这是 Vite 构建工具的配置文件，必须存在");
-            }
+        if (!packageJson.exists()) {
+            errors.add("❌ 缺少 package.json 文件！这是 Vue 项目的核心配置文件，必须存在");
+        }
 
-            if (!indexHtml.exists()) {
-                errors.add("❌ 缺少 index.html 文件！这是应用的入口 HTML 文件，必须存在");
-            }
+        if (!viteConfig.exists()) {
+            errors.add("❌ 缺少 vite.config.js 文件！这是 Vite 构建工具的配置文件，必须存在");
+        }
 
-            // 如果核心文件缺失，不再继续检查
-            if (!errors.isEmpty()) {
-                return formatValidationResult(errors, warnings, false);
-            }
+        if (!indexHtml.exists()) {
+            errors.add("❌ 缺少 index.html 文件！这是应用的入口 HTML 文件，必须存在");
+        }
 
-            // 3. 验证 package.json 内容
-            String packageJsonContent = FileUtil.readString(packageJson, StandardCharsets.UTF_8);
-            validatePackageJson(packageJsonContent, errors, warnings);
-
-            // 4. 验证 vite.config.js 内容
-            String viteConfigContent = FileUtil.readString(viteConfig, StandardCharsets.UTF_8);
-            validateViteConfig(viteConfigContent, errors, warnings);
-
-            // 5. 验证 index.html 内容
-            String indexHtmlContent = FileUtil.readString(indexHtml, StandardCharsets.UTF_8);
-            validateIndexHtml(indexHtmlContent, errors, warnings);
-
-            // 6. 检查是否有根目录下的 .css 或 .js 文件
-            File[] rootFiles = projectDir.listFiles();
-            if (rootFiles != null) {
-                for (File file : rootFiles) {
-                    if (!file.isFile()) {
-                        continue;
-                    }
-                    String fileName = file.getName();
-                    if (fileName.endsWith(".css")) {
-                        warnings.add("⚠️ 根目录下发现 CSS 文件: " + fileName);
-                        warnings.add("   → 建议将 CSS 放在 src/styles/ 目录或组件中");
-                    }
-                    if (fileName.endsWith(".js") && !fileName.equals("vite.config.js")) {
-                        warnings.add("⚠️ 根目录下发现 JS 文件: " + fileName);
-                        warnings.add("   → 建议将 JS 代码放在 src/ 目录中");
-                    }
-                }
-            }
+        // 如果核心文件缺失，不再继续检查
+        if (!errors.isEmpty()) {
+            return;
+        }
 
-            return formatValidationResult(errors, warnings, errors.isEmpty());
+        // 3. 验证 package.json 内容
+        String packageJsonContent = FileUtil.readString(packageJson, StandardCharsets.UTF_8);
+        validatePackageJson(packageJsonContent, errors, warnings);
 
-        } catch (Exception e) {
-            log.error("验证 Vue 项目结构失败: {}", e.getMessage(), e);
-            return "❌ 验证失败: " + e.getMessage();
+        // 4. 验证 vite.config.js 内容
+        String viteConfigContent = FileUtil.readString(viteConfig, StandardCharsets.UTF_8);
+        validateViteConfig(viteConfigContent, errors, warnings);
+
+        // 5. 验证 index.html 内容
+        String indexHtmlContent = FileUtil.readString(indexHtml, StandardCharsets.UTF_8);
+        validateIndexHtml(indexHtmlContent, errors, warnings);
+
+        // 6. 检查是否有根目录下的 .css 或 .js 文件
+        File[] rootFiles = projectDir.listFiles();
+        if (rootFiles != null) {
+            for (File file : rootFiles) {
+                if (!file.isFile()) {
+                    continue;
+                }
+                String fileName = file.getName();
+                if (fileName.endsWith(".css")) {
+                    warnings.add("⚠️ 根目录下发现 CSS 文件: " + fileName);
+                    warnings.add("   → 建议将 CSS 放在 src/styles/ 目录或组件中");
+                }
+                if (fileName.endsWith(".js") && !fileName.equals("vite.config.js")) {
+                    warnings.add("⚠️ 根目录下发现 JS 文件: " + fileName);
+                    warnings.add("   → 建议将 JS 代码放在 src/ 目录中");
+                }
+            }
         }
     }
 
     /**
      * 验证 package.json 内容
      */
-    private void validatePackageJson(String content, List<String> errors, List<String> warnings) {
+    private static void validatePackageJson(String content, List<String> errors, List<String> warnings) {
         try {
             JSONObject pkg = JSONUtil.parseObj(content);
 
@@ -170,7 +177,7 @@ public class VueProjectStructureValidationTool extends BaseTool {
     /**
      * 验证 vite.config.js 内容
      */
-    private void validateViteConfig(String content, List<String> errors, List<String> warnings) {
+    private static void validateViteConfig(String content, List<String> errors, List<String> warnings) {
         // 检查是否导入了 Vue 插件
         if (!content.contains("@vitejs/plugin-vue")) {
             errors.add("❌ vite.config.js 没有导入 @vitejs/plugin-vue 插件！");
@@ -196,7 +203,7 @@ public class VueProjectStructureValidationTool extends BaseTool {
     /**
      * 验证 index.html 内容
      */
-    private void validateIndexHtml(String content, List<String> errors, List<String> warnings) {
+    private static void validateIndexHtml(String content, List<String> errors, List<String> warnings) {
         // 检查是否有 app 容器
         if (!content.contains("id=\"app\"") && !content.contains("id='app'")) {
             errors.add("❌ index.html 缺少 <div id=\"app\"></div>！这是 Vue 应用挂载的容器");
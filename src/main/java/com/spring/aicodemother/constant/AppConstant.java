@@ -25,6 +25,26 @@ public interface AppConstant {
      */
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
+    /**
+     * npm 依赖缓存目录（按依赖哈希共享 node_modules）
+     */
+    String NPM_CACHE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/npm_cache";
+
+    /**
+     * 构建清单目录（记录上次成功构建的输入文件哈希）
+     */
+    String BUILD_MANIFEST_ROOT_DIR = System.getProperty("user.dir") + "/tmp/build_manifest";
+
+    /**
+     * 对话历史写缓冲的日志目录（进程崩溃后重放未落库的消息）
+     */
+    String CHAT_HISTORY_JOURNAL_DIR = System.getProperty("user.dir") + "/tmp/chat_history_journal";
+
+    /**
+     * 项目下载压缩包缓存目录（按项目内容指纹缓存）
+     */
+    String DOWNLOAD_CACHE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/download_cache";
+
     /**
      * 应用部署域名
      */
@@ -20,8 +20,11 @@ import com.spring.aicodemother.model.vo.DevelopmentPlanVO;
 import com.spring.aicodemother.model.entity.User;
 import com.spring.aicodemother.ratelimit.annotation.RateLimit;
 import com.spring.aicodemother.ratelimit.enums.RateLimitType;
+import com.spring.aicodemother.ratelimit.limiter.HybridRateLimiter;
 import com.spring.aicodemother.service.ProjectDownloadService;
 import com.spring.aicodemother.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -40,6 +43,8 @@ import java.io.File;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import lombok.extern.slf4j.Slf4j;
 import com.spring.aicodemother.core.control.GenerationControlRegistry;
@@ -70,7 +75,10 @@ public class AppController {
     private GenerationControlRegistry generationControlRegistry;
 
     @Resource
-    private org.redisson.api.RedissonClient redissonClient;
+    private HybridRateLimiter hybridRateLimiter;
+
+    @Resource
+    private MeterRegistry meterRegistry;
 
 //    @Resource
 //    private ProjectDownloadService projectDownloadService;
@@ -82,6 +90,7 @@ public class AppController {
                                                        @RequestParam(required = false) String runId,
                                                        @RequestParam(required = false) String modelKey,
                                                        HttpServletRequest request) {
+        long requestStart = System.nanoTime();
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 id 错误");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "提示词不能为空");
@@ -115,8 +124,10 @@ public class AppController {
                         contentFlux
                 .takeUntilOther(control.cancelFlux())
                 .map(chunk -> {
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
+                    // 运行仍有产出，续期运行登记，长时间生成不会因 TTL 到期而无法停止
+                    generationControlRegistry.touch(rid);
+                    // SSE 出口处唯一一次序列化：直接拼装 {"d": chunk}，不经过中间 Map/JSONObject
+                    String jsonData = "{\"d\":" + JSONUtil.quote(chunk) + "}";
                     return ServerSentEvent.<String>builder()
                             .data(jsonData)
                             .build();
@@ -127,7 +138,17 @@ public class AppController {
         Flux<ServerSentEvent<String>> interruptEvent = control.cancelFlux()
                 .map(v -> ServerSentEvent.<String>builder().event("interrupted").data("").build());
 
+        // 首帧（keepalive，前面是登录校验和生成准入）与首个内容帧的到达时间
+        AtomicInteger frames = new AtomicInteger();
         return Flux.merge(dataEvents, interruptEvent)
+                .doOnNext(sse -> {
+                    int frame = frames.incrementAndGet();
+                    if (frame == 1) {
+                        recordFirstByte("first_frame", requestStart);
+                    } else if (frame == 2 && sse.event() == null) {
+                        recordFirstByte("first_content", requestStart);
+                    }
+                })
                 // 一旦发送了 interrupted 事件就结束 SSE
                 .takeUntil(sse -> "interrupted".equals(sse.event()))
                 // 前端主动断开 SSE（未显式调用 /stop）时，同样触发取消，确保后台保存/构建链路停止
@@ -141,6 +162,15 @@ public class AppController {
                 });
     }
 
+    private void recordFirstByte(String frame, long requestStart) {
+        Timer.builder("ai_code_sse_first_byte_seconds")
+                .description("生成接口从进入控制器到发出首帧/首个内容帧的耗时")
+                .tag("frame", frame)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - requestStart, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * 手动停止当前运行
      */
@@ -151,9 +181,10 @@ public class AppController {
         ThrowUtils.throwIf(StrUtil.isBlank(runId), ErrorCode.PARAMS_ERROR, "runId 不能为空");
         // 权限校验：仅拥有者可取消
         User loginUser = userService.getLoginUser(request);
-        GenerationControl control = generationControlRegistry.get(runId);
-        ThrowUtils.throwIf(control == null, ErrorCode.NOT_FOUND_ERROR, "运行不存在或已结束");
-        if (control.getOwnerUserId() != null && !String.valueOf(loginUser.getId()).equals(control.getOwnerUserId())) {
+        // 运行可能在其他节点上，按集群范围查找
+        GenerationControlRegistry.RunInfo runInfo = generationControlRegistry.find(runId);
+        ThrowUtils.throwIf(runInfo == null, ErrorCode.NOT_FOUND_ERROR, "运行不存在或已结束");
+        if (runInfo.ownerUserId() != null && !String.valueOf(loginUser.getId()).equals(runInfo.ownerUserId())) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权停止该生成");
         }
         generationControlRegistry.cancel(runId);
@@ -507,6 +538,30 @@ public class AppController {
     public void downloadAppCode(@PathVariable Long appId,
                                 HttpServletRequest request,
                                 HttpServletResponse response) {
+        String sourceDirPath = getDownloadSourceDir(appId, request);
+        // 生成下载文件名（不建议添加中文内容）
+        String downloadFileName = String.valueOf(appId);
+        // 调用通用下载服务（内容未变化时直接发送缓存的压缩包）
+        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, request, response);
+    }
+
+    /**
+     * 提前在后台打包应用代码（大项目可先调用，返回 true 后再下载）
+     *
+     * @param appId   应用ID
+     * @param request 请求
+     * @return 压缩包是否已就绪
+     */
+    @PostMapping("/download/{appId}/prepare")
+    public BaseResponse<Boolean> prepareAppCodeDownload(@PathVariable Long appId, HttpServletRequest request) {
+        String sourceDirPath = getDownloadSourceDir(appId, request);
+        return ResultUtils.success(projectDownloadService.prepareProjectZip(sourceDirPath));
+    }
+
+    /**
+     * 校验下载权限并返回应用代码目录（生成目录，非部署目录）
+     */
+    private String getDownloadSourceDir(Long appId, HttpServletRequest request) {
         // 1. 基础校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         // 2. 查询应用信息
@@ -517,7 +572,7 @@ public class AppController {
         if (!app.getUserId().equals(loginUser.getId())) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限下载该应用代码");
         }
-        // 4. 构建应用代码目录路径（生成目录，非部署目录）
+        // 4. 构建应用代码目录路径
         String codeGenType = app.getCodeGenType();
         String sourceDirName = codeGenType + "_" + appId;
         String sourceDirPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + sourceDirName;
@@ -525,10 +580,7 @@ public class AppController {
         File sourceDir = new File(sourceDirPath);
         ThrowUtils.throwIf(!sourceDir.exists() || !sourceDir.isDirectory(),
                 ErrorCode.NOT_FOUND_ERROR, "应用代码不存在，请先生成代码");
-        // 6. 生成下载文件名（不建议添加中文内容）
-        String downloadFileName = String.valueOf(appId);
-        // 7. 调用通用下载服务
-        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, response);
+        return sourceDirPath;
     }
 
     /**
@@ -537,45 +589,11 @@ public class AppController {
      */
     private void checkIpRateLimit(HttpServletRequest request) {
         String ip = getClientIP(request);
-        String key = "rate_limit:ip:app_gen:" + ip;
-        String lockKey = "lock:rate_limit:init:" + ip;
-
         try {
-            // 使用 Redisson 的分布式限流器
-            org.redisson.api.RRateLimiter rateLimiter = redissonClient.getRateLimiter(key);
-
-            // 使用分布式锁避免并发重复设置限流参数
-            if (!rateLimiter.isExists()) {
-                org.redisson.api.RLock lock = redissonClient.getLock(lockKey);
-                try {
-                    // 尝试获取锁，最多等待1秒
-                    if (lock.tryLock(1, 5, java.util.concurrent.TimeUnit.SECONDS)) {
-                        try {
-                            // 双重检查，防止重复设置
-                            if (!rateLimiter.isExists()) {
-                                // 设置限流器参数：每分钟最多10次请求
-                                rateLimiter.trySetRate(
-                                    org.redisson.api.RateType.OVERALL,
-                                    com.spring.aicodemother.constants.PointsConstants.IP_RATE_LIMIT_PER_MINUTE,
-                                    com.spring.aicodemother.constants.PointsConstants.IP_RATE_LIMIT_WINDOW_SECONDS,
-                                    org.redisson.api.RateIntervalUnit.SECONDS
-                                );
-                            }
-                        } finally {
-                            lock.unlock();
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("IP限流器初始化获取锁被中断: {}", ip);
-                }
-            }
-
-            // 设置1小时过期时间
-            rateLimiter.expire(java.time.Duration.ofHours(1));
-
-            // 尝试获取一个令牌，如果获取失败则限流
-            if (!rateLimiter.tryAcquire(1)) {
+            // 本地租约与 Redis 滑动窗口混合限流，参数随租借请求下发，不需要加锁初始化
+            if (!hybridRateLimiter.tryAcquire("ip:app_gen:" + ip,
+                    com.spring.aicodemother.constants.PointsConstants.IP_RATE_LIMIT_PER_MINUTE,
+                    com.spring.aicodemother.constants.PointsConstants.IP_RATE_LIMIT_WINDOW_SECONDS)) {
                 log.warn("IP {} 请求过于频繁，已限流", ip);
                 throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "该IP请求过于频繁，请稍后再试");
             }
@@ -10,12 +10,12 @@ import com.spring.aicodemother.exception.ThrowUtils;
 import com.spring.aicodemother.model.entity.App;
 import com.spring.aicodemother.model.entity.User;
 import com.spring.aicodemother.service.AppService;
+import com.spring.aicodemother.service.ProjectDownloadService;
 import com.spring.aicodemother.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.File;
@@ -39,6 +39,9 @@ public class CodePreviewController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private ProjectDownloadService projectDownloadService;
+
     /**
      * 列出应用的代码文件结构
      * 
@@ -188,19 +191,8 @@ public class CodePreviewController {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "代码文件不存在");
         }
         
-        // 设置响应头
-        String fileName = app.getAppName() + "_code.zip";
-        response.setContentType("application/zip");
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
-        
-        // 创建ZIP并写入响应流
-        try (var zipOut = new java.util.zip.ZipOutputStream(response.getOutputStream())) {
-            addDirectoryToZip(sourceDir.toPath(), sourceDir.toPath(), zipOut);
-            zipOut.finish();
-        } catch (IOException e) {
-            log.error("创建ZIP文件失败: {}", e.getMessage());
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "下载失败");
-        }
+        // 交给通用下载服务（跳过 node_modules 等目录，内容未变化时直接发送缓存的压缩包）
+        projectDownloadService.downloadProjectAsZip(sourceDirPath, app.getAppName() + "_code", request, response);
     }
 
     /**
@@ -280,20 +272,4 @@ public class CodePreviewController {
         
         return files;
     }
-
-    /**
-     * 将目录添加到ZIP文件中
-     */
-    private void addDirectoryToZip(Path rootPath, Path currentPath, java.util.zip.ZipOutputStream zipOut) throws IOException {
-        Files.walkFileTree(currentPath, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                String relativePath = rootPath.relativize(file).toString().replace("\\", "/");
-                zipOut.putNextEntry(new java.util.zip.ZipEntry(relativePath));
-                Files.copy(file, zipOut);
-                zipOut.closeEntry();
-                return FileVisitResult.CONTINUE;
-            }
-        });
-    }
 }
\ No newline at end of file
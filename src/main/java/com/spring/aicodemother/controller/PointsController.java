@@ -66,7 +66,8 @@ public class PointsController {
         }
 
         Map<String, Object> result = new HashMap<>();
-        result.put("availablePoints", userPoints != null ? userPoints.getAvailablePoints() : 0);
+        // 可用积分以 Redis 账本为准（包含尚未结算到数据库的扣减）
+        result.put("availablePoints", userPointsService.getAvailablePoints(loginUser.getId()));
         result.put("totalEarned", totalEarned);
         result.put("totalConsumed", totalConsumed);
 
@@ -104,7 +105,8 @@ public class PointsController {
         UserPoints userPoints = userPointsService.getOrCreateUserPoints(loginUser.getId());
 
         Map<String, Integer> result = new HashMap<>();
-        result.put("availablePoints", userPoints != null ? userPoints.getAvailablePoints() : 0);
+        // 可用积分以 Redis 账本为准（包含尚未结算到数据库的扣减）
+        result.put("availablePoints", userPointsService.getAvailablePoints(loginUser.getId()));
         result.put("frozenPoints", userPoints != null ? userPoints.getFrozenPoints() : 0);
 
         return ResultUtils.success(result);
@@ -1,11 +1,12 @@
 package com.spring.aicodemother.controller;
 
+import com.spring.aicodemother.core.deploy.StaticAssetService;
+import com.spring.aicodemother.core.saver.StreamingCodeFileWriter;
+import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -13,7 +14,11 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.HandlerMapping;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
+@Slf4j
 @RestController
 @RequestMapping("/static")
 public class StaticResourceController {
@@ -21,55 +26,53 @@ public class StaticResourceController {
     // 应用生成根目录（用于浏览）
     private static final String PREVIEW_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_output";
 
+    @Resource
+    private StaticAssetService staticAssetService;
+
     /**
-     * 提供静态资源访问，支持目录重定向
+     * 提供静态资源访问，支持目录重定向、条件请求（ETag / Last-Modified）、Range 和预压缩副本
      * 访问格式：http://localhost:8123/api/static/{deployKey}[/{fileName}]
      */
     @GetMapping("/{deployKey}/**")
-    public ResponseEntity<Resource> serveStaticResource(
+    public void serveStaticResource(
             @PathVariable String deployKey,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             // 获取资源路径
             String resourcePath = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
             resourcePath = resourcePath.substring(("/static/" + deployKey).length());
             // 如果是目录访问（不带斜杠），重定向到带斜杠的URL
             if (resourcePath.isEmpty()) {
-                HttpHeaders headers = new HttpHeaders();
-                headers.add("Location", request.getRequestURI() + "/");
-                return new ResponseEntity<>(headers, HttpStatus.MOVED_PERMANENTLY);
+                response.setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
+                response.setHeader(HttpHeaders.LOCATION, request.getRequestURI() + "/");
+                return;
             }
             // 默认返回 index.html
             if (resourcePath.equals("/")) {
                 resourcePath = "/index.html";
             }
-            // 构建文件路径
-            String filePath = PREVIEW_ROOT_DIR + "/" + deployKey + resourcePath;
-            File file = new File(filePath);
-            // 检查文件是否存在
-            if (!file.exists()) {
-                return ResponseEntity.notFound().build();
+            // 构建文件路径，拒绝跳出站点目录的路径和以 . 开头的内部文件（如资源清单）
+            Path siteRoot = Paths.get(PREVIEW_ROOT_DIR, deployKey).toAbsolutePath().normalize();
+            Path filePath = siteRoot.resolve(resourcePath.substring(1)).normalize();
+            if (!filePath.startsWith(siteRoot) || filePath.equals(siteRoot)
+                    || filePath.getFileName().toString().startsWith(".")) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            // 正在流式生成的文件优先返回临时文件中的部分内容，生成结束后临时文件被替换为正式文件
+            Path inProgress = StreamingCodeFileWriter.inProgressFile(filePath);
+            if (Files.isRegularFile(inProgress)) {
+                staticAssetService.serveInProgress(inProgress.toFile(), filePath.getFileName().toString(), response);
+                return;
             }
-            // 返回文件资源
-            Resource resource = new FileSystemResource(file);
-            return ResponseEntity.ok()
-                    .header("Content-Type", getContentTypeWithCharset(filePath))
-                    .body(resource);
+            String relativePath = siteRoot.relativize(filePath).toString().replace(File.separatorChar, '/');
+            staticAssetService.serve(siteRoot.toFile(), relativePath, request, response);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            log.warn("静态资源访问失败: deployKey={}, 错误: {}", deployKey, e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
-
-    /**
-     * 根据文件扩展名返回带字符编码的 Content-Type
-     */
-    private String getContentTypeWithCharset(String filePath) {
-        if (filePath.endsWith(".html")) return "text/html; charset=UTF-8";
-        if (filePath.endsWith(".css")) return "text/css; charset=UTF-8";
-        if (filePath.endsWith(".js")) return "application/javascript; charset=UTF-8";
-        if (filePath.endsWith(".png")) return "image/png";
-        if (filePath.endsWith(".jpg")) return "image/jpeg";
-        return "application/octet-stream";
-    }
 }
-
@@ -2,6 +2,7 @@ package com.spring.aicodemother.controller;
 
 import com.spring.aicodemother.langgraph4j.CodeGenWorkflow;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
@@ -17,13 +18,16 @@ import reactor.core.publisher.Flux;
 @Slf4j
 public class WorkflowSseController {
 
+    @Resource
+    private CodeGenWorkflow codeGenWorkflow;
+
     /**
      * 同步执行工作流
      */
     @PostMapping("/execute")
     public WorkflowContext executeWorkflow(@RequestParam String prompt) {
         log.info("收到同步工作流执行请求: {}", prompt);
-        return new CodeGenWorkflow().executeWorkflow(prompt);
+        return codeGenWorkflow.executeWorkflow(prompt);
     }
 
     /**
@@ -32,7 +36,7 @@ public class WorkflowSseController {
     @GetMapping(value = "/execute-flux", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<String> executeWorkflowWithFlux(@RequestParam String prompt) {
         log.info("收到 Flux 工作流执行请求: {}", prompt);
-        return new CodeGenWorkflow().executeWorkflowWithFlux(prompt);
+        return codeGenWorkflow.executeWorkflowWithFlux(prompt);
     }
 
     /**
@@ -41,6 +45,6 @@ public class WorkflowSseController {
     @GetMapping(value = "/execute-sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter executeWorkflowWithSse(@RequestParam String prompt) {
         log.info("收到 SSE 工作流执行请求: {}", prompt);
-        return new CodeGenWorkflow().executeWorkflowWithSse(prompt);
+        return codeGenWorkflow.executeWorkflowWithSse(prompt);
     }
 }
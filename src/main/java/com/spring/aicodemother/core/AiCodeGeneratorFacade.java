@@ -6,14 +6,16 @@ import com.spring.aicodemother.ai.AiCodeGeneratorServiceFactory;
 import com.spring.aicodemother.ai.model.HtmlCodeResult;
 import com.spring.aicodemother.ai.model.MultiFileCodeResult;
 import com.spring.aicodemother.ai.model.message.AiResponseMessage;
+import com.spring.aicodemother.ai.model.message.StreamMessage;
 import com.spring.aicodemother.ai.model.message.ToolExecutedMessage;
 import com.spring.aicodemother.ai.model.message.ToolRequestMessage;
 import com.spring.aicodemother.constant.AppConstant;
 import com.spring.aicodemother.core.build.VueProjectBuilder;
+import com.spring.aicodemother.core.build.VueProjectStateTracker;
 import com.spring.aicodemother.core.control.GenerationControlRegistry;
 import com.spring.aicodemother.core.control.GenerationControlRegistry.GenerationControl;
-import com.spring.aicodemother.core.parser.CodeParserExecutor;
 import com.spring.aicodemother.core.saver.CodeFileSaverExecutor;
+import com.spring.aicodemother.core.saver.StreamingCodeFileWriter;
 import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
@@ -38,6 +40,8 @@ public class AiCodeGeneratorFacade {
     private VueProjectBuilder vueProjectBuilder;
     @Resource
     private GenerationControlRegistry generationControlRegistry;
+    @Resource
+    private VueProjectStateTracker vueProjectStateTracker;
 
     /**
      * 统一入口：根据类型生成并保存代码（非流式）
@@ -85,14 +89,7 @@ public class AiCodeGeneratorFacade {
         }
 
         // 根据 appId、codeGenType 和 modelKey 获取相对应的 AI Service
-        AiCodeGeneratorService aiCodeGeneratorService;
-        if (modelKey != null && !modelKey.isBlank()) {
-            log.info("使用动态模型创建AI服务 - appId: {}, codeGenType: {}, modelKey: {}", appId, codeGenTypeEnum, modelKey);
-            aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum, modelKey);
-        } else {
-            log.info("使用默认模型创建AI服务 - appId: {}, codeGenType: {}", appId, codeGenTypeEnum);
-            aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
-        }
+        AiCodeGeneratorService aiCodeGeneratorService = resolveAiCodeGeneratorService(appId, codeGenTypeEnum, modelKey);
 
         return switch (codeGenTypeEnum) {
             case HTML -> {
@@ -104,14 +101,9 @@ public class AiCodeGeneratorFacade {
                 yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId, control);
             }
             case VUE_PROJECT -> {
-                TokenStream codeTokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
-                // 如果是我们内置的实现，注入取消感知，便于在停止后阻断工具执行
-                try {
-                    if (codeTokenStream instanceof dev.langchain4j.service.AiServiceTokenStream stream) {
-                        stream.withCancellation(() -> control != null && control.isCancelled());
-                    }
-                } catch (Throwable ignored) {}
-                yield processTokenStream(codeTokenStream, appId, control);
+                // 兼容需要 JSON 字符串的调用方（如工作流节点），对话主链路使用 generateVueProjectMessageStream
+                TokenStream codeTokenStream = startVueProjectTokenStream(aiCodeGeneratorService, userMessage, appId, control);
+                yield processTokenStream(codeTokenStream, appId, control).map(JSONUtil::toJsonStr);
             }
             default -> {
                 String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
@@ -120,6 +112,50 @@ public class AiCodeGeneratorFacade {
         };
     }
 
+    /**
+     * VUE_PROJECT 专用入口：返回类型化的消息流
+     * 进程内不再做 JSON 序列化/反序列化，仅在 SSE 出口处序列化一次
+     *
+     * @param userMessage 用户提示词
+     * @param appId       应用ID
+     * @param control     生成控制
+     * @param modelKey    模型key（支持动态模型选择）
+     * @return 类型化的流式消息
+     */
+    public Flux<StreamMessage> generateVueProjectMessageStream(String userMessage, Long appId,
+                                                               GenerationControl control, String modelKey) {
+        AiCodeGeneratorService aiCodeGeneratorService = resolveAiCodeGeneratorService(appId, CodeGenTypeEnum.VUE_PROJECT, modelKey);
+        TokenStream codeTokenStream = startVueProjectTokenStream(aiCodeGeneratorService, userMessage, appId, control);
+        return processTokenStream(codeTokenStream, appId, control);
+    }
+
+    /**
+     * 根据 appId、codeGenType 和 modelKey 获取相对应的 AI Service
+     */
+    private AiCodeGeneratorService resolveAiCodeGeneratorService(Long appId, CodeGenTypeEnum codeGenTypeEnum, String modelKey) {
+        if (modelKey != null && !modelKey.isBlank()) {
+            log.info("使用动态模型创建AI服务 - appId: {}, codeGenType: {}, modelKey: {}", appId, codeGenTypeEnum, modelKey);
+            return aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum, modelKey);
+        }
+        log.info("使用默认模型创建AI服务 - appId: {}, codeGenType: {}", appId, codeGenTypeEnum);
+        return aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
+    }
+
+    /**
+     * 创建 Vue 项目的 TokenStream，并注入取消感知
+     */
+    private TokenStream startVueProjectTokenStream(AiCodeGeneratorService aiCodeGeneratorService, String userMessage,
+                                                   Long appId, GenerationControl control) {
+        TokenStream codeTokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
+        // 如果是我们内置的实现，注入取消感知，便于在停止后阻断工具执行
+        try {
+            if (codeTokenStream instanceof dev.langchain4j.service.AiServiceTokenStream stream) {
+                stream.withCancellation(() -> control != null && control.isCancelled());
+            }
+        } catch (Throwable ignored) {}
+        return codeTokenStream;
+    }
+
     /**
      * 统一入口：根据类型生成并保存代码（流式，兼容旧版）
      *
@@ -133,13 +169,13 @@ public class AiCodeGeneratorFacade {
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
      *
      * @param tokenStream TokenStream 对象
-     * @return Flux<String> 流式响应
+     * @return Flux<StreamMessage> 类型化的流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream, Long appId, GenerationControl control) {
-        return Flux.create(sink -> {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId, GenerationControl control) {
+        return Flux.<StreamMessage>create(sink -> {
             // 本轮运行的轻量级重复写入守卫：用于检测明显的循环趋势
             final java.util.Set<String> writtenPaths = java.util.Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<>());
             final java.util.concurrent.atomic.AtomicInteger duplicateWriteCount = new java.util.concurrent.atomic.AtomicInteger(0);
@@ -148,6 +184,8 @@ public class AiCodeGeneratorFacade {
             final java.util.concurrent.atomic.AtomicInteger confirmationAttempts = new java.util.concurrent.atomic.AtomicInteger(0);
             try {
                 java.util.concurrent.atomic.AtomicBoolean completed = new java.util.concurrent.atomic.AtomicBoolean(false);
+                // 本轮运行开始时探测一次项目状态，之后由文件工具和构建结果驱动
+                vueProjectStateTracker.beginRun(appId);
                 // 当下游取消或释放时，触发控制器取消，以便上层尽早停止
                 if (control != null) {
                     sink.onCancel(control::cancel);
@@ -162,8 +200,8 @@ public class AiCodeGeneratorFacade {
                                     return;
                                 }
                                 
-                                // 检查项目是否已完成
-                                if (!projectCompleted.get() && isProjectCompleted(appId)) {
+                                // 检查项目是否已完成（仅读取内存状态）
+                                if (!projectCompleted.get() && vueProjectStateTracker.isCompleted(appId)) {
                                     projectCompleted.set(true);
                                     log.info("[项目完成检测] Vue项目已生成完成，后续将过滤确认性内容");
                                 }
@@ -177,13 +215,13 @@ public class AiCodeGeneratorFacade {
                                     // 如果是第一次检测到确认性内容，发送一个替代消息
                                     if (attempts == 1) {
                                         AiResponseMessage completionMessage = new AiResponseMessage("\n\n✅ 项目生成已完成！您可以预览和使用生成的应用了。\n\n");
-                                        sink.next(JSONUtil.toJsonStr(completionMessage));
+                                        sink.next(completionMessage);
                                     }
                                     return; // 跳过原始的确认性内容
                                 }
                                 
                                 AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                                sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                                sink.next(aiResponseMessage);
                             } catch (Exception e) {
                                 log.error("处理AI响应消息失败: {}", e.getMessage());
                                 // 继续处理，不中断流
@@ -195,7 +233,7 @@ public class AiCodeGeneratorFacade {
                                     return;
                                 }
                                 ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                                sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                                sink.next(toolRequestMessage);
                             } catch (Exception e) {
                                 log.error("处理工具请求消息失败: {}", e.getMessage());
                                 // 继续处理，不中断流
@@ -222,7 +260,7 @@ public class AiCodeGeneratorFacade {
                                                 int dup = duplicateWriteCount.incrementAndGet();
                                                 if (dup == 3) { // 第3次触发时提示一次
                                                     AiResponseMessage warn = new AiResponseMessage("\n\n[警告] 检测到重复写入同一路径的趋势(≥3)。系统已对相同内容的重复写入进行跳过处理。建议立即调用【退出工具调用】以结束生成，避免循环。\n\n");
-                                                    sink.next(cn.hutool.json.JSONUtil.toJsonStr(warn));
+                                                    sink.next(warn);
                                                 }
                                             }
                                         }
@@ -231,13 +269,13 @@ public class AiCodeGeneratorFacade {
                                     // 守卫失败不影响主流程
                                 }
                                 ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                                sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                                sink.next(toolExecutedMessage);
                             } catch (Exception e) {
                                 log.error("处理工具执行消息失败: {}", e.getMessage());
                                 // 发送错误消息给前端
                                 try {
                                     AiResponseMessage errorMessage = new AiResponseMessage("\n\n[错误] 工具调用出现问题，但代码生成继续进行\n\n");
-                                    sink.next(JSONUtil.toJsonStr(errorMessage));
+                                    sink.next(errorMessage);
                                 } catch (Exception nested) {
                                     log.error("发送错误消息失败: {}", nested.getMessage());
                                 }
@@ -249,7 +287,7 @@ public class AiCodeGeneratorFacade {
                             if (control == null || !control.isCancelled()) {
                                 // 先检查项目是否有实际内容，避免AI只输出计划未生成代码就触发构建
                                 if (isValidProjectDirectory(projectPath)) {
-                                    com.spring.aicodemother.core.build.BuildResult buildResult = vueProjectBuilder.buildProject(projectPath);
+                                    com.spring.aicodemother.core.build.BuildResult buildResult = vueProjectBuilder.buildProject(projectPath, control == null ? null : control.getOwnerUserId());
                                     if (!buildResult.isSuccess()) {
                                         log.error("Vue 项目构建失败: {}", buildResult.getErrorSummary());
                                     }
@@ -269,7 +307,7 @@ public class AiCodeGeneratorFacade {
                                 log.error("检测到LangChain4j工具调用JSON解析错误，尝试恢复");
                                 try {
                                     AiResponseMessage errorMessage = new AiResponseMessage("\n\n[错误] 工具调用参数解析失败，请重新尝试或简化您的请求\n\n");
-                                    sink.next(JSONUtil.toJsonStr(errorMessage));
+                                    sink.next(errorMessage);
                                     sink.complete(); // 优雅结束，而不是错误终止
                                     return;
                                 } catch (Exception e) {
@@ -287,14 +325,13 @@ public class AiCodeGeneratorFacade {
             }
         })
         .takeUntilOther(control == null ? reactor.core.publisher.Mono.never() : control.cancelFlux())
+        .doFinally(signalType -> vueProjectStateTracker.endRun(appId))
         // 添加错误恢复操作符，确保流不会因为单次错误而完全中断
         .onErrorResume(throwable -> {
             log.error("Flux流处理错误，尝试恢复: {}", throwable.getMessage());
             AiResponseMessage errorMessage = new AiResponseMessage("\n\n[错误] 处理过程中遇到问题，请重试\n\n");
-            return Flux.just(JSONUtil.toJsonStr(errorMessage));
-        })
-        // 确保返回类型为 Flux<String>
-        .cast(String.class);
+            return Flux.just(errorMessage);
+        });
     }
 
 
@@ -340,33 +377,35 @@ public class AiCodeGeneratorFacade {
      */
     private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId,
                                            GenerationControl control) {
-        // 使用cache()确保流可以被多次订阅
         Flux<String> controlled = (control == null) ? codeStream : codeStream.takeUntilOther(control.cancelFlux());
-        Flux<String> cachedStream = controlled.cache();
-
-        // 异步处理保存操作，不阻塞原流
-        cachedStream.collect(StringBuilder::new, StringBuilder::append)
-                .doOnSuccess(codeBuilder -> {
+        // 边生成边写盘，不再缓存整段响应
+        StreamingCodeFileWriter fileWriter = new StreamingCodeFileWriter(codeGenType, appId);
+        Flux<String> sharedStream = controlled
+                .doOnNext(fileWriter::append)
+                .doOnComplete(() -> {
+                    if (control != null && control.isCancelled()) {
+                        fileWriter.abort(); // 用户取消，丢弃本次生成的临时文件，保留上一版代码
+                        return;
+                    }
                     try {
-                        if (control != null && control.isCancelled()) {
-                            return; // 用户取消，跳过保存
-                        }
-                        String completeCode = codeBuilder.toString();
-                        // 使用执行器解析代码
-                        Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                        // 使用执行器保存代码
-                        File saveDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
+                        File saveDir = fileWriter.complete();
                         log.info("保存成功，目录为：{}", saveDir.getAbsolutePath());
                     } catch (Exception e) {
                         log.error("保存失败: {}", e.getMessage());
-                        // 注意：这里的异常不会传播到主流，如果需要可以考虑其他处理方式
                     }
                 })
-                .doOnError(error -> log.error("流处理失败: {}", error.getMessage()))
-                .subscribe(); // 启动异步处理
+                .doOnError(error -> {
+                    fileWriter.abort();
+                    log.error("流处理失败: {}", error.getMessage());
+                })
+                .publish()
+                .autoConnect(2);
+
+        // 内部订阅保证调用方提前断开时生成与写盘仍能完成，异常不会传播到这里
+        sharedStream.subscribe(chunk -> {}, error -> {});
 
-        // 返回缓存的流，保持流式特性
-        return cachedStream;
+        // 返回共享的流，保持流式特性
+        return sharedStream;
     }
 
 
@@ -490,46 +529,6 @@ public class AiCodeGeneratorFacade {
 //                });
 //    }
 
-    /**
-     * 检查Vue项目是否已完成（存在核心文件且构建成功）
-     * 
-     * @param appId 应用ID
-     * @return 是否完成
-     */
-    private boolean isProjectCompleted(Long appId) {
-        try {
-            String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
-            File projectDir = new File(projectPath);
-            
-            if (!projectDir.exists() || !projectDir.isDirectory()) {
-                return false;
-            }
-            
-            // 检查核心文件是否存在
-            String[] coreFiles = {"package.json", "src/main.js", "src/App.vue", "vite.config.js"};
-            for (String coreFile : coreFiles) {
-                File file = new File(projectDir, coreFile);
-                if (!file.exists()) {
-                    return false;
-                }
-            }
-            
-            // 检查是否已构建（dist目录存在）
-            File distDir = new File(projectDir, "dist");
-            if (!distDir.exists() || !distDir.isDirectory()) {
-                return false;
-            }
-            
-            // 检查dist目录是否有内容
-            File[] distFiles = distDir.listFiles();
-            return distFiles != null && distFiles.length > 0;
-            
-        } catch (Exception e) {
-            log.error("检查项目完成状态失败: {}", e.getMessage());
-            return false;
-        }
-    }
-    
     /**
      * 检查内容是否包含确认性询问
      * 
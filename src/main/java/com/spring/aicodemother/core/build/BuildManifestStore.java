@@ -0,0 +1,123 @@
+package com.spring.aicodemother.core.build;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.constant.AppConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 构建清单存储
+ * 记录每个项目上一次成功构建时构建输入文件的内容哈希（相对路径 -> SHA-256），
+ * 用于判断本次是否需要重新安装依赖或重新构建
+ */
+@Slf4j
+@Component
+public class BuildManifestStore {
+
+    /**
+     * 参与构建的源码目录（递归扫描）
+     */
+    private static final String[] SOURCE_DIRS = {"src", "public"};
+
+    /**
+     * 根目录下不属于构建输入的文件（lockfile 由安装过程生成）
+     */
+    private static final Set<String> IGNORED_ROOT_FILES = Set.of("package-lock.json", ".DS_Store");
+
+    public static final String PACKAGE_JSON = "package.json";
+
+    /**
+     * 清单存放在项目目录之外，避免混入下载包和部署产物
+     */
+    private final Path manifestRoot = Paths.get(AppConstant.BUILD_MANIFEST_ROOT_DIR).toAbsolutePath().normalize();
+
+    /**
+     * 扫描项目当前的构建输入：根目录下的配置文件 + src/ + public/
+     *
+     * @param projectDir 项目根目录
+     * @return 相对路径 -> 内容哈希（有序）
+     */
+    public Map<String, String> scan(File projectDir) {
+        Map<String, String> manifest = new TreeMap<>();
+        Path root = projectDir.toPath();
+        File[] rootFiles = projectDir.listFiles(File::isFile);
+        if (rootFiles != null) {
+            for (File file : rootFiles) {
+                if (!IGNORED_ROOT_FILES.contains(file.getName())) {
+                    manifest.put(file.getName(), DigestUtil.sha256Hex(file));
+                }
+            }
+        }
+        for (String dir : SOURCE_DIRS) {
+            Path sourceDir = root.resolve(dir);
+            if (!Files.isDirectory(sourceDir)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(sourceDir)) {
+                paths.filter(Files::isRegularFile).forEach(path -> manifest.put(
+                        root.relativize(path).toString().replace(File.separatorChar, '/'),
+                        DigestUtil.sha256Hex(path.toFile())));
+            } catch (IOException e) {
+                log.warn("扫描构建输入失败: {}, 错误: {}", sourceDir, e.getMessage());
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * 读取上一次成功构建的清单
+     *
+     * @return 清单，不存在或损坏时返回空 Map
+     */
+    public Map<String, String> load(File projectDir) {
+        File manifestFile = manifestFile(projectDir);
+        if (!manifestFile.isFile()) {
+            return Map.of();
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(FileUtil.readUtf8String(manifestFile));
+            Map<String, String> manifest = new TreeMap<>();
+            json.forEach((path, hash) -> manifest.put(path, String.valueOf(hash)));
+            return manifest;
+        } catch (Exception e) {
+            log.warn("读取构建清单失败，按全量构建处理: {}, 错误: {}", manifestFile, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * 保存本次成功构建的清单
+     */
+    public void save(File projectDir, Map<String, String> manifest) {
+        File manifestFile = manifestFile(projectDir);
+        try {
+            FileUtil.writeUtf8String(JSONUtil.toJsonStr(manifest), manifestFile);
+        } catch (Exception e) {
+            log.warn("保存构建清单失败: {}, 错误: {}", manifestFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 清除项目的构建清单（构建失败时调用，下次强制全量构建）
+     */
+    public void invalidate(File projectDir) {
+        FileUtil.del(manifestFile(projectDir));
+    }
+
+    private File manifestFile(File projectDir) {
+        return manifestRoot.resolve(projectDir.getName() + ".json").toFile();
+    }
+}
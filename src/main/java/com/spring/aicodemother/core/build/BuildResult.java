@@ -36,6 +36,11 @@ public class BuildResult {
      */
     private String errorSummary;
     
+    /**
+     * 因构建输入未变化而跳过的阶段（install / build）
+     */
+    private List<String> skippedPhases = new ArrayList<>();
+    
     public BuildResult() {
         this.stdoutLines = new ArrayList<>();
         this.stderrLines = new ArrayList<>();
@@ -0,0 +1,322 @@
+package com.spring.aicodemother.core.build;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.constant.AppConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * npm 依赖缓存（按内容寻址）
+ * 以 package.json 中声明的依赖计算哈希作为缓存键，同一组依赖只安装一次，
+ * 之后通过符号链接把缓存中的 node_modules 挂到各个项目下
+ * 每次使用条目时刷新完成标记的修改时间，定期清理长时间未使用的条目，条目数超过上限时按最近使用时间淘汰
+ */
+@Slf4j
+@Component
+public class NpmDependencyCache {
+
+    /**
+     * 参与缓存键计算的 package.json 字段
+     */
+    private static final String[] DEPENDENCY_FIELDS = {
+            "dependencies", "devDependencies", "optionalDependencies", "peerDependencies", "overrides"
+    };
+
+    private static final String NODE_MODULES = "node_modules";
+
+    /**
+     * 缓存条目安装完成的标记文件
+     */
+    private static final String READY_MARKER = ".ready";
+
+    private static final String STAGING_INFIX = ".staging-";
+
+    private static final String EVICTED_INFIX = ".evicted-";
+
+    /**
+     * 超过该时间的临时目录视为安装中断后遗留（npm install 超时为 5 分钟）
+     */
+    private static final Duration STAGING_MAX_AGE = Duration.ofHours(1);
+
+    /**
+     * 条目最长未使用天数，超过后清理
+     */
+    @Value("${code.vue-build.npm-cache-max-idle-days:7}")
+    private int maxIdleDays;
+
+    /**
+     * 最多保留的条目数，超出时淘汰最久未使用的条目
+     */
+    @Value("${code.vue-build.npm-cache-max-entries:50}")
+    private int maxEntries;
+
+    private final Path cacheRoot = Paths.get(AppConstant.NPM_CACHE_ROOT_DIR).toAbsolutePath().normalize();
+
+    /**
+     * 缓存键 -> 安装锁，避免相同依赖被并发重复安装
+     */
+    private final ConcurrentMap<String, ReentrantLock> installLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 计算项目依赖的缓存键
+     * 只取依赖声明字段，name/scripts 等变化不影响缓存命中；lockfile 由安装过程本身生成，不参与计算以保持键稳定
+     *
+     * @param projectDir 项目根目录
+     * @return 缓存键，package.json 无法解析时返回 null
+     */
+    public String resolveKey(File projectDir) {
+        File packageJson = new File(projectDir, "package.json");
+        if (!packageJson.isFile()) {
+            return null;
+        }
+        try {
+            JSONObject pkg = JSONUtil.parseObj(FileUtil.readUtf8String(packageJson));
+            StringBuilder canonical = new StringBuilder();
+            for (String field : DEPENDENCY_FIELDS) {
+                JSONObject deps = pkg.getJSONObject(field);
+                if (deps == null || deps.isEmpty()) {
+                    continue;
+                }
+                // 排序后拼接，保证声明顺序不同但内容相同的依赖得到同一个键
+                Map<String, Object> sorted = new TreeMap<>(deps);
+                canonical.append(field).append('=').append(JSONUtil.toJsonStr(sorted)).append('\n');
+            }
+            return DigestUtil.sha256Hex(canonical.toString());
+        } catch (Exception e) {
+            log.warn("解析 package.json 失败，跳过依赖缓存: {}, 错误: {}", packageJson.getAbsolutePath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 缓存条目是否已安装完成
+     */
+    public boolean isReady(String key) {
+        return Files.exists(entryDir(key).resolve(READY_MARKER));
+    }
+
+    /**
+     * 项目的 node_modules 是否已链接到指定缓存条目
+     */
+    public boolean isLinked(File projectDir, String key) {
+        Path link = projectDir.toPath().resolve(NODE_MODULES);
+        try {
+            return Files.isSymbolicLink(link)
+                    && Files.readSymbolicLink(link).toAbsolutePath().normalize().equals(entryDir(key).resolve(NODE_MODULES));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取缓存键对应的安装锁
+     */
+    public ReentrantLock lockFor(String key) {
+        return installLocks.computeIfAbsent(key, k -> new ReentrantLock());
+    }
+
+    /**
+     * 创建安装用的临时目录，只放入项目的 package.json
+     *
+     * @return 临时目录，在其中执行 npm install 后调用 publish 发布
+     */
+    public File prepareStaging(File projectDir, String key) throws IOException {
+        Path staging = cacheRoot.resolve(key + STAGING_INFIX + UUID.randomUUID());
+        Files.createDirectories(staging);
+        Files.copy(projectDir.toPath().resolve("package.json"), staging.resolve("package.json"));
+        return staging.toFile();
+    }
+
+    /**
+     * 将安装完成的临时目录原子地发布为缓存条目
+     * 目标已存在时，只有目标是已安装完成的条目才视为其他进程已发布；没有完成标记的目标是残留目录，
+     * 清理后重试一次，仍失败时抛出异常由调用方丢弃临时目录
+     */
+    public void publish(File stagingDir, String key) throws IOException {
+        Path target = entryDir(key);
+        Files.writeString(stagingDir.toPath().resolve(READY_MARKER), key, StandardCharsets.UTF_8);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Files.move(stagingDir.toPath(), target, StandardCopyOption.ATOMIC_MOVE);
+                break;
+            } catch (FileSystemException e) {
+                // 不同文件系统对已存在的非空目录报告的异常不同（如 ENOTEMPTY 只报告为 FileSystemException），按目标状态判断
+                if (Files.exists(target.resolve(READY_MARKER))) {
+                    // 其他节点/进程已发布同一条目，丢弃本次安装结果
+                    FileUtil.del(stagingDir);
+                    log.info("依赖缓存条目已由其他进程发布，丢弃本次安装结果: {}", target);
+                    return;
+                }
+                // 完成标记在原子移动前写入，没有标记的目标不会再变为可用，按残留目录清理
+                if (attempt > 0 || !Files.isDirectory(target) || !remove(target)) {
+                    throw e;
+                }
+                log.warn("清理未完成的依赖缓存条目后重新发布: {}", target);
+            }
+        }
+        log.info("依赖缓存条目已发布: {}", target);
+    }
+
+    /**
+     * 丢弃安装失败的临时目录
+     */
+    public void discard(File stagingDir) {
+        FileUtil.del(stagingDir);
+    }
+
+    /**
+     * 将项目的 node_modules 链接到缓存条目，替换原有目录或旧链接
+     *
+     * @return 是否链接成功（不支持符号链接的环境返回 false，由调用方回退为项目内安装）
+     */
+    public boolean link(File projectDir, String key) {
+        Path link = projectDir.toPath().resolve(NODE_MODULES);
+        try {
+            if (Files.isSymbolicLink(link)) {
+                Files.delete(link);
+            } else if (Files.exists(link)) {
+                FileUtil.del(link);
+            }
+            Files.createSymbolicLink(link, entryDir(key).resolve(NODE_MODULES));
+            markUsed(key);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            log.warn("创建 node_modules 符号链接失败，回退为项目内安装: {}, 错误: {}", link, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 移除项目下指向缓存条目的 node_modules 符号链接，项目内安装前调用，避免 npm 改写共享的缓存条目
+     *
+     * @return node_modules 已不是符号链接时返回 true
+     */
+    public boolean unlink(File projectDir) {
+        Path link = projectDir.toPath().resolve(NODE_MODULES);
+        try {
+            if (Files.isSymbolicLink(link)) {
+                Files.delete(link);
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("移除 node_modules 符号链接失败: {}, 错误: {}", link, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 记录条目被使用（刷新完成标记的修改时间），作为清理时的最近使用时间
+     */
+    public void markUsed(String key) {
+        try {
+            Files.setLastModifiedTime(entryDir(key).resolve(READY_MARKER), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("更新依赖缓存条目使用时间失败: {}, 错误: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 清理缓存目录：
+     * - 中断遗留的临时目录和未完成的条目
+     * - 超过 maxIdleDays 天未使用的条目
+     * - 条目数超过 maxEntries 时最久未使用的条目
+     * 被清理条目的项目链接会失效，下次构建时按未命中重新安装并重新链接
+     */
+    @Scheduled(cron = "0 30 4 * * ?")
+    public void sweep() {
+        File[] children = cacheRoot.toFile().listFiles(File::isDirectory);
+        if (children == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Path> entries = new ArrayList<>();
+        int removed = 0;
+        for (File child : children) {
+            String name = child.getName();
+            if (name.contains(STAGING_INFIX)) {
+                if (now - child.lastModified() > STAGING_MAX_AGE.toMillis() && remove(child.toPath())) {
+                    removed++;
+                }
+            } else if (name.contains(EVICTED_INFIX)) {
+                FileUtil.del(child);
+            } else if (!Files.exists(child.toPath().resolve(READY_MARKER))) {
+                if (evict(name)) {
+                    removed++;
+                }
+            } else {
+                entries.add(child.toPath());
+            }
+        }
+        // 按最近使用时间从新到旧排序，超出条目上限或闲置过久的条目被淘汰
+        entries.sort(Comparator.comparingLong(this::lastUsed).reversed());
+        long idleCutoff = now - Duration.ofDays(maxIdleDays).toMillis();
+        for (int i = 0; i < entries.size(); i++) {
+            Path entry = entries.get(i);
+            if ((i >= maxEntries || lastUsed(entry) < idleCutoff) && evict(entry.getFileName().toString())) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("依赖缓存清理完成，清理 {} 个目录", removed);
+        }
+    }
+
+    /**
+     * 淘汰条目；正在安装同一依赖时跳过
+     */
+    private boolean evict(String key) {
+        ReentrantLock lock = lockFor(key);
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            return remove(entryDir(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 先原子地移出缓存键对应的路径再删除，删除过程中其他构建不会看到半删除的条目
+     */
+    private boolean remove(Path dir) {
+        Path trash = cacheRoot.resolve(dir.getFileName() + EVICTED_INFIX + UUID.randomUUID());
+        try {
+            Files.move(dir, trash, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("清理依赖缓存目录失败: {}, 错误: {}", dir, e.getMessage());
+            return false;
+        }
+        FileUtil.del(trash);
+        return true;
+    }
+
+    private long lastUsed(Path entry) {
+        return entry.resolve(READY_MARKER).toFile().lastModified();
+    }
+
+    private Path entryDir(String key) {
+        return cacheRoot.resolve(key);
+    }
+}
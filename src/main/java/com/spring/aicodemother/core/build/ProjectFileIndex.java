@@ -0,0 +1,288 @@
+package com.spring.aicodemother.core.build;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 项目文件索引（按项目根目录缓存在内存中）
+ * 记录每个文件的 大小、修改时间、内容哈希 以及每个目录的修改时间：
+ * - 文件写入/修改/删除工具执行后直接更新索引
+ * - 读取时只需 stat 各目录的修改时间校验索引是否仍然有效（目录下增删文件会改变目录 mtime），失效时才重新扫描
+ * - 内容哈希按需计算，并以 大小 + 修改时间 判断是否过期
+ */
+@Slf4j
+@Component
+public class ProjectFileIndex {
+
+    /**
+     * 需要忽略的文件和目录
+     */
+    private static final Set<String> IGNORED_NAMES = Set.of(
+            "node_modules", ".git", "dist", "build", ".DS_Store",
+            ".env", "target", ".mvn", ".idea", ".vscode", "coverage"
+    );
+
+    /**
+     * 需要忽略的文件扩展名
+     */
+    private static final Set<String> IGNORED_EXTENSIONS = Set.of(
+            ".log", ".tmp", ".cache", ".lock"
+    );
+
+    /**
+     * 项目根目录 -> 索引快照
+     */
+    private final Cache<Path, Snapshot> snapshots = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 列出目录下的所有文件（已排除忽略项）
+     *
+     * @param projectRoot 项目根目录
+     * @param dir         要列出的目录（需位于项目根目录内）
+     * @return 相对于 dir 的文件路径（以 / 分隔），顺序不定
+     */
+    public List<String> listFiles(Path projectRoot, Path dir) {
+        Snapshot snapshot = validSnapshot(projectRoot);
+        String prefix = relativize(snapshot.root, dir);
+        String dirPrefix = prefix.isEmpty() ? "" : prefix + "/";
+        List<String> result = new ArrayList<>();
+        for (String relativePath : snapshot.files.subMap(dirPrefix, dirPrefix + Character.MAX_VALUE).keySet()) {
+            result.add(relativePath.substring(dirPrefix.length()));
+        }
+        return result;
+    }
+
+    /**
+     * 判断文件内容是否与给定内容一致：先比较大小，再比较哈希，不读取整个文件做字符串比较
+     *
+     * @return 文件存在且内容一致时返回 true
+     */
+    public boolean hasSameContent(Path projectRoot, Path file, byte[] content) {
+        Snapshot snapshot = snapshots.get(normalize(projectRoot), Snapshot::scan);
+        String relativePath = relativize(snapshot.root, file);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attrs.isRegularFile() || attrs.size() != content.length) {
+                return false;
+            }
+            long mtime = attrs.lastModifiedTime().toMillis();
+            FileEntry entry = relativePath == null ? null : snapshot.files.get(relativePath);
+            String hash;
+            if (entry != null && entry.hash != null && entry.size == attrs.size() && entry.mtime == mtime) {
+                hash = entry.hash;
+            } else {
+                // 索引中没有或已过期：计算一次并回填
+                hash = DigestUtil.sha256Hex(file.toFile());
+                if (relativePath != null && !relativePath.isEmpty() && !shouldIgnore(relativePath)) {
+                    snapshot.files.put(relativePath, new FileEntry(attrs.size(), mtime, hash));
+                }
+            }
+            return hash.equals(DigestUtil.sha256Hex(content));
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            log.debug("读取文件属性失败，按内容不同处理: {}, 错误: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 文件写入/修改后更新索引
+     *
+     * @param content 写入的内容（用于直接计算哈希，无需再读文件）
+     */
+    public void onFileWritten(Path projectRoot, Path file, byte[] content) {
+        Snapshot snapshot = snapshots.get(normalize(projectRoot), Snapshot::scan);
+        String relativePath = relativize(snapshot.root, file);
+        if (relativePath == null || relativePath.isEmpty() || shouldIgnore(relativePath)) {
+            return;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            snapshot.files.put(relativePath, new FileEntry(attrs.size(), attrs.lastModifiedTime().toMillis(),
+                    DigestUtil.sha256Hex(content)));
+            snapshot.refreshParentDirs(relativePath);
+        } catch (IOException e) {
+            snapshots.invalidate(snapshot.root);
+        }
+    }
+
+    /**
+     * 文件删除后更新索引
+     */
+    public void onFileDeleted(Path projectRoot, Path file) {
+        Snapshot snapshot = snapshots.getIfPresent(normalize(projectRoot));
+        if (snapshot == null) {
+            return;
+        }
+        String relativePath = relativize(snapshot.root, file);
+        if (relativePath == null || relativePath.isEmpty()) {
+            return;
+        }
+        snapshot.files.remove(relativePath);
+        snapshot.refreshParentDirs(relativePath);
+    }
+
+    /**
+     * 判断相对路径中是否包含需要忽略的文件或目录
+     */
+    public static boolean shouldIgnore(String relativePath) {
+        for (String name : relativePath.split("/")) {
+            if (shouldIgnoreName(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean shouldIgnoreName(String fileName) {
+        // 检查是否在忽略名称列表中
+        if (IGNORED_NAMES.contains(fileName)) {
+            return true;
+        }
+        // 检查文件扩展名
+        return IGNORED_EXTENSIONS.stream().anyMatch(fileName::endsWith);
+    }
+
+    private Snapshot validSnapshot(Path projectRoot) {
+        Path root = normalize(projectRoot);
+        Snapshot snapshot = snapshots.getIfPresent(root);
+        if (snapshot != null && snapshot.isValid()) {
+            return snapshot;
+        }
+        snapshot = Snapshot.scan(root);
+        snapshots.put(root, snapshot);
+        return snapshot;
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 计算相对路径（以 / 分隔），不在根目录内时返回 null
+     */
+    private static String relativize(Path root, Path path) {
+        Path normalized = normalize(path);
+        if (!normalized.startsWith(root)) {
+            return null;
+        }
+        return root.relativize(normalized).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 文件索引条目
+     */
+    private record FileEntry(long size, long mtime, String hash) {
+    }
+
+    /**
+     * 单个项目的索引快照
+     */
+    private static class Snapshot {
+        final Path root;
+        /**
+         * 相对路径 -> 文件信息（按路径有序，便于按目录前缀截取）
+         */
+        final ConcurrentSkipListMap<String, FileEntry> files = new ConcurrentSkipListMap<>();
+        /**
+         * 相对路径 -> 目录修改时间（根目录为空字符串）
+         */
+        final Map<String, Long> dirMtimes = new ConcurrentHashMap<>();
+
+        Snapshot(Path root) {
+            this.root = root;
+        }
+
+        static Snapshot scan(Path root) {
+            Snapshot snapshot = new Snapshot(root);
+            if (!Files.isDirectory(root)) {
+                return snapshot;
+            }
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (!dir.equals(root) && shouldIgnoreName(dir.getFileName().toString())) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        snapshot.dirMtimes.put(relativize(root, dir), attrs.lastModifiedTime().toMillis());
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && !shouldIgnoreName(file.getFileName().toString())) {
+                            // 哈希按需计算
+                            snapshot.files.put(relativize(root, file),
+                                    new FileEntry(attrs.size(), attrs.lastModifiedTime().toMillis(), null));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                log.warn("扫描项目文件失败: {}, 错误: {}", root, e.getMessage());
+            }
+            return snapshot;
+        }
+
+        /**
+         * 所有已索引目录的修改时间均未变化时索引有效
+         */
+        boolean isValid() {
+            if (dirMtimes.isEmpty()) {
+                return false;
+            }
+            for (Map.Entry<String, Long> entry : dirMtimes.entrySet()) {
+                try {
+                    long mtime = Files.getLastModifiedTime(root.resolve(entry.getKey())).toMillis();
+                    if (mtime != entry.getValue()) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 工具写入/删除文件后刷新其所有上级目录的修改时间（可能新建了目录）
+         */
+        void refreshParentDirs(String relativePath) {
+            String dir = relativePath;
+            while (true) {
+                int slash = dir.lastIndexOf('/');
+                dir = slash < 0 ? "" : dir.substring(0, slash);
+                try {
+                    dirMtimes.put(dir, Files.getLastModifiedTime(root.resolve(dir)).toMillis());
+                } catch (IOException e) {
+                    dirMtimes.remove(dir);
+                }
+                if (dir.isEmpty()) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.spring.aicodemother.core.build;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Vue 构建调度器
+ * 限制同时运行的 npm 进程数，并在用户之间轮转调度：
+ * 每个用户有独立的等待队列，空出工作槽位时按用户轮流取任务，单个用户的突发构建不会饿死其他用户
+ */
+@Slf4j
+@Component
+public class VueBuildScheduler {
+
+    /**
+     * 单次构建的最长运行时间（npm install 5 分钟 + npm run build 3 分钟）
+     */
+    private static final long MAX_RUN_SECONDS = 300 + 180;
+
+    @Value("${code.vue-build.max-parallel:2}")
+    private int maxParallel;
+
+    @Value("${code.vue-build.max-queued:50}")
+    private int maxQueued;
+
+    @Value("${code.vue-build.queue-timeout-seconds:600}")
+    private long queueTimeoutSeconds;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 用户 -> 等待中的构建任务（LinkedHashMap 保持轮转顺序）
+     */
+    private final Map<String, Deque<BuildTask>> pendingByOwner = new LinkedHashMap<>();
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private int queuedCount;
+
+    private int runningCount;
+
+    private Timer queueWaitTimer;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("ai_code_vue_build_queue_depth", this, VueBuildScheduler::getQueuedCount)
+                .description("等待中的 Vue 构建任务数")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_vue_build_running", this, VueBuildScheduler::getRunningCount)
+                .description("正在运行的 Vue 构建任务数")
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("ai_code_vue_build_queue_wait_seconds")
+                .description("Vue 构建任务排队等待时间")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * 提交构建任务并同步等待结果
+     *
+     * @param owner 任务归属（用户ID），用于公平调度
+     * @param build 构建逻辑
+     * @return 构建结果；队列已满或等待超时时返回失败结果
+     */
+    public BuildResult submitAndWait(String owner, Supplier<BuildResult> build) {
+        BuildTask task = new BuildTask(build);
+        synchronized (this) {
+            if (queuedCount >= maxQueued) {
+                log.warn("Vue 构建队列已满（{}），拒绝用户 {} 的构建任务", maxQueued, owner);
+                return failed("构建队列已满，请稍后重试");
+            }
+            pendingByOwner.computeIfAbsent(owner, k -> new ArrayDeque<>()).addLast(task);
+            queuedCount++;
+            dispatch();
+        }
+        try {
+            return task.future.get(queueTimeoutSeconds + MAX_RUN_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            cancelIfPending(owner, task);
+            log.error("Vue 构建任务等待超时，用户: {}", owner);
+            return failed("构建等待超时，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelIfPending(owner, task);
+            return failed("构建被中断");
+        } catch (Exception e) {
+            log.error("Vue 构建任务执行异常: {}", e.getMessage(), e);
+            return failed("构建异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 有空闲槽位时按用户轮转取出任务执行（调用方需持有锁）
+     */
+    private void dispatch() {
+        while (runningCount < maxParallel && queuedCount > 0) {
+            Iterator<Map.Entry<String, Deque<BuildTask>>> iterator = pendingByOwner.entrySet().iterator();
+            Map.Entry<String, Deque<BuildTask>> head = iterator.next();
+            String owner = head.getKey();
+            Deque<BuildTask> queue = head.getValue();
+            BuildTask task = queue.pollFirst();
+            // 当前用户移到队尾，下次轮到其他用户
+            iterator.remove();
+            if (!queue.isEmpty()) {
+                pendingByOwner.put(owner, queue);
+            }
+            queuedCount--;
+            runningCount++;
+            workers.execute(() -> run(task));
+        }
+    }
+
+    private void run(BuildTask task) {
+        queueWaitTimer.record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+        try {
+            task.future.complete(task.build.get());
+        } catch (Throwable e) {
+            task.future.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                runningCount--;
+                dispatch();
+            }
+        }
+    }
+
+    private synchronized void cancelIfPending(String owner, BuildTask task) {
+        Deque<BuildTask> queue = pendingByOwner.get(owner);
+        if (queue != null && queue.remove(task)) {
+            queuedCount--;
+            if (queue.isEmpty()) {
+                pendingByOwner.remove(owner);
+            }
+        }
+    }
+
+    private synchronized int getQueuedCount() {
+        return queuedCount;
+    }
+
+    private synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    private static BuildResult failed(String message) {
+        BuildResult result = new BuildResult(false);
+        result.getStderrLines().add(message);
+        result.setErrorSummary(message);
+        return result;
+    }
+
+    /**
+     * 排队中的构建任务
+     */
+    private static class BuildTask {
+        final Supplier<BuildResult> build;
+        final CompletableFuture<BuildResult> future = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+
+        BuildTask(Supplier<BuildResult> build) {
+            this.build = build;
+        }
+    }
+}
@@ -1,18 +1,25 @@
 package com.spring.aicodemother.core.build;
 
 import cn.hutool.core.util.RuntimeUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 
@@ -23,6 +30,30 @@ import java.util.stream.Collectors;
 @Component
 public class VueProjectBuilder {
 
+    /**
+     * 非用户触发的构建归属
+     */
+    private static final String SYSTEM_OWNER = "system";
+
+    private static final String PHASE_INSTALL = "install";
+
+    private static final String PHASE_BUILD = "build";
+
+    @Resource
+    private VueProjectStateTracker vueProjectStateTracker;
+
+    @Resource
+    private NpmDependencyCache npmDependencyCache;
+
+    @Resource
+    private VueBuildScheduler vueBuildScheduler;
+
+    @Resource
+    private BuildManifestStore buildManifestStore;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
     /**
      * Java21的虚拟线程：异步构建 Vue 项目
      *
@@ -40,12 +71,24 @@ public class VueProjectBuilder {
     }
 
     /**
-     * 构建 Vue 项目
+     * 构建 Vue 项目（系统触发，不区分用户）
      *
      * @param projectPath 项目根目录路径
      * @return 构建结果
      */
     public BuildResult buildProject(String projectPath) {
+        return buildProject(projectPath, SYSTEM_OWNER);
+    }
+
+    /**
+     * 构建 Vue 项目
+     * 构建任务进入有界队列，按用户轮转调度，同时运行的 npm 进程数受限
+     *
+     * @param projectPath 项目根目录路径
+     * @param owner       构建归属（用户ID），用于公平调度
+     * @return 构建结果
+     */
+    public BuildResult buildProject(String projectPath, String owner) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在: {}", projectPath);
@@ -61,29 +104,186 @@ public class VueProjectBuilder {
             result.getStderrLines().add("package.json 文件不存在: " + packageJson.getAbsolutePath());
             return result;
         }
-        log.info("开始构建 Vue 项目: {}", projectPath);
-        // 执行 npm install
-        BuildResult installResult = executeNpmInstall(projectDir);
-        if (!installResult.isSuccess()) {
-            log.error("npm install 执行失败");
-            return installResult;
+        String buildOwner = (owner == null || owner.isBlank()) ? SYSTEM_OWNER : owner;
+        return vueBuildScheduler.submitAndWait(buildOwner, () -> doBuildProject(projectDir));
+    }
+
+    /**
+     * 在构建工作槽位中执行实际构建
+     * 与上一次成功构建的清单比对：构建输入未变化时跳过整个构建，package.json 未变化时跳过依赖安装
+     */
+    private BuildResult doBuildProject(File projectDir) {
+        log.info("开始构建 Vue 项目: {}", projectDir.getAbsolutePath());
+        long totalStart = System.nanoTime();
+        Map<String, String> previousManifest = buildManifestStore.load(projectDir);
+        Map<String, String> currentManifest = buildManifestStore.scan(projectDir);
+        File distDir = new File(projectDir, "dist");
+        if (!previousManifest.isEmpty() && previousManifest.equals(currentManifest) && hasContent(distDir)) {
+            log.info("构建输入未变化，跳过构建: {}", projectDir.getAbsolutePath());
+            recordSkippedPhase(PHASE_INSTALL);
+            recordSkippedPhase(PHASE_BUILD);
+            recordDuration("total", true, totalStart);
+            vueProjectStateTracker.onBuildFinished(projectDir, true);
+            BuildResult result = new BuildResult(true);
+            result.getSkippedPhases().addAll(List.of(PHASE_INSTALL, PHASE_BUILD));
+            return result;
+        }
+        List<String> skippedPhases = new ArrayList<>();
+        // 安装依赖：package.json 未变化且依赖已就绪时跳过，否则优先复用依赖缓存
+        String packageJsonHash = currentManifest.get(BuildManifestStore.PACKAGE_JSON);
+        boolean dependenciesUnchanged = packageJsonHash != null
+                && packageJsonHash.equals(previousManifest.get(BuildManifestStore.PACKAGE_JSON))
+                && new File(projectDir, "node_modules").isDirectory();
+        if (dependenciesUnchanged) {
+            log.info("package.json 未变化，跳过依赖安装: {}", projectDir.getAbsolutePath());
+            recordSkippedPhase(PHASE_INSTALL);
+            skippedPhases.add(PHASE_INSTALL);
+        } else {
+            long installStart = System.nanoTime();
+            BuildResult installResult = installDependencies(projectDir);
+            recordDuration(PHASE_INSTALL, installResult.isSuccess(), installStart);
+            if (!installResult.isSuccess()) {
+                log.error("npm install 执行失败");
+                recordDuration("total", false, totalStart);
+                buildManifestStore.invalidate(projectDir);
+                return installResult;
+            }
         }
         // 执行 npm run build
+        long buildStart = System.nanoTime();
         BuildResult buildResult = executeNpmBuild(projectDir);
+        recordDuration(PHASE_BUILD, buildResult.isSuccess(), buildStart);
         if (!buildResult.isSuccess()) {
             log.error("npm run build 执行失败");
+            recordDuration("total", false, totalStart);
+            buildManifestStore.invalidate(projectDir);
             return buildResult;
         }
         // 验证 dist 目录是否生成
-        File distDir = new File(projectDir, "dist");
         if (!distDir.exists()) {
             log.error("构建完成但 dist 目录未生成: {}", distDir.getAbsolutePath());
+            recordDuration("total", false, totalStart);
+            buildManifestStore.invalidate(projectDir);
             BuildResult result = new BuildResult(false);
             result.getStderrLines().add("构建完成但 dist 目录未生成: " + distDir.getAbsolutePath());
             return result;
         }
         log.info("Vue 项目构建成功，dist 目录: {}", distDir.getAbsolutePath());
-        return new BuildResult(true, 0, buildResult.getStdoutLines(), new ArrayList<>());
+        recordDuration("total", true, totalStart);
+        buildManifestStore.save(projectDir, currentManifest);
+        vueProjectStateTracker.onBuildFinished(projectDir, true);
+        BuildResult result = new BuildResult(true, 0, buildResult.getStdoutLines(), new ArrayList<>());
+        result.setSkippedPhases(skippedPhases);
+        return result;
+    }
+
+    private boolean hasContent(File dir) {
+        String[] children = dir.list();
+        return children != null && children.length > 0;
+    }
+
+    /**
+     * 安装依赖：依赖未变化时直接链接缓存中的 node_modules，跳过 npm install
+     */
+    private BuildResult installDependencies(File projectDir) {
+        String key = npmDependencyCache.resolveKey(projectDir);
+        if (key == null) {
+            return installInProject(projectDir);
+        }
+        if (npmDependencyCache.isReady(key) && npmDependencyCache.isLinked(projectDir, key)) {
+            log.info("依赖未变化，跳过 npm install: {}", projectDir.getAbsolutePath());
+            recordDependencyCache("hit");
+            npmDependencyCache.markUsed(key);
+            return new BuildResult(true);
+        }
+        if (npmDependencyCache.isReady(key)) {
+            recordDependencyCache("hit");
+        } else {
+            ReentrantLock lock = npmDependencyCache.lockFor(key);
+            lock.lock();
+            try {
+                // 双重检查：等待锁期间可能已有其他构建完成了相同依赖的安装
+                if (!npmDependencyCache.isReady(key)) {
+                    recordDependencyCache("miss");
+                    BuildResult installResult = installIntoCache(projectDir, key);
+                    if (!installResult.isSuccess()) {
+                        return installResult;
+                    }
+                } else {
+                    recordDependencyCache("hit");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (!npmDependencyCache.link(projectDir, key)) {
+            return installInProject(projectDir);
+        }
+        log.info("已链接依赖缓存 {} 到项目: {}", key, projectDir.getAbsolutePath());
+        return new BuildResult(true);
+    }
+
+    /**
+     * 在缓存的临时目录中执行 npm install 并发布为缓存条目
+     */
+    private BuildResult installIntoCache(File projectDir, String key) {
+        File stagingDir;
+        try {
+            stagingDir = npmDependencyCache.prepareStaging(projectDir, key);
+        } catch (IOException e) {
+            log.warn("创建依赖缓存临时目录失败，回退为项目内安装: {}", e.getMessage());
+            return installInProject(projectDir);
+        }
+        BuildResult installResult = executeNpmInstall(stagingDir);
+        if (!installResult.isSuccess()) {
+            npmDependencyCache.discard(stagingDir);
+            return installResult;
+        }
+        try {
+            npmDependencyCache.publish(stagingDir, key);
+        } catch (IOException e) {
+            npmDependencyCache.discard(stagingDir);
+            log.warn("发布依赖缓存条目失败，回退为项目内安装: {}", e.getMessage());
+            return installInProject(projectDir);
+        }
+        return installResult;
+    }
+
+    /**
+     * 在项目目录内执行 npm install：先移除指向缓存条目的 node_modules 链接，避免安装结果写入共享的缓存
+     */
+    private BuildResult installInProject(File projectDir) {
+        if (!npmDependencyCache.unlink(projectDir)) {
+            BuildResult result = new BuildResult(false);
+            result.getStderrLines().add("无法移除指向依赖缓存的 node_modules 链接: " + projectDir.getAbsolutePath());
+            return result;
+        }
+        return executeNpmInstall(projectDir);
+    }
+
+    private void recordDuration(String phase, boolean success, long startNanos) {
+        Timer.builder("ai_code_vue_build_duration_seconds")
+                .description("Vue 项目构建各阶段耗时")
+                .tag("phase", phase)
+                .tag("status", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordSkippedPhase(String phase) {
+        Counter.builder("ai_code_vue_build_phase_skipped_total")
+                .description("因构建输入未变化而跳过的构建阶段次数")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void recordDependencyCache(String result) {
+        Counter.builder("ai_code_vue_dependency_cache_total")
+                .description("npm 依赖缓存命中情况")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
     }
 
 
@@ -0,0 +1,185 @@
+package com.spring.aicodemother.core.build;
+
+import com.spring.aicodemother.constant.AppConstant;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Vue 项目完成状态跟踪器
+ * 每次生成开始时探测一次文件系统，之后由文件工具写入/删除事件和构建结果驱动状态变化，
+ * 流式 token 回调只读取内存中的标志，不再逐 token 探测文件系统
+ */
+@Slf4j
+@Component
+public class VueProjectStateTracker {
+
+    /**
+     * 判定项目完成所需的核心文件（相对项目根目录）
+     */
+    private static final List<String> CORE_FILES = List.of("package.json", "src/main.js", "src/App.vue", "vite.config.js");
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter probesAvoidedCounter;
+
+    /**
+     * 项目根目录 -> 项目状态（仅在有生成运行时存在）
+     */
+    private final ConcurrentMap<Path, ProjectState> states = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void initMetrics() {
+        probesAvoidedCounter = Counter.builder("ai_code_project_completion_probes_avoided_total")
+                .description("项目完成检测中被内存状态替代的文件系统探测次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 开始一次生成运行：首次进入时探测一次文件系统初始化状态
+     *
+     * @param appId 应用ID
+     */
+    public void beginRun(Long appId) {
+        Path projectRoot = projectRoot(appId);
+        states.compute(projectRoot, (root, existing) -> {
+            if (existing != null) {
+                existing.activeRuns++;
+                return existing;
+            }
+            return ProjectState.probe(root);
+        });
+    }
+
+    /**
+     * 结束一次生成运行：最后一个运行结束时释放状态
+     *
+     * @param appId 应用ID
+     */
+    public void endRun(Long appId) {
+        states.computeIfPresent(projectRoot(appId), (root, state) -> --state.activeRuns <= 0 ? null : state);
+    }
+
+    /**
+     * 项目是否已完成（核心文件齐全且已构建），仅读取内存状态
+     *
+     * @param appId 应用ID
+     * @return 是否完成
+     */
+    public boolean isCompleted(Long appId) {
+        ProjectState state = states.get(projectRoot(appId));
+        if (state == null) {
+            return false;
+        }
+        boolean completed = state.isCompleted();
+        if (!completed) {
+            // 改造前此处每次都会探测文件系统
+            probesAvoidedCounter.increment();
+        }
+        return completed;
+    }
+
+    /**
+     * 文件写入/修改事件
+     *
+     * @param appId 应用ID
+     * @param file  被写入的文件
+     */
+    public void onFileWritten(Long appId, Path file) {
+        updateCoreFile(appId, file, true);
+    }
+
+    /**
+     * 文件删除事件
+     *
+     * @param appId 应用ID
+     * @param file  被删除的文件
+     */
+    public void onFileDeleted(Long appId, Path file) {
+        updateCoreFile(appId, file, false);
+    }
+
+    /**
+     * 构建完成事件
+     *
+     * @param projectDir 项目根目录
+     * @param success    是否构建成功
+     */
+    public void onBuildFinished(File projectDir, boolean success) {
+        ProjectState state = states.get(projectDir.toPath().toAbsolutePath().normalize());
+        if (state != null && success) {
+            state.distBuilt = true;
+        }
+    }
+
+    private void updateCoreFile(Long appId, Path file, boolean present) {
+        Path projectRoot = projectRoot(appId);
+        ProjectState state = states.get(projectRoot);
+        if (state == null) {
+            return;
+        }
+        Path normalized = file.toAbsolutePath().normalize();
+        if (!normalized.startsWith(projectRoot)) {
+            return;
+        }
+        String relativePath = projectRoot.relativize(normalized).toString().replace(File.separatorChar, '/');
+        if (!CORE_FILES.contains(relativePath)) {
+            return;
+        }
+        if (present) {
+            state.coreFiles.add(relativePath);
+        } else {
+            state.coreFiles.remove(relativePath);
+        }
+    }
+
+    private static Path projectRoot(Long appId) {
+        return Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_project_" + appId).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 单个项目的内存状态
+     */
+    private static class ProjectState {
+        final Set<String> coreFiles = ConcurrentHashMap.newKeySet();
+        volatile boolean distBuilt;
+        // 仅在 ConcurrentHashMap.compute 中读写
+        int activeRuns = 1;
+
+        boolean isCompleted() {
+            return distBuilt && coreFiles.size() == CORE_FILES.size();
+        }
+
+        /**
+         * 探测文件系统初始化状态（每次运行开始仅执行一次）
+         */
+        static ProjectState probe(Path projectRoot) {
+            ProjectState state = new ProjectState();
+            if (!Files.isDirectory(projectRoot)) {
+                return state;
+            }
+            for (String coreFile : CORE_FILES) {
+                if (Files.exists(projectRoot.resolve(coreFile))) {
+                    state.coreFiles.add(coreFile);
+                }
+            }
+            // 检查是否已构建（dist目录存在且有内容）
+            String[] distFiles = projectRoot.resolve("dist").toFile().list();
+            state.distBuilt = distFiles != null && distFiles.length > 0;
+            return state;
+        }
+    }
+}
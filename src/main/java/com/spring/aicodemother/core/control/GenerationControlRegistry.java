@@ -1,25 +1,55 @@
 package com.spring.aicodemother.core.control;
 
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 用于协调手动取消流式生成的注册表。
  * 每一次生成运行都由一个 runId 来标识。
+ * <p>
+ * 本地缓存保存运行中的 GenerationControl（取消判断只读本地，不访问 Redis）；
+ * 运行信息同时登记到 Redis 并带 TTL，停止请求落到其他节点时通过 Redisson 发布/订阅把取消信号转发给持有该运行的节点。
+ * 本地条目与 Redis 条目使用同一个 TTL：运行期间每次产出内容时调用 touch 续期（Redis 续期按 TTL 的三分之一节流），
+ * 运行结束时显式 remove；长时间没有活动的条目即使没有调用 remove 也会被清理。
  */
+@Slf4j
 @Component
 public class GenerationControlRegistry {
 
+    private static final String RUN_KEY_PREFIX = "ai_code:generation:run:";
+
+    private static final String CANCEL_TOPIC = "ai_code:generation:cancel";
+
     public static class GenerationControl {
         private final Sinks.Many<Integer> cancelSink = Sinks.many().replay().latest();
         private final AtomicBoolean cancelled = new AtomicBoolean(false);
         private volatile String ownerUserId;
         private volatile Long appId;
+        /**
+         * 上次续期 Redis 运行信息的时间（Ticker 纳秒）
+         */
+        private volatile long refreshedAt;
 
         public reactor.core.publisher.Flux<Integer> cancelFlux() {
             return cancelSink.asFlux();
@@ -55,38 +85,205 @@ public class GenerationControlRegistry {
         }
     }
 
-    private final Map<String, GenerationControl> controls = new ConcurrentHashMap<>();
+    /**
+     * 集群内可见的运行信息
+     *
+     * @param ownerUserId 发起用户
+     * @param appId       应用ID
+     * @param nodeId      持有 SSE 流的节点
+     */
+    public record RunInfo(String ownerUserId, Long appId, String nodeId) {
+    }
+
+    private final RedissonClient redissonClient;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 当前节点标识（pid@host）
+     */
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${code.generation.run-ttl-minutes:30}")
+    private long runTtlMinutes = 30;
+
+    /**
+     * 本地条目的时钟，续期节流也使用同一个时钟
+     */
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Cache<String, GenerationControl> controls;
+
+    private RTopic cancelTopic;
+
+    private int cancelListenerId = -1;
+
+    private Counter localCancelCounter;
+
+    private Counter remoteCancelCounter;
+
+    public GenerationControlRegistry(RedissonClient redissonClient, MeterRegistry meterRegistry) {
+        this.redissonClient = redissonClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        controls = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(runTtlMinutes))
+                .ticker(ticker)
+                .build();
+        Gauge.builder("ai_code_generation_active_runs", controls, Cache::estimatedSize)
+                .description("当前节点上运行中的生成任务数")
+                .tag("node", nodeId)
+                .register(meterRegistry);
+        localCancelCounter = Counter.builder("ai_code_generation_cancel_total")
+                .description("生成取消次数")
+                .tag("scope", "local")
+                .register(meterRegistry);
+        remoteCancelCounter = Counter.builder("ai_code_generation_cancel_total")
+                .description("生成取消次数")
+                .tag("scope", "remote")
+                .register(meterRegistry);
+        try {
+            cancelTopic = redissonClient.getTopic(CANCEL_TOPIC, StringCodec.INSTANCE);
+            cancelListenerId = cancelTopic.addListener(String.class, (channel, runId) -> {
+                GenerationControl control = controls.getIfPresent(runId);
+                if (control != null && !control.isCancelled()) {
+                    control.cancel();
+                    remoteCancelCounter.increment();
+                    log.info("收到集群取消信号，runId={}", runId);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("订阅生成取消频道失败，跨节点取消不可用: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (cancelTopic != null && cancelListenerId != -1) {
+            try {
+                cancelTopic.removeListener(cancelListenerId);
+            } catch (Exception e) {
+                log.debug("取消订阅生成取消频道失败: {}", e.getMessage());
+            }
+        }
+    }
 
     public GenerationControl acquire(String runId) {
         if (runId == null || runId.isEmpty()) {
             throw new IllegalArgumentException("runId must not be empty");
         }
-        return controls.computeIfAbsent(runId, k -> new GenerationControl());
+        return controls.get(runId, k -> new GenerationControl());
     }
 
     public GenerationControl register(String runId, String ownerUserId, Long appId) {
         GenerationControl c = acquire(runId);
         c.setOwnerIfAbsent(ownerUserId, appId);
+        c.refreshedAt = ticker.read();
+        JSONObject runInfo = new JSONObject()
+                .set("ownerUserId", c.getOwnerUserId())
+                .set("appId", c.getAppId())
+                .set("nodeId", nodeId);
+        try {
+            runBucket(runId).set(runInfo.toString(), Duration.ofMinutes(runTtlMinutes));
+        } catch (Exception e) {
+            log.warn("登记运行信息到 Redis 失败，runId={}, 错误: {}", runId, e.getMessage());
+        }
         return c;
     }
 
+    /**
+     * 运行仍在产出内容：续期本地条目，距上次续期超过 TTL 的三分之一时同时续期 Redis 运行信息
+     */
+    public void touch(String runId) {
+        // getIfPresent 刷新本地条目的访问时间
+        GenerationControl control = controls.getIfPresent(runId);
+        if (control == null) {
+            return;
+        }
+        long now = ticker.read();
+        if (now - control.refreshedAt < TimeUnit.MINUTES.toNanos(runTtlMinutes) / 3) {
+            return;
+        }
+        control.refreshedAt = now;
+        try {
+            runBucket(runId).expireAsync(Duration.ofMinutes(runTtlMinutes));
+        } catch (Exception e) {
+            log.debug("续期 Redis 运行信息失败，runId={}, 错误: {}", runId, e.getMessage());
+        }
+    }
+
+    /**
+     * 取消运行：运行在本节点时直接取消，否则通过发布/订阅通知持有该运行的节点
+     */
     public void cancel(String runId) {
-        GenerationControl control = controls.get(runId);
+        GenerationControl control = controls.getIfPresent(runId);
         if (control != null) {
-            control.cancel();
+            if (!control.isCancelled()) {
+                control.cancel();
+                localCancelCounter.increment();
+            }
+            return;
+        }
+        try {
+            if (cancelTopic != null) {
+                cancelTopic.publish(runId);
+            }
+        } catch (Exception e) {
+            log.warn("发布生成取消信号失败，runId={}, 错误: {}", runId, e.getMessage());
         }
     }
 
+    /**
+     * 只读本地状态：运行不在本节点时返回 false
+     */
     public boolean isCancelled(String runId) {
-        GenerationControl control = controls.get(runId);
+        GenerationControl control = controls.getIfPresent(runId);
         return control != null && control.isCancelled();
     }
 
     public void remove(String runId) {
-        controls.remove(runId);
+        controls.invalidate(runId);
+        try {
+            runBucket(runId).deleteAsync();
+        } catch (Exception e) {
+            log.debug("清理 Redis 运行信息失败，runId={}, 错误: {}", runId, e.getMessage());
+        }
     }
 
+    /**
+     * 获取本节点上的运行控制器
+     */
     public GenerationControl get(String runId) {
-        return controls.get(runId);
+        return controls.getIfPresent(runId);
+    }
+
+    /**
+     * 查找运行信息：优先本地，其次 Redis（运行可能在其他节点）
+     *
+     * @return 运行信息，不存在或已结束时返回 null
+     */
+    public RunInfo find(String runId) {
+        GenerationControl control = controls.getIfPresent(runId);
+        if (control != null) {
+            return new RunInfo(control.getOwnerUserId(), control.getAppId(), nodeId);
+        }
+        try {
+            String json = runBucket(runId).get();
+            if (json == null) {
+                return null;
+            }
+            JSONObject obj = JSONUtil.parseObj(json);
+            return new RunInfo(obj.getStr("ownerUserId"), obj.getLong("appId"), obj.getStr("nodeId"));
+        } catch (Exception e) {
+            log.warn("查询 Redis 运行信息失败，runId={}, 错误: {}", runId, e.getMessage());
+            return null;
+        }
+    }
+
+    private RBucket<String> runBucket(String runId) {
+        return redissonClient.getBucket(RUN_KEY_PREFIX + runId, StringCodec.INSTANCE);
     }
 }
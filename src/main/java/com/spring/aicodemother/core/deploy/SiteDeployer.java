@@ -0,0 +1,258 @@
+package com.spring.aicodemother.core.deploy;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.constant.AppConstant;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 站点部署器
+ * 每次部署写入一个不可变的版本目录 .releases/{deployKey}/{releaseId}，releaseId 由全部文件的内容哈希计算得出：
+ * - 与当前线上版本内容相同的文件直接硬链接，只有变化的文件才复制，内容完全相同的重复部署不产生任何写入
+ * - 版本目录准备完成后，通过原子重命名把 code_output/{deployKey}、code_deploy/{deployKey} 符号链接切换到新版本，
+ * 访问中的用户不会读到写了一半的文件
+ * - 历史版本目录保留 keep-releases 个，回滚时只需切换符号链接
+ * 文件系统不支持符号链接时退回到直接复制目录
+ */
+@Slf4j
+@Component
+public class SiteDeployer {
+
+    /**
+     * 版本目录根（位于部署根目录下，以 . 开头，不会与 deployKey 冲突）
+     */
+    private static final Path RELEASES_ROOT = Paths.get(AppConstant.CODE_DEPLOY_ROOT_DIR, ".releases").toAbsolutePath();
+
+    private static final String LEGACY_PREFIX = "legacy-";
+
+    @Value("${code.deploy.keep-releases:10}")
+    private int keepReleases;
+
+    @Resource
+    private StaticAssetPreparer staticAssetPreparer;
+
+    @Resource
+    private StaticAssetService staticAssetService;
+
+    /**
+     * 同一 deployKey 的部署/回滚串行执行
+     */
+    private final Map<String, Object> deployLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 部署站点
+     *
+     * @param deployKey 部署标识
+     * @param sourceDir 部署源目录（生成代码目录或 Vue 项目的 dist 目录）
+     * @return 版本标识（releaseId）
+     */
+    public String deploy(String deployKey, File sourceDir) throws IOException {
+        synchronized (deployLocks.computeIfAbsent(deployKey, k -> new Object())) {
+            long start = System.currentTimeMillis();
+            Path source = sourceDir.toPath().toAbsolutePath();
+            // 1. 计算每个文件的内容哈希，得到内容寻址的版本标识
+            SortedMap<String, String> hashes = hashFiles(source);
+            StringBuilder digestInput = new StringBuilder();
+            hashes.forEach((path, hash) -> digestInput.append(path).append(':').append(hash).append('\n'));
+            String releaseId = DigestUtil.sha256Hex(digestInput.toString()).substring(0, 16);
+            Path keyDir = RELEASES_ROOT.resolve(deployKey);
+            Path releaseDir = keyDir.resolve(releaseId);
+            // 2. 版本目录不存在时才写入（内容相同的版本直接复用）
+            int linked = 0;
+            int copied = 0;
+            if (!Files.isDirectory(releaseDir)) {
+                Path previous = currentRelease(deployKey);
+                Map<String, Object> previousManifest = readManifest(previous);
+                Path staging = keyDir.resolve(releaseId + ".tmp-" + IdUtil.fastSimpleUUID());
+                try {
+                    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                        String relativePath = entry.getKey();
+                        Path target = staging.resolve(relativePath);
+                        Files.createDirectories(target.getParent());
+                        if (previousManifest.get(relativePath) instanceof JSONObject previousEntry
+                                && entry.getValue().equals(previousEntry.getStr("hash"))
+                                && linkFromPrevious(previous, relativePath, target)) {
+                            linked++;
+                        } else {
+                            Files.copy(source.resolve(relativePath), target);
+                            copied++;
+                        }
+                    }
+                    staticAssetPreparer.prepare(staging.toFile(), hashes);
+                    Files.move(staging, releaseDir, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                    // 并发部署了相同内容（其他节点共享存储时），直接使用已存在的版本
+                    FileUtil.del(staging);
+                } catch (IOException | RuntimeException e) {
+                    FileUtil.del(staging);
+                    throw e;
+                }
+            }
+            // 3. 切换访问链接
+            activate(deployKey, releaseDir);
+            pruneReleases(keyDir, releaseDir);
+            log.info("站点部署完成: deployKey={}, releaseId={}, 复用文件: {}, 复制文件: {}, 耗时: {} ms",
+                    deployKey, releaseId, linked, copied, System.currentTimeMillis() - start);
+            return releaseId;
+        }
+    }
+
+    /**
+     * 切换到历史版本（回滚）
+     *
+     * @return 版本目录已被清理时返回 false
+     */
+    public boolean rollback(String deployKey, String releaseId) throws IOException {
+        synchronized (deployLocks.computeIfAbsent(deployKey, k -> new Object())) {
+            Path releaseDir = RELEASES_ROOT.resolve(deployKey).resolve(releaseId);
+            if (!Files.isDirectory(releaseDir)) {
+                return false;
+            }
+            activate(deployKey, releaseDir);
+            log.info("站点已切换到历史版本: deployKey={}, releaseId={}", deployKey, releaseId);
+            return true;
+        }
+    }
+
+    private SortedMap<String, String> hashFiles(Path source) throws IOException {
+        SortedMap<String, String> hashes = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String relativePath = source.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!relativePath.equals(StaticAssetPreparer.MANIFEST_FILE)) {
+                    hashes.put(relativePath, DigestUtil.sha256Hex(file.toFile()));
+                }
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * 当前线上版本目录（符号链接指向的目录），尚未部署或仍是旧的普通目录时返回 null
+     */
+    private Path currentRelease(String deployKey) {
+        Path link = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, deployKey);
+        try {
+            if (Files.isSymbolicLink(link)) {
+                Path target = Files.readSymbolicLink(link);
+                return Files.isDirectory(target) ? target : null;
+            }
+        } catch (IOException e) {
+            log.warn("读取部署链接失败: {}, 错误: {}", link, e.getMessage());
+        }
+        return null;
+    }
+
+    private static Map<String, Object> readManifest(Path releaseDir) {
+        if (releaseDir == null) {
+            return Map.of();
+        }
+        File manifestFile = releaseDir.resolve(StaticAssetPreparer.MANIFEST_FILE).toFile();
+        if (!manifestFile.isFile()) {
+            return Map.of();
+        }
+        try {
+            return JSONUtil.parseObj(FileUtil.readString(manifestFile, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    /**
+     * 从上一版本硬链接未变化的文件（连同 .gz 副本），不支持硬链接时返回 false 由调用方复制
+     */
+    private static boolean linkFromPrevious(Path previous, String relativePath, Path target) {
+        Path existing = previous.resolve(relativePath);
+        try {
+            Files.createLink(target, existing);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+        Path existingGzip = previous.resolve(relativePath + ".gz");
+        if (Files.isRegularFile(existingGzip)) {
+            try {
+                Files.createLink(target.resolveSibling(target.getFileName() + ".gz"), existingGzip);
+            } catch (IOException | UnsupportedOperationException e) {
+                // 没有 .gz 时会在预处理阶段重新生成
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把访问目录切换到指定版本
+     */
+    private void activate(String deployKey, Path releaseDir) throws IOException {
+        Path keyDir = releaseDir.getParent();
+        Files.setLastModifiedTime(releaseDir, FileTime.fromMillis(System.currentTimeMillis()));
+        Path outputLink = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, deployKey).toAbsolutePath();
+        swapLink(outputLink, releaseDir, keyDir);
+        swapLink(Paths.get(AppConstant.CODE_DEPLOY_ROOT_DIR, deployKey).toAbsolutePath(), releaseDir, keyDir);
+        staticAssetService.evictSite(outputLink.toFile());
+    }
+
+    /**
+     * 原子替换符号链接：先创建临时链接，再重命名覆盖
+     */
+    private static void swapLink(Path link, Path target, Path keyDir) throws IOException {
+        Files.createDirectories(link.getParent());
+        if (Files.isDirectory(link, LinkOption.NOFOLLOW_LINKS)) {
+            // 改造前部署的普通目录：移入版本目录保留，之后由清理逻辑统一删除
+            Path legacy = keyDir.resolve(LEGACY_PREFIX + link.getParent().getFileName() + "-" + System.currentTimeMillis());
+            try {
+                Files.move(link, legacy, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                FileUtil.del(link);
+            }
+        }
+        Path tempLink = link.resolveSibling("." + link.getFileName() + ".link-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.createSymbolicLink(tempLink, target);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("无法创建符号链接，改为复制目录: {}, 错误: {}", link, e.getMessage());
+            FileUtil.del(link);
+            FileUtil.copyContent(target.toFile(), link.toFile(), true);
+            return;
+        }
+        try {
+            Files.move(tempLink, link, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempLink);
+            throw e;
+        }
+    }
+
+    /**
+     * 只保留最近使用的 keep-releases 个版本（当前版本始终保留）
+     */
+    private void pruneReleases(Path keyDir, Path activeRelease) {
+        File[] releases = keyDir.toFile().listFiles(File::isDirectory);
+        if (releases == null || releases.length <= keepReleases) {
+            return;
+        }
+        Arrays.sort(releases, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = keepReleases; i < releases.length; i++) {
+            File release = releases[i];
+            if (release.toPath().equals(activeRelease) || release.getName().contains(".tmp-")) {
+                continue;
+            }
+            FileUtil.del(release);
+            log.info("清理历史部署版本: {}", release);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.spring.aicodemother.core.deploy;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 部署时的静态资源预处理
+ * - 计算每个文件的内容哈希，写入资源清单（作为强 ETag，重启后无需重新计算）
+ * - 为可压缩的文本资源生成 .gz 预压缩副本，请求时直接发送，不再实时压缩
+ * 站点构建产物中已有的 .br 副本会被原样保留并在请求时优先使用
+ */
+@Slf4j
+@Component
+public class StaticAssetPreparer {
+
+    /**
+     * 资源清单文件名（以 . 开头，不对外提供访问）
+     */
+    public static final String MANIFEST_FILE = ".assets.json";
+
+    /**
+     * 值得预压缩的文本类资源
+     */
+    static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "html", "htm", "css", "js", "mjs", "json", "map", "svg", "txt", "xml"
+    );
+
+    /**
+     * 小于该大小的文件压缩收益有限，不生成 .gz
+     */
+    private static final long MIN_COMPRESS_SIZE = 1024;
+
+    /**
+     * 预处理部署目录
+     *
+     * @param siteDir 站点根目录（code_output/{deployKey}）
+     */
+    public void prepare(File siteDir) {
+        prepare(siteDir, Map.of());
+    }
+
+    /**
+     * 预处理部署目录
+     *
+     * @param siteDir     站点根目录
+     * @param knownHashes 已计算过的内容哈希（相对路径 -> sha256），命中时不再重新读取文件
+     */
+    public void prepare(File siteDir, Map<String, String> knownHashes) {
+        long start = System.currentTimeMillis();
+        JSONObject manifest = new JSONObject();
+        List<File> files = FileUtil.loopFiles(siteDir, file -> !file.getName().startsWith(".")
+                && !file.getName().endsWith(".gz") && !file.getName().endsWith(".br"));
+        int compressed = 0;
+        for (File file : files) {
+            String relativePath = siteDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+            try {
+                if (isCompressible(file) && !hasFreshGzip(file) && writeGzip(file)) {
+                    compressed++;
+                }
+                String hash = knownHashes.get(relativePath);
+                manifest.set(relativePath, new JSONObject()
+                        .set("hash", hash != null ? hash : DigestUtil.sha256Hex(file))
+                        .set("size", file.length())
+                        .set("mtime", file.lastModified()));
+            } catch (IOException e) {
+                log.warn("预处理静态资源失败: {}, 错误: {}", file, e.getMessage());
+            }
+        }
+        FileUtil.writeUtf8String(manifest.toString(), new File(siteDir, MANIFEST_FILE));
+        log.info("静态资源预处理完成: {}, 文件数: {}, 预压缩: {}, 耗时: {} ms",
+                siteDir, files.size(), compressed, System.currentTimeMillis() - start);
+    }
+
+    static boolean isCompressible(File file) {
+        return file.length() >= MIN_COMPRESS_SIZE
+                && COMPRESSIBLE_EXTENSIONS.contains(FileUtil.extName(file).toLowerCase());
+    }
+
+    /**
+     * 已有比原文件新的 .gz 副本（如部署时从上一版本硬链接过来的）则无需重新压缩
+     */
+    private static boolean hasFreshGzip(File file) {
+        File gz = new File(file.getPath() + ".gz");
+        return gz.isFile() && gz.lastModified() >= file.lastModified();
+    }
+
+    /**
+     * 生成 .gz 副本，压缩后没有变小则不保留
+     */
+    private boolean writeGzip(File file) throws IOException {
+        Path source = file.toPath();
+        Path target = source.resolveSibling(file.getName() + ".gz");
+        Path temp = source.resolveSibling(file.getName() + ".gz.tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            Files.copy(source, out);
+        }
+        if (Files.size(temp) >= file.length()) {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(target);
+            return false;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+}
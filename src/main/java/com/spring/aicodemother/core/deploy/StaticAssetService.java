@@ -0,0 +1,367 @@
+package com.spring.aicodemother.core.deploy;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spring.aicodemother.utils.FileTransferUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 静态站点资源服务
+ * - 强 ETag：优先使用部署时写入清单的内容哈希，清单缺失或过期时按需计算并缓存
+ * - 条件请求：If-None-Match / If-Modified-Since 命中时返回 304
+ * - 单段 Range 请求（206 / 416），If-Range 不匹配时返回完整内容
+ * - 按 Accept-Encoding 选择 .br / .gz 预压缩副本
+ * - 小文件缓存在内存中；大文件走 Tomcat sendfile，不支持时用 FileChannel.transferTo
+ */
+@Slf4j
+@Component
+public class StaticAssetService {
+
+    /**
+     * 可缓存到内存的单个文件大小上限
+     */
+    private static final int MAX_CACHED_FILE_SIZE = 64 * 1024;
+
+    /**
+     * 内存缓存的总大小上限
+     */
+    private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Vite 构建输出的带内容哈希的文件名（assets 目录下的 name-B3xk9aQz.js），可长期缓存
+     * 哈希固定 8 位 base64url 字符；要求其中有大写字母或数字，排除 user-settings.css 这类普通的连字符文件名
+     */
+    private static final Pattern HASHED_NAME_PATTERN = Pattern.compile(
+            "(.*/)?assets/(.*/)?[^/]+-(?=[A-Za-z0-9_-]{0,7}[A-Z0-9])[A-Za-z0-9_-]{8}\\.(js|css|mjs|woff2?|png|jpe?g|svg|webp|gif)$");
+
+    /**
+     * 文件路径 -> 资源元信息（按大小和修改时间校验）
+     */
+    private final Cache<String, AssetMeta> metaCache = Caffeine.newBuilder()
+            .maximumSize(20_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    /**
+     * 站点目录 -> 部署时写入的资源清单
+     */
+    private final Cache<String, Map<String, Object>> manifestCache = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    /**
+     * 文件路径 -> 文件内容（仅小文件）
+     */
+    private final Cache<String, CachedBytes> contentCache = Caffeine.newBuilder()
+            .maximumWeight(MAX_CACHE_BYTES)
+            .weigher((String key, CachedBytes value) -> value.bytes.length)
+            .build();
+
+    /**
+     * 输出站点中的一个文件
+     *
+     * @param siteDir      站点根目录
+     * @param relativePath 站点内的相对路径（不以 / 开头）
+     */
+    public void serve(File siteDir, String relativePath, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        File file = new File(siteDir, relativePath);
+        if (!file.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        AssetMeta meta = resolveMeta(siteDir, relativePath, file);
+        Variant variant = selectVariant(file, meta, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+
+        response.setHeader(HttpHeaders.ETAG, variant.etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, meta.lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(relativePath));
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (meta.compressible) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (isNotModified(request, variant.etag, meta.lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(meta.contentType);
+        if (variant.encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, variant.encoding);
+        }
+
+        long start = 0;
+        long end = variant.size - 1;
+        // Range 只作用于未压缩的表示
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && variant.encoding == null && ifRangeMatches(request, variant.etag, meta.lastModified)) {
+            long[] parsed = parseRange(range, variant.size);
+            if (parsed == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + variant.size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + variant.size);
+            }
+        }
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+        writeBody(variant, start, length, request, response);
+    }
+
+    /**
+     * 输出生成中的文件（流式写入的临时文件）
+     * 内容随时在变化，不计算 ETag、不进内存缓存、不支持 Range，一次读出当前内容并禁止浏览器缓存
+     *
+     * @param file     临时文件
+     * @param fileName 对应的正式文件名，用于确定 Content-Type
+     */
+    public void serveInProgress(File file, String fileName, HttpServletResponse response) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            // 读取前刚好被替换为正式文件
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        response.setContentType(contentType(fileName));
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    /**
+     * 资源元信息：清单中的哈希仍与文件大小、修改时间一致时直接使用，否则重新计算
+     */
+    private AssetMeta resolveMeta(File siteDir, String relativePath, File file) {
+        long size = file.length();
+        long lastModified = file.lastModified();
+        String key = file.getAbsolutePath();
+        AssetMeta cached = metaCache.getIfPresent(key);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached;
+        }
+        String hash = null;
+        Object entry = manifest(siteDir).get(relativePath);
+        if (entry instanceof JSONObject json
+                && json.getLong("size", -1L) == size && json.getLong("mtime", -1L) == lastModified) {
+            hash = json.getStr("hash");
+        }
+        if (hash == null) {
+            hash = DigestUtil.sha256Hex(file);
+        }
+        AssetMeta meta = new AssetMeta(size, lastModified, "\"" + hash.substring(0, 32) + "\"",
+                contentType(file.getName()),
+                StaticAssetPreparer.COMPRESSIBLE_EXTENSIONS.contains(FileUtil.extName(file).toLowerCase()));
+        metaCache.put(key, meta);
+        return meta;
+    }
+
+    private Map<String, Object> manifest(File siteDir) {
+        return manifestCache.get(siteDir.getAbsolutePath(), dir -> {
+            File manifestFile = new File(siteDir, StaticAssetPreparer.MANIFEST_FILE);
+            if (!manifestFile.isFile()) {
+                return Map.of();
+            }
+            try {
+                return JSONUtil.parseObj(FileUtil.readUtf8String(manifestFile));
+            } catch (Exception e) {
+                log.warn("读取静态资源清单失败: {}, 错误: {}", manifestFile, e.getMessage());
+                return Map.of();
+            }
+        });
+    }
+
+    /**
+     * 站点重新部署后丢弃缓存的清单
+     */
+    public void evictSite(File siteDir) {
+        manifestCache.invalidate(siteDir.getAbsolutePath());
+    }
+
+    /**
+     * 按 Accept-Encoding 选择预压缩副本（副本需比原文件新）
+     */
+    private Variant selectVariant(File file, AssetMeta meta, String acceptEncoding) {
+        if (meta.compressible && acceptEncoding != null) {
+            if (acceptEncoding.contains("br")) {
+                File br = new File(file.getPath() + ".br");
+                if (br.isFile() && br.lastModified() >= meta.lastModified) {
+                    return new Variant(br, br.length(), "br", withSuffix(meta.etag, "br"));
+                }
+            }
+            if (acceptEncoding.contains("gzip")) {
+                File gz = new File(file.getPath() + ".gz");
+                if (gz.isFile() && gz.lastModified() >= meta.lastModified) {
+                    return new Variant(gz, gz.length(), "gzip", withSuffix(meta.etag, "gz"));
+                }
+            }
+        }
+        return new Variant(file, meta.size, null, meta.etag);
+    }
+
+    private void writeBody(Variant variant, long start, long length, HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        if (variant.size <= MAX_CACHED_FILE_SIZE) {
+            CachedBytes cached = contentCache.getIfPresent(variant.file.getPath());
+            if (cached == null || cached.lastModified != variant.file.lastModified() || cached.bytes.length != variant.size) {
+                cached = new CachedBytes(Files.readAllBytes(variant.file.toPath()), variant.file.lastModified());
+                contentCache.put(variant.file.getPath(), cached);
+            }
+            response.getOutputStream().write(cached.bytes, (int) start, (int) length);
+            return;
+        }
+        FileTransferUtils.transfer(variant.file, start, length, request, response);
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagListMatches(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        // HTTP 日期精度为秒
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    private static boolean etagListMatches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析单段 Range
+     *
+     * @return {start, end}；多段或格式不支持时返回空数组（按完整内容处理）；无法满足时返回 null
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // 后缀范围：最后 N 个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            }
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    static String cacheControl(String relativePath) {
+        if (HASHED_NAME_PATTERN.matcher(relativePath).matches()) {
+            return "public, max-age=31536000, immutable";
+        }
+        // 入口页面等非哈希文件每次都要校验（配合 ETag 通常返回 304）
+        return "no-cache";
+    }
+
+    private static String withSuffix(String etag, String suffix) {
+        return etag.substring(0, etag.length() - 1) + "-" + suffix + "\"";
+    }
+
+    /**
+     * 根据文件扩展名返回带字符编码的 Content-Type
+     */
+    static String contentType(String fileName) {
+        String ext = StrUtil.subAfter(fileName, '.', true).toLowerCase();
+        return switch (ext) {
+            case "html", "htm" -> "text/html; charset=UTF-8";
+            case "css" -> "text/css; charset=UTF-8";
+            case "js", "mjs" -> "application/javascript; charset=UTF-8";
+            case "json", "map" -> "application/json; charset=UTF-8";
+            case "svg" -> "image/svg+xml";
+            case "txt" -> "text/plain; charset=UTF-8";
+            default -> MediaTypeFactory.getMediaType(fileName)
+                    .map(Object::toString)
+                    .orElse("application/octet-stream");
+        };
+    }
+
+    /**
+     * 资源元信息
+     */
+    private record AssetMeta(long size, long lastModified, String etag, String contentType, boolean compressible) {
+    }
+
+    /**
+     * 实际发送的表示（原文件或预压缩副本）
+     */
+    private record Variant(File file, long size, String encoding, String etag) {
+    }
+
+    private record CachedBytes(byte[] bytes, long lastModified) {
+    }
+}
@@ -0,0 +1,314 @@
+package com.spring.aicodemother.core.diagram;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.system.SystemUtil;
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+import com.spring.aicodemother.utils.WebScreenshotUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mermaid 图表渲染器
+ * - 维护少量常驻的无头浏览器，每个浏览器加载一次 mermaid.js 后反复渲染，不再为每张图启动 Node 和浏览器
+ * - 同时渲染的图表数不超过 pool-size，单次渲染超过 render-timeout-seconds 视为失败并销毁该浏览器
+ * - 渲染结果直接以 SVG 文本返回，不落盘
+ * 找不到 mermaid.js 时退回到调用 mmdc 命令（同样受并发数和超时限制）
+ */
+@Slf4j
+@Component
+public class MermaidRenderer {
+
+    /**
+     * 全局安装的 mermaid-cli 中自带的 mermaid.js（相对 npm root -g）
+     */
+    private static final List<String> BUNDLED_SCRIPT_CANDIDATES = List.of(
+            "@mermaid-js/mermaid-cli/node_modules/mermaid/dist/mermaid.min.js",
+            "mermaid/dist/mermaid.min.js"
+    );
+
+    private static final String INIT_SCRIPT =
+            "mermaid.initialize({startOnLoad: false, securityLevel: 'strict'});";
+
+    private static final String RENDER_SCRIPT = """
+            const callback = arguments[arguments.length - 1];
+            mermaid.render('mermaid-' + arguments[1], arguments[0])
+                .then(result => callback({svg: result.svg}))
+                .catch(error => callback({error: String(error && error.message ? error.message : error)}));
+            """;
+
+    @Value("${code.mermaid.pool-size:2}")
+    private int poolSize;
+
+    @Value("${code.mermaid.max-renders-per-browser:200}")
+    private int maxRendersPerBrowser;
+
+    @Value("${code.mermaid.render-timeout-seconds:15}")
+    private long renderTimeoutSeconds;
+
+    @Value("${code.mermaid.lease-timeout-seconds:30}")
+    private long leaseTimeoutSeconds;
+
+    @Value("${code.mermaid.script-path:}")
+    private String scriptPath;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final BlockingDeque<PooledRenderer> idle = new LinkedBlockingDeque<>();
+
+    private final AtomicInteger leased = new AtomicInteger();
+
+    private final AtomicLong renderSequence = new AtomicLong();
+
+    private Semaphore permits;
+
+    private Timer queueWaitTimer;
+
+    /**
+     * mermaid.js 内容，首次渲染时加载；为空字符串表示未找到，使用 mmdc
+     */
+    private volatile String mermaidScript;
+
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(poolSize, true);
+        queueWaitTimer = Timer.builder("ai_code_mermaid_queue_wait_seconds")
+                .description("Mermaid 渲染排队等待时间")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_mermaid_renderers", leased, AtomicInteger::get)
+                .description("Mermaid 渲染浏览器数量")
+                .tag("state", "leased")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_mermaid_renderers", idle, BlockingDeque::size)
+                .description("Mermaid 渲染浏览器数量")
+                .tag("state", "idle")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        PooledRenderer renderer;
+        while ((renderer = idle.poll()) != null) {
+            renderer.quit();
+        }
+    }
+
+    /**
+     * 把 Mermaid 代码渲染为 SVG
+     *
+     * @param mermaidCode Mermaid 代码
+     * @return SVG 文本
+     */
+    public String renderSvg(String mermaidCode) {
+        long waitStart = System.nanoTime();
+        try {
+            if (closed || !permits.tryAcquire(leaseTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Mermaid 渲染繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待 Mermaid 渲染时被中断");
+        }
+        queueWaitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        long start = System.nanoTime();
+        String status = "error";
+        try {
+            String script = loadMermaidScript();
+            String svg = script.isEmpty() ? renderWithCli(mermaidCode) : renderInBrowser(script, mermaidCode);
+            status = "success";
+            return svg;
+        } catch (ScriptTimeoutException e) {
+            status = "timeout";
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Mermaid 渲染超时");
+        } finally {
+            permits.release();
+            Timer.builder("ai_code_mermaid_render_seconds")
+                    .description("Mermaid 单张图表渲染耗时")
+                    .tag("status", status)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 在常驻浏览器中渲染（调用方已持有许可）
+     */
+    private String renderInBrowser(String script, String mermaidCode) {
+        PooledRenderer renderer = idle.pollFirst();
+        if (renderer == null) {
+            renderer = createRenderer(script);
+        }
+        leased.incrementAndGet();
+        boolean broken = false;
+        try {
+            Object result = ((JavascriptExecutor) renderer.driver)
+                    .executeAsyncScript(RENDER_SCRIPT, mermaidCode, renderSequence.incrementAndGet());
+            Map<?, ?> output = result instanceof Map<?, ?> map ? map : Map.of();
+            if (output.get("svg") == null) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "Mermaid 语法错误: " + output.get("error"));
+            }
+            return output.get("svg").toString();
+        } catch (WebDriverException e) {
+            broken = true;
+            throw e;
+        } finally {
+            leased.decrementAndGet();
+            renderer.renders++;
+            if (broken || closed || renderer.renders >= maxRendersPerBrowser) {
+                renderer.quit();
+            } else {
+                idle.offerFirst(renderer);
+            }
+        }
+    }
+
+    private PooledRenderer createRenderer(String script) {
+        WebDriver driver = WebScreenshotUtils.createChromeDriver(1200, 800);
+        try {
+            driver.manage().timeouts().scriptTimeout(Duration.ofSeconds(renderTimeoutSeconds));
+            driver.get("about:blank");
+            ((JavascriptExecutor) driver).executeScript(script + "\n" + INIT_SCRIPT);
+            return new PooledRenderer(driver);
+        } catch (RuntimeException e) {
+            driver.quit();
+            throw e;
+        }
+    }
+
+    /**
+     * 找不到 mermaid.js 时调用 mmdc，超时后强制结束进程
+     */
+    private String renderWithCli(String mermaidCode) {
+        File input = FileUtil.createTempFile("mermaid_input_", ".mmd", true);
+        File output = FileUtil.createTempFile("mermaid_output_", ".svg", true);
+        try {
+            FileUtil.writeUtf8String(mermaidCode, input);
+            String command = SystemUtil.getOsInfo().isWindows() ? "mmdc.cmd" : "mmdc";
+            Process process = new ProcessBuilder(command, "-i", input.getAbsolutePath(),
+                    "-o", output.getAbsolutePath(), "-b", "transparent")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(renderTimeoutSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new ScriptTimeoutException("mmdc 执行超时");
+            }
+            if (process.exitValue() != 0 || output.length() == 0) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Mermaid CLI 执行失败");
+            }
+            return FileUtil.readUtf8String(output);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Mermaid CLI 执行失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Mermaid CLI 执行被中断");
+        } finally {
+            FileUtil.del(input);
+            FileUtil.del(output);
+        }
+    }
+
+    private String loadMermaidScript() {
+        String script = mermaidScript;
+        if (script != null) {
+            return script;
+        }
+        synchronized (this) {
+            if (mermaidScript == null) {
+                Path path = locateMermaidScript();
+                if (path == null) {
+                    log.warn("未找到 mermaid.js，Mermaid 渲染退回到 mmdc 命令（可通过 code.mermaid.script-path 指定）");
+                    mermaidScript = "";
+                } else {
+                    try {
+                        mermaidScript = Files.readString(path, StandardCharsets.UTF_8);
+                        log.info("Mermaid 渲染使用常驻浏览器，脚本: {}", path);
+                    } catch (IOException e) {
+                        log.warn("读取 mermaid.js 失败: {}, 退回到 mmdc 命令", path);
+                        mermaidScript = "";
+                    }
+                }
+            }
+            return mermaidScript;
+        }
+    }
+
+    private Path locateMermaidScript() {
+        if (StrUtil.isNotBlank(scriptPath)) {
+            Path configured = Paths.get(scriptPath);
+            return Files.isRegularFile(configured) ? configured : null;
+        }
+        try {
+            String npm = SystemUtil.getOsInfo().isWindows() ? "npm.cmd" : "npm";
+            Process process = new ProcessBuilder(npm, "root", "-g").redirectErrorStream(true).start();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return null;
+            }
+            String globalRoot = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            for (String candidate : BUNDLED_SCRIPT_CANDIDATES) {
+                Path path = Paths.get(globalRoot, candidate);
+                if (Files.isRegularFile(path)) {
+                    return path;
+                }
+            }
+        } catch (IOException e) {
+            log.debug("执行 npm root -g 失败: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * 已加载 mermaid.js 的浏览器
+     */
+    private static class PooledRenderer {
+        final WebDriver driver;
+        int renders;
+
+        PooledRenderer(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        void quit() {
+            try {
+                driver.quit();
+            } catch (Exception e) {
+                log.warn("关闭 Mermaid 渲染浏览器失败: {}", e.getMessage());
+            }
+        }
+    }
+}
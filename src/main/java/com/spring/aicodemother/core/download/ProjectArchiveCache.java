@@ -0,0 +1,307 @@
+package com.spring.aicodemother.core.download;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spring.aicodemother.constant.AppConstant;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 项目下载压缩包缓存
+ * - 以项目内容指纹（所有文件的 相对路径 + 大小 + 内容哈希）作为缓存键，内容不变时重复下载直接发送磁盘上的压缩包
+ * - 单个文件的内容哈希按 大小 + 修改时间 缓存，计算指纹时通常只需 stat
+ * - 同一项目并发打包时只打包一次，其他请求等待同一结果
+ * - 图片、字体、压缩包等已压缩的资源以 STORED 方式写入，不再重复压缩
+ */
+@Slf4j
+@Component
+public class ProjectArchiveCache {
+
+    /**
+     * 已压缩格式，再次 deflate 几乎没有收益
+     */
+    private static final Set<String> STORED_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "webp", "avif", "ico",
+            "woff", "woff2", "zip", "gz", "br", "7z", "rar",
+            "mp3", "mp4", "webm", "pdf"
+    );
+
+    @Value("${code.download.compression-level:6}")
+    private int compressionLevel;
+
+    @Value("${code.download.cache-max-mb:2048}")
+    private long cacheMaxMb;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Path cacheRoot = Paths.get(AppConstant.DOWNLOAD_CACHE_ROOT_DIR).toAbsolutePath();
+
+    /**
+     * 文件路径 -> 内容哈希（按大小和修改时间校验）
+     */
+    private final Cache<Path, FileHash> fileHashes = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
+    /**
+     * 压缩包路径 -> 正在进行的打包任务
+     */
+    private final Map<Path, CompletableFuture<Path>> inflight = new ConcurrentHashMap<>();
+
+    private final ExecutorService builders = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Timer buildTimer;
+
+    @PostConstruct
+    public void init() {
+        buildTimer = Timer.builder("ai_code_download_archive_build_seconds")
+                .description("项目压缩包打包耗时")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builders.shutdownNow();
+    }
+
+    /**
+     * 获取项目压缩包，缓存未命中时同步打包
+     *
+     * @param projectRoot 项目目录
+     * @param filter      需要打包的文件（参数为相对项目目录的路径）
+     * @return 压缩包
+     */
+    public Archive getOrBuild(Path projectRoot, Predicate<Path> filter) throws IOException {
+        Archive archive = locate(projectRoot, filter);
+        if (Files.isRegularFile(archive.file)) {
+            recordLookup("hit");
+            // 更新修改时间，清理时按最近使用排序
+            Files.setLastModifiedTime(archive.file, FileTime.fromMillis(System.currentTimeMillis()));
+            return archive;
+        }
+        recordLookup("miss");
+        try {
+            submitBuild(archive).join();
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+        }
+        return archive;
+    }
+
+    /**
+     * 异步准备压缩包（大项目可先调用，打包完成后再下载）
+     *
+     * @return true 表示压缩包已就绪
+     */
+    public boolean prepare(Path projectRoot, Predicate<Path> filter) throws IOException {
+        Archive archive = locate(projectRoot, filter);
+        if (Files.isRegularFile(archive.file)) {
+            return true;
+        }
+        submitBuild(archive);
+        return false;
+    }
+
+    private CompletableFuture<Path> submitBuild(Archive archive) {
+        CompletableFuture<Path> future = inflight.computeIfAbsent(archive.file, file -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return buildTimer.recordCallable(() -> build(archive));
+            } catch (Exception e) {
+                throw new IllegalStateException("打包项目失败: " + e.getMessage(), e);
+            }
+        }, builders));
+        // 在 computeIfAbsent 返回后再注册清理：任务在映射写入前就已完成时，回调不会在映射函数内修改 inflight，
+        // 按值移除也不会误删之后新提交的任务
+        future.whenComplete((result, error) -> inflight.remove(archive.file, future));
+        return future;
+    }
+
+    /**
+     * 计算项目内容指纹，确定压缩包位置
+     */
+    private Archive locate(Path projectRoot, Predicate<Path> filter) throws IOException {
+        Path root = projectRoot.toAbsolutePath().normalize();
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                // 被排除的目录整体跳过，不再遍历（如 node_modules）
+                return dir.equals(root) || filter.test(root.relativize(dir)) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && filter.test(root.relativize(file))) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(Comparator.naturalOrder());
+        StringBuilder digestInput = new StringBuilder();
+        for (Path file : files) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            digestInput.append(relativeName(root, file)).append('\0')
+                    .append(attrs.size()).append('\0')
+                    .append(contentHash(file, attrs)).append('\n');
+        }
+        digestInput.append("level=").append(compressionLevel);
+        String fingerprint = DigestUtil.sha256Hex(digestInput.toString()).substring(0, 24);
+        Path archiveFile = cacheRoot.resolve(root.getFileName() + "-" + fingerprint + ".zip");
+        return new Archive(root, files, fingerprint, archiveFile);
+    }
+
+    private String contentHash(Path file, BasicFileAttributes attrs) {
+        long mtime = attrs.lastModifiedTime().toMillis();
+        FileHash cached = fileHashes.getIfPresent(file);
+        if (cached != null && cached.size == attrs.size() && cached.mtime == mtime) {
+            return cached.hash;
+        }
+        String hash = DigestUtil.sha256Hex(file.toFile());
+        fileHashes.put(file, new FileHash(attrs.size(), mtime, hash));
+        return hash;
+    }
+
+    /**
+     * 打包到临时文件后原子重命名，再清理同一项目的旧压缩包
+     */
+    private Path build(Archive archive) throws IOException {
+        Files.createDirectories(cacheRoot);
+        Path temp = cacheRoot.resolve(archive.file.getFileName() + ".tmp-" + IdUtil.fastSimpleUUID());
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(temp);
+                 ZipOutputStream zipOut = new ZipOutputStream(fileOut, StandardCharsets.UTF_8)) {
+                zipOut.setLevel(compressionLevel);
+                for (Path file : archive.files) {
+                    writeEntry(zipOut, relativeName(archive.root, file), file);
+                }
+            }
+            Files.move(temp, archive.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("项目压缩包已生成: {}, 文件数: {}, 大小: {} KB",
+                archive.file.getFileName(), archive.files.size(), Files.size(archive.file) / 1024);
+        evictStale(archive);
+        return archive.file;
+    }
+
+    private static void writeEntry(ZipOutputStream zipOut, String name, Path file) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (STORED_EXTENSIONS.contains(FileUtil.extName(name).toLowerCase())) {
+            // STORED 需要预先给出大小和 CRC
+            entry.setMethod(ZipEntry.STORED);
+            long size = Files.size(file);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc32(file));
+        }
+        zipOut.putNextEntry(entry);
+        Files.copy(file, zipOut);
+        zipOut.closeEntry();
+    }
+
+    private static long crc32(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * 删除同一项目的旧压缩包；总大小超过上限时按最近使用时间淘汰
+     */
+    private void evictStale(Archive current) {
+        File[] archives = cacheRoot.toFile().listFiles((dir, name) -> name.endsWith(".zip"));
+        if (archives == null) {
+            return;
+        }
+        String prefix = current.root.getFileName() + "-";
+        long totalBytes = 0;
+        List<File> remaining = new ArrayList<>();
+        for (File file : archives) {
+            if (file.toPath().equals(current.file)) {
+                totalBytes += file.length();
+            } else if (file.getName().startsWith(prefix)
+                    && file.getName().length() == current.file.getFileName().toString().length()) {
+                FileUtil.del(file);
+            } else {
+                remaining.add(file);
+                totalBytes += file.length();
+            }
+        }
+        long maxBytes = cacheMaxMb * 1024 * 1024;
+        remaining.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : remaining) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            totalBytes -= file.length();
+            FileUtil.del(file);
+        }
+    }
+
+    private void recordLookup(String result) {
+        Counter.builder("ai_code_download_archive_cache_total")
+                .description("项目压缩包缓存查询次数")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String relativeName(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 项目压缩包
+     *
+     * @param fingerprint 项目内容指纹（可作为 ETag）
+     * @param file        压缩包文件
+     */
+    public record Archive(Path root, List<Path> files, String fingerprint, Path file) {
+    }
+
+    private record FileHash(long size, long mtime, String hash) {
+    }
+}
@@ -1,13 +1,11 @@
 package com.spring.aicodemother.core.handler;
 
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.spring.aicodemother.ai.model.message.*;
 import com.spring.aicodemother.ai.tools.BaseTool;
 import com.spring.aicodemother.ai.tools.ToolManager;
-import com.spring.aicodemother.constant.AppConstant;
 import com.spring.aicodemother.core.build.VueProjectBuilder;
 import com.spring.aicodemother.model.entity.User;
 import com.spring.aicodemother.model.enums.ChatHistoryMessageTypeEnum;
@@ -22,6 +20,7 @@ import java.util.Set;
 /**
  * JSON 消息流处理器
  * 处理 VUE_PROJECT 类型的复杂流式响应，包含工具调用信息
+ * 上游直接传入类型化的 StreamMessage，进程内不再做 JSON 往返
  */
 @Slf4j
 @Component
@@ -35,15 +34,15 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型重组为完整的响应格式
      *
-     * @param originFlux         原始流
+     * @param originFlux         原始消息流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser,
                                java.util.function.BooleanSupplier cancelled,
@@ -54,9 +53,9 @@ public class JsonMessageStreamHandler {
         Set<String> seenToolIds = new HashSet<>();
 
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .map(message -> {
+                    // 处理每个消息
+                    return handleStreamMessage(message, chatHistoryStringBuilder, seenToolIds);
                 })
                 .filter(StrUtil::isNotEmpty) // 过滤空字串
                 .doOnComplete(() -> {
@@ -80,76 +79,48 @@ public class JsonMessageStreamHandler {
     }
 
     /**
-     * 解析并收集 TokenStream 数据
+     * 按消息类型收集 TokenStream 数据
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
+    private String handleStreamMessage(StreamMessage message, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
         try {
-            // 解析 JSON
-            StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-            StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-            
-            switch (typeEnum) {
-                case AI_RESPONSE -> {
-                    try {
-                        AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
-                        String data = aiMessage.getData();
-                        if (data != null) {
-                            // 直接拼接响应
-                            chatHistoryStringBuilder.append(data);
-                            return data;
-                        }
-                        return "";
-                    } catch (Exception e) {
-                        log.error("解析AI响应消息失败: {}", e.getMessage());
-                        return "";
-                    }
-                }
-                case TOOL_REQUEST -> {
-                    try {
-                        ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
-                        String toolId = toolRequestMessage.getId();
-                        String toolName = toolRequestMessage.getName();
-                        // 检查是否是第一次看到这个工具 ID
-                        if (toolId != null && !seenToolIds.contains(toolId)) {
-                            // 第一次调用这个工具，记录 ID 并返回工具信息
-                            seenToolIds.add(toolId);
-                            // 根据工具名称获取工具实例
-                            BaseTool tool = toolManager.getTool(toolName);
-                            // 返回格式化的工具调用信息
-                            return tool.generateToolRequestResponse();
-                        } else {
-                            // 不是第一次调用这个工具，直接返回空
-                            return "";
-                        }
-                    } catch (Exception e) {
-                        log.error("解析工具请求消息失败: {}", e.getMessage());
-                        return "\n\n[工具调用] 工具请求解析失败\n\n";
-                    }
-                }
-                case TOOL_EXECUTED -> {
-                    ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
-                    String toolName = toolExecutedMessage.getName();
-                    JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
-                    // 根据工具名称获取工具实例并生成相应的结果格式
-                    BaseTool tool = toolManager.getTool(toolName);
-                    String result = tool.generateToolExecutedResult(jsonObject);
-                    // 输出前端和要持久化的内容
-                    String output = String.format("\n\n%s\n\n", result);
-                    chatHistoryStringBuilder.append(output);
-                    return output;
+            if (message instanceof AiResponseMessage aiMessage) {
+                String data = aiMessage.getData();
+                if (data != null) {
+                    // 直接拼接响应
+                    chatHistoryStringBuilder.append(data);
+                    return data;
                 }
-                default -> {
-                    log.error("不支持的消息类型: {}", typeEnum);
-                    return "";
+                return "";
+            }
+            if (message instanceof ToolRequestMessage toolRequestMessage) {
+                String toolId = toolRequestMessage.getId();
+                // 检查是否是第一次看到这个工具 ID
+                if (toolId != null && seenToolIds.add(toolId)) {
+                    // 第一次调用这个工具：根据工具名称获取工具实例，返回格式化的工具调用信息
+                    BaseTool tool = toolManager.getTool(toolRequestMessage.getName());
+                    return tool.generateToolRequestResponse();
                 }
+                // 不是第一次调用这个工具，直接返回空
+                return "";
+            }
+            if (message instanceof ToolExecutedMessage toolExecutedMessage) {
+                JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
+                // 根据工具名称获取工具实例并生成相应的结果格式
+                BaseTool tool = toolManager.getTool(toolExecutedMessage.getName());
+                String result = tool.generateToolExecutedResult(jsonObject);
+                // 输出前端和要持久化的内容
+                String output = String.format("\n\n%s\n\n", result);
+                chatHistoryStringBuilder.append(output);
+                return output;
             }
+            log.error("不支持的消息类型: {}", message == null ? null : message.getType());
+            return "";
         } catch (Exception e) {
-            log.error("解析消息块失败，原始内容: {}, 错误: {}", chunk, e.getMessage());
-            // 发生解析错误时，返回错误提示但不中断流程
+            log.error("处理消息失败，消息类型: {}, 错误: {}", message == null ? null : message.getType(), e.getMessage());
+            // 发生处理错误时，返回错误提示但不中断流程
             String errorMessage = "\n\n[错误] 消息解析失败，但流程继续\n\n";
             chatHistoryStringBuilder.append(errorMessage);
             return errorMessage;
         }
     }
 }
-
@@ -1,5 +1,8 @@
 package com.spring.aicodemother.core.handler;
 
+import com.spring.aicodemother.ai.model.message.StreamMessage;
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.model.entity.User;
 import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
 import com.spring.aicodemother.service.ChatHistoryService;
@@ -13,7 +16,7 @@ import reactor.core.publisher.Flux;
  * 根据代码生成类型创建合适的流处理器：
  * 1. HTML 类型 -> SimpleTextStreamHandler
  * 2. MULTI_FILE 类型 -> MultiFileStreamHandler（支持多文件并行输出）
- * 3. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 3. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler（类型化消息流，见 doExecuteMessages）
  */
 @Slf4j
 @Component
@@ -41,13 +44,33 @@ public class StreamHandlerExecutor {
                 ? finalResponseConsumer
                 : response -> { };
         return switch (codeGenType) {
-            case VUE_PROJECT -> // 使用注入的组件实例
-                    jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser, cancelled, safeConsumer);
+            case VUE_PROJECT -> // VUE_PROJECT 需通过 doExecuteMessages 传入类型化消息流
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "VUE_PROJECT 类型请使用类型化消息流处理");
             case HTML -> // HTML 使用简单文本处理器
                     new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser, codeGenType, cancelled, safeConsumer);
             case MULTI_FILE -> // MULTI_FILE 使用专用的多文件处理器
                     new MultiFileStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser, cancelled, safeConsumer);
         };
     }
+
+    /**
+     * 处理类型化的消息流（VUE_PROJECT）并记录聊天历史
+     *
+     * @param originFlux         原始消息流
+     * @param chatHistoryService 聊天历史服务
+     * @param appId              应用ID
+     * @param loginUser          登录用户
+     * @return 处理后的流
+     */
+    public Flux<String> doExecuteMessages(Flux<StreamMessage> originFlux,
+                                          ChatHistoryService chatHistoryService,
+                                          long appId, User loginUser,
+                                          java.util.function.BooleanSupplier cancelled,
+                                          java.util.function.Consumer<String> finalResponseConsumer) {
+        java.util.function.Consumer<String> safeConsumer = finalResponseConsumer != null
+                ? finalResponseConsumer
+                : response -> { };
+        return jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser, cancelled, safeConsumer);
+    }
 }
 
@@ -0,0 +1,398 @@
+package com.spring.aicodemother.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import com.spring.aicodemother.constant.AppConstant;
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流式代码文件写入器（HTML / MULTI_FILE）
+ * token 到达时按行识别 Markdown 代码块，把代码块内容边生成边追加到同目录下的临时文件：
+ * - 只缓存当前行中尚无法判断是否为代码块标记的部分，堆内存占用不随响应长度增长
+ * - complete 时才把临时文件原子替换为正式文件，abort 时删除临时文件，正式文件不会出现半截内容
+ * - 生成过程中预览接口通过 {@link #inProgressFile(Path)} 读取临时文件，按刷盘间隔看到部分输出
+ * 文件选择规则与 HtmlCodeParser / MultiFileCodeParser 一致：每种语言只保存第一个代码块，去除首尾空行
+ * 非线程安全，调用方需保证按流的顺序串行调用（Reactor 信号本身即串行）
+ */
+@Slf4j
+public class StreamingCodeFileWriter {
+
+    private static final String FENCE = "```";
+
+    private static final String INDEX_HTML = "index.html";
+
+    /**
+     * 临时文件后缀，与正式文件位于同一目录，保证 complete 时可以原子替换
+     */
+    private static final String TEMP_SUFFIX = ".streaming";
+
+    /**
+     * 两次刷盘的最小间隔，兼顾预览实时性与系统调用次数
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+
+    private final CodeGenTypeEnum codeGenType;
+
+    private final Path baseDir;
+
+    /**
+     * 当前行中尚未处理的内容（只在无法确定是否为代码块标记时缓存）
+     */
+    private final StringBuilder lineBuffer = new StringBuilder();
+
+    /**
+     * 已被代码块占用的文件名（每种语言只取第一个代码块）
+     */
+    private final Set<String> claimedFiles = new HashSet<>();
+
+    /**
+     * 已实际写入内容的文件名 -> 对应的临时文件
+     */
+    private final Map<String, Path> tempFiles = new LinkedHashMap<>();
+
+    private LineMode lineMode = LineMode.BUFFERING;
+
+    private boolean inCodeBlock;
+
+    /**
+     * 当前代码块对应的文件名，null 表示当前不在需要保存的代码块中
+     */
+    private String currentFile;
+
+    private Writer currentWriter;
+
+    /**
+     * 暂缓写入的空行数，遇到后续非空内容才写出，以此去除代码块末尾的空行
+     */
+    private int pendingBlankLines;
+
+    /**
+     * HTML 模式下整段响应的落盘副本：没有 ```html 代码块时整体作为 index.html（与 HtmlCodeParser 的兜底一致）
+     */
+    private Path rawFile;
+
+    private Writer rawWriter;
+
+    private long lastFlushAt = System.currentTimeMillis();
+
+    private boolean failed;
+
+    public StreamingCodeFileWriter(CodeGenTypeEnum codeGenType, Long appId) {
+        this(codeGenType, Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, StrUtil.format("{}_{}", codeGenType.getValue(), appId)));
+        if (appId == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        }
+    }
+
+    StreamingCodeFileWriter(CodeGenTypeEnum codeGenType, Path baseDir) {
+        if (codeGenType != CodeGenTypeEnum.HTML && codeGenType != CodeGenTypeEnum.MULTI_FILE) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持流式写入的代码生成类型: " + codeGenType.getValue());
+        }
+        this.codeGenType = codeGenType;
+        this.baseDir = baseDir;
+    }
+
+    /**
+     * 正式文件对应的生成中临时文件（可能不存在）
+     *
+     * @param target 正式文件
+     * @return 同目录下的临时文件路径
+     */
+    public static Path inProgressFile(Path target) {
+        return target.resolveSibling("." + target.getFileName() + TEMP_SUFFIX);
+    }
+
+    /**
+     * 追加一段流式输出
+     * 写入失败只记录日志并停止后续写入，不会影响调用方的流
+     *
+     * @param chunk 模型输出片段
+     */
+    public void append(String chunk) {
+        if (failed || chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        try {
+            if (codeGenType == CodeGenTypeEnum.HTML) {
+                appendRaw(chunk);
+            }
+            int start = 0;
+            while (start < chunk.length()) {
+                int newline = chunk.indexOf('\n', start);
+                int end = newline >= 0 ? newline : chunk.length();
+                appendToLine(chunk, start, end);
+                if (newline < 0) {
+                    break;
+                }
+                endLine();
+                start = newline + 1;
+            }
+            flushIfDue();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 流正常结束：写出最后一行，把临时文件替换为正式文件
+     *
+     * @return 保存的目录
+     */
+    public File complete() {
+        try {
+            if (failed) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码文件写入失败");
+            }
+            if (lineMode == LineMode.BUFFERING && !lineBuffer.isEmpty()) {
+                processLine(lineBuffer.toString());
+            } else if (lineMode == LineMode.STREAMING) {
+                currentWriter.write('\n');
+            }
+            closeCurrentWriter();
+            if (codeGenType == CodeGenTypeEnum.HTML && !tempFiles.containsKey(INDEX_HTML)) {
+                // 没有找到 html 代码块，将整个内容作为 HTML
+                promoteRawFile();
+            }
+            if (!tempFiles.containsKey(INDEX_HTML)) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML代码内容不能为空");
+            }
+            for (Map.Entry<String, Path> entry : tempFiles.entrySet()) {
+                moveIntoPlace(entry.getValue(), baseDir.resolve(entry.getKey()));
+            }
+            tempFiles.clear();
+            return baseDir.toFile();
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码文件写入失败: " + e.getMessage());
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 流被取消或出错：关闭并删除临时文件，正式文件保持上一次生成的内容
+     */
+    public void abort() {
+        release();
+    }
+
+    private void appendToLine(String chunk, int start, int end) throws IOException {
+        switch (lineMode) {
+            case STREAMING -> currentWriter.write(chunk, start, end - start);
+            case SKIPPING -> {
+                // 非代码块内容且已确定不是标记行，直接丢弃
+            }
+            case BUFFERING -> {
+                lineBuffer.append(chunk, start, end);
+                if (cannotBeFence(lineBuffer)) {
+                    if (currentFile != null) {
+                        writePendingBlankLines();
+                        currentWriter.append(lineBuffer);
+                        lineMode = LineMode.STREAMING;
+                    } else {
+                        lineMode = LineMode.SKIPPING;
+                    }
+                    lineBuffer.setLength(0);
+                }
+            }
+        }
+    }
+
+    private void endLine() throws IOException {
+        switch (lineMode) {
+            case STREAMING -> currentWriter.write('\n');
+            case SKIPPING -> {
+            }
+            case BUFFERING -> processLine(lineBuffer.toString());
+        }
+        lineBuffer.setLength(0);
+        lineMode = LineMode.BUFFERING;
+    }
+
+    /**
+     * 处理一整行（只有空白行、代码块标记行或其前缀会走到这里）
+     */
+    private void processLine(String line) throws IOException {
+        String trimmed = line.strip();
+        if (trimmed.startsWith(FENCE)) {
+            if (inCodeBlock) {
+                closeCodeBlock();
+            } else {
+                openCodeBlock(trimmed.substring(FENCE.length()).strip().toLowerCase());
+            }
+            return;
+        }
+        if (currentFile == null) {
+            return;
+        }
+        if (trimmed.isEmpty()) {
+            // 代码块开头的空行直接丢弃，中间/末尾的空行等到后续内容出现再写出
+            if (currentWriter != null) {
+                pendingBlankLines++;
+            }
+            return;
+        }
+        writePendingBlankLines();
+        currentWriter.write(line);
+        currentWriter.write('\n');
+    }
+
+    private void openCodeBlock(String language) {
+        inCodeBlock = true;
+        String fileName = resolveFileName(language);
+        if (fileName != null && claimedFiles.add(fileName)) {
+            currentFile = fileName;
+            pendingBlankLines = 0;
+        }
+    }
+
+    private void closeCodeBlock() throws IOException {
+        inCodeBlock = false;
+        closeCurrentWriter();
+    }
+
+    /**
+     * 写出暂缓的空行；首次写入内容时才创建临时文件（空代码块不会覆盖已有文件）
+     */
+    private void writePendingBlankLines() throws IOException {
+        if (currentWriter == null) {
+            Files.createDirectories(baseDir);
+            Path tempFile = inProgressFile(baseDir.resolve(currentFile));
+            tempFiles.put(currentFile, tempFile);
+            currentWriter = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+            pendingBlankLines = 0;
+            return;
+        }
+        for (; pendingBlankLines > 0; pendingBlankLines--) {
+            currentWriter.write('\n');
+        }
+    }
+
+    private void closeCurrentWriter() throws IOException {
+        if (currentWriter != null) {
+            currentWriter.close();
+            log.debug("流式写入临时文件完成: {}", tempFiles.get(currentFile));
+        }
+        currentWriter = null;
+        currentFile = null;
+        pendingBlankLines = 0;
+    }
+
+    private String resolveFileName(String language) {
+        return switch (language) {
+            case "html" -> INDEX_HTML;
+            case "css" -> codeGenType == CodeGenTypeEnum.MULTI_FILE ? "style.css" : null;
+            case "js", "javascript" -> codeGenType == CodeGenTypeEnum.MULTI_FILE ? "script.js" : null;
+            default -> null;
+        };
+    }
+
+    private void appendRaw(String chunk) throws IOException {
+        if (rawWriter == null) {
+            Files.createDirectories(baseDir);
+            rawFile = Files.createTempFile(baseDir, ".raw_", TEMP_SUFFIX);
+            rawWriter = Files.newBufferedWriter(rawFile, StandardCharsets.UTF_8);
+        }
+        rawWriter.write(chunk);
+    }
+
+    private void promoteRawFile() throws IOException {
+        if (rawWriter == null) {
+            return;
+        }
+        rawWriter.close();
+        rawWriter = null;
+        if (StrUtil.isBlank(FileUtil.readUtf8String(rawFile.toFile()))) {
+            return;
+        }
+        tempFiles.put(INDEX_HTML, rawFile);
+        rawFile = null;
+    }
+
+    /**
+     * 临时文件与正式文件同目录，优先原子替换；文件系统不支持时退化为普通替换
+     */
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        log.debug("流式写入文件完成: {}", target);
+    }
+
+    private void flushIfDue() throws IOException {
+        long now = System.currentTimeMillis();
+        if (currentWriter != null && now - lastFlushAt >= FLUSH_INTERVAL_MILLIS) {
+            currentWriter.flush();
+            lastFlushAt = now;
+        }
+    }
+
+    private void fail(IOException e) {
+        log.error("流式写入代码文件失败，目录: {}, 错误: {}", baseDir, e.getMessage());
+        failed = true;
+        release();
+    }
+
+    private void release() {
+        IoUtil.close(currentWriter);
+        IoUtil.close(rawWriter);
+        currentWriter = null;
+        rawWriter = null;
+        currentFile = null;
+        if (rawFile != null) {
+            FileUtil.del(rawFile);
+            rawFile = null;
+        }
+        // complete 成功时已全部移走，剩下的都是未完成的临时文件
+        tempFiles.values().forEach(FileUtil::del);
+        tempFiles.clear();
+    }
+
+    /**
+     * 已缓存的行首内容能否确定不是代码块标记
+     */
+    private static boolean cannotBeFence(CharSequence buffered) {
+        String head = buffered.toString().stripLeading();
+        if (head.isEmpty()) {
+            return false;
+        }
+        return !(FENCE.startsWith(head) || head.startsWith(FENCE));
+    }
+
+    /**
+     * 当前行的处理方式
+     */
+    private enum LineMode {
+        /**
+         * 行首内容尚不足以判断，暂存
+         */
+        BUFFERING,
+        /**
+         * 代码块内容行，直接写入目标文件
+         */
+        STREAMING,
+        /**
+         * 无需保存的行，直接丢弃
+         */
+        SKIPPING
+    }
+}
@@ -0,0 +1,197 @@
+package com.spring.aicodemother.core.screenshot;
+
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+import com.spring.aicodemother.utils.WebScreenshotUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 无头浏览器池
+ * WebDriver 不是线程安全的，每个浏览器同一时间只借给一个调用方：
+ * - 浏览器按需创建，总数不超过 pool-size，借用时最多等待 lease-timeout-seconds
+ * - 借出前检查会话是否存活，失效的浏览器直接销毁重建
+ * - 使用次数达到上限或执行中出现 WebDriverException 的浏览器归还时销毁，避免 Chrome 内存持续增长
+ */
+@Slf4j
+@Component
+public class BrowserPool {
+
+    private static final int DEFAULT_WIDTH = 1600;
+
+    private static final int DEFAULT_HEIGHT = 900;
+
+    @Value("${code.screenshot.pool-size:2}")
+    private int poolSize;
+
+    @Value("${code.screenshot.max-uses-per-browser:50}")
+    private int maxUsesPerBrowser;
+
+    @Value("${code.screenshot.lease-timeout-seconds:60}")
+    private long leaseTimeoutSeconds;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 空闲浏览器（后进先出，优先复用最近用过的）
+     */
+    private final BlockingDeque<PooledBrowser> idle = new LinkedBlockingDeque<>();
+
+    private final AtomicInteger leased = new AtomicInteger();
+
+    private Semaphore permits;
+
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(poolSize, true);
+        Gauge.builder("ai_code_screenshot_browsers", leased, AtomicInteger::get)
+                .description("截图浏览器数量")
+                .tag("state", "leased")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_screenshot_browsers", idle, BlockingDeque::size)
+                .description("截图浏览器数量")
+                .tag("state", "idle")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_screenshot_browser_utilization", this, pool -> (double) pool.leased.get() / pool.poolSize)
+                .description("截图浏览器池使用率")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        PooledBrowser browser;
+        while ((browser = idle.poll()) != null) {
+            browser.quit();
+        }
+    }
+
+    /**
+     * 借用一个浏览器执行操作，结束后自动归还
+     *
+     * @param action 使用浏览器的操作
+     * @return 操作结果
+     */
+    public <T> T execute(Function<WebDriver, T> action) {
+        PooledBrowser browser = lease();
+        boolean broken = false;
+        try {
+            return action.apply(browser.driver);
+        } catch (WebDriverException e) {
+            broken = true;
+            throw e;
+        } finally {
+            release(browser, broken);
+        }
+    }
+
+    private PooledBrowser lease() {
+        try {
+            if (closed || !permits.tryAcquire(leaseTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "截图浏览器繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待截图浏览器时被中断");
+        }
+        try {
+            PooledBrowser browser;
+            while ((browser = idle.pollFirst()) != null) {
+                if (browser.isAlive()) {
+                    break;
+                }
+                log.warn("截图浏览器会话已失效，销毁后重建");
+                recycle(browser, "unhealthy");
+            }
+            if (browser == null) {
+                browser = new PooledBrowser(WebScreenshotUtils.createChromeDriver(DEFAULT_WIDTH, DEFAULT_HEIGHT));
+            }
+            leased.incrementAndGet();
+            return browser;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledBrowser browser, boolean broken) {
+        leased.decrementAndGet();
+        try {
+            browser.uses++;
+            if (broken) {
+                recycle(browser, "error");
+            } else if (browser.uses >= maxUsesPerBrowser) {
+                recycle(browser, "max_uses");
+            } else if (closed) {
+                browser.quit();
+            } else {
+                // 卸载上一个页面，释放页面占用的内存
+                try {
+                    browser.driver.get("about:blank");
+                    idle.offerFirst(browser);
+                } catch (WebDriverException e) {
+                    recycle(browser, "error");
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recycle(PooledBrowser browser, String reason) {
+        Counter.builder("ai_code_screenshot_browser_recycled_total")
+                .description("销毁的截图浏览器数量")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        browser.quit();
+    }
+
+    /**
+     * 池中的浏览器
+     */
+    private static class PooledBrowser {
+        final WebDriver driver;
+        int uses;
+
+        PooledBrowser(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        boolean isAlive() {
+            try {
+                driver.getWindowHandle();
+                return true;
+            } catch (WebDriverException e) {
+                return false;
+            }
+        }
+
+        void quit() {
+            try {
+                driver.quit();
+            } catch (Exception e) {
+                log.warn("关闭截图浏览器失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.spring.aicodemother.core.screenshot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 应用封面截图调度器
+ * - 同时执行的截图任务数与浏览器池大小一致，其余任务按提交顺序排队
+ * - 同一应用在排队期间再次提交时合并为一次（保留最新的任务），连续部署只截图一次
+ * - 已开始执行的截图不受影响，之后提交的任务留在队列中，等它完成后才会执行，同一应用不会有两个截图同时进行，
+ *   旧截图不会覆盖新封面
+ */
+@Slf4j
+@Component
+public class ScreenshotScheduler {
+
+    @Value("${code.screenshot.pool-size:2}")
+    private int maxParallel;
+
+    @Value("${code.screenshot.max-queued:200}")
+    private int maxQueued;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 应用ID -> 等待中的截图任务（LinkedHashMap 保持提交顺序）
+     */
+    private final Map<Long, CaptureTask> pendingByApp = new LinkedHashMap<>();
+
+    /**
+     * 正在截图的应用ID，数量即占用的槽位数
+     */
+    private final Set<Long> runningApps = new HashSet<>();
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Timer queueWaitTimer;
+
+    private Counter coalescedCounter;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("ai_code_screenshot_queue_depth", this, ScreenshotScheduler::getQueuedCount)
+                .description("等待中的截图任务数")
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("ai_code_screenshot_queue_wait_seconds")
+                .description("截图任务排队等待时间")
+                .register(meterRegistry);
+        coalescedCounter = Counter.builder("ai_code_screenshot_coalesced_total")
+                .description("排队期间被合并的截图任务数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("ai_code_screenshot_rejected_total")
+                .description("队列已满被拒绝的截图任务数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * 提交截图任务（异步执行）
+     *
+     * @param appId   应用ID，排队中的同一应用任务会被合并
+     * @param capture 截图逻辑
+     * @return false 表示队列已满被拒绝
+     */
+    public synchronized boolean submit(Long appId, Runnable capture) {
+        CaptureTask existing = pendingByApp.get(appId);
+        if (existing != null) {
+            // 保留最早的入队时间，只替换为最新的截图逻辑
+            existing.capture = capture;
+            coalescedCounter.increment();
+            return true;
+        }
+        if (pendingByApp.size() >= maxQueued) {
+            rejectedCounter.increment();
+            log.warn("截图队列已满（{}），跳过应用 {} 的截图", maxQueued, appId);
+            return false;
+        }
+        pendingByApp.put(appId, new CaptureTask(capture));
+        dispatch();
+        return true;
+    }
+
+    /**
+     * 有空闲槽位时按提交顺序取出任务执行，跳过正在截图的应用（调用方需持有锁）
+     */
+    private void dispatch() {
+        Iterator<Map.Entry<Long, CaptureTask>> iterator = pendingByApp.entrySet().iterator();
+        while (runningApps.size() < maxParallel && iterator.hasNext()) {
+            Map.Entry<Long, CaptureTask> head = iterator.next();
+            Long appId = head.getKey();
+            if (runningApps.contains(appId)) {
+                // 等该应用当前的截图完成后再执行
+                continue;
+            }
+            iterator.remove();
+            runningApps.add(appId);
+            CaptureTask task = head.getValue();
+            workers.execute(() -> run(appId, task));
+        }
+    }
+
+    private void run(Long appId, CaptureTask task) {
+        queueWaitTimer.record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+        try {
+            task.capture.run();
+        } catch (Throwable e) {
+            log.error("应用 {} 截图失败: {}", appId, e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                runningApps.remove(appId);
+                // 重新调度，包括截图期间同一应用再次提交的任务
+                dispatch();
+            }
+        }
+    }
+
+    private synchronized int getQueuedCount() {
+        return pendingByApp.size();
+    }
+
+    /**
+     * 排队中的截图任务
+     */
+    private static class CaptureTask {
+        volatile Runnable capture;
+        final long enqueuedAt = System.nanoTime();
+
+        CaptureTask(Runnable capture) {
+            this.capture = capture;
+        }
+    }
+}
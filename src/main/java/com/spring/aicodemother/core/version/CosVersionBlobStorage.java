@@ -0,0 +1,51 @@
+package com.spring.aicodemother.core.version;
+
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+import com.spring.aicodemother.manager.CosManager;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 使用 COS 保存版本快照
+ */
+public class CosVersionBlobStorage implements VersionBlobStorage {
+
+    private final CosManager cosManager;
+
+    public CosVersionBlobStorage(CosManager cosManager) {
+        this.cosManager = cosManager;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return cosManager.doesObjectExist(key);
+    }
+
+    @Override
+    public void put(String key, byte[] bytes) {
+        if (cosManager.uploadBytes(key, bytes, "application/octet-stream") == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传版本快照失败: " + key);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return cosManager.getObjectBytes(key);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(String key) {
+        return cosManager.doesObjectExistAsync(key);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, byte[] bytes) {
+        return cosManager.uploadBytesAsync(key, bytes, "application/octet-stream").thenApply(url -> null);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(String key) {
+        return cosManager.getObjectBytesAsync(key);
+    }
+}
@@ -0,0 +1,61 @@
+package com.spring.aicodemother.core.version;
+
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * 使用本地目录保存版本快照（未配置 COS 时使用，目录结构与 COS 对象键一致）
+ */
+public class LocalVersionBlobStorage implements VersionBlobStorage {
+
+    private final Path root;
+
+    public LocalVersionBlobStorage(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public void put(String key, byte[] bytes) {
+        Path target = resolve(key);
+        try {
+            Files.createDirectories(target.getParent());
+            // 先写临时文件再改名，读取方不会看到写了一半的对象
+            Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入版本快照失败: " + key);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) {
+        try {
+            return Files.readAllBytes(resolve(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取版本快照失败: " + key);
+        }
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "非法的对象键: " + key);
+        }
+        return path;
+    }
+}
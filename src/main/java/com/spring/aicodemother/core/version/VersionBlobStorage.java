@@ -0,0 +1,48 @@
+package com.spring.aicodemother.core.version;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 版本快照的对象存储（按对象键读写字节内容）
+ */
+public interface VersionBlobStorage {
+
+    /**
+     * 对象是否已存在
+     */
+    boolean exists(String key);
+
+    /**
+     * 写入对象（已存在时覆盖）
+     */
+    void put(String key, byte[] bytes);
+
+    /**
+     * 读取对象
+     *
+     * @return 对象内容，不存在时返回 null
+     */
+    byte[] get(String key);
+
+    /**
+     * 异步查询对象是否存在，默认同步执行
+     */
+    default CompletableFuture<Boolean> existsAsync(String key) {
+        return CompletableFuture.completedFuture(exists(key));
+    }
+
+    /**
+     * 异步写入对象，默认同步执行
+     */
+    default CompletableFuture<Void> putAsync(String key, byte[] bytes) {
+        put(key, bytes);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 异步读取对象，默认同步执行
+     */
+    default CompletableFuture<byte[]> getAsync(String key) {
+        return CompletableFuture.completedFuture(get(key));
+    }
+}
@@ -0,0 +1,23 @@
+package com.spring.aicodemother.core.version;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 版本文件清单：相对路径（以 / 分隔）-> 文件内容的 sha256
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionManifest {
+
+    /**
+     * 代码生成类型（决定回滚时写回的目录）
+     */
+    private String codeGenType;
+
+    private Map<String, String> files;
+}
@@ -0,0 +1,370 @@
+package com.spring.aicodemother.core.version;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+import com.spring.aicodemother.manager.CosManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内容寻址的版本快照存储
+ * - 每个文件按内容 sha256 只保存一份（blobs/{hash}），不同版本、不同应用之间共享
+ * - 一个版本只保存 路径 -> 哈希 的清单，清单引用记录在 AppVersion.codeStorageUrl
+ * - 保存时跳过上一版本清单中已有的内容，只上传新内容（并行上传）
+ * - 回滚时并行取回内容不同的文件，只改写这些文件、删除目标版本中没有的文件
+ * 依赖目录（node_modules）和构建产物（dist）可重新生成，不纳入快照；回滚时保留依赖目录，
+ * 源码有变化时删除构建产物，避免继续提供新版本的构建结果，由调用方重新构建
+ */
+@Slf4j
+@Component
+public class VersionSnapshotStore {
+
+    /**
+     * 清单引用前缀，用于区分旧版本的整包 JSON 地址
+     */
+    public static final String MANIFEST_SCHEME = "manifest://";
+
+    private static final String BLOB_PREFIX = "app-versions/blobs/";
+
+    private static final String DIST_DIR = "dist";
+
+    private static final Set<String> IGNORED_NAMES = Set.of("node_modules", DIST_DIR, ".git", ".DS_Store");
+
+    /**
+     * 本地存储目录；未配置 COS 或显式配置此项时使用本地目录
+     */
+    @Value("${code.version-store.local-dir:}")
+    private String localDir;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private VersionBlobStorage storage;
+
+    /**
+     * 快照是否写入持久的共享存储（COS 或显式配置的目录）；否则只在本机临时目录，调用方应改存数据库
+     */
+    private boolean durable;
+
+    @PostConstruct
+    public void init() {
+        if (StrUtil.isBlank(localDir) && cosManager.isEnabled()) {
+            storage = new CosVersionBlobStorage(cosManager);
+            durable = true;
+        } else {
+            Path root = StrUtil.isBlank(localDir)
+                    ? Paths.get(System.getProperty("user.dir"), "tmp", "version_store")
+                    : Paths.get(localDir);
+            storage = new LocalVersionBlobStorage(root);
+            durable = StrUtil.isNotBlank(localDir);
+            log.info("版本快照使用本地存储: {}", root.toAbsolutePath());
+        }
+    }
+
+    /**
+     * 快照存储是否可用于保存版本；未配置 COS 且未指定存储目录时返回 false
+     */
+    public boolean isDurable() {
+        return durable;
+    }
+
+    /**
+     * 是否为内容寻址快照的清单引用
+     */
+    public static boolean isManifestRef(String ref) {
+        return ref != null && ref.startsWith(MANIFEST_SCHEME);
+    }
+
+    /**
+     * 保存代码目录的快照
+     *
+     * @param previousRef 上一版本的清单引用（可为空或旧格式地址），其中的内容不再检查是否已存在
+     * @return 本版本的清单引用
+     */
+    public String save(Long appId, int versionNum, String codeGenType, File codeDir, String previousRef) {
+        Map<String, Path> files = scan(codeDir.toPath());
+        Set<String> storedHashes = new HashSet<>();
+        if (isManifestRef(previousRef)) {
+            VersionManifest previous = loadManifest(previousRef);
+            if (previous != null && previous.getFiles() != null) {
+                storedHashes.addAll(previous.getFiles().values());
+            }
+        }
+
+        Map<String, String> manifestFiles = new LinkedHashMap<>();
+        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        AtomicInteger uploaded = new AtomicInteger();
+        AtomicLong uploadedBytes = new AtomicLong();
+        AtomicLong reusedBytes = new AtomicLong();
+        for (Map.Entry<String, Path> entry : files.entrySet()) {
+            byte[] bytes = readBytes(entry.getValue());
+            String hash = DigestUtil.sha256Hex(bytes);
+            manifestFiles.put(entry.getKey(), hash);
+            // 上一版本已有或本次已处理过的内容直接复用
+            if (!storedHashes.add(hash)) {
+                reusedBytes.addAndGet(bytes.length);
+                continue;
+            }
+            // 其余内容并行查询是否已被其他版本/应用保存，不存在时才上传
+            String key = BLOB_PREFIX + hash;
+            uploads.add(storage.existsAsync(key).thenCompose(exists -> {
+                if (exists) {
+                    reusedBytes.addAndGet(bytes.length);
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                uploaded.incrementAndGet();
+                uploadedBytes.addAndGet(bytes.length);
+                return storage.putAsync(key, bytes);
+            }));
+        }
+        // 全部上传成功后才写清单
+        await(uploads, "上传版本快照失败");
+
+        String manifestKey = String.format("app-versions/%d/manifests/v%d.json", appId, versionNum);
+        VersionManifest manifest = new VersionManifest(codeGenType, manifestFiles);
+        storage.put(manifestKey, JSONUtil.toJsonStr(manifest).getBytes(StandardCharsets.UTF_8));
+
+        blobCounter("uploaded").increment(uploaded.get());
+        blobCounter("reused").increment(files.size() - uploaded.get());
+        blobBytesCounter("uploaded").increment(uploadedBytes.get());
+        blobBytesCounter("reused").increment(reusedBytes.get());
+        log.info("版本快照已保存：appId={}, v{}, 文件 {} 个，上传 {} 个（{} 字节），复用 {} 个（{} 字节）",
+                appId, versionNum, files.size(), uploaded.get(), uploadedBytes.get(), files.size() - uploaded.get(), reusedBytes.get());
+        return MANIFEST_SCHEME + manifestKey;
+    }
+
+    /**
+     * 把代码目录打包为旧格式的整包 JSON（codeGenType + files[path, content]），快照存储不可用时存入数据库
+     * 与快照一样不包含依赖目录和构建产物
+     */
+    public String packToJson(String codeGenType, File codeDir) {
+        JSONArray filesArray = new JSONArray();
+        scan(codeDir.toPath()).forEach((path, file) -> {
+            JSONObject fileObj = new JSONObject();
+            fileObj.set("path", path);
+            fileObj.set("content", new String(readBytes(file), StandardCharsets.UTF_8));
+            filesArray.add(fileObj);
+        });
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.set("codeGenType", codeGenType);
+        jsonObject.set("files", filesArray);
+        jsonObject.set("totalFiles", filesArray.size());
+        return jsonObject.toString();
+    }
+
+    /**
+     * 读取清单
+     *
+     * @return 清单，不存在时返回 null
+     */
+    public VersionManifest loadManifest(String ref) {
+        if (!isManifestRef(ref)) {
+            return null;
+        }
+        byte[] bytes = storage.get(ref.substring(MANIFEST_SCHEME.length()));
+        return bytes == null ? null : JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), VersionManifest.class);
+    }
+
+    /**
+     * 把代码目录恢复为清单中的内容：先取回所有需要改写的文件，全部取到后再修改目录
+     * 有文件被改写或删除时同时删除构建产物目录（dist），Vue 项目需要重新构建
+     *
+     * @return 改写的文件数
+     */
+    public int restore(VersionManifest manifest, File codeDir) {
+        Path root = codeDir.toPath().toAbsolutePath().normalize();
+        Map<String, Path> current = Files.isDirectory(root) ? scan(root) : Map.of();
+        Map<String, String> target = manifest.getFiles() == null ? Map.of() : manifest.getFiles();
+
+        // 1. 并行取回内容不同的文件
+        Map<Path, CompletableFuture<byte[]>> fetches = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : target.entrySet()) {
+            Path file = root.resolve(entry.getKey()).normalize();
+            if (!file.startsWith(root)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "版本清单包含非法路径: " + entry.getKey());
+            }
+            Path existing = current.get(entry.getKey());
+            if (existing != null && entry.getValue().equals(DigestUtil.sha256Hex(readBytes(existing)))) {
+                continue;
+            }
+            String path = entry.getKey();
+            fetches.put(file, storage.getAsync(BLOB_PREFIX + entry.getValue()).thenApply(bytes -> {
+                if (bytes == null) {
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "版本文件内容缺失: " + path);
+                }
+                return bytes;
+            }));
+        }
+        await(fetches.values(), "读取版本快照失败");
+        Map<Path, byte[]> toWrite = new LinkedHashMap<>();
+        fetches.forEach((file, fetch) -> toWrite.put(file, fetch.join()));
+
+        // 2. 删除目标版本中没有的文件，再写入变化的文件
+        int deleted = 0;
+        try {
+            for (Map.Entry<String, Path> entry : current.entrySet()) {
+                if (!target.containsKey(entry.getKey())) {
+                    Files.deleteIfExists(entry.getValue());
+                    deleteEmptyParents(entry.getValue().getParent(), root);
+                    deleted++;
+                }
+            }
+            for (Map.Entry<Path, byte[]> entry : toWrite.entrySet()) {
+                Files.createDirectories(entry.getKey().getParent());
+                Files.write(entry.getKey(), entry.getValue());
+            }
+            if (deleted > 0 || !toWrite.isEmpty()) {
+                deleteRecursively(root.resolve(DIST_DIR));
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "写回版本文件失败: " + e.getMessage());
+        }
+        restoreCounter("written").increment(toWrite.size());
+        restoreCounter("deleted").increment(deleted);
+        restoreCounter("unchanged").increment(target.size() - toWrite.size());
+        log.info("版本已恢复到 {}：改写 {} 个文件，删除 {} 个，未变化 {} 个",
+                root, toWrite.size(), deleted, target.size() - toWrite.size());
+        return toWrite.size();
+    }
+
+    /**
+     * 列出目录下需要纳入快照的文件（相对路径 -> 文件），按路径排序
+     */
+    private static Map<String, Path> scan(Path root) {
+        Map<String, Path> files = new TreeMap<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(root) && IGNORED_NAMES.contains(dir.getFileName().toString())
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !IGNORED_NAMES.contains(file.getFileName().toString())) {
+                        files.put(root.relativize(file).toString().replace(File.separatorChar, '/'), file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取代码目录失败: " + e.getMessage());
+        }
+        return files;
+    }
+
+    private static byte[] readBytes(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取文件失败: " + file);
+        }
+    }
+
+    /**
+     * 等待所有传输完成，任一失败时抛出业务异常
+     */
+    private static void await(Collection<? extends CompletableFuture<?>> futures, String message) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            log.error(message, e.getCause());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, message);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void deleteEmptyParents(Path dir, Path root) throws IOException {
+        while (dir != null && !dir.equals(root) && dir.startsWith(root)) {
+            try (var entries = Files.list(dir)) {
+                if (entries.findAny().isPresent()) {
+                    return;
+                }
+            }
+            Files.delete(dir);
+            dir = dir.getParent();
+        }
+    }
+
+    private Counter blobCounter(String result) {
+        return Counter.builder("ai_code_version_blob_total")
+                .description("保存版本快照时上传/复用的文件数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter blobBytesCounter(String result) {
+        return Counter.builder("ai_code_version_blob_bytes_total")
+                .description("保存版本快照时上传/复用的字节数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter restoreCounter(String action) {
+        return Counter.builder("ai_code_version_restore_files_total")
+                .description("版本回滚时改写/删除/未变化的文件数")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+}
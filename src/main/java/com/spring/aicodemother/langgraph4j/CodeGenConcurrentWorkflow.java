@@ -1,50 +1,80 @@
 package com.spring.aicodemother.langgraph4j;
 
-import cn.hutool.core.thread.ExecutorBuilder;
-import cn.hutool.core.thread.ThreadFactoryBuilder;
 import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.langgraph4j.model.QualityResult;
 import com.spring.aicodemother.langgraph4j.node.*;
 import com.spring.aicodemother.langgraph4j.node.concurrent.*;
+import com.spring.aicodemother.langgraph4j.quality.CodeQualityGate;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
 import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.*;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 import org.bsc.langgraph4j.prebuilt.MessagesStateGraph;
+import org.springframework.stereotype.Component;
 
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.bsc.langgraph4j.StateGraph.END;
 import static org.bsc.langgraph4j.StateGraph.START;
 import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
 
+/**
+ * 并发代码生成工作流
+ * 工作流在启动时编译一次，所有请求共享；图片收集节点在共享的 {@link WorkflowNodeExecutor} 中并行执行
+ */
 @Slf4j
+@Component
 public class CodeGenConcurrentWorkflow {
 
+    private static final String WORKFLOW_NAME = "concurrent";
+
+    @Resource
+    private WorkflowNodeExecutor workflowNodeExecutor;
+
+    @Resource
+    private CodeQualityGate codeQualityGate;
+
+    private CompiledGraph<MessagesState<String>> workflow;
+
+    private RunnableConfig runnableConfig;
+
+    @PostConstruct
+    public void init() {
+        workflow = createWorkflow();
+        // 配置并发执行：image_plan 之后的并行分支交给共享执行器
+        runnableConfig = RunnableConfig.builder()
+                .addParallelNodeExecutor("image_plan", workflowNodeExecutor)
+                .build();
+        if (log.isDebugEnabled()) {
+            log.debug("并发工作流图:\n{}", workflow.getGraph(GraphRepresentation.Type.MERMAID).content());
+        }
+    }
+
     /**
      * 创建并发工作流
      */
-    public CompiledGraph<MessagesState<String>> createWorkflow() {
+    private CompiledGraph<MessagesState<String>> createWorkflow() {
         try {
             return new MessagesStateGraph<String>()
                     // 添加节点
-                    .addNode("image_plan", ImagePlanNode.create())
-                    .addNode("prompt_enhancer", PromptEnhancerNode.create())
-                    .addNode("router", RouterNode.create())
-                    .addNode("code_generator", CodeGeneratorNode.create())
-                    .addNode("code_quality_check", CodeQualityCheckNode.create())
-                    .addNode("project_builder", ProjectBuilderNode.create())
+                    .addNode("image_plan", timed("image_plan", ImagePlanNode.create()))
+                    .addNode("prompt_enhancer", timed("prompt_enhancer", PromptEnhancerNode.create()))
+                    .addNode("router", timed("router", RouterNode.create()))
+                    .addNode("code_generator", timed("code_generator", CodeGeneratorNode.create()))
+                    .addNode("code_quality_check", timed("code_quality_check", CodeQualityCheckNode.create()))
+                    .addNode("project_builder", timed("project_builder", ProjectBuilderNode.create()))
 
                     // 添加并发图片收集节点
-                    .addNode("content_image_collector", ContentImageCollectorNode.create())
-                    .addNode("illustration_collector", IllustrationCollectorNode.create())
-                    .addNode("diagram_collector", DiagramCollectorNode.create())
-                    .addNode("logo_collector", LogoCollectorNode.create())
-                    .addNode("image_aggregator", ImageAggregatorNode.create())
+                    .addNode("content_image_collector", timed("content_image_collector", ContentImageCollectorNode.create()))
+                    .addNode("illustration_collector", timed("illustration_collector", IllustrationCollectorNode.create()))
+                    .addNode("diagram_collector", timed("diagram_collector", DiagramCollectorNode.create()))
+                    .addNode("logo_collector", timed("logo_collector", LogoCollectorNode.create()))
+                    .addNode("image_aggregator", timed("image_aggregator", ImageAggregatorNode.create()))
 
                     // 添加边
                     .addEdge(START, "image_plan")
@@ -86,26 +116,13 @@ public class CodeGenConcurrentWorkflow {
      * 执行并发工作流
      */
     public WorkflowContext executeWorkflow(String originalPrompt) {
-        CompiledGraph<MessagesState<String>> workflow = createWorkflow();
         WorkflowContext initialContext = WorkflowContext.builder()
                 .originalPrompt(originalPrompt)
                 .currentStep("初始化")
                 .build();
-        GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-        log.info("并发工作流图:\n{}", graph.content());
         log.info("开始执行并发代码生成工作流");
         WorkflowContext finalContext = null;
         int stepCounter = 1;
-        // 配置并发执行
-        ExecutorService pool = ExecutorBuilder.create()
-                .setCorePoolSize(10)
-                .setMaxPoolSize(20)
-                .setWorkQueue(new LinkedBlockingQueue<>(100))
-                .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("Parallel-Image-Collect").build())
-                .build();
-        RunnableConfig runnableConfig = RunnableConfig.builder()
-                .addParallelNodeExecutor("image_plan", pool)
-                .build();
         for (NodeOutput<MessagesState<String>> step : workflow.stream(
                 Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext),
                 runnableConfig
@@ -122,6 +139,10 @@ public class CodeGenConcurrentWorkflow {
         return finalContext;
     }
 
+    private AsyncNodeAction<MessagesState<String>> timed(String node, AsyncNodeAction<MessagesState<String>> action) {
+        return workflowNodeExecutor.timed(WORKFLOW_NAME, node, action);
+    }
+
     /**
      * 路由函数：根据质检结果决定下一步
      */
@@ -130,10 +151,14 @@ public class CodeGenConcurrentWorkflow {
         QualityResult qualityResult = context.getQualityResult();
 
         if (qualityResult == null || !qualityResult.getIsValid()) {
-            log.error("代码质检失败，需要重新生成代码");
-            return "fail";
+            if (codeQualityGate.shouldRetry(context)) {
+                log.error("代码质检失败，需要重新生成代码");
+                return "fail";
+            }
+            log.warn("代码质检失败且已达到重试上限，继续后续流程");
+        } else {
+            log.info("代码质检通过，继续后续流程");
         }
-        log.info("代码质检通过，继续后续流程");
         CodeGenTypeEnum generationType = context.getGenerationType();
         if (generationType == CodeGenTypeEnum.VUE_PROJECT) {
             return "build";
@@ -5,12 +5,17 @@ import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.langgraph4j.model.QualityResult;
 import com.spring.aicodemother.langgraph4j.node.*;
 import com.spring.aicodemother.langgraph4j.node.concurrent.*;
+import com.spring.aicodemother.langgraph4j.quality.CodeQualityGate;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
 import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.*;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 import org.bsc.langgraph4j.prebuilt.MessagesStateGraph;
+import org.springframework.stereotype.Component;
 
 import java.util.Map;
 
@@ -19,18 +24,43 @@ import static org.bsc.langgraph4j.StateGraph.START;
 import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
 
 /**
- * 这段代码仅供参考，未进行并发相关配置，了解即可
+ * 子图工作流（这段代码仅供参考，了解即可）
+ * 启动时编译一次，各子图分支在共享的 {@link WorkflowNodeExecutor} 中并行执行
  */
 @Slf4j
+@Component
 public class CodeGenSubgraphWorkflow {
 
+    private static final String WORKFLOW_NAME = "subgraph";
+
+    @Resource
+    private WorkflowNodeExecutor workflowNodeExecutor;
+
+    @Resource
+    private CodeQualityGate codeQualityGate;
+
+    private CompiledGraph<MessagesState<String>> workflow;
+
+    private RunnableConfig runnableConfig;
+
+    @PostConstruct
+    public void init() {
+        workflow = createWorkflow();
+        runnableConfig = RunnableConfig.builder()
+                .addParallelNodeExecutor("image_plan", workflowNodeExecutor)
+                .build();
+        if (log.isDebugEnabled()) {
+            log.debug("子图工作流图:\n{}", workflow.getGraph(GraphRepresentation.Type.MERMAID).content());
+        }
+    }
+
     /**
      * 创建内容图片收集子图
      */
     private StateGraph<MessagesState<String>> createContentImageSubgraph() {
         try {
             return new MessagesStateGraph<String>()
-                    .addNode("content_collect", ContentImageCollectorNode.create())
+                    .addNode("content_collect", timed("content_collect", ContentImageCollectorNode.create()))
                     .addEdge(START, "content_collect")
                     .addEdge("content_collect", END);
         } catch (GraphStateException e) {
@@ -44,7 +74,7 @@ public class CodeGenSubgraphWorkflow {
     private StateGraph<MessagesState<String>> createIllustrationSubgraph() {
         try {
             return new MessagesStateGraph<String>()
-                    .addNode("illustration_collect", IllustrationCollectorNode.create())
+                    .addNode("illustration_collect", timed("illustration_collect", IllustrationCollectorNode.create()))
                     .addEdge(START, "illustration_collect")
                     .addEdge("illustration_collect", END);
         } catch (GraphStateException e) {
@@ -58,7 +88,7 @@ public class CodeGenSubgraphWorkflow {
     private StateGraph<MessagesState<String>> createDiagramSubgraph() {
         try {
             return new MessagesStateGraph<String>()
-                    .addNode("diagram_generate", DiagramCollectorNode.create())
+                    .addNode("diagram_generate", timed("diagram_generate", DiagramCollectorNode.create()))
                     .addEdge(START, "diagram_generate")
                     .addEdge("diagram_generate", END);
         } catch (GraphStateException e) {
@@ -72,7 +102,7 @@ public class CodeGenSubgraphWorkflow {
     private StateGraph<MessagesState<String>> createLogoSubgraph() {
         try {
             return new MessagesStateGraph<String>()
-                    .addNode("logo_generate", LogoCollectorNode.create())
+                    .addNode("logo_generate", timed("logo_generate", LogoCollectorNode.create()))
                     .addEdge(START, "logo_generate")
                     .addEdge("logo_generate", END);
         } catch (GraphStateException e) {
@@ -83,7 +113,7 @@ public class CodeGenSubgraphWorkflow {
     /**
      * 创建子图工作流
      */
-    public CompiledGraph<MessagesState<String>> createWorkflow() {
+    private CompiledGraph<MessagesState<String>> createWorkflow() {
         try {
             // 获取各个未编译的子图（跟父图完全共享状态）
             StateGraph<MessagesState<String>> contentImageSubgraph = createContentImageSubgraph();
@@ -93,12 +123,12 @@ public class CodeGenSubgraphWorkflow {
 
             return new MessagesStateGraph<String>()
                     // 添加常规节点
-                    .addNode("image_plan", ImagePlanNode.create())
-                    .addNode("prompt_enhancer", PromptEnhancerNode.create())
-                    .addNode("router", RouterNode.create())
-                    .addNode("code_generator", CodeGeneratorNode.create())
-                    .addNode("code_quality_check", CodeQualityCheckNode.create())
-                    .addNode("project_builder", ProjectBuilderNode.create())
+                    .addNode("image_plan", timed("image_plan", ImagePlanNode.create()))
+                    .addNode("prompt_enhancer", timed("prompt_enhancer", PromptEnhancerNode.create()))
+                    .addNode("router", timed("router", RouterNode.create()))
+                    .addNode("code_generator", timed("code_generator", CodeGeneratorNode.create()))
+                    .addNode("code_quality_check", timed("code_quality_check", CodeQualityCheckNode.create()))
+                    .addNode("project_builder", timed("project_builder", ProjectBuilderNode.create()))
                     
                     // 添加编译后的子图作为节点
                     .addNode("content_image_subgraph", contentImageSubgraph)
@@ -107,7 +137,7 @@ public class CodeGenSubgraphWorkflow {
                     .addNode("logo_subgraph", logoSubgraph)
                     
                     // 添加图片聚合节点
-                    .addNode("image_aggregator", ImageAggregatorNode.create())
+                    .addNode("image_aggregator", timed("image_aggregator", ImageAggregatorNode.create()))
 
                     // 添加边 - 串行部分
                     .addEdge(START, "image_plan")
@@ -146,6 +176,10 @@ public class CodeGenSubgraphWorkflow {
         }
     }
 
+    private AsyncNodeAction<MessagesState<String>> timed(String node, AsyncNodeAction<MessagesState<String>> action) {
+        return workflowNodeExecutor.timed(WORKFLOW_NAME, node, action);
+    }
+
     /**
      * 路由函数：根据质检结果决定下一步
      */
@@ -154,11 +188,14 @@ public class CodeGenSubgraphWorkflow {
         QualityResult qualityResult = context.getQualityResult();
 
         if (qualityResult == null || !qualityResult.getIsValid()) {
-            log.error("代码质检失败，需要重新生成代码");
-            return "fail";
+            if (codeQualityGate.shouldRetry(context)) {
+                log.error("代码质检失败，需要重新生成代码");
+                return "fail";
+            }
+            log.warn("代码质检失败且已达到重试上限，继续后续流程");
+        } else {
+            log.info("代码质检通过，继续后续流程");
         }
-
-        log.info("代码质检通过，继续后续流程");
         CodeGenTypeEnum generationType = context.getGenerationType();
         if (generationType == CodeGenTypeEnum.VUE_PROJECT) {
             return "build";
@@ -171,21 +208,19 @@ public class CodeGenSubgraphWorkflow {
      * 执行子图工作流
      */
     public WorkflowContext executeWorkflow(String originalPrompt) {
-        CompiledGraph<MessagesState<String>> workflow = createWorkflow();
-
         WorkflowContext initialContext = WorkflowContext.builder()
                 .originalPrompt(originalPrompt)
                 .currentStep("初始化")
                 .build();
 
-        GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-        log.info("子图工作流图:\n{}", graph.content());
         log.info("开始执行子图代码生成工作流");
 
         WorkflowContext finalContext = null;
         int stepCounter = 1;
         for (NodeOutput<MessagesState<String>> step : workflow.stream(
-                Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext))) {
+                Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext),
+                runnableConfig
+        )) {
             log.info("--- 第 {} 步完成 ---", stepCounter);
             WorkflowContext currentContext = WorkflowContext.getContext(step.state());
             if (currentContext != null) {
@@ -5,15 +5,20 @@ import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.langgraph4j.model.QualityResult;
 import com.spring.aicodemother.langgraph4j.node.*;
+import com.spring.aicodemother.langgraph4j.quality.CodeQualityGate;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
 import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.CompiledGraph;
 import org.bsc.langgraph4j.GraphRepresentation;
 import org.bsc.langgraph4j.GraphStateException;
 import org.bsc.langgraph4j.NodeOutput;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 import org.bsc.langgraph4j.prebuilt.MessagesStateGraph;
+import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import reactor.core.publisher.Flux;
 
@@ -24,22 +29,44 @@ import static org.bsc.langgraph4j.StateGraph.END;
 import static org.bsc.langgraph4j.StateGraph.START;
 import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
 
+/**
+ * 代码生成工作流（启动时编译一次，所有请求共享）
+ */
 @Slf4j
+@Component
 public class CodeGenWorkflow {
 
+    private static final String WORKFLOW_NAME = "default";
+
+    @Resource
+    private WorkflowNodeExecutor workflowNodeExecutor;
+
+    @Resource
+    private CodeQualityGate codeQualityGate;
+
+    private CompiledGraph<MessagesState<String>> workflow;
+
+    @PostConstruct
+    public void init() {
+        workflow = createWorkflow();
+        if (log.isDebugEnabled()) {
+            log.debug("工作流图:\n{}", workflow.getGraph(GraphRepresentation.Type.MERMAID).content());
+        }
+    }
+
     /**
      * 创建完整的工作流
      */
-    public CompiledGraph<MessagesState<String>> createWorkflow() {
+    private CompiledGraph<MessagesState<String>> createWorkflow() {
         try {
             return new MessagesStateGraph<String>()
                     // 添加节点 - 使用完整实现的节点
-                    .addNode("image_collector", ImageCollectorNode.create())
-                    .addNode("prompt_enhancer", PromptEnhancerNode.create())
-                    .addNode("router", RouterNode.create())
-                    .addNode("code_generator", CodeGeneratorNode.create())
-                    .addNode("code_quality_check", CodeQualityCheckNode.create())
-                    .addNode("project_builder", ProjectBuilderNode.create())
+                    .addNode("image_collector", timed("image_collector", ImageCollectorNode.create()))
+                    .addNode("prompt_enhancer", timed("prompt_enhancer", PromptEnhancerNode.create()))
+                    .addNode("router", timed("router", RouterNode.create()))
+                    .addNode("code_generator", timed("code_generator", CodeGeneratorNode.create()))
+                    .addNode("code_quality_check", timed("code_quality_check", CodeQualityCheckNode.create()))
+                    .addNode("project_builder", timed("project_builder", ProjectBuilderNode.create()))
                     // 添加边
                     .addEdge(START, "image_collector")
                     .addEdge("image_collector", "prompt_enhancer")
@@ -67,16 +94,12 @@ public class CodeGenWorkflow {
      * 执行工作流
      */
     public WorkflowContext executeWorkflow(String originalPrompt) {
-        CompiledGraph<MessagesState<String>> workflow = createWorkflow();
-
         // 初始化 WorkflowContext
         WorkflowContext initialContext = WorkflowContext.builder()
                 .originalPrompt(originalPrompt)
                 .currentStep("初始化")
                 .build();
 
-        GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-        log.info("工作流图:\n{}", graph.content());
         log.info("开始执行代码生成工作流");
 
         WorkflowContext finalContext = null;
@@ -103,7 +126,6 @@ public class CodeGenWorkflow {
         return Flux.create(sink -> {
             Thread.startVirtualThread(() -> {
                 try {
-                    CompiledGraph<MessagesState<String>> workflow = createWorkflow();
                     WorkflowContext initialContext = WorkflowContext.builder()
                             .originalPrompt(originalPrompt)
                             .currentStep("初始化")
@@ -112,8 +134,6 @@ public class CodeGenWorkflow {
                             "message", "开始执行代码生成工作流",
                             "originalPrompt", originalPrompt
                     )));
-                    GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-                    log.info("工作流图:\n{}", graph.content());
 
                     int stepCounter = 1;
                     for (NodeOutput<MessagesState<String>> step : workflow.stream(
@@ -166,7 +186,6 @@ public class CodeGenWorkflow {
         SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
         Thread.startVirtualThread(() -> {
             try {
-                CompiledGraph<MessagesState<String>> workflow = createWorkflow();
                 WorkflowContext initialContext = WorkflowContext.builder()
                         .originalPrompt(originalPrompt)
                         .currentStep("初始化")
@@ -175,8 +194,6 @@ public class CodeGenWorkflow {
                         "message", "开始执行代码生成工作流",
                         "originalPrompt", originalPrompt
                 ));
-                GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-                log.info("工作流图:\n{}", graph.content());
 
                 int stepCounter = 1;
                 for (NodeOutput<MessagesState<String>> step : workflow.stream(
@@ -222,14 +239,21 @@ public class CodeGenWorkflow {
         }
     }
 
+    private AsyncNodeAction<MessagesState<String>> timed(String node, AsyncNodeAction<MessagesState<String>> action) {
+        return workflowNodeExecutor.timed(WORKFLOW_NAME, node, action);
+    }
 
     private String routeAfterQualityCheck(MessagesState<String> state) {
         WorkflowContext context = WorkflowContext.getContext(state);
         QualityResult qualityResult = context.getQualityResult();
-        // 如果质检失败，重新生成代码
+        // 如果质检失败且还有重试次数，重新生成代码
         if (qualityResult == null || !qualityResult.getIsValid()) {
-            log.error("代码质检失败，需要重新生成代码");
-            return "fail";
+            if (codeQualityGate.shouldRetry(context)) {
+                log.error("代码质检失败，需要重新生成代码");
+                return "fail";
+            }
+            log.warn("代码质检失败且已达到重试上限，继续后续流程");
+            return routeBuildOrSkip(state);
         }
         // 质检通过，使用原有的构建路由逻辑
         log.info("代码质检通过，继续后续流程");
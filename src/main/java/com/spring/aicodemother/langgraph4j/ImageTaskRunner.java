@@ -0,0 +1,168 @@
+package com.spring.aicodemother.langgraph4j;
+
+import com.spring.aicodemother.langgraph4j.model.ImageResource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 图片收集任务并发执行器
+ * - 同一收集节点内的任务在虚拟线程中并发执行，节点耗时取决于最慢的任务而不是所有任务之和
+ * - 每个图片来源单独限制并发数，避免触发第三方接口限流或同时启动过多 mmdc 进程
+ * - 单个任务超时后中断并跳过，其余任务的结果照常返回（按任务顺序合并）
+ */
+@Slf4j
+@Component
+public class ImageTaskRunner {
+
+    public static final String CONTENT = "content";
+
+    public static final String ILLUSTRATION = "illustration";
+
+    public static final String DIAGRAM = "diagram";
+
+    public static final String LOGO = "logo";
+
+    @Value("${code.image-collect.task-timeout-seconds:30}")
+    private long taskTimeoutSeconds;
+
+    @Value("${code.image-collect.max-concurrency.content:4}")
+    private int contentConcurrency;
+
+    @Value("${code.image-collect.max-concurrency.illustration:4}")
+    private int illustrationConcurrency;
+
+    @Value("${code.image-collect.max-concurrency.diagram:2}")
+    private int diagramConcurrency;
+
+    @Value("${code.image-collect.max-concurrency.logo:2}")
+    private int logoConcurrency;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 到达超时时间后中断执行中的任务
+     */
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("image-task-watchdog").daemon().factory());
+
+    private Map<String, Semaphore> providerLimits;
+
+    @PostConstruct
+    public void init() {
+        providerLimits = Map.of(
+                CONTENT, new Semaphore(contentConcurrency),
+                ILLUSTRATION, new Semaphore(illustrationConcurrency),
+                DIAGRAM, new Semaphore(diagramConcurrency),
+                LOGO, new Semaphore(logoConcurrency)
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 并发执行一组图片收集任务，返回所有成功任务的结果
+     *
+     * @param provider 图片来源（决定并发上限）
+     * @param tasks    任务列表
+     * @param call     单个任务的执行逻辑
+     */
+    public <T> List<ImageResource> runAll(String provider, List<T> tasks, Function<T, List<ImageResource>> call) {
+        return join(submitAll(provider, tasks, call));
+    }
+
+    /**
+     * 提交一组任务但不等待，可与其他来源的任务合并后再统一 {@link #join}
+     */
+    public <T> List<Future<List<ImageResource>>> submitAll(String provider, List<T> tasks,
+                                                         Function<T, List<ImageResource>> call) {
+        List<Future<List<ImageResource>>> futures = new ArrayList<>();
+        if (tasks == null || tasks.isEmpty()) {
+            return futures;
+        }
+        Semaphore limit = providerLimits.get(provider);
+        for (T task : tasks) {
+            futures.add(workers.submit(() -> runTask(provider, limit, () -> call.apply(task))));
+        }
+        return futures;
+    }
+
+    /**
+     * 等待任务完成并按提交顺序合并结果，失败或超时的任务被跳过
+     */
+    public List<ImageResource> join(List<Future<List<ImageResource>>> futures) {
+        List<ImageResource> images = new ArrayList<>();
+        for (Future<List<ImageResource>> future : futures) {
+            try {
+                List<ImageResource> result = future.get();
+                if (result != null) {
+                    images.addAll(result);
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.warn("图片收集任务失败: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+        return images;
+    }
+
+    private List<ImageResource> runTask(String provider, Semaphore limit, Callable<List<ImageResource>> call)
+            throws Exception {
+        limit.acquire();
+        long start = System.nanoTime();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Thread worker = Thread.currentThread();
+        ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+            timedOut.set(true);
+            worker.interrupt();
+        }, taskTimeoutSeconds, TimeUnit.SECONDS);
+        String status = "error";
+        try {
+            List<ImageResource> result = call.call();
+            if (!timeout.cancel(false)) {
+                // 工具内部会吞掉中断异常，看门狗已触发时按超时处理，丢弃可能不完整的结果
+                status = "timeout";
+                log.warn("图片收集任务超时（{} 秒）: {}", taskTimeoutSeconds, provider);
+                return List.of();
+            }
+            status = "success";
+            return result;
+        } finally {
+            timeout.cancel(false);
+            // 清除看门狗可能留下的中断标记
+            Thread.interrupted();
+            limit.release();
+            if (timedOut.get()) {
+                status = "timeout";
+            }
+            Timer.builder("ai_code_image_task_duration_seconds")
+                    .description("图片收集任务耗时")
+                    .tag("provider", provider)
+                    .tag("status", status)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.spring.aicodemother.langgraph4j;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
+import org.bsc.langgraph4j.state.AgentState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作流节点执行器（所有工作流共享）
+ * - 并行分支节点在虚拟线程中执行，同时执行的节点数由信号量限制，超出的节点排队等待
+ * - 记录节点排队时间与各节点执行耗时
+ */
+@Slf4j
+@Component
+public class WorkflowNodeExecutor implements Executor {
+
+    @Value("${code.workflow.max-parallel-nodes:16}")
+    private int maxParallelNodes;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger waitingCount = new AtomicInteger();
+
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    private Semaphore permits;
+
+    private Timer queueWaitTimer;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxParallelNodes, true);
+        queueWaitTimer = Timer.builder("ai_code_workflow_node_queue_wait_seconds")
+                .description("并行节点排队等待时间")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_workflow_nodes", waitingCount, AtomicInteger::get)
+                .description("工作流并行节点数")
+                .tag("state", "waiting")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_workflow_nodes", runningCount, AtomicInteger::get)
+                .description("工作流并行节点数")
+                .tag("state", "running")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long submittedAt = System.nanoTime();
+        waitingCount.incrementAndGet();
+        workers.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                waitingCount.decrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            waitingCount.decrementAndGet();
+            runningCount.incrementAndGet();
+            queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            try {
+                command.run();
+            } finally {
+                runningCount.decrementAndGet();
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * 包装节点，记录执行耗时（ai_code_workflow_node_duration_seconds）
+     *
+     * @param workflow 工作流名称
+     * @param node     节点名称
+     * @param action   节点逻辑
+     */
+    public <S extends AgentState> AsyncNodeAction<S> timed(String workflow, String node, AsyncNodeAction<S> action) {
+        return state -> {
+            long start = System.nanoTime();
+            CompletableFuture<Map<String, Object>> result;
+            try {
+                result = action.apply(state);
+            } catch (RuntimeException e) {
+                recordNode(workflow, node, "error", start);
+                throw e;
+            }
+            return result.whenComplete((output, error) ->
+                    recordNode(workflow, node, error == null ? "success" : "error", start));
+        };
+    }
+
+    private void recordNode(String workflow, String node, String status, long start) {
+        Timer.builder("ai_code_workflow_node_duration_seconds")
+                .description("工作流节点执行耗时")
+                .tag("workflow", workflow)
+                .tag("node", node)
+                .tag("status", status)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
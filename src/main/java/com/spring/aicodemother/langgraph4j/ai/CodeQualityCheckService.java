@@ -1,6 +1,7 @@
 package com.spring.aicodemother.langgraph4j.ai;
 
 import com.spring.aicodemother.langgraph4j.model.QualityResult;
+import dev.langchain4j.service.Result;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.UserMessage;
 
@@ -8,8 +9,8 @@ public interface CodeQualityCheckService {
 
     /**
      * 检查代码质量
-     * AI 会分析代码并返回质量检查结果
+     * AI 会分析代码并返回质量检查结果（附带 token 用量）
      */
     @SystemMessage(fromResource = "prompt/code-quality-check-system-prompt.txt")
-    QualityResult checkCodeQuality(@UserMessage String codeContent);
+    Result<QualityResult> checkCodeQuality(@UserMessage String codeContent);
 }
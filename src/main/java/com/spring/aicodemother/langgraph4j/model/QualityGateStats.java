@@ -0,0 +1,61 @@
+package com.spring.aicodemother.langgraph4j.model;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 单次工作流中代码质检的累计统计
+ */
+@Data
+public class QualityGateStats implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 已执行的质检轮数
+     */
+    private int rounds;
+
+    /**
+     * 实际调用 AI 的次数
+     */
+    private int llmCalls;
+
+    /**
+     * 各轮全量发送时的内容长度之和（字符）
+     */
+    private long fullChars;
+
+    /**
+     * 实际发送给 AI 的内容长度之和（字符）
+     */
+    private long sentChars;
+
+    /**
+     * AI 实际消耗的输入 token
+     */
+    private long inputTokens;
+
+    /**
+     * 估算节省的输入 token（按本次工作流实测的 token/字符 比例换算）
+     */
+    private long savedTokens;
+
+    /**
+     * 本地预检耗时（毫秒）
+     */
+    private long localMillis;
+
+    /**
+     * AI 检查耗时（毫秒）
+     */
+    private long llmMillis;
+
+    /**
+     * 跳过 AI 检查估算节省的耗时（毫秒，按 AI 检查的平均耗时计）
+     */
+    private long savedMillis;
+}
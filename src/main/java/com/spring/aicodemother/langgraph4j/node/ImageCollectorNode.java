@@ -1,5 +1,6 @@
 package com.spring.aicodemother.langgraph4j.node;
 
+import com.spring.aicodemother.langgraph4j.ImageTaskRunner;
 import com.spring.aicodemother.langgraph4j.ai.ImageCollectionPlanService;
 import com.spring.aicodemother.langgraph4j.model.ImageCollectionPlan;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
@@ -15,7 +16,7 @@ import org.bsc.langgraph4j.prebuilt.MessagesState;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
 
@@ -34,52 +35,36 @@ public class ImageCollectorNode {
                 ImageCollectionPlan plan = planService.planImageCollection(originalPrompt);
                 log.info("获取到图片收集计划，开始并发执行");
 
-                // 第二步：并发执行各种图片收集任务
-                List<CompletableFuture<List<ImageResource>>> futures = new ArrayList<>();
+                // 第二步：并发执行各种图片收集任务（各来源分别限流）
+                ImageTaskRunner taskRunner = SpringContextUtil.getBean(ImageTaskRunner.class);
+                List<Future<List<ImageResource>>> futures = new ArrayList<>();
                 // 并发执行内容图片搜索
                 if (plan.getContentImageTasks() != null) {
                     ImageSearchTool imageSearchTool = SpringContextUtil.getBean(ImageSearchTool.class);
-                    for (ImageCollectionPlan.ImageSearchTask task : plan.getContentImageTasks()) {
-                        futures.add(CompletableFuture.supplyAsync(() ->
-                                imageSearchTool.searchContentImages(task.query())));
-                    }
+                    futures.addAll(taskRunner.submitAll(ImageTaskRunner.CONTENT, plan.getContentImageTasks(),
+                            task -> imageSearchTool.searchContentImages(task.query())));
                 }
                 // 并发执行插画图片搜索
                 if (plan.getIllustrationTasks() != null) {
                     UndrawIllustrationTool illustrationTool = SpringContextUtil.getBean(UndrawIllustrationTool.class);
-                    for (ImageCollectionPlan.IllustrationTask task : plan.getIllustrationTasks()) {
-                        futures.add(CompletableFuture.supplyAsync(() ->
-                                illustrationTool.searchIllustrations(task.query())));
-                    }
+                    futures.addAll(taskRunner.submitAll(ImageTaskRunner.ILLUSTRATION, plan.getIllustrationTasks(),
+                            task -> illustrationTool.searchIllustrations(task.query())));
                 }
                 // 并发执行架构图生成
                 if (plan.getDiagramTasks() != null) {
                     MermaidDiagramTool diagramTool = SpringContextUtil.getBean(MermaidDiagramTool.class);
-                    for (ImageCollectionPlan.DiagramTask task : plan.getDiagramTasks()) {
-                        futures.add(CompletableFuture.supplyAsync(() ->
-                                diagramTool.generateMermaidDiagram(task.mermaidCode(), task.description())));
-                    }
+                    futures.addAll(taskRunner.submitAll(ImageTaskRunner.DIAGRAM, plan.getDiagramTasks(),
+                            task -> diagramTool.generateMermaidDiagram(task.mermaidCode(), task.description())));
                 }
                 // 并发执行Logo生成
                 if (plan.getLogoTasks() != null) {
                     LogoGeneratorTool logoTool = SpringContextUtil.getBean(LogoGeneratorTool.class);
-                    for (ImageCollectionPlan.LogoTask task : plan.getLogoTasks()) {
-                        futures.add(CompletableFuture.supplyAsync(() ->
-                                logoTool.generateLogos(task.description())));
-                    }
+                    futures.addAll(taskRunner.submitAll(ImageTaskRunner.LOGO, plan.getLogoTasks(),
+                            task -> logoTool.generateLogos(task.description())));
                 }
 
-                // 等待所有任务完成并收集结果
-                CompletableFuture<Void> allTasks = CompletableFuture.allOf(
-                        futures.toArray(new CompletableFuture[0]));
-                allTasks.join();
-                // 收集所有结果
-                for (CompletableFuture<List<ImageResource>> future : futures) {
-                    List<ImageResource> images = future.get();
-                    if (images != null) {
-                        collectedImages.addAll(images);
-                    }
-                }
+                // 等待所有任务完成并收集结果（失败或超时的任务被跳过）
+                collectedImages.addAll(taskRunner.join(futures));
                 log.info("并发图片收集完成，共收集到 {} 张图片", collectedImages.size());
             } catch (Exception e) {
                 log.error("图片收集失败: {}", e.getMessage(), e);
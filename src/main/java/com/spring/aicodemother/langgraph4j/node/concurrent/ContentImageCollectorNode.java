@@ -1,5 +1,6 @@
 package com.spring.aicodemother.langgraph4j.node.concurrent;
 
+import com.spring.aicodemother.langgraph4j.ImageTaskRunner;
 import com.spring.aicodemother.langgraph4j.model.ImageCollectionPlan;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
@@ -9,7 +10,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
@@ -23,18 +23,15 @@ public class ContentImageCollectorNode {
     public static AsyncNodeAction<MessagesState<String>> create() {
         return node_async(state -> {
             WorkflowContext context = WorkflowContext.getContext(state);
-            List<ImageResource> contentImages = new ArrayList<>();
+            List<ImageResource> contentImages = List.of();
             try {
                 ImageCollectionPlan plan = context.getImageCollectionPlan();
                 if (plan != null && plan.getContentImageTasks() != null) {
                     ImageSearchTool imageSearchTool = SpringContextUtil.getBean(ImageSearchTool.class);
+                    ImageTaskRunner taskRunner = SpringContextUtil.getBean(ImageTaskRunner.class);
                     log.info("开始并发收集内容图片，任务数: {}", plan.getContentImageTasks().size());
-                    for (ImageCollectionPlan.ImageSearchTask task : plan.getContentImageTasks()) {
-                        List<ImageResource> images = imageSearchTool.searchContentImages(task.query());
-                        if (images != null) {
-                            contentImages.addAll(images);
-                        }
-                    }
+                    contentImages = taskRunner.runAll(ImageTaskRunner.CONTENT, plan.getContentImageTasks(),
+                            task -> imageSearchTool.searchContentImages(task.query()));
                     log.info("内容图片收集完成，共收集到 {} 张图片", contentImages.size());
                 }
             } catch (Exception e) {
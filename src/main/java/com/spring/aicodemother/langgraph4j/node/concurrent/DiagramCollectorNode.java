@@ -1,5 +1,6 @@
 package com.spring.aicodemother.langgraph4j.node.concurrent;
 
+import com.spring.aicodemother.langgraph4j.ImageTaskRunner;
 import com.spring.aicodemother.langgraph4j.model.ImageCollectionPlan;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
@@ -9,7 +10,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
@@ -20,19 +20,15 @@ public class DiagramCollectorNode {
     public static AsyncNodeAction<MessagesState<String>> create() {
         return node_async(state -> {
             WorkflowContext context = WorkflowContext.getContext(state);
-            List<ImageResource> diagrams = new ArrayList<>();
+            List<ImageResource> diagrams = List.of();
             try {
                 ImageCollectionPlan plan = context.getImageCollectionPlan();
                 if (plan != null && plan.getDiagramTasks() != null) {
                     MermaidDiagramTool diagramTool = SpringContextUtil.getBean(MermaidDiagramTool.class);
+                    ImageTaskRunner taskRunner = SpringContextUtil.getBean(ImageTaskRunner.class);
                     log.info("开始并发生成架构图，任务数: {}", plan.getDiagramTasks().size());
-                    for (ImageCollectionPlan.DiagramTask task : plan.getDiagramTasks()) {
-                        List<ImageResource> images = diagramTool.generateMermaidDiagram(
-                                task.mermaidCode(), task.description());
-                        if (images != null) {
-                            diagrams.addAll(images);
-                        }
-                    }
+                    diagrams = taskRunner.runAll(ImageTaskRunner.DIAGRAM, plan.getDiagramTasks(),
+                            task -> diagramTool.generateMermaidDiagram(task.mermaidCode(), task.description()));
                     log.info("架构图生成完成，共生成 {} 张图片", diagrams.size());
                 }
             } catch (Exception e) {
@@ -1,5 +1,6 @@
 package com.spring.aicodemother.langgraph4j.node.concurrent;
 
+import com.spring.aicodemother.langgraph4j.ImageTaskRunner;
 import com.spring.aicodemother.langgraph4j.model.ImageCollectionPlan;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
@@ -9,7 +10,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
@@ -23,18 +23,15 @@ public class IllustrationCollectorNode {
     public static AsyncNodeAction<MessagesState<String>> create() {
         return node_async(state -> {
             WorkflowContext context = WorkflowContext.getContext(state);
-            List<ImageResource> illustrations = new ArrayList<>();
+            List<ImageResource> illustrations = List.of();
             try {
                 ImageCollectionPlan plan = context.getImageCollectionPlan();
                 if (plan != null && plan.getIllustrationTasks() != null) {
                     UndrawIllustrationTool illustrationTool = SpringContextUtil.getBean(UndrawIllustrationTool.class);
+                    ImageTaskRunner taskRunner = SpringContextUtil.getBean(ImageTaskRunner.class);
                     log.info("开始并发收集插画图片，任务数: {}", plan.getIllustrationTasks().size());
-                    for (ImageCollectionPlan.IllustrationTask task : plan.getIllustrationTasks()) {
-                        List<ImageResource> images = illustrationTool.searchIllustrations(task.query());
-                        if (images != null) {
-                            illustrations.addAll(images);
-                        }
-                    }
+                    illustrations = taskRunner.runAll(ImageTaskRunner.ILLUSTRATION, plan.getIllustrationTasks(),
+                            task -> illustrationTool.searchIllustrations(task.query()));
                     log.info("插画图片收集完成，共收集到 {} 张图片", illustrations.size());
                 }
             } catch (Exception e) {
@@ -1,5 +1,6 @@
 package com.spring.aicodemother.langgraph4j.node.concurrent;
 
+import com.spring.aicodemother.langgraph4j.ImageTaskRunner;
 import com.spring.aicodemother.langgraph4j.model.ImageCollectionPlan;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
@@ -9,7 +10,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
@@ -20,18 +20,15 @@ public class LogoCollectorNode {
     public static AsyncNodeAction<MessagesState<String>> create() {
         return node_async(state -> {
             WorkflowContext context = WorkflowContext.getContext(state);
-            List<ImageResource> logos = new ArrayList<>();
+            List<ImageResource> logos = List.of();
             try {
                 ImageCollectionPlan plan = context.getImageCollectionPlan();
                 if (plan != null && plan.getLogoTasks() != null) {
                     LogoGeneratorTool logoTool = SpringContextUtil.getBean(LogoGeneratorTool.class);
+                    ImageTaskRunner taskRunner = SpringContextUtil.getBean(ImageTaskRunner.class);
                     log.info("开始并发生成Logo，任务数: {}", plan.getLogoTasks().size());
-                    for (ImageCollectionPlan.LogoTask task : plan.getLogoTasks()) {
-                        List<ImageResource> images = logoTool.generateLogos(task.description());
-                        if (images != null) {
-                            logos.addAll(images);
-                        }
-                    }
+                    logos = taskRunner.runAll(ImageTaskRunner.LOGO, plan.getLogoTasks(),
+                            task -> logoTool.generateLogos(task.description()));
                     log.info("Logo生成完成，共生成 {} 张图片", logos.size());
                 }
             } catch (Exception e) {
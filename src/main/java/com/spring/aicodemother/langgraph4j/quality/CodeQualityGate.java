@@ -0,0 +1,312 @@
+package com.spring.aicodemother.langgraph4j.quality;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.spring.aicodemother.langgraph4j.ai.CodeQualityCheckService;
+import com.spring.aicodemother.langgraph4j.model.QualityGateStats;
+import com.spring.aicodemother.langgraph4j.model.QualityResult;
+import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.Result;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码质量门禁
+ * - 先做本地预检（{@link LocalCodeChecker}），发现问题直接返回，不调用 AI
+ * - 本地预检通过后调用 AI，只发送上一次 AI 质检之后新增或修改的文件，附带未修改文件清单和上一轮的问题
+ * - 所有文件都没有变化时沿用上一次 AI 质检结果
+ * - 质检失败后最多重新生成 quality-max-retries 次，超过后不再重试，直接进入后续流程
+ * 每轮记录发送量、token 和耗时，工作流结束质检时输出汇总
+ */
+@Slf4j
+@Component
+public class CodeQualityGate {
+
+    /**
+     * 需要检查的文件扩展名
+     */
+    private static final List<String> CODE_EXTENSIONS = Arrays.asList(
+            ".html", ".htm", ".css", ".js", ".json", ".vue", ".ts", ".jsx", ".tsx"
+    );
+
+    private static final String FULL_HEADER = "# 项目文件结构和代码内容\n\n";
+
+    @Value("${code.workflow.quality-max-retries:2}")
+    private int maxRetries;
+
+    @Autowired(required = false)
+    private CodeQualityCheckService codeQualityCheckService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 执行一轮质检，结果和统计写回上下文
+     */
+    public QualityResult check(WorkflowContext context) {
+        QualityGateStats stats = context.getQualityGateStats();
+        if (stats == null) {
+            stats = new QualityGateStats();
+            context.setQualityGateStats(stats);
+        }
+        stats.setRounds(stats.getRounds() + 1);
+
+        Map<String, String> files = readCodeFiles(context.getGeneratedCodeDir());
+        if (files.isEmpty()) {
+            log.warn("未找到可检查的代码文件");
+            return QualityResult.builder()
+                    .isValid(false)
+                    .errors(List.of("未找到可检查的代码文件"))
+                    .suggestions(List.of("请确保代码生成成功"))
+                    .build();
+        }
+        long fullChars = FULL_HEADER.length() + files.entrySet().stream()
+                .mapToLong(entry -> fileSection(entry.getKey(), entry.getValue()).length())
+                .sum();
+        stats.setFullChars(stats.getFullChars() + fullChars);
+
+        // 1. 本地预检
+        long localStart = System.nanoTime();
+        List<String> localErrors = LocalCodeChecker.check(new File(context.getGeneratedCodeDir()), files,
+                context.getGenerationType());
+        long localNanos = System.nanoTime() - localStart;
+        stageTimer("local").record(localNanos, TimeUnit.NANOSECONDS);
+        stats.setLocalMillis(stats.getLocalMillis() + TimeUnit.NANOSECONDS.toMillis(localNanos));
+        if (!localErrors.isEmpty()) {
+            log.info("本地预检发现 {} 个问题，跳过 AI 检查", localErrors.size());
+            recordSkipped(stats, "local_failed", fullChars);
+            return finish(context, QualityResult.builder()
+                    .isValid(false)
+                    .errors(localErrors)
+                    .suggestions(List.of("请修复以上语法和结构问题，保持其他文件不变"))
+                    .build());
+        }
+
+        // 2. 找出上一次 AI 质检之后变化的文件
+        Map<String, String> hashes = new HashMap<>();
+        files.forEach((path, content) -> hashes.put(path, DigestUtil.sha256Hex(content)));
+        Map<String, String> reviewed = context.getReviewedFileHashes();
+        QualityResult previous = context.getReviewedQualityResult();
+        boolean incremental = reviewed != null && previous != null;
+        if (incremental && reviewed.equals(hashes)) {
+            log.info("代码与上一次 AI 质检时相同，沿用上一次结果");
+            recordSkipped(stats, "unchanged", fullChars);
+            return finish(context, previous);
+        }
+        String payload = incremental ? buildIncrementalPayload(files, hashes, reviewed, previous) : buildFullPayload(files);
+
+        // 3. 调用 AI 检查
+        if (codeQualityCheckService == null) {
+            log.warn("未配置代码质量检查 AI 服务，跳过 AI 检查");
+            return QualityResult.builder().isValid(true).build();
+        }
+        long llmStart = System.nanoTime();
+        QualityResult result;
+        try {
+            Result<QualityResult> response = codeQualityCheckService.checkCodeQuality(payload);
+            result = response.content();
+            recordLlmCall(stats, response.tokenUsage(), fullChars, payload.length());
+        } finally {
+            long llmNanos = System.nanoTime() - llmStart;
+            stageTimer("llm").record(llmNanos, TimeUnit.NANOSECONDS);
+            stats.setLlmMillis(stats.getLlmMillis() + TimeUnit.NANOSECONDS.toMillis(llmNanos));
+        }
+        log.info("代码质量检查完成 - 是否通过: {}, 发送 {}/{} 字符", result.getIsValid(), payload.length(), fullChars);
+        context.setReviewedFileHashes(hashes);
+        context.setReviewedQualityResult(result);
+        return finish(context, result);
+    }
+
+    /**
+     * 质检失败后是否还能重新生成
+     */
+    public boolean shouldRetry(WorkflowContext context) {
+        QualityGateStats stats = context.getQualityGateStats();
+        return stats == null || stats.getRounds() <= maxRetries;
+    }
+
+    /**
+     * 质检通过或重试次数用完时输出本次工作流的汇总
+     */
+    private QualityResult finish(WorkflowContext context, QualityResult result) {
+        if (Boolean.TRUE.equals(result.getIsValid()) || !shouldRetry(context)) {
+            QualityGateStats stats = context.getQualityGateStats();
+            DistributionSummary.builder("ai_code_quality_gate_workflow_saved_tokens")
+                    .description("单次工作流质检估算节省的输入 token")
+                    .register(meterRegistry)
+                    .record(stats.getSavedTokens());
+            log.info("质检结束 - 轮数: {}, AI 调用: {}, 发送/全量字符: {}/{}, 输入 token: {}, 估算节省 token: {}, "
+                            + "本地预检: {} ms, AI 检查: {} ms, 估算节省: {} ms",
+                    stats.getRounds(), stats.getLlmCalls(), stats.getSentChars(), stats.getFullChars(),
+                    stats.getInputTokens(), stats.getSavedTokens(), stats.getLocalMillis(), stats.getLlmMillis(),
+                    stats.getSavedMillis());
+        }
+        return result;
+    }
+
+    private void recordLlmCall(QualityGateStats stats, TokenUsage tokenUsage, long fullChars, long sentChars) {
+        stats.setLlmCalls(stats.getLlmCalls() + 1);
+        stats.setSentChars(stats.getSentChars() + sentChars);
+        payloadCounter("full").increment(fullChars);
+        payloadCounter("sent").increment(sentChars);
+        llmCallCounter("called").increment();
+        Integer inputTokens = tokenUsage == null ? null : tokenUsage.inputTokenCount();
+        if (inputTokens != null && sentChars > 0) {
+            stats.setInputTokens(stats.getInputTokens() + inputTokens);
+            // 按本次调用的 token/字符 比例换算未发送部分
+            long saved = Math.round((double) inputTokens * (fullChars - sentChars) / sentChars);
+            addSavedTokens(stats, saved);
+        }
+    }
+
+    private void recordSkipped(QualityGateStats stats, String reason, long fullChars) {
+        llmCallCounter(reason).increment();
+        payloadCounter("full").increment(fullChars);
+        if (stats.getSentChars() > 0 && stats.getInputTokens() > 0) {
+            addSavedTokens(stats, Math.round((double) stats.getInputTokens() * fullChars / stats.getSentChars()));
+        }
+        Timer llmTimer = stageTimer("llm");
+        if (llmTimer.count() > 0) {
+            stats.setSavedMillis(stats.getSavedMillis() + Math.round(llmTimer.mean(TimeUnit.MILLISECONDS)));
+        }
+    }
+
+    private void addSavedTokens(QualityGateStats stats, long saved) {
+        stats.setSavedTokens(stats.getSavedTokens() + saved);
+        Counter.builder("ai_code_quality_gate_saved_tokens_total")
+                .description("质检估算节省的输入 token")
+                .register(meterRegistry)
+                .increment(saved);
+    }
+
+    private String buildFullPayload(Map<String, String> files) {
+        StringBuilder payload = new StringBuilder(FULL_HEADER);
+        files.forEach((path, content) -> payload.append(fileSection(path, content)));
+        return payload.toString();
+    }
+
+    /**
+     * 增量检查内容：变化的文件全文 + 未修改和已删除的文件清单 + 上一轮的问题
+     */
+    private String buildIncrementalPayload(Map<String, String> files, Map<String, String> hashes,
+                                           Map<String, String> reviewed, QualityResult previous) {
+        List<String> unchanged = new ArrayList<>();
+        StringBuilder changed = new StringBuilder();
+        files.forEach((path, content) -> {
+            if (hashes.get(path).equals(reviewed.get(path))) {
+                unchanged.add(path);
+            } else {
+                changed.append(fileSection(path, content));
+            }
+        });
+        List<String> removed = reviewed.keySet().stream().filter(path -> !files.containsKey(path)).sorted().toList();
+
+        StringBuilder payload = new StringBuilder("# 项目文件结构和代码内容（增量检查）\n\n");
+        appendList(payload, "上一轮已检查且未修改的文件（未包含在本次内容中）", unchanged);
+        appendList(payload, "已删除的文件", removed);
+        appendList(payload, "上一轮发现的问题", previous.getErrors());
+        payload.append("请根据本次提供的文件判断上一轮的问题是否已修复，并检查这些文件中的新问题。\n\n");
+        payload.append(changed);
+        return payload.toString();
+    }
+
+    private static void appendList(StringBuilder payload, String title, List<String> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        payload.append("## ").append(title).append("\n\n");
+        items.forEach(item -> payload.append("- ").append(item).append("\n"));
+        payload.append("\n");
+    }
+
+    private static String fileSection(String path, String content) {
+        return "## 文件: " + path + "\n\n" + content + "\n\n";
+    }
+
+    /**
+     * 读取代码目录下的所有代码文件（相对路径 -> 内容，按路径排序）
+     */
+    private static Map<String, String> readCodeFiles(String codeDir) {
+        Map<String, String> files = new TreeMap<>();
+        if (StrUtil.isBlank(codeDir)) {
+            return files;
+        }
+        File directory = new File(codeDir);
+        if (!directory.exists() || !directory.isDirectory()) {
+            log.error("代码目录不存在或不是目录: {}", codeDir);
+            return files;
+        }
+        FileUtil.walkFiles(directory, file -> {
+            // 过滤条件：跳过隐藏文件、特定目录下的文件、非代码文件
+            if (shouldSkipFile(file, directory) || !isCodeFile(file)) {
+                return;
+            }
+            String relativePath = FileUtil.subPath(directory.getAbsolutePath(), file.getAbsolutePath());
+            files.put(relativePath.replace(File.separatorChar, '/'), FileUtil.readUtf8String(file));
+        });
+        return files;
+    }
+
+    /**
+     * 判断是否应该跳过此文件
+     */
+    private static boolean shouldSkipFile(File file, File rootDir) {
+        String relativePath = FileUtil.subPath(rootDir.getAbsolutePath(), file.getAbsolutePath());
+        // 跳过隐藏文件
+        if (file.getName().startsWith(".")) {
+            return true;
+        }
+        // 跳过特定目录下的文件
+        return relativePath.contains("node_modules" + File.separator) ||
+                relativePath.contains("dist" + File.separator) ||
+                relativePath.contains("target" + File.separator) ||
+                relativePath.contains(".git" + File.separator);
+    }
+
+    /**
+     * 判断是否是需要检查的代码文件
+     */
+    private static boolean isCodeFile(File file) {
+        String fileName = file.getName().toLowerCase();
+        return CODE_EXTENSIONS.stream().anyMatch(fileName::endsWith);
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("ai_code_quality_gate_seconds")
+                .description("代码质检各阶段耗时")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private Counter payloadCounter(String kind) {
+        return Counter.builder("ai_code_quality_gate_payload_chars_total")
+                .description("代码质检内容长度（full 为全量发送时的长度，sent 为实际发送的长度）")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private Counter llmCallCounter(String result) {
+        return Counter.builder("ai_code_quality_gate_llm_total")
+                .description("代码质检 AI 调用次数（called 为实际调用，其余为跳过原因）")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
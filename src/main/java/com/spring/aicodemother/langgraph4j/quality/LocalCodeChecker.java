@@ -0,0 +1,310 @@
+package com.spring.aicodemother.langgraph4j.quality;
+
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.ai.tools.VueProjectStructureValidationTool;
+import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地代码预检（不调用 AI）
+ * - JS/TS/CSS/SCSS：忽略字符串、注释、正则字面量后检查括号是否配对（JSX/TSX 不检查）
+ * - HTML/Vue：script、style、template 标签是否闭合，内联脚本和样式的括号是否配对
+ * - JSON：能否解析（tsconfig、jsconfig 允许注释，不检查）
+ * - Vue 工程：复用 {@link VueProjectStructureValidationTool} 的结构检查
+ * 只报告确定会导致页面无法运行或打包失败的问题，拿不准的交给 AI 检查
+ */
+public final class LocalCodeChecker {
+
+    private static final Pattern SCRIPT_BLOCK = Pattern.compile(
+            "<script\\b([^>]*)>(.*?)</script\\s*>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern STYLE_BLOCK = Pattern.compile(
+            "<style\\b([^>]*)>(.*?)</style\\s*>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * 正则字面量前可能出现的字符和关键字（其余情况下 / 视为除号）
+     */
+    private static final String REGEX_PRECEDERS = "(,=:[!&|?{};~^>";
+
+    private static final Set<String> REGEX_KEYWORDS = Set.of(
+            "return", "typeof", "case", "in", "of", "void", "delete", "throw", "else", "do", "yield", "await");
+
+    private enum Syntax {
+        JS, CSS, SCSS
+    }
+
+    private LocalCodeChecker() {
+    }
+
+    /**
+     * 检查项目文件
+     *
+     * @param rootDir        代码目录
+     * @param files          相对路径 -> 文件内容
+     * @param generationType 代码生成类型
+     * @return 发现的问题，为空表示通过
+     */
+    public static List<String> check(File rootDir, Map<String, String> files, CodeGenTypeEnum generationType) {
+        List<String> errors = new ArrayList<>();
+        files.forEach((path, content) -> checkFile(path, content, errors));
+        if (generationType == CodeGenTypeEnum.VUE_PROJECT) {
+            List<String> structureErrors = new ArrayList<>();
+            VueProjectStructureValidationTool.validateStructure(rootDir, structureErrors, new ArrayList<>());
+            errors.addAll(structureErrors);
+        }
+        return errors;
+    }
+
+    static void checkFile(String path, String content, List<String> errors) {
+        String lowerPath = path.toLowerCase();
+        String fileName = lowerPath.substring(lowerPath.lastIndexOf('/') + 1);
+        if (lowerPath.endsWith(".json")) {
+            if (!fileName.startsWith("tsconfig") && !fileName.startsWith("jsconfig")) {
+                try {
+                    JSONUtil.parse(content);
+                } catch (Exception e) {
+                    errors.add(path + ": JSON 格式错误，无法解析");
+                }
+            }
+        } else if (lowerPath.endsWith(".css")) {
+            checkBrackets(path, content, 0, Syntax.CSS, errors);
+        } else if (lowerPath.endsWith(".scss") || lowerPath.endsWith(".less")) {
+            checkBrackets(path, content, 0, Syntax.SCSS, errors);
+        } else if (lowerPath.endsWith(".js") || lowerPath.endsWith(".ts")) {
+            checkBrackets(path, content, 0, Syntax.JS, errors);
+        } else if (lowerPath.endsWith(".html") || lowerPath.endsWith(".htm")) {
+            checkTagPairs(path, content, "script", errors);
+            checkTagPairs(path, content, "style", errors);
+            checkEmbeddedBlocks(path, content, errors);
+        } else if (lowerPath.endsWith(".vue")) {
+            checkTagPairs(path, content, "template", errors);
+            checkTagPairs(path, content, "script", errors);
+            checkTagPairs(path, content, "style", errors);
+            if (!content.contains("<template") && !content.contains("<script")) {
+                errors.add(path + ": Vue 单文件组件缺少 <template> 和 <script> 块");
+            }
+            checkEmbeddedBlocks(path, content, errors);
+        }
+    }
+
+    /**
+     * 开始标签与结束标签数量是否一致
+     */
+    private static void checkTagPairs(String path, String content, String tag, List<String> errors) {
+        int opened = countMatches(content, Pattern.compile("<" + tag + "\\b", Pattern.CASE_INSENSITIVE));
+        int closed = countMatches(content, Pattern.compile("</" + tag + "\\s*>", Pattern.CASE_INSENSITIVE));
+        if (opened != closed) {
+            errors.add(String.format("%s: <%s> 标签未正确闭合（开始 %d 个，结束 %d 个）", path, tag, opened, closed));
+        }
+    }
+
+    /**
+     * 检查 HTML/Vue 中内联的脚本和样式
+     */
+    private static void checkEmbeddedBlocks(String path, String content, List<String> errors) {
+        Matcher script = SCRIPT_BLOCK.matcher(content);
+        while (script.find()) {
+            String attributes = script.group(1).toLowerCase();
+            // 非 JS 的 script（如 JSON 数据、模板）和 JSX 不检查
+            boolean nonJs = attributes.contains("type=") && !attributes.contains("module")
+                    && !attributes.contains("javascript");
+            if (nonJs || attributes.contains("jsx") || attributes.contains("tsx")) {
+                continue;
+            }
+            checkBrackets(path, script.group(2), lineOf(content, script.start(2)) - 1, Syntax.JS, errors);
+        }
+        Matcher style = STYLE_BLOCK.matcher(content);
+        while (style.find()) {
+            String attributes = style.group(1).toLowerCase();
+            // stylus 可以省略花括号，不检查
+            if (attributes.contains("stylus")) {
+                continue;
+            }
+            Syntax syntax = attributes.contains("scss") || attributes.contains("less") ? Syntax.SCSS : Syntax.CSS;
+            checkBrackets(path, style.group(2), lineOf(content, style.start(2)) - 1, syntax, errors);
+        }
+    }
+
+    /**
+     * 跳过字符串、注释和正则字面量后检查 ()[]{} 是否配对，只报告第一处问题
+     *
+     * @param lineOffset 片段在原文件中的起始行号偏移
+     * @param syntax     CSS 没有单行注释，只有 JS 有模板字符串和正则字面量
+     */
+    private static void checkBrackets(String path, String code, int lineOffset, Syntax syntax, List<String> errors) {
+        boolean script = syntax == Syntax.JS;
+        Deque<int[]> stack = new ArrayDeque<>();
+        // 模板字符串中 ${ 对应的栈深度
+        Deque<Integer> templateDepths = new ArrayDeque<>();
+        int line = 1;
+        char previous = '(';
+        String lastWord = "";
+        int length = code.length();
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            if (c == '\n') {
+                line++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            char next = i + 1 < length ? code.charAt(i + 1) : 0;
+            if (c == '/' && next == '*') {
+                int end = code.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                line += countLines(code, i, end);
+                i = end - 1;
+                continue;
+            }
+            if (Character.isJavaIdentifierPart(c)) {
+                int end = i;
+                while (end < length && Character.isJavaIdentifierPart(code.charAt(end))) {
+                    end++;
+                }
+                lastWord = code.substring(i, end);
+                previous = 'a';
+                i = end - 1;
+                continue;
+            }
+            // SCSS 中 url(http://...) 的 // 不是注释
+            boolean lineComment = syntax == Syntax.JS || (syntax == Syntax.SCSS && (i == 0 || code.charAt(i - 1) != ':'));
+            if (lineComment && c == '/' && next == '/') {
+                int end = code.indexOf('\n', i);
+                i = (end < 0 ? length : end) - 1;
+                continue;
+            }
+            boolean regex = script && c == '/'
+                    && (REGEX_PRECEDERS.indexOf(previous) >= 0 || (previous == 'a' && REGEX_KEYWORDS.contains(lastWord)));
+            if (c == '"' || c == '\'' || regex) {
+                int end = skipQuoted(code, i, c);
+                if (end < 0 && regex) {
+                    // 无法确定是正则还是除号时按除号处理
+                    previous = c;
+                    continue;
+                }
+                if (end < 0) {
+                    // 引号未闭合时不再继续，避免后续报告大量连带问题
+                    errors.add(String.format("%s:%d: 字符串未闭合", path, line + lineOffset));
+                    return;
+                }
+                line += countLines(code, i, end);
+                i = end;
+                previous = 'a';
+                continue;
+            }
+            if (script && (c == '`' || (c == '}' && !templateDepths.isEmpty() && templateDepths.peek() == stack.size()))) {
+                if (c == '}') {
+                    templateDepths.pop();
+                }
+                int end = skipTemplate(code, i + 1);
+                if (end < 0) {
+                    errors.add(String.format("%s:%d: 模板字符串未闭合", path, line + lineOffset));
+                    return;
+                }
+                line += countLines(code, i, end);
+                if (code.charAt(end) == '{') {
+                    // 遇到 ${，进入表达式，直到对应的 } 再回到模板字符串
+                    templateDepths.push(stack.size());
+                }
+                i = end;
+                previous = 'a';
+                continue;
+            }
+            if (c == '(' || c == '[' || c == '{') {
+                stack.push(new int[]{c, line});
+            } else if (c == ')' || c == ']' || c == '}') {
+                if (stack.isEmpty()) {
+                    errors.add(String.format("%s:%d: 多余的 '%c'", path, line + lineOffset, c));
+                    return;
+                }
+                int[] open = stack.pop();
+                if (open[0] != matchingOpen(c)) {
+                    errors.add(String.format("%s:%d: '%c'（第 %d 行）与 '%c' 不匹配",
+                            path, line + lineOffset, (char) open[0], open[1] + lineOffset, c));
+                    return;
+                }
+            }
+            previous = c;
+        }
+        if (!stack.isEmpty()) {
+            int[] open = stack.peek();
+            errors.add(String.format("%s:%d: '%c' 没有闭合", path, open[1] + lineOffset, (char) open[0]));
+        }
+    }
+
+    /**
+     * 跳过引号字符串或正则字面量，返回结束字符的位置，未闭合返回 -1
+     */
+    private static int skipQuoted(String code, int start, char quote) {
+        boolean inClass = false;
+        for (int i = start + 1; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '\n') {
+                return -1;
+            } else if (quote == '/' && c == '[') {
+                inClass = true;
+            } else if (quote == '/' && c == ']') {
+                inClass = false;
+            } else if (c == quote && !inClass) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从模板字符串内部开始扫描，返回结束的 ` 或 ${ 中 { 的位置，未闭合返回 -1
+     */
+    private static int skipTemplate(String code, int start) {
+        for (int i = start; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '`') {
+                return i;
+            } else if (c == '$' && i + 1 < code.length() && code.charAt(i + 1) == '{') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static char matchingOpen(char close) {
+        return close == ')' ? '(' : close == ']' ? '[' : '{';
+    }
+
+    private static int countLines(String code, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to && i < code.length(); i++) {
+            if (code.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static int lineOf(String content, int index) {
+        return countLines(content, 0, index) + 1;
+    }
+
+    private static int countMatches(String content, Pattern pattern) {
+        Matcher matcher = pattern.matcher(content);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -2,6 +2,7 @@ package com.spring.aicodemother.langgraph4j.state;
 
 import com.spring.aicodemother.langgraph4j.model.ImageCollectionPlan;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
+import com.spring.aicodemother.langgraph4j.model.QualityGateStats;
 import com.spring.aicodemother.langgraph4j.model.QualityResult;
 import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
 import lombok.AllArgsConstructor;
@@ -89,6 +90,21 @@ public class WorkflowContext implements Serializable {
      */
     private QualityResult qualityResult;
 
+    /**
+     * 上一次 AI 质检时各文件内容的哈希（相对路径 -> sha256），用于只发送变更的文件
+     */
+    private Map<String, String> reviewedFileHashes;
+
+    /**
+     * 上一次 AI 质检的结果
+     */
+    private QualityResult reviewedQualityResult;
+
+    /**
+     * 质检统计（轮数、发送量、节省的 token 和耗时）
+     */
+    private QualityGateStats qualityGateStats;
+
 
     /**
      * 错误信息
@@ -0,0 +1,228 @@
+package com.spring.aicodemother.langgraph4j.tools;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.spring.aicodemother.langgraph4j.model.ImageResource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 图片工具结果缓存（本地 Caffeine + Redis 两级）
+ * - 缓存键为 来源 + 规范化后的查询参数哈希，不同来源使用各自的过期时间
+ * - 查询顺序：本地缓存 -> Redis -> 调用外部接口，Redis 命中后回填本地缓存
+ * - 同一键同时只有一个请求调用外部接口，其他请求等待同一结果
+ * - 空结果（接口失败或无结果）不缓存；Redis 不可用时只使用本地缓存
+ */
+@Slf4j
+@Component
+public class ImageResultCache {
+
+    public static final String PEXELS = "pexels";
+
+    public static final String PIXABAY = "pixabay";
+
+    public static final String LOGO = "logo";
+
+    public static final String MERMAID = "mermaid";
+
+    private static final String REDIS_KEY_PREFIX = "image_cache:";
+
+    @Value("${code.image-cache.local-max-size:2000}")
+    private long localMaxSize;
+
+    @Value("${code.image-cache.ttl-minutes.pexels:1440}")
+    private long pexelsTtlMinutes;
+
+    @Value("${code.image-cache.ttl-minutes.pixabay:1440}")
+    private long pixabayTtlMinutes;
+
+    @Value("${code.image-cache.ttl-minutes.logo:720}")
+    private long logoTtlMinutes;
+
+    @Value("${code.image-cache.ttl-minutes.mermaid:43200}")
+    private long mermaidTtlMinutes;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Map<String, Duration> providerTtls;
+
+    private Cache<String, CachedImages> localCache;
+
+    /**
+     * 缓存键 -> 正在调用外部接口的请求
+     */
+    private final Map<String, CompletableFuture<List<ImageResource>>> inflight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        providerTtls = Map.of(
+                PEXELS, Duration.ofMinutes(pexelsTtlMinutes),
+                PIXABAY, Duration.ofMinutes(pixabayTtlMinutes),
+                LOGO, Duration.ofMinutes(logoTtlMinutes),
+                MERMAID, Duration.ofMinutes(mermaidTtlMinutes)
+        );
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfter(new Expiry<String, CachedImages>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedImages value, long currentTime) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedImages value, long currentTime, long currentDuration) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedImages value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 查询缓存，未命中时调用 loader 并写入两级缓存
+     *
+     * @param provider    图片来源
+     * @param keyMaterial 规范化后的查询参数（见 {@link #normalizeQuery}）
+     * @param loader      调用外部接口
+     */
+    public List<ImageResource> getOrLoad(String provider, String keyMaterial, Supplier<List<ImageResource>> loader) {
+        String key = provider + ":" + DigestUtil.sha256Hex(keyMaterial).substring(0, 32);
+        CachedImages local = localCache.getIfPresent(key);
+        if (local != null) {
+            recordHit(provider, "local_hit");
+            return copyOf(local.images);
+        }
+        Duration ttl = providerTtls.get(provider);
+        List<ImageResource> remote = readRedis(key);
+        if (remote != null) {
+            localCache.put(key, new CachedImages(remote, ttl.toNanos()));
+            recordHit(provider, "redis_hit");
+            return copyOf(remote);
+        }
+        recordLookup(provider, "miss");
+        CompletableFuture<List<ImageResource>> future = new CompletableFuture<>();
+        CompletableFuture<List<ImageResource>> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return copyOf(existing.join());
+            } catch (CompletionException e) {
+                return List.of();
+            }
+        }
+        try {
+            List<ImageResource> images = loadTimer(provider).record(loader);
+            if (images != null && !images.isEmpty()) {
+                List<ImageResource> snapshot = List.copyOf(copyOf(images));
+                localCache.put(key, new CachedImages(snapshot, ttl.toNanos()));
+                writeRedis(key, snapshot, ttl);
+            }
+            future.complete(images);
+            return images;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    /**
+     * 查询词规范化：去掉首尾空白、合并连续空白并转小写
+     */
+    public static String normalizeQuery(String query) {
+        return StrUtil.nullToEmpty(query).trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * 返回副本，调用方修改图片信息（如描述）不影响缓存
+     */
+    private static List<ImageResource> copyOf(List<ImageResource> images) {
+        if (images == null) {
+            return List.of();
+        }
+        return images.stream()
+                .map(image -> new ImageResource(image.getCategory(), image.getDescription(), image.getUrl()))
+                .collect(Collectors.toList());
+    }
+
+    private List<ImageResource> readRedis(String key) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(REDIS_KEY_PREFIX + key);
+            return json == null ? null : JSONUtil.toList(json, ImageResource.class);
+        } catch (Exception e) {
+            log.warn("读取图片缓存失败: {}, 错误: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(String key, List<ImageResource> images, Duration ttl) {
+        try {
+            stringRedisTemplate.opsForValue().set(REDIS_KEY_PREFIX + key, JSONUtil.toJsonStr(images), ttl);
+        } catch (Exception e) {
+            log.warn("写入图片缓存失败: {}, 错误: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 命中时按该来源的平均调用耗时累计节省的时间
+     */
+    private void recordHit(String provider, String result) {
+        recordLookup(provider, result);
+        Timer timer = loadTimer(provider);
+        if (timer.count() > 0) {
+            Counter.builder("ai_code_image_cache_saved_seconds_total")
+                    .description("缓存命中节省的外部接口调用时间（按平均耗时估算）")
+                    .tag("provider", provider)
+                    .register(meterRegistry)
+                    .increment(timer.mean(TimeUnit.SECONDS));
+        }
+    }
+
+    private void recordLookup(String provider, String result) {
+        Counter.builder("ai_code_image_cache_total")
+                .description("图片工具缓存查询次数")
+                .tag("provider", provider)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Timer loadTimer(String provider) {
+        return Timer.builder("ai_code_image_cache_load_seconds")
+                .description("缓存未命中时调用外部接口的耗时")
+                .tag("provider", provider)
+                .register(meterRegistry);
+    }
+
+    private record CachedImages(List<ImageResource> images, long ttlNanos) {
+    }
+}
@@ -9,6 +9,7 @@ import com.spring.aicodemother.langgraph4j.model.enums.ImageCategoryEnum;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -20,17 +21,26 @@ import java.util.List;
 @Component
 public class ImageSearchTool {
 
-    private static final String PEXELS_API_URL = "https://api.pexels.com/v1/search";
+    @Value("${pexels.api-url:https://api.pexels.com/v1/search}")
+    private String pexelsApiUrl;
 
     @Value("${pexels.api-key}")
     private String pexelsApiKey;
 
+    @Resource
+    private ImageResultCache imageResultCache;
+
     @Tool("搜索内容相关的图片，用于网站内容展示")
     public List<ImageResource> searchContentImages(@P("搜索关键词") String query) {
+        return imageResultCache.getOrLoad(ImageResultCache.PEXELS, ImageResultCache.normalizeQuery(query),
+                () -> doSearch(query));
+    }
+
+    private List<ImageResource> doSearch(String query) {
         List<ImageResource> imageList = new ArrayList<>();
         int searchCount = 12;
         // 调用 API，注意释放资源
-        try (HttpResponse response = HttpRequest.get(PEXELS_API_URL)
+        try (HttpResponse response = HttpRequest.get(pexelsApiUrl)
                 .header("Authorization", pexelsApiKey)
                 .form("query", query)
                 .form("per_page", searchCount)
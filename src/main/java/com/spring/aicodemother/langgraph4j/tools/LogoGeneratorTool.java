@@ -8,6 +8,7 @@ import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import com.spring.aicodemother.langgraph4j.model.enums.ImageCategoryEnum;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -26,8 +27,17 @@ public class LogoGeneratorTool {
     @Value("${dashscope.image-model:wan2.2-t2i-flash}")
     private String imageModel;
 
+    @Resource
+    private ImageResultCache imageResultCache;
+
     @Tool("根据描述生成 Logo 设计图片，用于网站品牌标识")
     public List<ImageResource> generateLogos(@P("Logo 设计描述，如名称、行业、风格等，尽量详细") String description) {
+        // 模型不同生成结果不同，模型名称也作为缓存键的一部分
+        String keyMaterial = imageModel + "\n512*512\n" + ImageResultCache.normalizeQuery(description);
+        return imageResultCache.getOrLoad(ImageResultCache.LOGO, keyMaterial, () -> doGenerate(description));
+    }
+
+    private List<ImageResource> doGenerate(String description) {
         List<ImageResource> logoList = new ArrayList<>();
         try {
             // 构建 Logo 设计提示词
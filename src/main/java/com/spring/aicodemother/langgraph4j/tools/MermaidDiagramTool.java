@@ -1,12 +1,8 @@
 package com.spring.aicodemother.langgraph4j.tools;
 
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.RandomUtil;
-import cn.hutool.core.util.RuntimeUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.system.SystemUtil;
-import com.spring.aicodemother.exception.BusinessException;
-import com.spring.aicodemother.exception.ErrorCode;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.spring.aicodemother.core.diagram.MermaidRenderer;
 import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import com.spring.aicodemother.langgraph4j.model.enums.ImageCategoryEnum;
 import com.spring.aicodemother.manager.CosManager;
@@ -16,7 +12,7 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -28,21 +24,33 @@ public class MermaidDiagramTool {
     @Resource
     private CosManager cosManager;
 
+    @Resource
+    private ImageResultCache imageResultCache;
+
+    @Resource
+    private MermaidRenderer mermaidRenderer;
+
     @Tool("将 Mermaid 代码转换为架构图图片，用于展示系统结构和技术关系")
     public List<ImageResource> generateMermaidDiagram(@P("Mermaid 图表代码") String mermaidCode,
                                                       @P("架构图描述") String description) {
         if (StrUtil.isBlank(mermaidCode)) {
             return new ArrayList<>();
         }
+        // 相同的 Mermaid 源码复用同一张图片，只替换描述
+        String sourceHash = DigestUtil.sha256Hex(mermaidCode.trim());
+        List<ImageResource> images = imageResultCache.getOrLoad(ImageResultCache.MERMAID, sourceHash,
+                () -> renderAndUpload(mermaidCode, sourceHash, description));
+        images.forEach(image -> image.setDescription(description));
+        return images;
+    }
+
+    private List<ImageResource> renderAndUpload(String mermaidCode, String sourceHash, String description) {
         try {
-            // 转换为SVG图片
-            File diagramFile = convertMermaidToSvg(mermaidCode);
-            // 上传到COS
-            String keyName = String.format("/mermaid/%s/%s",
-                    RandomUtil.randomString(5), diagramFile.getName());
-            String cosUrl = cosManager.uploadFile(keyName, diagramFile);
-            // 清理临时文件
-            FileUtil.del(diagramFile);
+            // 在常驻渲染器中转换为SVG（不落盘）
+            byte[] svg = mermaidRenderer.renderSvg(mermaidCode).getBytes(StandardCharsets.UTF_8);
+            // 上传到COS（按源码哈希命名，重复渲染也不会产生新对象）
+            String keyName = String.format("/mermaid/%s.svg", sourceHash);
+            String cosUrl = cosManager.uploadBytes(keyName, svg, "image/svg+xml");
             if (StrUtil.isNotBlank(cosUrl)) {
                 return Collections.singletonList(ImageResource.builder()
                         .category(ImageCategoryEnum.ARCHITECTURE)
@@ -55,32 +63,4 @@ public class MermaidDiagramTool {
         }
         return new ArrayList<>();
     }
-
-    /**
-     * 将Mermaid代码转换为SVG图片
-     */
-    private File convertMermaidToSvg(String mermaidCode) {
-        // 创建临时输入文件
-        File tempInputFile = FileUtil.createTempFile("mermaid_input_", ".mmd", true);
-        FileUtil.writeUtf8String(mermaidCode, tempInputFile);
-        // 创建临时输出文件
-        File tempOutputFile = FileUtil.createTempFile("mermaid_output_", ".svg", true);
-        // 根据操作系统选择命令
-        String command = SystemUtil.getOsInfo().isWindows() ? "mmdc.cmd" : "mmdc";
-        // 构建命令
-        String cmdLine = String.format("%s -i %s -o %s -b transparent",
-                command,
-                tempInputFile.getAbsolutePath(),
-                tempOutputFile.getAbsolutePath()
-        );
-        // 执行命令
-        RuntimeUtil.execForStr(cmdLine);
-        // 检查输出文件
-        if (!tempOutputFile.exists() || tempOutputFile.length() == 0) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Mermaid CLI 执行失败");
-        }
-        // 清理输入文件，保留输出文件供上传使用
-        FileUtil.del(tempInputFile);
-        return tempOutputFile;
-    }
 }
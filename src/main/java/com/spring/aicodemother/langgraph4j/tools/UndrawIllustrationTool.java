@@ -10,6 +10,7 @@ import com.spring.aicodemother.langgraph4j.model.ImageResource;
 import com.spring.aicodemother.langgraph4j.model.enums.ImageCategoryEnum;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -27,13 +28,22 @@ import java.util.List;
 @Component
 public class UndrawIllustrationTool {
 
-    private static final String PIXABAY_API_URL = "https://pixabay.com/api/";
-    
+    @Value("${pixabay.api-url:https://pixabay.com/api/}")
+    private String pixabayApiUrl;
+
     @Value("${pixabay.api-key:<Your Pixabay API Key>}")
     private String pixabayApiKey;
 
+    @Resource
+    private ImageResultCache imageResultCache;
+
     @Tool("搜索插画图片，用于网站美化和装饰")
     public List<ImageResource> searchIllustrations(@P("搜索关键词") String query) {
+        return imageResultCache.getOrLoad(ImageResultCache.PIXABAY, ImageResultCache.normalizeQuery(query),
+                () -> doSearch(query));
+    }
+
+    private List<ImageResource> doSearch(String query) {
         List<ImageResource> imageList = new ArrayList<>();
         
         if (StrUtil.isBlank(query)) {
@@ -77,7 +87,7 @@ public class UndrawIllustrationTool {
      * 构建Pixabay API请求URL
      */
     private String buildPixabayUrl(String encodedQuery) {
-        return PIXABAY_API_URL + "?" +
+        return pixabayApiUrl + "?" +
                 "key=" + pixabayApiKey +
                 "&q=" + encodedQuery +
                 "&image_type=illustration" +
@@ -1,19 +1,38 @@
 package com.spring.aicodemother.manager;
 
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
 import com.qcloud.cos.COSClient;
-import com.qcloud.cos.model.GetObjectRequest;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.model.PutObjectResult;
 import com.spring.aicodemother.config.CosClientConfig;
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+import com.spring.aicodemother.manager.storage.CosStorageBackend;
+import com.spring.aicodemother.manager.storage.LocalStorageBackend;
+import com.spring.aicodemother.manager.storage.ObjectStorageBackend;
+import com.spring.aicodemother.manager.storage.ObjectTransferManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * COS对象存储管理器
+ * 读写通过 {@link ObjectTransferManager} 进行：流式传输、大文件分片并行上传、失败重试；
+ * 未配置 COS 但配置了 code.storage.local-dir 时改存本地目录
  */
 @Component
 @Slf4j
@@ -25,6 +44,64 @@ public class CosManager {
     @Autowired(required = false)
     private COSClient cosClient;
 
+    /**
+     * 本地存储目录；未配置 COS 时设置此项，对象改存本地磁盘（离线测试、压测用）
+     */
+    @Value("${code.storage.local-dir:}")
+    private String localDir;
+
+    /**
+     * 超过该大小（MB）时分片上传
+     */
+    @Value("${code.storage.multipart-threshold-mb:16}")
+    private int multipartThresholdMb;
+
+    @Value("${code.storage.part-size-mb:8}")
+    private int partSizeMb;
+
+    @Value("${code.storage.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${code.storage.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${code.storage.retry-backoff-millis:200}")
+    private long retryBackoffMillis;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ObjectTransferManager transferManager;
+
+    @PostConstruct
+    public void init() {
+        ObjectStorageBackend backend = null;
+        if (cosClient != null) {
+            backend = new CosStorageBackend(cosClient, cosClientConfig);
+        } else if (StrUtil.isNotBlank(localDir)) {
+            backend = new LocalStorageBackend(Paths.get(localDir));
+            log.info("对象存储使用本地目录: {}", Paths.get(localDir).toAbsolutePath());
+        }
+        if (backend != null) {
+            transferManager = new ObjectTransferManager(backend, multipartThresholdMb * 1024 * 1024,
+                    partSizeMb * 1024 * 1024, maxConcurrency, maxRetries, retryBackoffMillis, meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (transferManager != null) {
+            transferManager.close();
+        }
+    }
+
+    /**
+     * 是否已配置对象存储（COS 或本地目录）
+     */
+    public boolean isEnabled() {
+        return transferManager != null;
+    }
+
     /**
      * 上传对象
      *
@@ -49,21 +126,62 @@ public class CosManager {
      * @return 文件的访问URL，失败返回null
      */
     public String uploadFile(String key, File file) {
-        if (cosClient == null) {
+        if (transferManager == null) {
             log.warn("COSClient 未配置，无法上传文件: {}", file != null ? file.getName() : "null");
             return null;
         }
-        // 上传文件
-        PutObjectResult result = putObject(key, file);
-        if (result != null) {
-            // 构建访问URL
-            String url = String.format("%s%s", cosClientConfig.getHost(), key);
+        String url = await(uploadFileAsync(key, file), "文件上传COS失败: " + key);
+        if (url != null) {
             log.info("文件上传COS成功: {} -> {}", file.getName(), url);
-            return url;
-        } else {
-            log.error("文件上传COS失败，返回结果为空");
+        }
+        return url;
+    }
+
+    /**
+     * 异步上传文件，小文件直接流式上传，大文件分片并行上传
+     *
+     * @return 文件的访问URL
+     */
+    public CompletableFuture<String> uploadFileAsync(String key, File file) {
+        return requireTransfer().upload(key, file.toPath(), FileUtil.getMimeType(file.getName()));
+    }
+
+    /**
+     * 上传内存中的内容到 COS 并返回访问 URL（无需先写本地临时文件）
+     *
+     * @param key         COS对象键（完整路径）
+     * @param bytes       文件内容
+     * @param contentType 内容类型
+     * @return 文件的访问URL，失败返回null
+     */
+    public String uploadBytes(String key, byte[] bytes, String contentType) {
+        if (transferManager == null) {
+            log.warn("COSClient 未配置，无法上传文件: {}", key);
             return null;
         }
+        String url = await(uploadBytesAsync(key, bytes, contentType), "文件上传COS失败: " + key);
+        if (url != null) {
+            log.info("文件上传COS成功: {} 字节 -> {}", bytes.length, url);
+        }
+        return url;
+    }
+
+    /**
+     * 异步上传内存中的内容
+     *
+     * @return 文件的访问URL
+     */
+    public CompletableFuture<String> uploadBytesAsync(String key, byte[] bytes, String contentType) {
+        return requireTransfer().upload(key, bytes, contentType);
+    }
+
+    /**
+     * 异步上传输入流中的内容（长度可以未知），读取完毕后关闭输入流
+     *
+     * @return 文件的访问URL
+     */
+    public CompletableFuture<String> uploadAsync(String key, InputStream in, String contentType) {
+        return requireTransfer().upload(key, in, contentType);
     }
 
     /**
@@ -74,24 +192,77 @@ public class CosManager {
      * @return 是否下载成功
      */
     public boolean downloadFile(String key, String localFilePath) {
-        if (cosClient == null) {
+        if (transferManager == null) {
             log.warn("COSClient 未配置，无法下载文件: {}", key);
             return false;
         }
-        try {
-            File localFile = new File(localFilePath);
-            // 确保父目录存在
-            if (localFile.getParentFile() != null && !localFile.getParentFile().exists()) {
-                localFile.getParentFile().mkdirs();
-            }
-            GetObjectRequest getObjectRequest = new GetObjectRequest(cosClientConfig.getBucket(), key);
-            cosClient.getObject(getObjectRequest, localFile);
+        Boolean found = await(transferManager.download(key, Paths.get(localFilePath)), "文件从COS下载失败: " + key);
+        if (Boolean.TRUE.equals(found)) {
             log.info("文件从COS下载成功: {} -> {}", key, localFilePath);
             return true;
-        } catch (Exception e) {
-            log.error("文件从COS下载失败: {}", key, e);
+        }
+        return false;
+    }
+
+    /**
+     * 异步把对象内容写入输出流（不关闭输出流）
+     *
+     * @return 对象不存在时为 false
+     */
+    public CompletableFuture<Boolean> downloadAsync(String key, OutputStream out) {
+        return requireTransfer().download(key, out);
+    }
+
+    /**
+     * 判断对象是否存在
+     *
+     * @param key COS对象键
+     * @return 是否存在，未配置 COS 时返回 false
+     */
+    public boolean doesObjectExist(String key) {
+        if (transferManager == null) {
             return false;
         }
+        try {
+            return transferManager.exists(key);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查询COS文件失败: " + key);
+        }
+    }
+
+    /**
+     * 异步判断对象是否存在
+     *
+     * @return 是否存在，未配置 COS 时为 false
+     */
+    public CompletableFuture<Boolean> doesObjectExistAsync(String key) {
+        if (transferManager == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return transferManager.existsAsync(key);
+    }
+
+    /**
+     * 读取对象内容到内存（适用于小文件）
+     *
+     * @param key COS对象键
+     * @return 对象内容，对象不存在或读取失败返回 null
+     */
+    public byte[] getObjectBytes(String key) {
+        if (transferManager == null) {
+            log.warn("COSClient 未配置，无法读取文件: {}", key);
+            return null;
+        }
+        return await(getObjectBytesAsync(key), "读取COS文件失败: " + key);
+    }
+
+    /**
+     * 异步读取对象内容到内存
+     *
+     * @return 对象内容，对象不存在时为 null
+     */
+    public CompletableFuture<byte[]> getObjectBytesAsync(String key) {
+        return requireTransfer().getBytes(key);
     }
 
     /**
@@ -101,13 +272,32 @@ public class CosManager {
      * @return COS对象键，如果URL无效返回null
      */
     public String extractKeyFromUrl(String url) {
-        if (url == null || cosClientConfig == null) {
+        if (url == null) {
             return null;
         }
-        String host = cosClientConfig.getHost();
-        if (url.startsWith(host)) {
+        String host = transferManager != null ? transferManager.getBackend().getUrl("") : cosClientConfig.getHost();
+        if (host != null && url.startsWith(host)) {
             return url.substring(host.length());
         }
         return null;
     }
+
+    private ObjectTransferManager requireTransfer() {
+        if (transferManager == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对象存储未配置");
+        }
+        return transferManager;
+    }
+
+    /**
+     * 同步等待传输结果，失败时记录日志并返回 null（保持原有同步方法的约定）
+     */
+    private static <T> T await(CompletableFuture<T> future, String errorMessage) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            log.error(errorMessage, e.getCause() != null ? e.getCause() : e);
+            return null;
+        }
+    }
 }
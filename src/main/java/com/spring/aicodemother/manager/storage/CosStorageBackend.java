@@ -0,0 +1,112 @@
+package com.spring.aicodemother.manager.storage;
+
+import com.qcloud.cos.COSClient;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.AbortMultipartUploadRequest;
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
+import com.qcloud.cos.model.InitiateMultipartUploadRequest;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.UploadPartRequest;
+import com.spring.aicodemother.config.CosClientConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 腾讯云 COS 存储后端
+ */
+public class CosStorageBackend implements ObjectStorageBackend {
+
+    private final COSClient cosClient;
+
+    private final CosClientConfig cosClientConfig;
+
+    public CosStorageBackend(COSClient cosClient, CosClientConfig cosClientConfig) {
+        this.cosClient = cosClient;
+        this.cosClientConfig = cosClientConfig;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return cosClient.doesObjectExist(cosClientConfig.getBucket(), key);
+    }
+
+    @Override
+    public void putObject(String key, InputStream in, long length, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType(contentType);
+        cosClient.putObject(new PutObjectRequest(cosClientConfig.getBucket(), key, in, metadata));
+    }
+
+    @Override
+    public String initiateMultipartUpload(String key, String contentType) {
+        InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(cosClientConfig.getBucket(), key);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(contentType);
+        request.setObjectMetadata(metadata);
+        return cosClient.initiateMultipartUpload(request).getUploadId();
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) {
+        UploadPartRequest request = new UploadPartRequest();
+        request.setBucketName(cosClientConfig.getBucket());
+        request.setKey(key);
+        request.setUploadId(uploadId);
+        request.setPartNumber(partNumber);
+        request.setInputStream(new ByteArrayInputStream(data, 0, length));
+        request.setPartSize(length);
+        return cosClient.uploadPart(request).getETag();
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) {
+        List<PartETag> parts = new ArrayList<>(partETags.size());
+        for (int i = 0; i < partETags.size(); i++) {
+            parts.add(new PartETag(i + 1, partETags.get(i)));
+        }
+        cosClient.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(cosClientConfig.getBucket(), key, uploadId, parts));
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        cosClient.abortMultipartUpload(new AbortMultipartUploadRequest(cosClientConfig.getBucket(), key, uploadId));
+    }
+
+    @Override
+    public boolean getObject(String key, OutputStream out) throws IOException {
+        try (COSObject object = cosClient.getObject(cosClientConfig.getBucket(), key)) {
+            object.getObjectContent().transferTo(out);
+            return true;
+        } catch (CosServiceException e) {
+            if (e.getStatusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String getUrl(String key) {
+        return String.format("%s%s", cosClientConfig.getHost(), key);
+    }
+
+    @Override
+    public boolean isRetryable(Exception e) {
+        // 4xx（限流除外）说明请求本身有问题，重试没有意义
+        if (e instanceof CosServiceException serviceException) {
+            int status = serviceException.getStatusCode();
+            return status >= 500 || status == 429;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package com.spring.aicodemother.manager.storage;
+
+import cn.hutool.crypto.digest.DigestUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘存储后端（目录结构与对象键一致），用于未配置 COS 的环境及离线测试、压测
+ * 分片先写到 .multipart/{uploadId}/ 下，合并时按序拼接后原子改名为目标文件
+ */
+public class LocalStorageBackend implements ObjectStorageBackend {
+
+    private static final String MULTIPART_DIR = ".multipart";
+
+    private final Path root;
+
+    public LocalStorageBackend(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public void putObject(String key, InputStream in, long length, String contentType) throws IOException {
+        Path target = resolve(key);
+        Path temp = tempFile(target);
+        try {
+            Files.copy(in, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(String key, String contentType) throws IOException {
+        String uploadId = UUID.randomUUID().toString();
+        Files.createDirectories(root.resolve(MULTIPART_DIR).resolve(uploadId));
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) throws IOException {
+        Path part = partFile(uploadId, partNumber);
+        try (OutputStream out = Files.newOutputStream(part)) {
+            out.write(data, 0, length);
+        }
+        return DigestUtil.md5Hex(part.toFile());
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        Path target = resolve(key);
+        Path temp = tempFile(target);
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                for (int i = 0; i < partETags.size(); i++) {
+                    Path part = partFile(uploadId, i + 1);
+                    if (!partETags.get(i).equals(DigestUtil.md5Hex(part.toFile()))) {
+                        throw new IOException("分片 " + (i + 1) + " 的 ETag 不匹配: " + key);
+                    }
+                    Files.copy(part, out);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        abortMultipartUpload(key, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        Path dir = root.resolve(MULTIPART_DIR).resolve(uploadId);
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Override
+    public boolean getObject(String key, OutputStream out) throws IOException {
+        try {
+            Files.copy(resolve(key), out);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getUrl(String key) {
+        return root.toUri() + key;
+    }
+
+    private Path partFile(String uploadId, int partNumber) throws IOException {
+        Path dir = root.resolve(MULTIPART_DIR).resolve(uploadId);
+        if (!Files.isDirectory(dir)) {
+            throw new IOException("分片上传不存在或已结束: " + uploadId);
+        }
+        return dir.resolve(String.valueOf(partNumber));
+    }
+
+    private static Path tempFile(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.startsWith(root.resolve(MULTIPART_DIR))) {
+            throw new IllegalArgumentException("非法的对象键: " + key);
+        }
+        return path;
+    }
+}
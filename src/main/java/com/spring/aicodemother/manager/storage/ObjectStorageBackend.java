@@ -0,0 +1,70 @@
+package com.spring.aicodemother.manager.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 对象存储后端（COS 或本地磁盘），只负责单次请求，分片、并发与重试由 {@link ObjectTransferManager} 处理
+ */
+public interface ObjectStorageBackend {
+
+    /**
+     * 对象是否存在
+     */
+    boolean exists(String key) throws IOException;
+
+    /**
+     * 单次请求上传对象
+     *
+     * @param length 内容长度
+     */
+    void putObject(String key, InputStream in, long length, String contentType) throws IOException;
+
+    /**
+     * 开始分片上传
+     *
+     * @return uploadId
+     */
+    String initiateMultipartUpload(String key, String contentType) throws IOException;
+
+    /**
+     * 上传一个分片
+     *
+     * @param partNumber 分片序号，从 1 开始
+     * @return 分片 ETag
+     */
+    String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) throws IOException;
+
+    /**
+     * 合并分片
+     *
+     * @param partETags 按分片序号排列的 ETag
+     */
+    void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException;
+
+    /**
+     * 放弃分片上传，清理已上传的分片
+     */
+    void abortMultipartUpload(String key, String uploadId) throws IOException;
+
+    /**
+     * 把对象内容写入输出流（不关闭输出流）
+     *
+     * @return 对象不存在时返回 false
+     */
+    boolean getObject(String key, OutputStream out) throws IOException;
+
+    /**
+     * 对象的访问地址
+     */
+    String getUrl(String key);
+
+    /**
+     * 失败后是否值得重试（如参数错误、无权限等不必重试）
+     */
+    default boolean isRetryable(Exception e) {
+        return true;
+    }
+}
@@ -0,0 +1,425 @@
+package com.spring.aicodemother.manager.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 对象存储传输管理器
+ * - 上传、下载都以流的方式进行，不经过本地临时文件，返回 CompletableFuture，不占用请求线程
+ * - 超过阈值的内容改为分片上传，分片并行发送
+ * - 所有传输共享同一个并发上限：同时进行的存储请求数（也即内存中缓冲的分片数）不超过 maxConcurrency
+ * - 单次请求失败后按指数退避重试；下载到调用方输出流时，只有尚未写出任何字节才重试
+ */
+@Slf4j
+public class ObjectTransferManager implements AutoCloseable {
+
+    private final ObjectStorageBackend backend;
+
+    private final int multipartThreshold;
+
+    private final int partSize;
+
+    private final int maxRetries;
+
+    private final long retryBackoffMillis;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Semaphore permits;
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param multipartThreshold 超过该字节数时使用分片上传
+     * @param partSize           分片大小（字节）
+     * @param maxConcurrency     同时进行的存储请求数上限
+     * @param maxRetries         单次请求失败后的最大重试次数
+     * @param retryBackoffMillis 首次重试前的等待时间，之后每次翻倍
+     */
+    public ObjectTransferManager(ObjectStorageBackend backend, int multipartThreshold, int partSize,
+                                 int maxConcurrency, int maxRetries, long retryBackoffMillis,
+                                 MeterRegistry meterRegistry) {
+        this.backend = backend;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.meterRegistry = meterRegistry;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    public ObjectStorageBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * 上传输入流中的内容（长度未知也可以），读取完毕后关闭输入流
+     *
+     * @return 对象访问地址
+     */
+    public CompletableFuture<String> upload(String key, InputStream in, String contentType) {
+        return submit("upload", () -> {
+            try (in) {
+                byte[] head = in.readNBytes(multipartThreshold + 1);
+                if (head.length <= multipartThreshold) {
+                    putBytes(key, head, contentType);
+                } else {
+                    multipartUpload(key, new SequenceInputStream(new ByteArrayInputStream(head), in), contentType);
+                }
+            }
+            return backend.getUrl(key);
+        });
+    }
+
+    /**
+     * 上传内存中的内容
+     *
+     * @return 对象访问地址
+     */
+    public CompletableFuture<String> upload(String key, byte[] bytes, String contentType) {
+        return submit("upload", () -> {
+            if (bytes.length <= multipartThreshold) {
+                putBytes(key, bytes, contentType);
+            } else {
+                multipartUpload(key, new ByteArrayInputStream(bytes), contentType);
+            }
+            return backend.getUrl(key);
+        });
+    }
+
+    /**
+     * 上传本地文件，小文件直接从磁盘流式上传，不读入内存
+     *
+     * @return 对象访问地址
+     */
+    public CompletableFuture<String> upload(String key, Path file, String contentType) {
+        return submit("upload", () -> {
+            long size = Files.size(file);
+            if (size <= multipartThreshold) {
+                withRetry("upload", key, () -> {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        return withPermit(() -> {
+                            backend.putObject(key, in, size, contentType);
+                            return null;
+                        });
+                    }
+                }, () -> true);
+                bytesCounter("upload").increment(size);
+            } else {
+                try (InputStream in = Files.newInputStream(file)) {
+                    multipartUpload(key, in, contentType);
+                }
+            }
+            return backend.getUrl(key);
+        });
+    }
+
+    /**
+     * 把对象内容写入输出流（不关闭输出流）
+     *
+     * @return 对象不存在时为 false
+     */
+    public CompletableFuture<Boolean> download(String key, OutputStream out) {
+        return submit("download", () -> {
+            CountingOutputStream counting = new CountingOutputStream(out);
+            boolean found = withRetry("download", key, () -> withPermit(() -> backend.getObject(key, counting)),
+                    () -> counting.count == 0);
+            bytesCounter("download").increment(counting.count);
+            return found;
+        });
+    }
+
+    /**
+     * 下载到本地文件：先写同目录下的临时文件，完整下载后再改名，不会留下写了一半的文件
+     *
+     * @return 对象不存在时为 false
+     */
+    public CompletableFuture<Boolean> download(String key, Path target) {
+        return submit("download", () -> {
+            Path parent = target.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = parent.resolve(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                boolean found = withRetry("download", key, () -> {
+                    try (OutputStream out = Files.newOutputStream(temp)) {
+                        return withPermit(() -> backend.getObject(key, out));
+                    }
+                }, () -> true);
+                if (found) {
+                    bytesCounter("download").increment(Files.size(temp));
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return found;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        });
+    }
+
+    /**
+     * 读取对象内容到内存（适用于小文件）
+     *
+     * @return 对象不存在时为 null
+     */
+    public CompletableFuture<byte[]> getBytes(String key) {
+        return submit("download", () -> {
+            byte[] bytes = withRetry("download", key, () -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                return withPermit(() -> backend.getObject(key, out)) ? out.toByteArray() : null;
+            }, () -> true);
+            if (bytes != null) {
+                bytesCounter("download").increment(bytes.length);
+            }
+            return bytes;
+        });
+    }
+
+    /**
+     * 对象是否存在（同步调用，失败时重试）
+     */
+    public boolean exists(String key) throws IOException {
+        return withRetry("exists", key, () -> withPermit(() -> backend.exists(key)), () -> true);
+    }
+
+    /**
+     * 异步查询对象是否存在，并发数同样受并发上限约束
+     */
+    public CompletableFuture<Boolean> existsAsync(String key) {
+        return submit("exists", () -> exists(key));
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("仍有对象存储传输未完成，强制结束");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void putBytes(String key, byte[] bytes, String contentType) throws IOException {
+        withRetry("upload", key, () -> withPermit(() -> {
+            backend.putObject(key, new ByteArrayInputStream(bytes), bytes.length, contentType);
+            return null;
+        }), () -> true);
+        bytesCounter("upload").increment(bytes.length);
+    }
+
+    /**
+     * 分片上传：按顺序读取分片，每个分片先占用一个并发名额再读入内存，因此缓冲的分片数受并发上限约束
+     * 任一分片最终失败时停止读取并放弃本次上传
+     */
+    private void multipartUpload(String key, InputStream in, String contentType) throws IOException {
+        String uploadId = withRetry("upload", key,
+                () -> withPermit(() -> backend.initiateMultipartUpload(key, contentType)), () -> true);
+        List<CompletableFuture<String>> parts = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long total = 0;
+        try {
+            while (failure.get() == null) {
+                acquire();
+                byte[] data;
+                try {
+                    data = in.readNBytes(partSize);
+                } catch (IOException | RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+                if (data.length == 0) {
+                    permits.release();
+                    break;
+                }
+                int partNumber = parts.size() + 1;
+                total += data.length;
+                CompletableFuture<String> part = new CompletableFuture<>();
+                workers.execute(() -> {
+                    try {
+                        part.complete(withRetry("upload_part", key,
+                                () -> backend.uploadPart(key, uploadId, partNumber, data, data.length), () -> true));
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                        part.completeExceptionally(e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+                parts.add(part);
+            }
+            List<String> eTags = new ArrayList<>(parts.size());
+            for (CompletableFuture<String> part : parts) {
+                eTags.add(part.join());
+            }
+            withRetry("upload", key, () -> withPermit(() -> {
+                backend.completeMultipartUpload(key, uploadId, eTags);
+                return null;
+            }), () -> true);
+        } catch (Exception e) {
+            // 等仍在发送的分片结束后再放弃，避免放弃之后又有分片写入
+            CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).exceptionally(error -> null).join();
+            abortQuietly(key, uploadId);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("分片上传失败: " + key, cause);
+        }
+        partCounter().increment(parts.size());
+        bytesCounter("upload").increment(total);
+        log.info("分片上传完成: {}，{} 个分片，{} 字节", key, parts.size(), total);
+    }
+
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            backend.abortMultipartUpload(key, uploadId);
+        } catch (Exception e) {
+            log.warn("放弃分片上传失败: key={}, uploadId={}", key, uploadId, e);
+        }
+    }
+
+    private <T> T withPermit(IoCallable<T> action) throws IOException {
+        acquire();
+        try {
+            return action.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire() throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待对象存储传输名额时被中断");
+        }
+    }
+
+    /**
+     * 失败后按指数退避重试
+     *
+     * @param canRetry 本次失败后是否还能安全重试（例如下载已向调用方写出部分内容时不能重试）
+     */
+    private <T> T withRetry(String op, String key, IoCallable<T> action, BooleanSupplier canRetry) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return action.call();
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= maxRetries || !backend.isRetryable(e) || !canRetry.getAsBoolean()) {
+                    throw e;
+                }
+                retryCounter(op).increment();
+                long backoff = retryBackoffMillis << attempt;
+                log.warn("对象存储{}失败，{} ms 后第 {} 次重试: key={}, 原因: {}", op, backoff, attempt + 1, key, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("对象存储重试等待时被中断");
+                }
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(String op, IoCallable<T> task) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        workers.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future.whenComplete((result, error) -> {
+            String status = error != null ? "error"
+                    : result == null || Boolean.FALSE.equals(result) ? "not_found" : "success";
+            Timer.builder("ai_code_storage_transfer_seconds")
+                    .description("对象存储传输耗时")
+                    .tag("op", op)
+                    .tag("result", status)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private Counter bytesCounter(String op) {
+        return Counter.builder("ai_code_storage_transfer_bytes_total")
+                .description("对象存储传输字节数")
+                .tag("op", op)
+                .register(meterRegistry);
+    }
+
+    private Counter retryCounter(String op) {
+        return Counter.builder("ai_code_storage_retries_total")
+                .description("对象存储请求重试次数")
+                .tag("op", op)
+                .register(meterRegistry);
+    }
+
+    private Counter partCounter() {
+        return Counter.builder("ai_code_storage_multipart_parts_total")
+                .description("分片上传的分片数")
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface IoCallable<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * 记录已写出字节数，用于判断下载失败后能否重试
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
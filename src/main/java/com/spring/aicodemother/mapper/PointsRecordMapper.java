@@ -2,6 +2,10 @@ package com.spring.aicodemother.mapper;
 
 import com.mybatisflex.core.BaseMapper;
 import com.spring.aicodemother.model.entity.PointsRecord;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
 
 /**
  * 积分明细 映射层。
@@ -10,4 +14,33 @@ import com.spring.aicodemother.model.entity.PointsRecord;
  */
 public interface PointsRecordMapper extends BaseMapper<PointsRecord> {
 
+    /**
+     * 可消费明细的判断条件：仍为有效/部分消费状态，且剩余积分与读取时一致（旧数据没有剩余积分时按原始积分计算）
+     */
+    String UNCHANGED_GRANT = " WHERE id = #{id} AND isDelete = 0" +
+            " AND (status IN ('ACTIVE', 'PARTIAL_CONSUMED') OR status IS NULL)" +
+            " AND (CASE WHEN remaining_points IS NULL OR remaining_points <= 0 THEN points ELSE remaining_points END)" +
+            " = #{expectedRemaining}";
+
+    /**
+     * 结算消费发放明细（条件更新，明细已被过期或其他结算修改时不更新）
+     *
+     * @return 影响行数，0 表示明细已被并发修改
+     */
+    @Update("UPDATE points_record SET status = #{status}, remaining_points = #{remainingPoints}" + UNCHANGED_GRANT)
+    int consumeIfUnchanged(@Param("id") Long id, @Param("status") String status,
+                           @Param("remainingPoints") int remainingPoints,
+                           @Param("expectedRemaining") int expectedRemaining);
+
+    /**
+     * 过期发放明细（条件更新，明细已被结算或其他过期任务修改时不更新）
+     *
+     * @return 影响行数，0 表示明细已被并发修改
+     */
+    @Update("UPDATE points_record SET status = #{status}, remaining_points = #{remainingPoints}, " +
+            "expired_amount = #{expiredAmount}, actual_expire_time = #{actualExpireTime}" + UNCHANGED_GRANT)
+    int expireIfUnchanged(@Param("id") Long id, @Param("status") String status,
+                          @Param("remainingPoints") int remainingPoints, @Param("expiredAmount") int expiredAmount,
+                          @Param("actualExpireTime") LocalDateTime actualExpireTime,
+                          @Param("expectedRemaining") int expectedRemaining);
 }
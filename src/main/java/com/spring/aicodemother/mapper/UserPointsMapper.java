@@ -2,6 +2,8 @@ package com.spring.aicodemother.mapper;
 
 import com.mybatisflex.core.BaseMapper;
 import com.spring.aicodemother.model.entity.UserPoints;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 /**
  * 用户积分 映射层。
@@ -10,4 +12,21 @@ import com.spring.aicodemother.model.entity.UserPoints;
  */
 public interface UserPointsMapper extends BaseMapper<UserPoints> {
 
+    /**
+     * 原子增减可用积分
+     *
+     * @param delta 变动积分，负数为减少
+     * @return 影响行数
+     */
+    @Update("UPDATE user_points SET availablePoints = availablePoints + #{delta} WHERE userId = #{userId} AND isDelete = 0")
+    int addAvailablePoints(@Param("userId") Long userId, @Param("delta") int delta);
+
+    /**
+     * 原子发放积分（同时增加累计积分与可用积分）
+     *
+     * @return 影响行数
+     */
+    @Update("UPDATE user_points SET totalPoints = totalPoints + #{points}, availablePoints = availablePoints + #{points} " +
+            "WHERE userId = #{userId} AND isDelete = 0")
+    int grantPoints(@Param("userId") Long userId, @Param("points") int points);
 }
@@ -55,9 +55,8 @@ public class AppVersion implements Serializable {
 
     /**
      * 代码内容（JSON格式，包含所有文件）
-     * @deprecated 已废弃，大文件请使用 codeStorageUrl
+     * 仅在快照存储不可用（未配置 COS）或保存失败时写入，正常情况使用 codeStorageUrl
      */
-    @Deprecated
     @Column("codeContent")
     private String codeContent;
 
@@ -79,6 +78,12 @@ public class AppVersion implements Serializable {
     @Column("deployUrl")
     private String deployUrl;
 
+    /**
+     * 部署产物版本标识（内容寻址的部署目录名，用于回滚时直接切换）
+     */
+    @Column("releaseId")
+    private String releaseId;
+
     /**
      * 部署时间
      */
@@ -1,33 +1,137 @@
 package com.spring.aicodemother.monitor;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * AI 模型指标采集
+ * 默认 aggregated 模式：Prometheus 指标只按 模型/状态/错误类型/Token 类型 聚合，标签取值有上限，时间序列数量固定；
+ * 按用户、应用的 Token 消耗和调用次数改由窗口化 Top-K 草图统计，通过 actuator 端点 aitokens 查看，
+ * 上一个完整窗口的前几名同时导出为 *_top 指标（每个指标最多 gauge-size 条时间序列）供看板排行使用
+ * detailed 模式保留按 user_id、app_id 打标签的旧指标，仅适合用户量很小的环境排查问题
+ */
 @Component
 @Slf4j
 public class AiModelMetricsCollector {
 
+    private static final String UNKNOWN = "unknown";
+
+    private static final String OTHER = "other";
+
+    /**
+     * 单个标签允许出现的不同取值数量上限，超出后归入 other
+     */
+    private static final int MAX_TAG_VALUES = 50;
+
     @Resource
     private MeterRegistry meterRegistry;
 
+    /**
+     * 指标模式：aggregated（默认）/ detailed
+     */
+    @Value("${ai.metrics.mode:aggregated}")
+    private String metricsMode;
+
+    @Value("${ai.metrics.top-k.capacity:100}")
+    private int topKCapacity;
+
+    @Value("${ai.metrics.top-k.window-minutes:10}")
+    private long topKWindowMinutes;
+
+    /**
+     * 每个排行指标导出的条目数
+     */
+    @Value("${ai.metrics.top-k.gauge-size:10}")
+    private int topKGaugeSize;
+
+    private boolean detailed;
+
     // 缓存已创建的指标，避免重复创建（按指标类型分离缓存）线程安全的缓存容器，专门为高并发场景设计
     private final ConcurrentMap<String, Counter> requestCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> errorCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> tokenCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Timer> responseTimersCache = new ConcurrentHashMap<>();
 
+    /**
+     * aggregated 模式下的 Token 累加器：LongAdder 内部分段计数，高并发写入无锁竞争，抓取时再求和
+     * tokenAddersByTag 按最终标签取值登记，tokenAdders 是按原始模型名的快速查找表
+     */
+    private final ConcurrentMap<String, LongAdder> tokenAddersByTag = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> tokenAdders = new ConcurrentHashMap<>();
+
+    /**
+     * 已出现过的标签取值，用于限制基数
+     */
+    private final Set<String> modelNames = ConcurrentHashMap.newKeySet();
+    private final Set<String> errorClasses = ConcurrentHashMap.newKeySet();
+
+    private TokenUsageTopK userTokenTopK;
+
+    private TokenUsageTopK appTokenTopK;
+
+    private TokenUsageTopK userRequestTopK;
+
+    private TokenUsageTopK appRequestTopK;
+
+    private MultiGauge userTokenGauge;
+
+    private MultiGauge appTokenGauge;
+
+    private MultiGauge userRequestGauge;
+
+    private MultiGauge appRequestGauge;
+
+    @PostConstruct
+    public void init() {
+        detailed = "detailed".equalsIgnoreCase(metricsMode);
+        long windowMillis = Duration.ofMinutes(topKWindowMinutes).toMillis();
+        userTokenTopK = new TokenUsageTopK(topKCapacity, windowMillis);
+        appTokenTopK = new TokenUsageTopK(topKCapacity, windowMillis);
+        userRequestTopK = new TokenUsageTopK(topKCapacity, windowMillis);
+        appRequestTopK = new TokenUsageTopK(topKCapacity, windowMillis);
+        userTokenGauge = topGauge("ai_model_user_tokens_top", "上一个窗口Token消耗最高的用户");
+        appTokenGauge = topGauge("ai_model_app_tokens_top", "上一个窗口Token消耗最高的应用");
+        userRequestGauge = topGauge("ai_model_user_requests_top", "上一个窗口成功调用次数最多的用户");
+        appRequestGauge = topGauge("ai_model_app_requests_top", "上一个窗口成功调用次数最多的应用");
+        log.info("AI 模型指标模式: {}", detailed ? "detailed" : "aggregated");
+    }
+
     /**
      * 记录请求次数
      */
     public void recordRequest(String userId, String appId, String modelName, String status) {
+        if ("success".equals(status)) {
+            userRequestTopK.add(userId, 1);
+            appRequestTopK.add(appId, 1);
+        }
+        if (!detailed) {
+            String model = boundedTag(modelNames, modelName);
+            Counter counter = requestCountersCache.computeIfAbsent(model + "_" + status, k ->
+                    Counter.builder("ai_model_requests_total")
+                            .description("AI模型总请求次数")
+                            .tag("model_name", model)
+                            .tag("status", status)
+                            .register(meterRegistry)
+            );
+            counter.increment();
+            return;
+        }
         String key = String.format("%s_%s_%s_%s", userId, appId, modelName, status);
         // 介绍computeIfAbsent：先检查是否有该 key 的 Counter 存在，有则直接返回，没有则创建一个
         Counter counter = requestCountersCache.computeIfAbsent(key, k ->
@@ -43,19 +147,30 @@ public class AiModelMetricsCollector {
     }
 
     /**
-     * 记录错误
+     * 记录错误（按异常类型聚合，不再把原始错误信息作为标签）
      */
-    public void recordError(String userId, String appId, String modelName, String errorMessage) {
-        // ✅ 修复：处理 errorMessage 为 null 的情况
-        String safeErrorMessage = errorMessage != null ? errorMessage : "unknown_error";
-        String key = String.format("%s_%s_%s_%s", userId, appId, modelName, safeErrorMessage);
+    public void recordError(String userId, String appId, String modelName, Throwable error) {
+        String model = boundedTag(modelNames, modelName);
+        String errorClass = boundedTag(errorClasses, error != null ? error.getClass().getSimpleName() : null);
+        if (!detailed) {
+            Counter counter = errorCountersCache.computeIfAbsent(model + "_" + errorClass, k ->
+                    Counter.builder("ai_model_errors_total")
+                            .description("AI模型错误次数")
+                            .tag("model_name", model)
+                            .tag("error_class", errorClass)
+                            .register(meterRegistry)
+            );
+            counter.increment();
+            return;
+        }
+        String key = String.format("%s_%s_%s_%s", userId, appId, model, errorClass);
         Counter counter = errorCountersCache.computeIfAbsent(key, k ->
                 Counter.builder("ai_model_errors_total")
                         .description("AI模型错误次数")
-                        .tag("user_id", userId != null ? userId : "unknown")
-                        .tag("app_id", appId != null ? appId : "unknown")
-                        .tag("model_name", modelName != null ? modelName : "unknown")
-                        .tag("error_message", safeErrorMessage)
+                        .tag("user_id", userId != null ? userId : UNKNOWN)
+                        .tag("app_id", appId != null ? appId : UNKNOWN)
+                        .tag("model_name", model)
+                        .tag("error_class", errorClass)
                         .register(meterRegistry)
         );
         counter.increment();
@@ -66,6 +181,19 @@ public class AiModelMetricsCollector {
      */
     public void recordTokenUsage(String userId, String appId, String modelName,
                                  String tokenType, long tokenCount) {
+        if ("total".equals(tokenType)) {
+            userTokenTopK.add(userId, tokenCount);
+            appTokenTopK.add(appId, tokenCount);
+        }
+        if (!detailed) {
+            // 热路径：命中后只有一次 map 查找和一次 LongAdder 累加
+            LongAdder adder = tokenAdders.get(modelName + "_" + tokenType);
+            if (adder == null) {
+                adder = registerTokenAdder(modelName, tokenType);
+            }
+            adder.add(tokenCount);
+            return;
+        }
         String key = String.format("%s_%s_%s_%s", userId, appId, modelName, tokenType);
         Counter counter = tokenCountersCache.computeIfAbsent(key, k ->
                 Counter.builder("ai_model_tokens_total")
@@ -83,6 +211,17 @@ public class AiModelMetricsCollector {
      * 记录响应时间
      */
     public void recordResponseTime(String userId, String appId, String modelName, Duration duration) {
+        if (!detailed) {
+            String model = boundedTag(modelNames, modelName);
+            Timer timer = responseTimersCache.computeIfAbsent(model, k ->
+                    Timer.builder("ai_model_response_duration_seconds")
+                            .description("AI模型响应时间")
+                            .tag("model_name", model)
+                            .register(meterRegistry)
+            );
+            timer.record(duration);
+            return;
+        }
         String key = String.format("%s_%s_%s", userId, appId, modelName);
         Timer timer = responseTimersCache.computeIfAbsent(key, k ->
                 Timer.builder("ai_model_response_duration_seconds")
@@ -94,5 +233,76 @@ public class AiModelMetricsCollector {
         );
         timer.record(duration);
     }
-}
 
+    /**
+     * 按用户统计的 Token 消耗 Top-K
+     */
+    public TokenUsageTopK getUserTokenTopK() {
+        return userTokenTopK;
+    }
+
+    /**
+     * 按应用统计的 Token 消耗 Top-K
+     */
+    public TokenUsageTopK getAppTokenTopK() {
+        return appTokenTopK;
+    }
+
+    /**
+     * 用上一个完整窗口的 Top-K 刷新排行指标；跌出排行的用户/应用的时间序列随之移除
+     */
+    @Scheduled(fixedDelayString = "${ai.metrics.top-k.refresh-millis:15000}")
+    public void refreshTopGauges() {
+        refreshTopGauge(userTokenGauge, "user_id", userTokenTopK);
+        refreshTopGauge(appTokenGauge, "app_id", appTokenTopK);
+        refreshTopGauge(userRequestGauge, "user_id", userRequestTopK);
+        refreshTopGauge(appRequestGauge, "app_id", appRequestTopK);
+    }
+
+    private MultiGauge topGauge(String name, String description) {
+        return MultiGauge.builder(name)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private void refreshTopGauge(MultiGauge gauge, String tagKey, TokenUsageTopK topK) {
+        gauge.register(topK.previousTop(topKGaugeSize).stream()
+                .<MultiGauge.Row<?>>map(entry -> MultiGauge.Row.of(Tags.of(tagKey, entry.key()), entry.tokens()))
+                .toList(), true);
+    }
+
+    private LongAdder registerTokenAdder(String modelName, String tokenType) {
+        String model = boundedTag(modelNames, modelName);
+        LongAdder adder = tokenAddersByTag.computeIfAbsent(model + "_" + tokenType, k -> {
+            LongAdder created = new LongAdder();
+            FunctionCounter.builder("ai_model_tokens_total", created, LongAdder::sum)
+                    .description("AI模型Token消耗总数")
+                    .tag("model_name", model)
+                    .tag("token_type", tokenType)
+                    .register(meterRegistry);
+            return created;
+        });
+        // 超出基数上限的模型共用 other 的累加器，不写入快速查找表，保证表的大小有界
+        if (!OTHER.equals(model)) {
+            tokenAdders.putIfAbsent(modelName + "_" + tokenType, adder);
+        }
+        return adder;
+    }
+
+    /**
+     * 限制标签基数：取值数量达到上限后，新出现的取值统一记为 other
+     */
+    private static String boundedTag(Set<String> seen, String value) {
+        if (value == null || value.isBlank()) {
+            return UNKNOWN;
+        }
+        if (seen.contains(value)) {
+            return value;
+        }
+        if (seen.size() >= MAX_TAG_VALUES) {
+            return OTHER;
+        }
+        seen.add(value);
+        return value;
+    }
+}
@@ -137,9 +137,9 @@ public class AiModelMonitorListener implements ChatModelListener {
         String errorMessage = errorContext.error() != null
             ? errorContext.error().getMessage()
             : null;
-        // 记录失败请求
+        // 记录失败请求（指标按异常类型聚合，错误信息只写日志）
         aiModelMetricsCollector.recordRequest(userId, appId, modelName, "error");
-        aiModelMetricsCollector.recordError(userId, appId, modelName, errorMessage);
+        aiModelMetricsCollector.recordError(userId, appId, modelName, errorContext.error());
         // 记录响应时间（即使是错误响应）
         recordResponseTime(attributes, userId, appId, modelName);
 
@@ -172,9 +172,9 @@ public class AiModelMonitorListener implements ChatModelListener {
             log.info("[Token消耗] userId:{}, appId:{}, model:{}, input:{}, output:{}, total:{}", 
                     userId, appId, modelName, inputTokens, outputTokens, totalTokens);
             
-            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input", inputTokens);
-            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "output", outputTokens);
-            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "total", totalTokens);
+            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input", inputTokens != null ? inputTokens : 0);
+            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "output", outputTokens != null ? outputTokens : 0);
+            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "total", totalTokens != null ? totalTokens : 0);
             
             // ✅ 关键修复：使用全局缓存累加Token（支持跨线程）
             if (totalTokens != null && totalTokens > 0) {
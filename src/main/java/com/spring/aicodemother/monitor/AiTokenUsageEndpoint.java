@@ -0,0 +1,42 @@
+package com.spring.aicodemother.monitor;
+
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token 消耗排行端点（/actuator/aitokens）
+ * 按用户、应用的 Token 消耗不再作为 Prometheus 标签导出，改由此端点返回当前窗口和上一个窗口的 Top-K
+ */
+@Component
+@Endpoint(id = "aitokens")
+public class AiTokenUsageEndpoint {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    @Resource
+    private AiModelMetricsCollector aiModelMetricsCollector;
+
+    @ReadOperation
+    public Map<String, Object> tokenUsage() {
+        TokenUsageTopK users = aiModelMetricsCollector.getUserTokenTopK();
+        TokenUsageTopK apps = aiModelMetricsCollector.getAppTokenTopK();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowSeconds", users.getWindowMillis() / 1000);
+        result.put("users", window(users));
+        result.put("apps", window(apps));
+        return result;
+    }
+
+    private static Map<String, List<TokenUsageTopK.Entry>> window(TokenUsageTopK topK) {
+        Map<String, List<TokenUsageTopK.Entry>> result = new LinkedHashMap<>();
+        result.put("current", topK.currentTop(DEFAULT_LIMIT));
+        result.put("previous", topK.previousTop(DEFAULT_LIMIT));
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package com.spring.aicodemother.monitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按时间窗口统计 Token 消耗（也用于调用次数）的 Top-K 草图
+ * 使用 Count-Min Sketch 估算每个键的累计值（固定内存），候选集合只保留估算值最高的一批键；
+ * 写入路径全程无锁，候选集合超出上限时由抢到 tryLock 的线程负责裁剪
+ * 窗口到期后整体轮换，只保留当前窗口和上一个完整窗口
+ */
+public class TokenUsageTopK {
+
+    private static final int DEPTH = 4;
+
+    private static final int WIDTH = 2048;
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int capacity;
+
+    private final long windowMillis;
+
+    private final AtomicReference<Window> current;
+
+    private volatile Window previous;
+
+    /**
+     * @param capacity     候选集合保留的键数量（Top-K 的上限）
+     * @param windowMillis 窗口长度（毫秒）
+     */
+    public TokenUsageTopK(int capacity, long windowMillis) {
+        this.capacity = capacity;
+        this.windowMillis = windowMillis;
+        this.current = new AtomicReference<>(new Window(System.currentTimeMillis()));
+    }
+
+    /**
+     * 累加某个键的 Token 数
+     */
+    public void add(String key, long count) {
+        if (key == null || count <= 0) {
+            return;
+        }
+        currentWindow().add(key, count, capacity);
+    }
+
+    /**
+     * 当前窗口的 Top-K
+     */
+    public List<Entry> currentTop(int k) {
+        return currentWindow().top(k);
+    }
+
+    /**
+     * 上一个完整窗口的 Top-K
+     */
+    public List<Entry> previousTop(int k) {
+        currentWindow();
+        Window window = previous;
+        return window == null ? List.of() : window.top(k);
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    private Window currentWindow() {
+        Window window = current.get();
+        long now = System.currentTimeMillis();
+        if (now - window.startMillis < windowMillis) {
+            return window;
+        }
+        Window next = new Window(now);
+        if (current.compareAndSet(window, next)) {
+            previous = window;
+            return next;
+        }
+        return current.get();
+    }
+
+    /**
+     * Top-K 条目
+     *
+     * @param key    用户ID或应用ID
+     * @param tokens 估算的 Token 消耗（Count-Min Sketch 只会高估，不会低估）
+     */
+    public record Entry(String key, long tokens) {
+    }
+
+    /**
+     * 单个时间窗口
+     */
+    private static class Window {
+        final long startMillis;
+        final AtomicLongArray table = new AtomicLongArray(DEPTH * WIDTH);
+        final Map<String, Long> candidates = new ConcurrentHashMap<>();
+        final ReentrantLock trimLock = new ReentrantLock();
+        /**
+         * 进入候选集合的最低估算值（裁剪后更新）
+         */
+        volatile long threshold;
+
+        Window(long startMillis) {
+            this.startMillis = startMillis;
+        }
+
+        void add(String key, long count, int capacity) {
+            long estimate = Long.MAX_VALUE;
+            int hash = key.hashCode();
+            for (int row = 0; row < DEPTH; row++) {
+                int index = row * WIDTH + bucket(hash, row);
+                estimate = Math.min(estimate, table.addAndGet(index, count));
+            }
+            if (estimate > threshold || candidates.size() < capacity || candidates.containsKey(key)) {
+                candidates.put(key, estimate);
+            }
+            if (candidates.size() > capacity * 2 && trimLock.tryLock()) {
+                try {
+                    trim(capacity);
+                } finally {
+                    trimLock.unlock();
+                }
+            }
+        }
+
+        void trim(int capacity) {
+            List<Map.Entry<String, Long>> sorted = new ArrayList<>(candidates.entrySet());
+            if (sorted.size() <= capacity) {
+                return;
+            }
+            sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            for (int i = capacity; i < sorted.size(); i++) {
+                candidates.remove(sorted.get(i).getKey());
+            }
+            threshold = sorted.get(capacity - 1).getValue();
+        }
+
+        List<Entry> top(int k) {
+            return candidates.entrySet().stream()
+                    .map(e -> new Entry(e.getKey(), e.getValue()))
+                    .sorted(Comparator.comparingLong(Entry::tokens).reversed())
+                    .limit(k)
+                    .toList();
+        }
+
+        private static int bucket(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9E3779B1;
+            h ^= h >>> 16;
+            return (h & Integer.MAX_VALUE) % WIDTH;
+        }
+    }
+}
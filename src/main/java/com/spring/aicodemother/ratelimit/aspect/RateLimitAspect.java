@@ -4,6 +4,7 @@ import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.model.entity.User;
 import com.spring.aicodemother.ratelimit.annotation.RateLimit;
+import com.spring.aicodemother.ratelimit.limiter.HybridRateLimiter;
 import com.spring.aicodemother.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,16 +13,11 @@ import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.redisson.api.RRateLimiter;
-import org.redisson.api.RateIntervalUnit;
-import org.redisson.api.RateType;
-import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.lang.reflect.Method;
-import java.time.Duration;
 
 /**
  * 限流切面核心逻辑
@@ -32,7 +28,7 @@ import java.time.Duration;
 public class RateLimitAspect {
 
     @Resource
-    private RedissonClient redissonClient;
+    private HybridRateLimiter hybridRateLimiter;
 
     @Resource
     private UserService userService;
@@ -40,13 +36,8 @@ public class RateLimitAspect {
     @Before("@annotation(rateLimit)")
     public void doBefore(JoinPoint point, RateLimit rateLimit) {
         String key = generateRateLimitKey(point, rateLimit);
-        // 使用 Redisson 的分布式限流器
-        RRateLimiter rateLimiter = redissonClient.getRateLimiter(key);
-        rateLimiter.expire(Duration.ofHours(1)); // 1 小时后过期
-        // 设置限流器参数：每个时间窗口允许的请求数和时间窗口
-        rateLimiter.trySetRate(RateType.OVERALL, rateLimit.rate(), rateLimit.rateInterval(), RateIntervalUnit.SECONDS);
-        // 尝试获取一个令牌，如果获取失败则限流
-        if (!rateLimiter.tryAcquire(1)) {
+        // 优先使用本地租到的令牌，用完后才访问 Redis
+        if (!hybridRateLimiter.tryAcquire(key, rateLimit.rate(), rateLimit.rateInterval())) {
             throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, rateLimit.message());
         }
     }
@@ -60,7 +51,6 @@ public class RateLimitAspect {
      */
     private String generateRateLimitKey(JoinPoint point, RateLimit rateLimit) {
         StringBuilder keyBuilder = new StringBuilder();
-        keyBuilder.append("rate_limit:");
         // 添加自定义前缀
         if (!rateLimit.key().isEmpty()) {
             keyBuilder.append(rateLimit.key()).append(":");
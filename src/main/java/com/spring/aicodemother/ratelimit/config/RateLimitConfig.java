@@ -0,0 +1,23 @@
+package com.spring.aicodemother.ratelimit.config;
+
+import com.spring.aicodemother.ratelimit.limiter.HybridRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Configuration
+public class RateLimitConfig {
+
+    @Value("${code.rate-limit.lease-ratio:0.1}")
+    private double leaseRatio;
+
+    @Value("${code.rate-limit.lease-millis:1000}")
+    private long leaseMillis;
+
+    @Bean
+    public HybridRateLimiter hybridRateLimiter(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry) {
+        return new HybridRateLimiter(stringRedisTemplate, leaseRatio, leaseMillis, meterRegistry);
+    }
+}
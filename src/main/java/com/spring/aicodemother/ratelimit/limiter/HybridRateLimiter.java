@@ -0,0 +1,156 @@
+package com.spring.aicodemother.ratelimit.limiter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 混合滑动窗口限流器
+ * - 滑动窗口保存在 Redis 中，与 Redisson RRateLimiter（OVERALL）语义一致：任意一个窗口内发放的令牌数不超过速率
+ * - 限流参数随租借脚本在创建时写入，不再单独 trySetRate / expire
+ * - 每次向 Redis 租借一批令牌（速率的一定比例），之后的请求直接从本地租约中取令牌，不访问 Redis
+ * - 本地租约用完或过期时才访问 Redis；速率较低时批量为 1，即每次请求都严格经过 Redis
+ * - Redis 返回无令牌时记下最早一批令牌滑出窗口的时间，在此之前的请求直接在本地拒绝
+ * <p>
+ * 令牌都先从 Redis 扣除再使用，按租借时间计入窗口；租到的令牌在本地租约有效期内陆续放行，
+ * 因此按实际放行时间统计时，任一窗口最多比速率多出一批（速率 × lease-ratio），批量为 1 时与 Redisson 完全一致。
+ * 本地租约过期未用完的令牌作废，代价是低负载节点可能短暂占用少量令牌
+ */
+@Slf4j
+public class HybridRateLimiter {
+
+    static final String KEY_PREFIX = "rate_limit:window:";
+
+    static final String PERMITS_SUFFIX = ":permits";
+
+    private static final RedisScript<List> LEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/rate_limit_lease.lua"), List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 每次租借的令牌数占每个窗口令牌数的比例
+     */
+    private final double leaseRatio;
+
+    /**
+     * 本地租约有效期（纳秒）
+     */
+    private final long leaseNanos;
+
+    private final Cache<String, LocalLease> leases;
+
+    private final Counter localCounter;
+
+    private final Counter remoteCounter;
+
+    private final Counter rejectedLocalCounter;
+
+    private final Counter rejectedRemoteCounter;
+
+    public HybridRateLimiter(StringRedisTemplate stringRedisTemplate, double leaseRatio, long leaseMillis,
+                             MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.leaseRatio = leaseRatio;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+        this.localCounter = counter(meterRegistry, "local");
+        this.remoteCounter = counter(meterRegistry, "remote");
+        this.rejectedLocalCounter = counter(meterRegistry, "rejected_local");
+        this.rejectedRemoteCounter = counter(meterRegistry, "rejected_remote");
+    }
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @param key             限流key（同一个key共用一个限流窗口，参数以首次创建时为准）
+     * @param rate            每个时间窗口允许的请求数
+     * @param intervalSeconds 时间窗口（秒）
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(String key, int rate, int intervalSeconds) {
+        LocalLease lease = leases.get(key, k -> new LocalLease());
+        // 同一个key同一时间只有一个请求去 Redis 租借，其余请求等待后直接使用租到的令牌
+        lease.lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (lease.tokens > 0 && now - lease.expiresAt < 0) {
+                lease.tokens--;
+                localCounter.increment();
+                return true;
+            }
+            if (now - lease.deniedUntil < 0) {
+                rejectedLocalCounter.increment();
+                return false;
+            }
+            int batch = Math.max(1, (int) (rate * leaseRatio));
+            long[] reply = lease(windowKey(key), rate, TimeUnit.SECONDS.toMillis(intervalSeconds), batch);
+            now = System.nanoTime();
+            if (reply[0] <= 0) {
+                lease.tokens = 0;
+                lease.deniedUntil = now + TimeUnit.MILLISECONDS.toNanos(reply[1]);
+                rejectedRemoteCounter.increment();
+                return false;
+            }
+            lease.tokens = (int) reply[0] - 1;
+            lease.expiresAt = now + leaseNanos;
+            remoteCounter.increment();
+            return true;
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    /**
+     * 限流窗口在 Redis 中的参数 key，租借记录 key 在其后追加 {@link #PERMITS_SUFFIX}
+     * 用 {} 包住限流key，集群模式下两个 key 落在同一个槽
+     */
+    static String windowKey(String key) {
+        return KEY_PREFIX + "{" + key + "}";
+    }
+
+    /**
+     * 从 Redis 滑动窗口租借令牌
+     *
+     * @return {租到的令牌数, 无令牌时距最早一批令牌滑出窗口的毫秒数}
+     */
+    protected long[] lease(String windowKey, int rate, long intervalMillis, int requested) {
+        List<?> reply = stringRedisTemplate.execute(LEASE_SCRIPT, List.of(windowKey, windowKey + PERMITS_SUFFIX),
+                String.valueOf(rate), String.valueOf(intervalMillis), String.valueOf(requested));
+        return new long[]{((Number) reply.get(0)).longValue(), ((Number) reply.get(1)).longValue()};
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ai_code_rate_limit_requests_total")
+                .description("限流检查次数（local/remote 为放行，rejected_* 为拒绝）")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 本节点持有的租约
+     */
+    private static final class LocalLease {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private int tokens;
+
+        private long expiresAt;
+
+        private long deniedUntil = System.nanoTime();
+    }
+}
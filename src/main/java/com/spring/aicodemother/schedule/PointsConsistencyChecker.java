@@ -6,11 +6,13 @@ import com.spring.aicodemother.model.entity.UserPoints;
 import com.spring.aicodemother.model.enums.PointsStatusEnum;
 import com.spring.aicodemother.service.PointsRecordService;
 import com.spring.aicodemother.service.UserPointsService;
+import com.spring.aicodemother.service.impl.PointsSettler;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -30,6 +32,9 @@ public class PointsConsistencyChecker {
     @Resource
     private PointsRecordService pointsRecordService;
 
+    @Resource
+    private PointsSettler pointsSettler;
+
     /**
      * 每天凌晨3点执行数据一致性检查
      * cron表达式：秒 分 时 日 月 周
@@ -40,6 +45,9 @@ public class PointsConsistencyChecker {
         long startTime = System.currentTimeMillis();
 
         try {
+            // 先结算 Redis 中的扣减，账户与流水才是完整的
+            pointsSettler.settleAll();
+
             // 获取所有用户积分账户
             List<UserPoints> allUsers = userPointsService.list();
             
@@ -51,6 +59,7 @@ public class PointsConsistencyChecker {
             int totalUsers = allUsers.size();
             int inconsistentCount = 0;
             int fixedCount = 0;
+            List<Long> fixedUserIds = new ArrayList<>();
 
             for (UserPoints userPoints : allUsers) {
                 Long userId = userPoints.getUserId();
@@ -72,6 +81,7 @@ public class PointsConsistencyChecker {
                             boolean fixed = autoFixUserPoints(userId, userPoints, result);
                             if (fixed) {
                                 fixedCount++;
+                                fixedUserIds.add(userId);
                             }
                         }
                     }
@@ -80,6 +90,11 @@ public class PointsConsistencyChecker {
                 }
             }
 
+            // 修复后的账户同步到 Redis 余额
+            if (!fixedUserIds.isEmpty()) {
+                pointsSettler.reconcile(fixedUserIds);
+            }
+
             long endTime = System.currentTimeMillis();
             log.info("积分数据一致性检查完成，总用户数：{}，发现不一致：{}，已自动修复：{}，耗时：{}ms",
                     totalUsers, inconsistentCount, fixedCount, (endTime - startTime));
@@ -198,17 +213,12 @@ public class PointsConsistencyChecker {
             log.info("尝试自动修复用户 {} 的积分，将 {} 修正为 {}",
                     userId, checkResult.getAccountBalance(), checkResult.getCalculatedBalance());
 
-            // 更新用户积分账户
+            // 按差额原子更新用户积分账户
+            userPointsService.adjustAvailablePoints(userId,
+                    checkResult.getCalculatedBalance() - checkResult.getAccountBalance());
             userPoints.setAvailablePoints(checkResult.getCalculatedBalance());
-            boolean updated = userPointsService.updateById(userPoints);
-
-            if (updated) {
-                log.info("用户 {} 积分自动修复成功", userId);
-                return true;
-            } else {
-                log.error("用户 {} 积分自动修复失败：数据库更新失败", userId);
-                return false;
-            }
+            log.info("用户 {} 积分自动修复成功", userId);
+            return true;
         } catch (Exception e) {
             log.error("用户 {} 积分自动修复失败", userId, e);
             return false;
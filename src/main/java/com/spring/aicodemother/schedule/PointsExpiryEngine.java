@@ -0,0 +1,371 @@
+package com.spring.aicodemother.schedule;
+
+import com.mybatisflex.core.query.QueryWrapper;
+import com.spring.aicodemother.mapper.PointsRecordMapper;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.spring.aicodemother.model.entity.PointsRecord;
+import com.spring.aicodemother.model.entity.UserPoints;
+import com.spring.aicodemother.model.enums.PointsStatusEnum;
+import com.spring.aicodemother.model.enums.PointsTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 积分过期引擎
+ * - 按用户ID键集分页扫描已过期的积分明细，每页固定用户数，内存占用与过期总量无关
+ * - 一页内的用户在有界线程池中并行处理，每个用户的过期在独立事务中提交
+ * - 每页完成后保存检查点（本轮截止时间 + 已完成的最大用户ID），中断后从检查点继续；
+ *   已提交用户的明细不再满足过期条件，重复处理同一页是安全的
+ * <p>
+ * 结算在截止时间前读取、截止时间后提交时，会与本引擎处理同一笔明细，因此两边都按读取时的状态与剩余积分条件更新：
+ * 明细已被对方修改时本用户的事务回滚，重新读取后重试，不会覆盖对方的写入
+ * <p>
+ * 已在 Redis 中扣除、尚未结算到数据库的扣减会占用明细的剩余积分，过期上限为数据库可用积分减去这部分，
+ * 否则结算时明细已全部过期，用户会在积分过期之后再为这些消费付一次
+ */
+@Slf4j
+public class PointsExpiryEngine {
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    /**
+     * 明细被并发修改时单个用户的最大尝试次数
+     */
+    private static final int MAX_CONFLICT_ATTEMPTS = 3;
+
+    private final PointsRecordMapper pointsRecordMapper;
+
+    private final UserPointsMapper userPointsMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CheckpointStore checkpointStore;
+
+    /**
+     * 扣减用户可用积分前的回调（在该用户的事务内执行，可登记提交后的动作），参数为用户ID与可用积分变动（负数）
+     */
+    private final ObjIntConsumer<Long> expiredListener;
+
+    /**
+     * 用户尚未结算到数据库的扣减积分（为空时视为 0）
+     */
+    private final ToIntFunction<Long> pendingDebits;
+
+    private final int pageSize;
+
+    private final int parallelism;
+
+    private final Counter expiredPointsCounter;
+
+    private final Counter failedUsersCounter;
+
+    private final Timer pageTimer;
+
+    public PointsExpiryEngine(PointsRecordMapper pointsRecordMapper, UserPointsMapper userPointsMapper,
+                              TransactionTemplate transactionTemplate, CheckpointStore checkpointStore,
+                              ObjIntConsumer<Long> expiredListener, ToIntFunction<Long> pendingDebits,
+                              int pageSize, int parallelism, MeterRegistry meterRegistry) {
+        this.pointsRecordMapper = pointsRecordMapper;
+        this.userPointsMapper = userPointsMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.checkpointStore = checkpointStore;
+        this.expiredListener = expiredListener;
+        this.pendingDebits = pendingDebits;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.expiredPointsCounter = Counter.builder("ai_code_points_expired_total")
+                .description("过期的积分总数")
+                .register(meterRegistry);
+        this.failedUsersCounter = Counter.builder("ai_code_points_expire_failures_total")
+                .description("过期处理失败的用户数")
+                .register(meterRegistry);
+        this.pageTimer = Timer.builder("ai_code_points_expire_page_seconds")
+                .description("每页用户的过期处理耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 以当前时间为截止时间开始新一轮过期
+     */
+    public Result start() {
+        Checkpoint checkpoint = new Checkpoint(LocalDateTime.now(), 0L);
+        checkpointStore.save(checkpoint);
+        return process(checkpoint, false);
+    }
+
+    /**
+     * 从上次中断的检查点继续（沿用原截止时间）
+     *
+     * @return 没有未完成的检查点时返回 null
+     */
+    public Result resume() {
+        Checkpoint checkpoint = checkpointStore.load();
+        if (checkpoint == null) {
+            return null;
+        }
+        log.info("从检查点继续积分过期：截止时间 {}，已完成到用户 {}", checkpoint.getCutoff(), checkpoint.getLastUserId());
+        return process(checkpoint, true);
+    }
+
+    private Result process(Checkpoint checkpoint, boolean resumed) {
+        long startTime = System.currentTimeMillis();
+        Result result = new Result(resumed, 0, 0, 0, 0, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "points-expire-" + THREAD_SEQ.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Long> userIds;
+            do {
+                userIds = nextUserPage(checkpoint);
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                processPage(checkpoint.getCutoff(), userIds, executor, result);
+                checkpoint.setLastUserId(userIds.get(userIds.size() - 1));
+                checkpointStore.save(checkpoint);
+            } while (userIds.size() >= pageSize);
+            checkpointStore.clear();
+        } finally {
+            executor.shutdownNow();
+        }
+        result.setElapsedMillis(System.currentTimeMillis() - startTime);
+        log.info("积分过期完成：处理 {} 个用户，{} 条记录，共 {} 积分过期，失败 {} 个用户，耗时 {} ms",
+                result.getUsers(), result.getRecords(), result.getExpiredPoints(), result.getFailedUsers(),
+                result.getElapsedMillis());
+        return result;
+    }
+
+    /**
+     * 下一页有过期积分的用户ID（升序，键集分页）
+     */
+    private List<Long> nextUserPage(Checkpoint checkpoint) {
+        QueryWrapper queryWrapper = expiredQuery(checkpoint.getCutoff())
+                .select(PointsRecord::getUserId)
+                .gt(PointsRecord::getUserId, checkpoint.getLastUserId())
+                .groupBy(PointsRecord::getUserId)
+                .orderBy(PointsRecord::getUserId, true)
+                .limit(pageSize);
+        return pointsRecordMapper.selectObjectListByQueryAs(queryWrapper, Long.class);
+    }
+
+    private void processPage(LocalDateTime cutoff, List<Long> userIds, ExecutorService executor, Result result) {
+        long start = System.nanoTime();
+        // 一次查出本页用户的过期明细，按用户、过期时间、创建时间排序（FIFO）
+        QueryWrapper queryWrapper = expiredQuery(cutoff)
+                .in(PointsRecord::getUserId, userIds)
+                .orderBy(PointsRecord::getUserId, true)
+                .orderBy(PointsRecord::getExpireTime, true)
+                .orderBy(PointsRecord::getCreateTime, true);
+        Map<Long, List<PointsRecord>> recordsByUser = new LinkedHashMap<>();
+        for (PointsRecord record : pointsRecordMapper.selectListByQuery(queryWrapper)) {
+            recordsByUser.computeIfAbsent(record.getUserId(), id -> new ArrayList<>()).add(record);
+        }
+
+        AtomicInteger users = new AtomicInteger();
+        AtomicInteger records = new AtomicInteger();
+        AtomicLong points = new AtomicLong();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(recordsByUser.size());
+        recordsByUser.forEach((userId, userRecords) -> futures.add(CompletableFuture.runAsync(() -> {
+            try {
+                List<PointsRecord> current = userRecords;
+                for (int attempt = 1; ; attempt++) {
+                    List<PointsRecord> attemptRecords = current;
+                    try {
+                        Integer expired = transactionTemplate.execute(status -> expireUser(userId, attemptRecords));
+                        if (expired != null && expired > 0) {
+                            users.incrementAndGet();
+                            records.addAndGet(attemptRecords.size());
+                            points.addAndGet(expired);
+                        }
+                        break;
+                    } catch (OptimisticLockingFailureException e) {
+                        if (attempt >= MAX_CONFLICT_ATTEMPTS) {
+                            throw e;
+                        }
+                        // 明细被结算并发修改，重新读取该用户的过期明细
+                        log.info("用户 {} 的积分明细被并发修改，第 {} 次重试", userId, attempt);
+                        current = pointsRecordMapper.selectListByQuery(userExpiredQuery(cutoff, userId));
+                    }
+                }
+            } catch (Exception e) {
+                // 失败的用户明细保持原状态，下一轮重新处理
+                failed.incrementAndGet();
+                failedUsersCounter.increment();
+                log.error("处理用户 {} 的过期积分失败", userId, e);
+            }
+        }, executor)));
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        result.setUsers(result.getUsers() + users.get());
+        result.setRecords(result.getRecords() + records.get());
+        result.setExpiredPoints(result.getExpiredPoints() + points.get());
+        result.setFailedUsers(result.getFailedUsers() + failed.get());
+        pageTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 按FIFO策略过期单个用户的积分（在调用方事务内执行）
+     *
+     * @return 实际过期的积分总数
+     */
+    private int expireUser(Long userId, List<PointsRecord> expiredRecords) {
+        // 先读未结算的扣减再读数据库：结算先提交数据库再确认扣减，这个顺序下两者之差只会偏小，不会多过期
+        int pending = pendingDebits == null ? 0 : Math.max(0, pendingDebits.applyAsInt(userId));
+        UserPoints userPoints = userPointsMapper.selectOneByQuery(QueryWrapper.create()
+                .eq(UserPoints::getUserId, userId).limit(1));
+        int balance = userPoints == null || userPoints.getAvailablePoints() == null
+                ? 0 : userPoints.getAvailablePoints();
+        // 未结算的扣减结算时要从明细中扣除，这部分不能过期
+        int availablePoints = balance - pending;
+        if (pending > 0) {
+            log.info("用户 {} 有 {} 积分扣减尚未结算，本次最多过期 {} 积分", userId, pending, Math.max(0, availablePoints));
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        int totalExpired = 0;
+        int expiredCount = 0;
+        for (PointsRecord record : expiredRecords) {
+            if (availablePoints <= 0) {
+                log.warn("用户 {} 可用积分已耗尽，剩余 {} 笔记录无法过期", userId, expiredRecords.size() - expiredCount);
+                break;
+            }
+            Integer remainingPoints = record.getRemainingPoints();
+            if (remainingPoints == null || remainingPoints <= 0) {
+                // 兼容旧数据：如果没有remainingPoints字段，使用原始points
+                remainingPoints = record.getPoints();
+            }
+            // 实际可过期金额不超过剩余可用积分
+            int expireAmount = Math.min(remainingPoints, availablePoints);
+            availablePoints -= expireAmount;
+            totalExpired += expireAmount;
+            expiredCount++;
+
+            // 只更新过期相关字段，明细已被结算修改时回滚整个用户
+            int updated = pointsRecordMapper.expireIfUnchanged(record.getId(),
+                    expireAmount >= remainingPoints
+                            ? PointsStatusEnum.EXPIRED.getValue() : PointsStatusEnum.PARTIAL_CONSUMED.getValue(),
+                    remainingPoints - expireAmount, expireAmount, now, remainingPoints);
+            if (updated == 0) {
+                throw new OptimisticLockingFailureException("积分明细 " + record.getId() + " 已被并发修改");
+            }
+        }
+
+        if (totalExpired > 0) {
+            if (expiredListener != null) {
+                expiredListener.accept(userId, -totalExpired);
+            }
+            // 原子扣减，避免覆盖并发结算写入的余额
+            userPointsMapper.addAvailablePoints(userId, -totalExpired);
+            pointsRecordMapper.insert(PointsRecord.builder()
+                    .userId(userId)
+                    .points(-totalExpired)
+                    .balance(balance - totalExpired)
+                    .type(PointsTypeEnum.EXPIRE.getValue())
+                    .status(PointsStatusEnum.CONSUMED.getValue())
+                    .reason(String.format("积分过期（%d笔，FIFO策略）", expiredCount))
+                    .build());
+            expiredPointsCounter.increment(totalExpired);
+            log.debug("用户 {} 完成积分过期：扣减 {} 积分，处理 {} 笔记录", userId, totalExpired, expiredCount);
+        }
+        return totalExpired;
+    }
+
+    /**
+     * 单个用户截止时间前已过期的明细（FIFO顺序）
+     */
+    private static QueryWrapper userExpiredQuery(LocalDateTime cutoff, Long userId) {
+        return expiredQuery(cutoff)
+                .eq(PointsRecord::getUserId, userId)
+                .orderBy(PointsRecord::getExpireTime, true)
+                .orderBy(PointsRecord::getCreateTime, true);
+    }
+
+    /**
+     * 截止时间前已过期、仍有剩余的发放明细
+     */
+    private static QueryWrapper expiredQuery(LocalDateTime cutoff) {
+        return QueryWrapper.create()
+                .le(PointsRecord::getExpireTime, cutoff)
+                .gt(PointsRecord::getPoints, 0)
+                .and((Consumer<QueryWrapper>) (qw -> qw.in(PointsRecord::getStatus,
+                                PointsStatusEnum.ACTIVE.getValue(), PointsStatusEnum.PARTIAL_CONSUMED.getValue())
+                        .or((Consumer<QueryWrapper>) (qw2 -> qw2.isNull(PointsRecord::getStatus)))));  // 兼容旧数据
+    }
+
+    /**
+     * 过期检查点的存储
+     */
+    public interface CheckpointStore {
+
+        Checkpoint load();
+
+        void save(Checkpoint checkpoint);
+
+        void clear();
+    }
+
+    /**
+     * 过期检查点
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Checkpoint {
+
+        /**
+         * 本轮截止时间：过期时间不晚于此时间的明细参与本轮过期
+         */
+        private LocalDateTime cutoff;
+
+        /**
+         * 已完成处理的最大用户ID
+         */
+        private Long lastUserId;
+    }
+
+    /**
+     * 一轮过期的统计
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+
+        /**
+         * 是否从检查点继续
+         */
+        private boolean resumed;
+
+        private int users;
+
+        private int records;
+
+        private long expiredPoints;
+
+        private int failedUsers;
+
+        private long elapsedMillis;
+    }
+}
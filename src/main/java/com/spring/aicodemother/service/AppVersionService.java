@@ -22,10 +22,11 @@ public interface AppVersionService extends IService<AppVersion> {
      *
      * @param app         应用信息
      * @param deployUrl   部署URL
+     * @param releaseId   部署产物版本标识
      * @param loginUser   当前登录用户
      * @return 版本id
      */
-    Long saveVersion(App app, String deployUrl, User loginUser);
+    Long saveVersion(App app, String deployUrl, String releaseId, User loginUser);
 
     /**
      * 查询应用的版本列表（分页）
@@ -52,7 +53,7 @@ public interface AppVersionService extends IService<AppVersion> {
     AppVersionVO getVersionVO(Long versionId);
 
     /**
-     * 版本回滚（将历史版本的代码恢复到代码生成目录）
+     * 版本回滚（将历史版本的代码恢复到代码生成目录，部署产物仍保留时同时切换线上站点）
      *
      * @param versionId 版本id
      * @param appId     应用id
@@ -1,10 +1,22 @@
 package com.spring.aicodemother.service;
 
+import com.spring.aicodemother.model.entity.User;
+
 /**
  * 生成验证服务 - 用于检测无效生成和防刷
  */
 public interface GenerationValidationService {
 
+    /**
+     * 生成前准入检查，管理员免检；不通过时抛出业务异常
+     * 禁止标记、今日生成次数、今日Token、24小时重复需求在一次 Redis 调用中原子检查，通过后计入今日生成次数；
+     * 积分最低门槛使用短时本地缓存的余额判断
+     * @param loginUser 当前用户
+     * @param message 用户输入的提示词
+     * @param minPoints 最低积分门槛
+     */
+    void checkAdmission(User loginUser, String message, int minPoints);
+
     /**
      * 检查用户今日是否被禁止生成（累计3次警告）
      * @param userId 用户ID
@@ -1,10 +1,26 @@
 package com.spring.aicodemother.service;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * 项目文件下载
  */
 public interface ProjectDownloadService {
-    void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response);
+
+    /**
+     * 下载项目压缩包（内容未变化时直接发送缓存的压缩包）
+     *
+     * @param projectPath      项目目录
+     * @param downloadFileName 下载文件名（不含 .zip）
+     */
+    void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletRequest request, HttpServletResponse response);
+
+    /**
+     * 提前在后台打包项目（大项目下载前调用）
+     *
+     * @param projectPath 项目目录
+     * @return true 表示压缩包已就绪，可直接下载
+     */
+    boolean prepareProjectZip(String projectPath);
 }
@@ -74,4 +74,12 @@ public interface UserPointsService extends IService<UserPoints> {
      */
     boolean checkPointsSufficient(Long userId, Integer points);
 
+    /**
+     * 原子调整数据库中的可用积分，事务提交后同步 Redis 余额（积分过期、数据修复使用）
+     *
+     * @param userId 用户ID
+     * @param delta 变动积分，负数为减少
+     */
+    void adjustAvailablePoints(Long userId, int delta);
+
 }
@@ -1,15 +1,20 @@
 package com.spring.aicodemother.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.spring.aicodemother.mapper.AiModelConfigMapper;
 import com.spring.aicodemother.model.entity.AiModelConfig;
 import com.spring.aicodemother.service.AiModelConfigService;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.List;
 
 import static com.spring.aicodemother.model.entity.table.AiModelConfigTableDef.AI_MODEL_CONFIG;
@@ -23,13 +28,32 @@ import static com.spring.aicodemother.model.entity.table.AiModelConfigTableDef.A
 @Service
 public class AiModelConfigServiceImpl extends ServiceImpl<AiModelConfigMapper, AiModelConfig> implements AiModelConfigService {
 
+    @Value("${code.generation.model-config-cache-seconds:30}")
+    private long modelConfigCacheSeconds;
+
+    /**
+     * 已启用模型的配置短时缓存（生成准入和每次扣费都会读取），本服务内更新后立即失效
+     */
+    private Cache<String, AiModelConfig> modelConfigCache;
+
+    @PostConstruct
+    public void initModelConfigCache() {
+        modelConfigCache = Caffeine.newBuilder()
+                .maximumSize(200)
+                .expireAfterWrite(Duration.ofSeconds(modelConfigCacheSeconds))
+                .build();
+    }
+
     @Override
     public AiModelConfig getByModelKey(String modelKey) {
-        return this.getOne(
+        if (modelKey == null) {
+            return null;
+        }
+        return modelConfigCache.get(modelKey, key -> this.getOne(
             QueryWrapper.create()
-                .where(AI_MODEL_CONFIG.MODEL_KEY.eq(modelKey))
+                .where(AI_MODEL_CONFIG.MODEL_KEY.eq(key))
                 .and(AI_MODEL_CONFIG.IS_ENABLED.eq(1))
-        );
+        ));
     }
 
     @Override
@@ -104,6 +128,7 @@ public class AiModelConfigServiceImpl extends ServiceImpl<AiModelConfigMapper, A
 
         config.setQualityScore(qualityScore);
         boolean updated = this.updateById(config);
+        modelConfigCache.invalidate(modelKey);
         
         if (updated) {
             log.info("模型 {} 质量系数已更新: {}", modelKey, qualityScore);
@@ -134,6 +159,7 @@ public class AiModelConfigServiceImpl extends ServiceImpl<AiModelConfigMapper, A
         }
 
         boolean updated = this.updateById(config);
+        modelConfigCache.invalidate(modelKey);
         
         if (updated) {
             log.info("模型 {} 统计信息已更新: 成功率={}, 平均Token={}, 用户评分={}", 
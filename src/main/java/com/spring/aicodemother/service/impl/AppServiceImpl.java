@@ -12,6 +12,8 @@ import com.spring.aicodemother.ai.AiCodeGenTypeRoutingServiceFactory;
 import com.spring.aicodemother.constant.AppConstant;
 import com.spring.aicodemother.core.AiCodeGeneratorFacade;
 import com.spring.aicodemother.core.build.VueProjectBuilder;
+import com.spring.aicodemother.core.deploy.SiteDeployer;
+import com.spring.aicodemother.core.screenshot.ScreenshotScheduler;
 import com.spring.aicodemother.core.handler.StreamHandlerExecutor;
 import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
@@ -80,6 +82,12 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private ScreenshotService screenshotService;
 
+    @Resource
+    private ScreenshotScheduler screenshotScheduler;
+
+    @Resource
+    private SiteDeployer siteDeployer;
+
     @Resource
     private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
 
@@ -174,45 +182,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 检查用户身份（管理员豁免所有限制）
         boolean isAdmin = com.spring.aicodemother.constant.UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
 
-        // 检查用户今日是否被禁止生成（管理员免检）
-        if (!isAdmin && generationValidationService.isUserBannedToday(loginUser.getId())) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "您今日已达到最大警告次数，暂时无法生成应用");
-        }
-
-        // 检查用户今日生成次数是否超限（管理员免检）
-        if (!isAdmin && generationValidationService.isGenerationCountExceeded(loginUser.getId())) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR,
-                    String.format("您今日生成次数已达上限（%d次），请明天再试",
-                            com.spring.aicodemother.constants.PointsConstants.DAILY_GENERATION_LIMIT));
-        }
-
-        // 检查用户今日Token消耗是否超限（管理员免检）
-        if (!isAdmin && generationValidationService.isTokenLimitExceeded(loginUser.getId())) {
-            int usage = generationValidationService.getTodayTokenUsage(loginUser.getId());
-            throw new BusinessException(ErrorCode.OPERATION_ERROR,
-                    String.format("您今日Token消耗已达上限（%d/%d），请明天再试",
-                            usage, com.spring.aicodemother.constants.PointsConstants.DAILY_TOKEN_LIMIT));
-        }
-
-        // 检查24小时内是否重复生成相同需求（管理员免检）
-        if (!isAdmin && generationValidationService.isDuplicateGeneration(loginUser.getId(), message)) {
-            int warningCount = generationValidationService.recordWarningAndPunish(loginUser.getId(), "24小时内重复生成相同需求");
-            String msg = String.format("检测到重复生成，已记录警告（今日第%d次），并扣除%d积分",
-                    warningCount, com.spring.aicodemother.constants.PointsConstants.INVALID_GENERATION_PENALTY);
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, msg);
-        }
-
-        // 增加今日生成次数（管理员免计数）
-        if (!isAdmin) {
-            generationValidationService.incrementGenerationCount(loginUser.getId());
-        }
-
-        // 4.1 检查用户积分最低门槛（不再预扣，由监听器实时扣费）
-        int minPoints = 50; // 最低积分门槛，确保基本使用能力
-        if (!userPointsService.checkPointsSufficient(loginUser.getId(), minPoints)) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR,
-                String.format("积分不足，至少需要 %d 积分才能生成，请先签到或邀请好友获取积分", minPoints));
-        }
+        // 禁止标记、今日次数、Token、重复需求和积分门槛（管理员免检），通过后计入今日生成次数
+        int minPoints = 50; // 最低积分门槛，确保基本使用能力（不再预扣，由监听器实时扣费）
+        generationValidationService.checkAdmission(loginUser, message, minPoints);
         log.info("用户 {} 开始生成应用 {}，当前积分充足（>= {}）", loginUser.getId(), appId, minPoints);
 
         // 5. 通过校验后，添加用户消息到对话历史
@@ -252,13 +224,23 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
                         .build()
         );
         // 7. 调用 AI 生成代码（流式）并绑定取消信号（若命中模板，则使用增强后的 finalMessage）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(finalMessage, codeGenTypeEnum, appId, control, modelKey);
         // 8. 收集AI响应内容并在完成后记录到对话历史（根据取消状态抑制副作用）
         java.util.function.BooleanSupplier cancelled = (control == null) ? (() -> false) : control::isCancelled;
         AtomicReference<String> finalResponseRef = new AtomicReference<>("");
-        
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum,
-                        cancelled, finalResponseRef::set)
+        Flux<String> handledStream;
+        if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
+            // VUE_PROJECT 走类型化消息流，避免逐 token 的 JSON 往返
+            Flux<com.spring.aicodemother.ai.model.message.StreamMessage> messageStream =
+                    aiCodeGeneratorFacade.generateVueProjectMessageStream(finalMessage, appId, control, modelKey);
+            handledStream = streamHandlerExecutor.doExecuteMessages(messageStream, chatHistoryService, appId, loginUser,
+                    cancelled, finalResponseRef::set);
+        } else {
+            Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(finalMessage, codeGenTypeEnum, appId, control, modelKey);
+            handledStream = streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum,
+                    cancelled, finalResponseRef::set);
+        }
+
+        return handledStream
                 .doFinally(signalType -> {
                     try {
                         // 检查是否成功完成（onComplete信号）
@@ -701,7 +683,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
             // Vue 项目需要构建
-            com.spring.aicodemother.core.build.BuildResult buildResult = vueProjectBuilder.buildProject(sourceDirPath);
+            com.spring.aicodemother.core.build.BuildResult buildResult = vueProjectBuilder.buildProject(sourceDirPath, String.valueOf(loginUser.getId()));
             if (!buildResult.isSuccess()) {
                 String errorMsg = "Vue 项目构建失败: " + buildResult.getErrorSummary();
                 log.error(errorMsg);
@@ -714,24 +696,15 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             sourceDir = distDir;
             log.info("Vue 项目构建成功，将部署 dist 目录: {}", distDir.getAbsolutePath());
         }
-        // 8. 复制文件到部署目录
-        String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey;
+        // 8. 写入版本化部署目录（未变化的文件硬链接复用上一版本），再原子切换 code_output/{deployKey} 访问链接（Nginx 访问路径）
+        String releaseId;
         try {
-            FileUtil.copyContent(sourceDir, new File(deployDirPath), true);
+            releaseId = siteDeployer.deploy(deployKey, sourceDir);
         } catch (Exception e) {
+            log.error("部署失败: {}", e.getMessage(), e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败：" + e.getMessage());
         }
 
-        // 8.1. 同时复制到 code_output 目录（Nginx 访问路径）
-        String outputDirPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + deployKey;
-        try {
-            FileUtil.copyContent(sourceDir, new File(outputDirPath), true);
-            log.info("部署文件已同步到 code_output 目录: {}", outputDirPath);
-        } catch (Exception e) {
-            log.error("同步到 code_output 目录失败: {}", e.getMessage());
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败（同步到访问目录失败）：" + e.getMessage());
-        }
-
         // 9. 更新应用的 deployKey 和部署时间
         App updateApp = new App();
         updateApp.setId(appId);
@@ -745,7 +718,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 11. 保存版本（部署成功后保存代码版本）
         try {
             app.setDeployKey(deployKey); // 确保app对象包含最新的deployKey
-            appVersionService.saveVersion(app, appDeployKey, loginUser);
+            appVersionService.saveVersion(app, appDeployKey, releaseId, loginUser);
             log.info("应用版本保存成功：appId={}", appId);
         } catch (Exception e) {
             log.error("保存应用版本失败：appId={}", appId, e);
@@ -764,8 +737,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
      */
     @Override
     public void generateAppScreenshotAsync(Long appId, String appUrl) {
-        // 使用虚拟线程异步执行
-        Thread.startVirtualThread(() -> {
+        // 交给截图调度器异步执行（同一应用排队中的截图会合并为一次）
+        screenshotScheduler.submit(appId, () -> {
             // 调用截图服务生成截图并上传
             String screenshotUrl = screenshotService.generateAndUploadScreenshot(appUrl);
             // 更新应用封面字段
@@ -9,6 +9,10 @@ import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.spring.aicodemother.constant.AppConstant;
+import com.spring.aicodemother.core.build.VueProjectBuilder;
+import com.spring.aicodemother.core.deploy.SiteDeployer;
+import com.spring.aicodemother.core.version.VersionManifest;
+import com.spring.aicodemother.core.version.VersionSnapshotStore;
 import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.exception.ThrowUtils;
@@ -17,6 +21,7 @@ import com.spring.aicodemother.model.entity.App;
 import com.spring.aicodemother.model.entity.AppVersion;
 import com.spring.aicodemother.mapper.AppVersionMapper;
 import com.spring.aicodemother.model.entity.User;
+import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
 import com.spring.aicodemother.model.vo.AppVersionVO;
 import com.spring.aicodemother.model.vo.UserVO;
 import com.spring.aicodemother.manager.CosManager;
@@ -30,7 +35,6 @@ import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
@@ -48,8 +52,17 @@ public class AppVersionServiceImpl extends ServiceImpl<AppVersionMapper, AppVers
     @Resource
     private CosManager cosManager;
 
+    @Resource
+    private SiteDeployer siteDeployer;
+
+    @Resource
+    private VersionSnapshotStore versionSnapshotStore;
+
+    @Resource
+    private VueProjectBuilder vueProjectBuilder;
+
     @Override
-    public Long saveVersion(App app, String deployUrl, User loginUser) {
+    public Long saveVersion(App app, String deployUrl, String releaseId, User loginUser) {
         ThrowUtils.throwIf(app == null || app.getId() == null, ErrorCode.PARAMS_ERROR);
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR);
 
@@ -67,41 +80,7 @@ public class AppVersionServiceImpl extends ServiceImpl<AppVersionMapper, AppVers
             return null;
         }
 
-        // 2. 读取代码目录中的所有文件，打包成JSON
-        String codeContent = packCodeToJson(codeDir);
-
-        // 2.5 将代码内容上传到COS
-        String codeStorageUrl = null;
-        File tempJsonFile = null;
-        try {
-            // 创建临时JSON文件
-            tempJsonFile = new File(AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "temp_" + UUID.randomUUID() + ".json");
-            FileUtil.writeString(codeContent, tempJsonFile, StandardCharsets.UTF_8);
-            
-            // 上传到COS
-            String cosKey = String.format("app-versions/%d/%s_v%s.json", 
-                appId, 
-                codeGenType, 
-                System.currentTimeMillis());
-            codeStorageUrl = cosManager.uploadFile(cosKey, tempJsonFile);
-            
-            if (codeStorageUrl != null) {
-                log.info("代码内容已上传到COS: {}", codeStorageUrl);
-                // 清空codeContent，避免存储到数据库
-                codeContent = null;
-            } else {
-                log.warn("代码内容上传COS失败，将存储到数据库（可能因为文件过大而失败）");
-            }
-        } catch (Exception e) {
-            log.error("上传代码内容到COS时出错: {}", e.getMessage(), e);
-        } finally {
-            // 删除临时文件
-            if (tempJsonFile != null && tempJsonFile.exists()) {
-                FileUtil.del(tempJsonFile);
-            }
-        }
-
-        // 3. 查询当前应用的最大版本号
+        // 2. 查询当前应用的最大版本号
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq(AppVersion::getAppId, appId)
                 .orderBy(AppVersion::getVersionNum, false)
@@ -110,15 +89,34 @@ public class AppVersionServiceImpl extends ServiceImpl<AppVersionMapper, AppVers
         int nextVersionNum = (latestVersion == null) ? 1 : latestVersion.getVersionNum() + 1;
         String versionTag = "v" + nextVersionNum;
 
+        // 3. 保存快照：文件按内容哈希只存一份，版本只记录文件清单，上一版本已有的内容不再上传
+        String previousRef = latestVersion == null ? null : latestVersion.getCodeStorageUrl();
+        String codeStorageUrl = null;
+        String codeContent = null;
+        if (versionSnapshotStore.isDurable()) {
+            try {
+                codeStorageUrl = versionSnapshotStore.save(appId, nextVersionNum, codeGenType, codeDir, previousRef);
+            } catch (Exception e) {
+                log.error("保存版本快照失败，代码改存数据库：appId={}, versionNum={}", appId, nextVersionNum, e);
+            }
+        } else {
+            log.warn("未配置 COS 或版本存储目录，代码存入数据库：appId={}, versionNum={}", appId, nextVersionNum);
+        }
+        // 快照存储不可用或保存失败时，整包 JSON 存入数据库（回滚走旧格式路径）
+        if (codeStorageUrl == null) {
+            codeContent = versionSnapshotStore.packToJson(codeGenType, codeDir);
+        }
+
         // 4. 创建版本记录
         AppVersion appVersion = AppVersion.builder()
                 .appId(appId)
                 .versionNum(nextVersionNum)
                 .versionTag(versionTag)
-                .codeContent(codeContent)  // 如果上传COS成功则为null
-                .codeStorageUrl(codeStorageUrl)  // COS存储URL
+                .codeStorageUrl(codeStorageUrl)  // 版本文件清单引用
+                .codeContent(codeContent)  // 快照存储不可用时的整包代码
                 .deployKey(app.getDeployKey())
                 .deployUrl(deployUrl)
+                .releaseId(releaseId)
                 .deployedTime(LocalDateTime.now())
                 .userId(loginUser.getId())
                 .build();
@@ -182,7 +180,57 @@ public class AppVersionServiceImpl extends ServiceImpl<AppVersionMapper, AppVers
         ThrowUtils.throwIf(targetVersion == null, ErrorCode.NOT_FOUND_ERROR, "版本不存在");
         ThrowUtils.throwIf(!targetVersion.getAppId().equals(appId), ErrorCode.PARAMS_ERROR, "版本与应用不匹配");
 
-        // 2. 获取代码内容（优先从COS获取）
+        // 2. 将文件写回到代码生成目录
+        String codeGenType;
+        try {
+            if (VersionSnapshotStore.isManifestRef(targetVersion.getCodeStorageUrl())) {
+                // 内容寻址快照：只改写与目标版本不同的文件
+                VersionManifest manifest = versionSnapshotStore.loadManifest(targetVersion.getCodeStorageUrl());
+                ThrowUtils.throwIf(manifest == null, ErrorCode.OPERATION_ERROR, "版本文件清单不存在");
+                codeGenType = manifest.getCodeGenType();
+                String codeDirPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + codeGenType + "_" + appId;
+                versionSnapshotStore.restore(manifest, new File(codeDirPath));
+            } else {
+                codeGenType = restoreLegacyVersion(targetVersion, appId);
+            }
+            log.info("版本回滚成功：appId={}, versionId={}, versionNum={}", appId, versionId, targetVersion.getVersionNum());
+        } catch (BusinessException e) {
+            log.error("版本回滚失败：appId={}, versionId={}", appId, versionId, e);
+            throw e;
+        } catch (Exception e) {
+            log.error("版本回滚失败：appId={}, versionId={}", appId, versionId, e);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "版本回滚失败：" + e.getMessage());
+        }
+
+        // 3. Vue 项目恢复后原构建产物已删除，异步重新构建，预览使用回滚后源码的构建结果
+        if (CodeGenTypeEnum.VUE_PROJECT.getValue().equals(codeGenType)) {
+            vueProjectBuilder.buildProjectAsync(AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + codeGenType + "_" + appId);
+        }
+
+        // 4. 该版本的部署产物仍在时直接切换线上站点，无需重新构建
+        if (cn.hutool.core.util.StrUtil.isNotBlank(targetVersion.getReleaseId())
+                && cn.hutool.core.util.StrUtil.isNotBlank(targetVersion.getDeployKey())) {
+            try {
+                boolean switched = siteDeployer.rollback(targetVersion.getDeployKey(), targetVersion.getReleaseId());
+                if (!switched) {
+                    log.info("版本 {} 的部署产物已被清理，需重新部署后生效", targetVersion.getVersionTag());
+                }
+            } catch (Exception e) {
+                log.error("切换线上站点到历史版本失败：appId={}, versionId={}", appId, versionId, e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 恢复旧格式版本（整包 JSON，存放在 COS 或数据库中）
+     *
+     * @param targetVersion 目标版本
+     * @param appId         应用ID
+     * @return 代码生成类型
+     */
+    private String restoreLegacyVersion(AppVersion targetVersion, Long appId) {
+        // 获取代码内容（优先从COS获取）
         String codeContent = null;
         String codeStorageUrl = targetVersion.getCodeStorageUrl();
         
@@ -191,12 +239,11 @@ public class AppVersionServiceImpl extends ServiceImpl<AppVersionMapper, AppVers
             try {
                 String cosKey = cosManager.extractKeyFromUrl(codeStorageUrl);
                 if (cosKey != null) {
-                    String tempFilePath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "temp_rollback_" + UUID.randomUUID() + ".json";
-                    boolean downloadSuccess = cosManager.downloadFile(cosKey, tempFilePath);
+                    // 直接读入内存，不再经过本地临时文件
+                    byte[] bytes = cosManager.getObjectBytes(cosKey);
                     
-                    if (downloadSuccess) {
-                        codeContent = FileUtil.readString(new File(tempFilePath), StandardCharsets.UTF_8);
-                        FileUtil.del(tempFilePath);  // 删除临时文件
+                    if (bytes != null) {
+                        codeContent = new String(bytes, StandardCharsets.UTF_8);
                         log.info("从COS下载代码内容成功：{}", codeStorageUrl);
                     } else {
                         log.warn("从COS下载代码内容失败：{}", codeStorageUrl);
@@ -214,68 +261,13 @@ public class AppVersionServiceImpl extends ServiceImpl<AppVersionMapper, AppVers
         
         ThrowUtils.throwIf(cn.hutool.core.util.StrUtil.isBlank(codeContent), ErrorCode.OPERATION_ERROR, "版本代码内容为空");
 
-        // 3. 将文件写回到代码生成目录
+        // 将文件写回到代码生成目录
         String codeGenType = codeContent.contains("\"codeGenType\"") ?
                 JSONUtil.parseObj(codeContent).getStr("codeGenType") : "html";
         String codeDirName = codeGenType + "_" + appId;
         String codeDirPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + codeDirName;
-
-        try {
-            unpackJsonToCode(codeContent, codeDirPath);
-            log.info("版本回滚成功：appId={}, versionId={}, versionNum={}", appId, versionId, targetVersion.getVersionNum());
-            return true;
-        } catch (Exception e) {
-            log.error("版本回滚失败：appId={}, versionId={}", appId, versionId, e);
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "版本回滚失败：" + e.getMessage());
-        }
-    }
-
-    /**
-     * 将代码目录打包成JSON
-     *
-     * @param codeDir 代码目录
-     * @return JSON字符串
-     */
-    private String packCodeToJson(File codeDir) {
-        JSONObject jsonObject = new JSONObject();
-        JSONArray filesArray = new JSONArray();
-
-        // 递归读取所有文件
-        packDirectory(codeDir, codeDir.getAbsolutePath(), filesArray);
-
-        jsonObject.set("files", filesArray);
-        jsonObject.set("totalFiles", filesArray.size());
-        return jsonObject.toString();
-    }
-
-    /**
-     * 递归打包目录
-     *
-     * @param dir        当前目录
-     * @param basePath   基础路径
-     * @param filesArray 文件数组
-     */
-    private void packDirectory(File dir, String basePath, JSONArray filesArray) {
-        File[] files = dir.listFiles();
-        if (files == null) {
-            return;
-        }
-
-        for (File file : files) {
-            if (file.isDirectory()) {
-                // 递归处理子目录
-                packDirectory(file, basePath, filesArray);
-            } else {
-                // 读取文件内容
-                String content = FileUtil.readString(file, StandardCharsets.UTF_8);
-                String relativePath = file.getAbsolutePath().substring(basePath.length() + 1).replace("\\", "/");
-
-                JSONObject fileObj = new JSONObject();
-                fileObj.set("path", relativePath);
-                fileObj.set("content", content);
-                filesArray.add(fileObj);
-            }
-        }
+        unpackJsonToCode(codeContent, codeDirPath);
+        return codeGenType;
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.spring.aicodemother.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
@@ -23,10 +24,16 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 对话历史 服务层实现。
@@ -42,6 +49,9 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Lazy
     private AppService appService;
 
+    @Resource
+    private ChatHistoryWriteBuffer chatHistoryWriteBuffer;
+
     /**
      *
      * @param appId 应用 ID
@@ -59,12 +69,22 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         // 验证消息类型是否有效
         ChatHistoryMessageTypeEnum messageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(messageType);
         ThrowUtils.throwIf(messageTypeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的消息类型: " + messageType);
+        // 预先分配 id 和创建时间：落库前的消息也能参与排序、游标查询和去重
+        // 批量写入会写所有列，updateTime 也要赋值（表中为 NOT NULL）
+        LocalDateTime now = LocalDateTime.now();
         ChatHistory chatHistory = ChatHistory.builder()
+                .id(IdUtil.getSnowflakeNextId())
                 .appId(appId)
                 .message(message)
                 .messageType(messageType)
                 .userId(userId)
+                .createTime(now)
+                .updateTime(now)
                 .build();
+        // 进入写缓冲后异步批量落库；缓冲已满时同步写库
+        if (chatHistoryWriteBuffer.offer(chatHistory)) {
+            return true;
+        }
         return this.save(chatHistory);
     }
 
@@ -77,6 +97,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Override
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        chatHistoryWriteBuffer.discard(appId);
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
         return this.remove(queryWrapper);
@@ -125,12 +146,18 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<ChatHistory> listAppChatHistoryByPage(Long appId, int pageSize,
                                                       LocalDateTime lastCreateTime,
                                                       User loginUser) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR);
+        // 先取写缓冲中尚未落库的消息，再在同一个只读事务（同一快照）中查询分页与其中已落库的部分，
+        // 期间落库的消息只会计入其中一边
+        List<ChatHistory> pending = chatHistoryWriteBuffer.pendingFor(appId).stream()
+                .filter(history -> lastCreateTime == null || history.getCreateTime().isBefore(lastCreateTime))
+                .toList();
         // 验证权限：只有应用创建者和管理员可以查看
         App app = appService.getById(appId);
         ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
@@ -143,7 +170,21 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         queryRequest.setLastCreateTime(lastCreateTime);
         QueryWrapper queryWrapper = this.getQueryWrapper(queryRequest);
         // 查询数据
-        return this.page(Page.of(1, pageSize), queryWrapper);
+        Page<ChatHistory> page = this.page(Page.of(1, pageSize), queryWrapper);
+        // 合并尚未落库的消息，保证刚写入的消息立即可见
+        if (!pending.isEmpty()) {
+            Set<Long> persisted = this.list(QueryWrapper.create()
+                            .select("id")
+                            .in("id", pending.stream().map(ChatHistory::getId).toList()))
+                    .stream()
+                    .map(ChatHistory::getId)
+                    .collect(Collectors.toSet());
+            // 已落库的消息已计入总数，只补充仍未落库的
+            long unsaved = pending.stream().filter(history -> !persisted.contains(history.getId())).count();
+            page.setRecords(mergeNewestFirst(page.getRecords(), pending, pageSize));
+            page.setTotalRow(page.getTotalRow() + unsaved);
+        }
+        return page;
     }
 
     /**
@@ -161,8 +202,11 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId)
                     .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
-            List<ChatHistory> historyList = this.list(queryWrapper);
+                    .limit(maxCount + 1);
+            // 合并写缓冲中尚未落库的消息后，再跳过最新的一条（当前用户消息）
+            List<ChatHistory> newest = mergeNewestFirst(this.list(queryWrapper),
+                    chatHistoryWriteBuffer.pendingFor(appId), maxCount + 1);
+            List<ChatHistory> historyList = newest.size() > 1 ? newest.subList(1, newest.size()) : List.of();
             if (CollUtil.isEmpty(historyList)) {
                 return 0;
             }
@@ -189,4 +233,21 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             return 0;
         }
     }
+
+    /**
+     * 按创建时间倒序合并数据库记录与写缓冲中的记录，按 id 去重
+     */
+    private static List<ChatHistory> mergeNewestFirst(List<ChatHistory> stored, List<ChatHistory> pending, int limit) {
+        Map<Long, ChatHistory> merged = new LinkedHashMap<>();
+        for (ChatHistory history : pending) {
+            merged.put(history.getId(), history);
+        }
+        for (ChatHistory history : stored) {
+            merged.putIfAbsent(history.getId(), history);
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparing(ChatHistory::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder())))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
 }
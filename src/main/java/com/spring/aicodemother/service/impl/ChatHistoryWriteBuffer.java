@@ -0,0 +1,482 @@
+package com.spring.aicodemother.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.constant.AppConstant;
+import com.spring.aicodemother.mapper.ChatHistoryMapper;
+import com.spring.aicodemother.model.entity.ChatHistory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话历史写缓冲（write-behind）
+ * 流式生成完成时只把消息放入内存队列并追加到本地日志文件，由后台线程按数量或时间攒批，
+ * 用一条多行 INSERT 写入数据库，数据库延迟不再落在流的完成回调上
+ * - 队列满时调用方同步写库（背压）
+ * - 日志文件在批次落库且缓冲清空后截断；进程崩溃后启动时重放日志，按 id 去重补写
+ * - 未落库的消息可通过 pendingFor 读取，保证查询时读到自己刚写入的消息：
+ *   消息在同一把锁内从队列移入攒批中的批次，任何时刻都在两者之一
+ * - 删除应用对话历史时先等待正在写库的批次完成，再丢弃缓冲中该应用的消息，并在日志中记录，重放时跳过
+ */
+@Slf4j
+@Component
+public class ChatHistoryWriteBuffer {
+
+    private static final String JOURNAL_FILE = "pending.jsonl";
+
+    /**
+     * 写库失败后的最长重试间隔
+     */
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * 批量写库连续失败多少次后改为逐条写入，逐条仍失败的消息被丢弃，避免一条坏数据阻塞后续所有消息
+     */
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${code.chat-history.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${code.chat-history.write-behind.batch-size:100}")
+    private int batchSize;
+
+    @Value("${code.chat-history.write-behind.flush-interval-millis:200}")
+    private long flushIntervalMillis;
+
+    /**
+     * 保护 queue 与 inflight
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Deque<ChatHistory> queue = new ArrayDeque<>();
+
+    /**
+     * 攒批中与正在写库的批次（写库期间仍需对查询可见）
+     */
+    private final List<ChatHistory> inflight = new ArrayList<>();
+
+    /**
+     * 写库期间持有；丢弃消息前获取，保证被丢弃的消息不会在删除之后才写入
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final Object journalLock = new Object();
+
+    private Path journalPath = Paths.get(AppConstant.CHAT_HISTORY_JOURNAL_DIR, JOURNAL_FILE).toAbsolutePath();
+
+    private BufferedWriter journalWriter;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    private Counter syncFallbackCounter;
+
+    private Counter droppedCounter;
+
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("ai_code_chat_history_pending", this, ChatHistoryWriteBuffer::pendingCount)
+                .description("等待写入数据库的对话历史条数")
+                .register(meterRegistry);
+        syncFallbackCounter = Counter.builder("ai_code_chat_history_sync_fallback_total")
+                .description("写缓冲已满、改为同步写库的次数")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("ai_code_chat_history_dropped_total")
+                .description("逐条重试仍无法写库而丢弃的对话历史条数")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("ai_code_chat_history_flush_seconds")
+                .description("对话历史批量写库耗时")
+                .register(meterRegistry);
+        replayJournal();
+        running = true;
+        flusher = Thread.ofPlatform().name("chat-history-flusher").daemon(true).start(this::flushLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 停机前尽量把剩余消息写入数据库，失败的部分保留在日志中等待下次启动重放
+        List<ChatHistory> remaining;
+        writeLock.lock();
+        lock.lock();
+        try {
+            remaining = new ArrayList<>(inflight);
+            remaining.addAll(queue);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            for (List<ChatHistory> batch : CollUtil.split(remaining, batchSize)) {
+                insertRows(batch);
+            }
+            lock.lock();
+            try {
+                inflight.clear();
+                queue.clear();
+            } finally {
+                lock.unlock();
+            }
+            truncateJournalIfIdle();
+        } catch (Exception e) {
+            log.error("停机时写入对话历史失败，{} 条消息保留在日志中: {}", remaining.size(), e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        synchronized (journalLock) {
+            IoUtil.close(journalWriter);
+            journalWriter = null;
+        }
+    }
+
+    /**
+     * 提交一条对话历史
+     *
+     * @return true 表示已进入写缓冲；false 表示缓冲已满，调用方需同步写库
+     */
+    public boolean offer(ChatHistory chatHistory) {
+        synchronized (journalLock) {
+            lock.lock();
+            try {
+                if (!running || queue.size() >= capacity) {
+                    syncFallbackCounter.increment();
+                    return false;
+                }
+                queue.addLast(chatHistory);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+            appendJournal(toJson(chatHistory));
+            return true;
+        }
+    }
+
+    /**
+     * 获取某个应用尚未落库的消息（包括攒批中和正在写库的批次）
+     */
+    public List<ChatHistory> pendingFor(Long appId) {
+        List<ChatHistory> result = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ChatHistory history : inflight) {
+                if (appId.equals(history.getAppId())) {
+                    result.add(history);
+                }
+            }
+            for (ChatHistory history : queue) {
+                if (appId.equals(history.getAppId())) {
+                    result.add(history);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 丢弃某个应用尚未落库的消息（删除应用对话历史时调用，需在删除数据库记录之前调用）
+     * 正在写库的批次先写完，之后的批次与重放日志都不再包含该应用的消息
+     */
+    public void discard(Long appId) {
+        writeLock.lock();
+        try {
+            synchronized (journalLock) {
+                lock.lock();
+                try {
+                    queue.removeIf(history -> appId.equals(history.getAppId()));
+                    inflight.removeIf(history -> appId.equals(history.getAppId()));
+                } finally {
+                    lock.unlock();
+                }
+                appendJournal(new JSONObject().set("discard", appId));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        long backoffMillis = 0;
+        int attempts = 0;
+        while (running || pendingCount() > 0) {
+            try {
+                if (!fillBatch()) {
+                    continue;
+                }
+                attempts++;
+                writeLock.lock();
+                try {
+                    List<ChatHistory> batch = snapshotInflight();
+                    if (batch.isEmpty()) {
+                        // 攒批后整批被丢弃
+                    } else if (attempts > MAX_BATCH_ATTEMPTS) {
+                        insertOneByOne(batch);
+                    } else {
+                        flushTimer.record(() -> insertRows(batch));
+                    }
+                    lock.lock();
+                    try {
+                        inflight.clear();
+                    } finally {
+                        lock.unlock();
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+                attempts = 0;
+                backoffMillis = 0;
+                truncateJournalIfIdle();
+            } catch (InterruptedException e) {
+                if (!running) {
+                    // 停机：未写入的批次留在缓冲中，由 stop() 统一处理
+                    return;
+                }
+            } catch (Exception e) {
+                backoffMillis = Math.min(Math.max(backoffMillis * 2, 500), MAX_RETRY_BACKOFF_MILLIS);
+                log.error("批量写入对话历史失败（第 {} 次），{} ms 后重试: {}", attempts, backoffMillis, e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 把队列中的消息移入 inflight 攒成一批：没有上次未写入的批次时，等待第一条消息，
+     * 未攒满一批时最多再等一个刷新间隔
+     *
+     * @return 是否有需要写库的批次
+     */
+    private boolean fillBatch() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (!inflight.isEmpty()) {
+                // 上次写库失败的批次，直接重试
+                return true;
+            }
+            long waitNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            while (queue.isEmpty()) {
+                if (waitNanos <= 0) {
+                    return false;
+                }
+                waitNanos = notEmpty.awaitNanos(waitNanos);
+            }
+            moveToInflight();
+            waitNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            while (inflight.size() < batchSize && waitNanos > 0) {
+                waitNanos = notEmpty.awaitNanos(waitNanos);
+                moveToInflight();
+            }
+            // 等待期间消息可能被丢弃
+            return !inflight.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void moveToInflight() {
+        while (inflight.size() < batchSize && !queue.isEmpty()) {
+            inflight.add(queue.pollFirst());
+        }
+    }
+
+    private List<ChatHistory> snapshotInflight() {
+        lock.lock();
+        try {
+            return List.copyOf(inflight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int pendingCount() {
+        lock.lock();
+        try {
+            return queue.size() + inflight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量写库：insertBatch 会写入所有列（包括 null），因此补齐 NOT NULL 列
+     */
+    private void insertRows(List<ChatHistory> rows) {
+        for (ChatHistory row : rows) {
+            if (row.getUpdateTime() == null) {
+                row.setUpdateTime(row.getCreateTime());
+            }
+            if (row.getIsDelete() == null) {
+                row.setIsDelete(0);
+            }
+        }
+        chatHistoryMapper.insertBatch(rows);
+    }
+
+    /**
+     * 批量写库多次失败后逐条写入，已存在的跳过，仍然失败的消息记录日志后丢弃
+     */
+    private void insertOneByOne(List<ChatHistory> rows) {
+        Set<Long> existing = new HashSet<>();
+        chatHistoryMapper.selectListByIds(rows.stream().map(ChatHistory::getId).toList())
+                .forEach(history -> existing.add(history.getId()));
+        for (ChatHistory row : rows) {
+            if (existing.contains(row.getId())) {
+                continue;
+            }
+            try {
+                insertRows(List.of(row));
+            } catch (Exception e) {
+                droppedCounter.increment();
+                log.error("对话历史无法写入数据库，已丢弃: {}，原因: {}", toJson(row), e.getMessage());
+            }
+        }
+    }
+
+    private void appendJournal(JSONObject json) {
+        try {
+            if (journalWriter == null) {
+                Files.createDirectories(journalPath.getParent());
+                journalWriter = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            journalWriter.write(json.toString());
+            journalWriter.newLine();
+            journalWriter.flush();
+        } catch (IOException e) {
+            // 日志只用于崩溃恢复，写失败不影响正常落库
+            log.warn("写入对话历史日志失败: {}", e.getMessage());
+        }
+    }
+
+    private static JSONObject toJson(ChatHistory chatHistory) {
+        return new JSONObject()
+                .set("id", chatHistory.getId())
+                .set("appId", chatHistory.getAppId())
+                .set("userId", chatHistory.getUserId())
+                .set("messageType", chatHistory.getMessageType())
+                .set("message", chatHistory.getMessage())
+                .set("createTime", chatHistory.getCreateTime().toString());
+    }
+
+    /**
+     * 缓冲已清空时截断日志（此前日志中的消息都已落库）
+     */
+    private void truncateJournalIfIdle() {
+        synchronized (journalLock) {
+            if (journalWriter == null || pendingCount() > 0) {
+                return;
+            }
+            try {
+                journalWriter.close();
+                journalWriter = null;
+                Files.deleteIfExists(journalPath);
+            } catch (IOException e) {
+                log.warn("截断对话历史日志失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 启动时重放上次未落库的消息，按 id 去重；日志中丢弃标记之前的该应用消息不再写入
+     */
+    private void replayJournal() {
+        File journal = journalPath.toFile();
+        if (!journal.isFile()) {
+            return;
+        }
+        try {
+            Map<Long, ChatHistory> histories = new LinkedHashMap<>();
+            for (String line : FileUtil.readUtf8Lines(journal)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JSONObject json = JSONUtil.parseObj(line);
+                    Long discardedAppId = json.getLong("discard");
+                    if (discardedAppId != null) {
+                        histories.values().removeIf(history -> discardedAppId.equals(history.getAppId()));
+                        continue;
+                    }
+                    LocalDateTime createTime = LocalDateTime.parse(json.getStr("createTime"));
+                    histories.put(json.getLong("id"), ChatHistory.builder()
+                            .id(json.getLong("id"))
+                            .appId(json.getLong("appId"))
+                            .userId(json.getLong("userId"))
+                            .messageType(json.getStr("messageType"))
+                            .message(json.getStr("message"))
+                            .createTime(createTime)
+                            .updateTime(createTime)
+                            .build());
+                } catch (Exception e) {
+                    // 崩溃时最后一行可能不完整
+                    log.warn("跳过无法解析的对话历史日志行: {}", e.getMessage());
+                }
+            }
+            int replayed = 0;
+            for (List<ChatHistory> batch : CollUtil.split(histories.values(), batchSize)) {
+                Set<Long> existing = new HashSet<>();
+                chatHistoryMapper.selectListByIds(batch.stream().map(ChatHistory::getId).toList())
+                        .forEach(history -> existing.add(history.getId()));
+                List<ChatHistory> missing = batch.stream().filter(history -> !existing.contains(history.getId())).toList();
+                if (!missing.isEmpty()) {
+                    insertRows(missing);
+                    replayed += missing.size();
+                }
+            }
+            Files.deleteIfExists(journalPath);
+            log.info("对话历史日志重放完成，补写 {} 条消息", replayed);
+        } catch (Exception e) {
+            log.error("重放对话历史日志失败，保留日志文件: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -2,15 +2,29 @@ package com.spring.aicodemother.service.impl;
 
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spring.aicodemother.constant.UserConstant;
+import com.spring.aicodemother.exception.BusinessException;
+import com.spring.aicodemother.exception.ErrorCode;
+import com.spring.aicodemother.model.entity.User;
 import com.spring.aicodemother.service.GenerationValidationService;
 import com.spring.aicodemother.service.UserPointsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,6 +46,24 @@ public class GenerationValidationServiceImpl implements GenerationValidationServ
     @Resource
     private com.spring.aicodemother.service.UserService userService;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${code.generation.balance-cache-seconds:10}")
+    private long balanceCacheSeconds;
+
+    /**
+     * 准入检查脚本，返回 {状态, 今日生成次数, 今日Token消耗}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ADMISSION_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/generation_admission.lua"), List.class);
+
+    /**
+     * 用户ID -> 可用积分，只用于准入门槛判断，实际扣费以数据库为准
+     */
+    private Cache<Long, Integer> balanceCache;
+
     // Redis key前缀
     private static final String KEY_WARNING_COUNT = "generation:warning:count:"; // 每日警告次数
     private static final String KEY_GENERATION_HASH = "generation:hash:"; // 24小时内生成记录
@@ -46,6 +78,93 @@ public class GenerationValidationServiceImpl implements GenerationValidationServ
     private static final int MAX_TOKENS_PER_DAY = 120000; // 每日最大Token消耗（12万）
     private static final int MAX_GENERATIONS_PER_DAY = 30; // 每日最大生成次数
 
+    @PostConstruct
+    public void initBalanceCache() {
+        balanceCache = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofSeconds(balanceCacheSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, balanceCache, "ai_code_points_balance_cache");
+    }
+
+    @Override
+    public void checkAdmission(User loginUser, String message, int minPoints) {
+        // 管理员豁免所有限制
+        if (UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole())) {
+            return;
+        }
+        Long userId = loginUser.getId();
+        long start = System.nanoTime();
+        String result = "admitted";
+        try {
+            // 1. 积分门槛（先于计数，积分不足的请求不占用今日生成次数）
+            if (!hasMinimumPoints(userId, minPoints)) {
+                result = "points_insufficient";
+                throw new BusinessException(ErrorCode.OPERATION_ERROR,
+                        String.format("积分不足，至少需要 %d 积分才能生成，请先签到或邀请好友获取积分", minPoints));
+            }
+
+            // 2. 禁止标记、次数、Token、重复需求一次检查，通过后计数
+            String today = LocalDate.now().toString();
+            List<String> keys = List.of(
+                    KEY_BAN_FLAG + today + ":" + userId,
+                    KEY_GENERATION_COUNT + today + ":" + userId,
+                    KEY_TOKEN_USAGE + today + ":" + userId,
+                    KEY_GENERATION_HASH + userId);
+            String messageHash = StrUtil.isBlank(message) ? "" : DigestUtil.md5Hex(message.trim());
+            List<?> reply = stringRedisTemplate.execute(ADMISSION_SCRIPT, keys, messageHash,
+                    String.valueOf(MAX_GENERATIONS_PER_DAY), String.valueOf(MAX_TOKENS_PER_DAY),
+                    String.valueOf(getSecondsUntilMidnight()));
+            int status = ((Number) reply.get(0)).intValue();
+            switch (status) {
+                case 1 -> {
+                    result = "banned";
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "您今日已达到最大警告次数，暂时无法生成应用");
+                }
+                case 2 -> {
+                    result = "count_exceeded";
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR,
+                            String.format("您今日生成次数已达上限（%d次），请明天再试", MAX_GENERATIONS_PER_DAY));
+                }
+                case 3 -> {
+                    result = "token_exceeded";
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR,
+                            String.format("您今日Token消耗已达上限（%d/%d），请明天再试",
+                                    ((Number) reply.get(2)).intValue(), MAX_TOKENS_PER_DAY));
+                }
+                case 4 -> {
+                    result = "duplicate";
+                    int warningCount = recordWarningAndPunish(userId, "24小时内重复生成相同需求");
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR,
+                            String.format("检测到重复生成，已记录警告（今日第%d次），并扣除%d积分",
+                                    warningCount, PUNISHMENT_POINTS));
+                }
+                default -> log.info("[生成次数] 用户={}, 今日生成次数={}", userId, reply.get(1));
+            }
+        } finally {
+            Timer.builder("ai_code_generation_admission_seconds")
+                    .description("生成前准入检查耗时")
+                    .tag("result", result)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 缓存的余额达到门槛时直接通过；未缓存或不足时查库，避免刚获得积分的用户被旧缓存拦住
+     */
+    private boolean hasMinimumPoints(Long userId, int minPoints) {
+        Integer cached = balanceCache.getIfPresent(userId);
+        if (cached != null && cached >= minPoints) {
+            return true;
+        }
+        Integer available = userPointsService.getAvailablePoints(userId);
+        int balance = available == null ? 0 : available;
+        balanceCache.put(userId, balance);
+        return balance >= minPoints;
+    }
+
     @Override
     public boolean isUserBannedToday(Long userId) {
         String key = KEY_BAN_FLAG + LocalDate.now() + ":" + userId;
@@ -308,6 +427,7 @@ public class GenerationValidationServiceImpl implements GenerationValidationServ
                     "无效生成惩罚：" + reason,
                     null
             );
+            balanceCache.invalidate(userId);
             log.info("[积分惩罚] 用户={}, 扣除{}积分", userId, PUNISHMENT_POINTS);
         } catch (Exception e) {
             log.error("[积分惩罚失败] 用户={}, 错误={}", userId, e.getMessage());
@@ -0,0 +1,294 @@
+package com.spring.aicodemother.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.spring.aicodemother.model.entity.UserPoints;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 积分账本（Redis）
+ * - 用户可用积分保存在 Redis 中，扣减时由一个 Lua 脚本完成余额检查、扣减、写入结算队列，不再使用分布式锁
+ * - 余额在首次扣减时从数据库加载：数据库可用积分 - 尚未结算的扣减
+ * - 扣减的 FIFO 消费明细由 {@link PointsSettler} 异步批量写入数据库
+ * - 发放、过期等直接写库的变动先登记为进行中，事务提交后再调整已加载的余额并递增余额版本；
+ *   加载余额与对账在读取数据库前后比较版本，读到的值可能已包含尚未同步的调整时不采用，避免重复计入
+ */
+@Slf4j
+@Component
+public class PointsLedger {
+
+    static final String BALANCE_KEY_PREFIX = "points:balance:";
+
+    static final String PENDING_KEY_PREFIX = "points:pending:";
+
+    static final String SETTLE_QUEUE_KEY = "points:settle:queue";
+
+    /**
+     * 停放队列：无法解析或多次结算失败的扣减，等待人工处理
+     */
+    static final String PARKED_QUEUE_KEY = "points:settle:parked";
+
+    static final String ADJUSTING_KEY_PREFIX = "points:adjusting:";
+
+    static final String VERSION_KEY_PREFIX = "points:version:";
+
+    static final String DIRTY_USERS_KEY = "points:reconcile:users";
+
+    private static final RedisScript<List> DEBIT_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/points_debit.lua"), List.class);
+
+    private static final RedisScript<Long> ADJUST_BEGIN_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/points_adjust_begin.lua"), Long.class);
+
+    private static final RedisScript<Long> CREDIT_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/points_credit.lua"), Long.class);
+
+    private static final RedisScript<List> RECONCILE_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/points_reconcile.lua"), List.class);
+
+    /**
+     * 进行中调整的登记有效期（秒），超过时说明写库的进程已退出
+     */
+    private static final long ADJUSTING_TTL_SECONDS = 600;
+
+    @Value("${code.points.balance-ttl-hours:24}")
+    private long balanceTtlHours;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private UserPointsMapper userPointsMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 原子扣减积分，成功时扣减明细进入结算队列
+     *
+     * @return 扣减后的余额；余额不足时返回 null
+     */
+    public Integer debit(Debit debit) {
+        long start = System.nanoTime();
+        String result = "insufficient";
+        try {
+            debit.setId(IdUtil.getSnowflakeNextId());
+            debit.setCreateTime(System.currentTimeMillis());
+            List<?> reply = executeDebit(debit, "", "");
+            if (((Number) reply.get(0)).intValue() < 0) {
+                // 余额未加载：读取数据库后带上读取前的版本重试，脚本内只在仍未加载时才使用这个值
+                String version = String.valueOf(((Number) reply.get(1)).longValue());
+                reply = executeDebit(debit, String.valueOf(loadDatabaseBalance(debit.getUserId())), version);
+            }
+            if (((Number) reply.get(0)).intValue() != 1) {
+                log.warn("用户 {} 积分不足，当前：{}，需要：{}", debit.getUserId(), reply.get(1), debit.getPoints());
+                return null;
+            }
+            result = "success";
+            return ((Number) reply.get(1)).intValue();
+        } finally {
+            Timer.builder("ai_code_points_debit_seconds")
+                    .description("积分扣减耗时")
+                    .tag("result", result)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 登记一次数据库可用积分的变动，事务结束后同步到已加载的余额
+     * 必须在事务内、更新数据库之前调用：事务结束前对账与余额加载都不会采用读到的数据库值
+     *
+     * @param delta 变动积分，负数为减少
+     */
+    public void adjustAfterCommit(Long userId, int delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("积分余额调整需要在事务内登记");
+        }
+        stringRedisTemplate.execute(ADJUST_BEGIN_SCRIPT, List.of(ADJUSTING_KEY_PREFIX + userId),
+                String.valueOf(ADJUSTING_TTL_SECONDS));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    completeAdjust(userId, status == STATUS_COMMITTED ? delta : 0);
+                } catch (Exception e) {
+                    log.error("同步用户 {} 的 Redis 积分余额失败，等待对账修正", userId, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 当前可用积分：已加载时读 Redis，否则为数据库可用积分减去未结算的扣减
+     */
+    public int getBalance(Long userId) {
+        String balance = stringRedisTemplate.opsForValue().get(BALANCE_KEY_PREFIX + userId);
+        if (balance != null) {
+            return Integer.parseInt(balance);
+        }
+        return loadDatabaseBalance(userId) - getPending(userId);
+    }
+
+    /**
+     * 与 {@link #getBalance} 相同，但数据库可用积分由调用方提供（调用方已查询过账户时使用）
+     */
+    public int getBalance(Long userId, int databaseBalance) {
+        String balance = stringRedisTemplate.opsForValue().get(BALANCE_KEY_PREFIX + userId);
+        return balance != null ? Integer.parseInt(balance) : databaseBalance - getPending(userId);
+    }
+
+    /**
+     * 对账：没有未结算的扣减与进行中的调整时，用数据库可用积分修正 Redis 余额
+     * 需要在结算锁内调用，避免读取数据库与修正之间有批次完成结算；
+     * 读取数据库期间有调整完成（版本变化）时跳过，避免把已计入数据库的调整再叠加一次
+     *
+     * @return 修正的差额（Redis - 数据库）；一致、未加载、有未结算扣减或调整时返回 0
+     */
+    public int reconcile(Long userId) {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + userId);
+        int databaseBalance = loadDatabaseBalance(userId);
+        List<?> reply = stringRedisTemplate.execute(RECONCILE_SCRIPT,
+                List.of(BALANCE_KEY_PREFIX + userId, PENDING_KEY_PREFIX + userId,
+                        ADJUSTING_KEY_PREFIX + userId, VERSION_KEY_PREFIX + userId),
+                String.valueOf(databaseBalance), String.valueOf(ttlSeconds()), version == null ? "0" : version);
+        if (((Number) reply.get(0)).intValue() != 1) {
+            return 0;
+        }
+        int drift = ((Number) reply.get(1)).intValue() - databaseBalance;
+        Counter.builder("ai_code_points_reconcile_drift_total")
+                .description("对账修正的 Redis 余额偏差（积分）")
+                .register(meterRegistry)
+                .increment(Math.abs(drift));
+        log.warn("积分对账：用户 {} 的 Redis 余额与数据库相差 {}，已修正为 {}", userId, drift, databaseBalance);
+        return drift;
+    }
+
+    /**
+     * 取出最近有变动、需要对账的用户
+     */
+    public List<String> popDirtyUsers(int count) {
+        List<String> users = stringRedisTemplate.opsForSet().pop(DIRTY_USERS_KEY, count);
+        return users == null ? List.of() : users;
+    }
+
+    /**
+     * 当前未结算的扣减条数
+     */
+    public long getQueueSize() {
+        Long size = stringRedisTemplate.opsForList().size(SETTLE_QUEUE_KEY);
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * 停放的扣减条数（大于 0 时需要人工处理）
+     */
+    public long getParkedSize() {
+        Long size = stringRedisTemplate.opsForList().size(PARKED_QUEUE_KEY);
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * 已在 Redis 中扣除、尚未结算到数据库的扣减积分（含停放的扣减）
+     */
+    public int getPending(Long userId) {
+        String pending = stringRedisTemplate.opsForValue().get(PENDING_KEY_PREFIX + userId);
+        return pending == null ? 0 : Integer.parseInt(pending);
+    }
+
+    private void completeAdjust(Long userId, int delta) {
+        stringRedisTemplate.execute(CREDIT_SCRIPT,
+                List.of(BALANCE_KEY_PREFIX + userId, DIRTY_USERS_KEY,
+                        ADJUSTING_KEY_PREFIX + userId, VERSION_KEY_PREFIX + userId),
+                String.valueOf(delta), String.valueOf(userId), String.valueOf(ttlSeconds()));
+    }
+
+    private List<?> executeDebit(Debit debit, String databaseBalance, String version) {
+        Long userId = debit.getUserId();
+        return stringRedisTemplate.execute(DEBIT_SCRIPT,
+                List.of(BALANCE_KEY_PREFIX + userId, PENDING_KEY_PREFIX + userId, SETTLE_QUEUE_KEY, DIRTY_USERS_KEY,
+                        ADJUSTING_KEY_PREFIX + userId, VERSION_KEY_PREFIX + userId),
+                String.valueOf(debit.getPoints()), databaseBalance, JSONUtil.toJsonStr(debit),
+                String.valueOf(ttlSeconds()), String.valueOf(userId), version);
+    }
+
+    private int loadDatabaseBalance(Long userId) {
+        UserPoints userPoints = userPointsMapper.selectOneByQuery(QueryWrapper.create()
+                .eq(UserPoints::getUserId, userId).limit(1));
+        return userPoints == null || userPoints.getAvailablePoints() == null ? 0 : userPoints.getAvailablePoints();
+    }
+
+    private long ttlSeconds() {
+        return Duration.ofHours(balanceTtlHours).toSeconds();
+    }
+
+    /**
+     * 待结算的扣减明细（Redis 中以 "扣减后余额:JSON" 保存）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Debit {
+
+        /**
+         * 扣减流水ID，结算时作为积分明细主键，重复结算时据此去重
+         */
+        private Long id;
+
+        private Long userId;
+
+        private Integer points;
+
+        private String type;
+
+        private String reason;
+
+        private Long relatedId;
+
+        private String modelKey;
+
+        private Integer tokenCount;
+
+        /**
+         * 扣减时间（毫秒时间戳）
+         */
+        private Long createTime;
+
+        /**
+         * 扣减后余额（由扣减脚本写入队列元素前缀，不参与序列化）
+         */
+        private transient Integer balance;
+
+        public Debit(Long userId, Integer points, String type, String reason, Long relatedId,
+                     String modelKey, Integer tokenCount) {
+            this(null, userId, points, type, reason, relatedId, modelKey, tokenCount, null, null);
+        }
+
+        static Debit parse(String element) {
+            int separator = element.indexOf(':');
+            Debit debit = JSONUtil.toBean(element.substring(separator + 1), Debit.class);
+            debit.setBalance(Integer.parseInt(element.substring(0, separator)));
+            return debit;
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.spring.aicodemother.service.impl;
+
+import com.mybatisflex.core.query.QueryWrapper;
+import com.spring.aicodemother.mapper.PointsRecordMapper;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.spring.aicodemother.model.entity.PointsRecord;
+import com.spring.aicodemother.model.enums.PointsStatusEnum;
+import com.spring.aicodemother.service.PointsRecordService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * 积分结算器：把 {@link PointsLedger} 结算队列中的扣减按 FIFO 策略批量写入数据库
+ * - 同一时间只有一个节点结算（Redisson 锁，只在结算时持有，扣减本身不加锁）
+ * - 一批扣减在一个事务内完成：一次查出批次内所有用户的可用积分明细，按过期时间顺序消费后批量更新，
+ *   批量插入扣减流水，每个用户只更新一次账户
+ * - 事务提交后再从队列中移除；若移除前中断，下次按扣减流水ID跳过已写入的部分
+ * - 整批失败时逐条结算，其余扣减照常入库；失败的扣减排到队尾重试，累计失败
+ *   settle-max-attempts 次后与无法解析的元素一起移入停放队列并告警，不再阻塞队列
+ * - 发放明细按读取时的状态与剩余积分条件更新，被积分过期并发修改时整批回滚、重新读取后重试
+ * - 对账：结算完成后核对最近有变动用户的 Redis 余额
+ */
+@Slf4j
+@Component
+public class PointsSettler {
+
+    private static final String SETTLE_LOCK_KEY = "points:settle:lock";
+
+    /**
+     * 发放明细被并发修改时单批的最大尝试次数
+     */
+    private static final int MAX_CONFLICT_ATTEMPTS = 3;
+
+    private static final RedisScript<Long> ACK_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/points_settle_ack.lua"), Long.class);
+
+    @Value("${code.points.settle-batch-size:200}")
+    private int batchSize;
+
+    @Value("${code.points.settle-max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${code.points.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private PointsLedger pointsLedger;
+
+    @Resource
+    private PointsRecordService pointsRecordService;
+
+    @Resource
+    private PointsRecordMapper pointsRecordMapper;
+
+    @Resource
+    private UserPointsMapper userPointsMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private DistributionSummary batchSizeSummary;
+
+    private Counter parkedCounter;
+
+    /**
+     * 扣减流水ID -> 逐条结算失败的次数（只在持有结算锁时访问）
+     */
+    private final Map<Long, Integer> failedAttempts = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        batchSizeSummary = DistributionSummary.builder("ai_code_points_settle_batch_size")
+                .description("每批结算的扣减条数")
+                .register(meterRegistry);
+        parkedCounter = Counter.builder("ai_code_points_settle_parked_total")
+                .description("移入停放队列的扣减条数（需要人工处理）")
+                .register(meterRegistry);
+        Gauge.builder("ai_code_points_settle_parked", pointsLedger, PointsLedger::getParkedSize)
+                .description("停放队列中等待人工处理的扣减条数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 定时结算；其他节点正在结算时直接跳过
+     */
+    @Scheduled(fixedDelayString = "${code.points.settle-interval-millis:1000}")
+    public void scheduledSettle() {
+        RLock lock = redissonClient.getLock(SETTLE_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            drain();
+        } catch (Exception e) {
+            log.error("积分结算失败，未结算的扣减保留在队列中", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 定时对账最近有变动的用户
+     */
+    @Scheduled(fixedDelayString = "${code.points.reconcile-interval-millis:600000}")
+    public void scheduledReconcile() {
+        List<Long> userIds = pointsLedger.popDirtyUsers(reconcileBatchSize).stream()
+                .map(Long::valueOf)
+                .toList();
+        if (!userIds.isEmpty()) {
+            reconcile(userIds);
+        }
+    }
+
+    /**
+     * 等待并结算队列中的全部扣减（积分过期等需要数据库为最新状态的任务开始前调用）
+     * 结算失败只记录日志，不中断调用方的后续任务
+     *
+     * @return 结算条数
+     */
+    public int settleAll() {
+        return withLock(this::drain);
+    }
+
+    /**
+     * 对账钩子：先结算全部扣减，再用数据库可用积分修正这些用户的 Redis 余额
+     *
+     * @return 余额被修正的用户数
+     */
+    public int reconcile(Collection<Long> userIds) {
+        return withLock(() -> {
+            drain();
+            int corrected = 0;
+            for (Long userId : userIds) {
+                try {
+                    if (pointsLedger.reconcile(userId) != 0) {
+                        corrected++;
+                    }
+                } catch (Exception e) {
+                    log.error("用户 {} 积分对账失败", userId, e);
+                }
+            }
+            log.info("积分对账完成：核对 {} 个用户，修正 {} 个", userIds.size(), corrected);
+            return corrected;
+        });
+    }
+
+    private int withLock(IntSupplier action) {
+        RLock lock = redissonClient.getLock(SETTLE_LOCK_KEY);
+        try {
+            if (!lock.tryLock(30, TimeUnit.SECONDS)) {
+                log.warn("等待积分结算锁超时");
+                return 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        try {
+            return action.getAsInt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int drain() {
+        int total = 0;
+        int settled;
+        try {
+            do {
+                settled = settleBatch();
+                total += settled;
+            } while (settled >= batchSize);
+        } catch (Exception e) {
+            log.error("积分结算失败，未结算的扣减保留在队列中", e);
+        }
+        return total;
+    }
+
+    /**
+     * 结算队列头部的一批扣减
+     *
+     * @return 本批条数
+     */
+    private int settleBatch() {
+        List<String> elements = stringRedisTemplate.opsForList().range(PointsLedger.SETTLE_QUEUE_KEY, 0, batchSize - 1);
+        if (elements == null || elements.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<String> parsedElements = new ArrayList<>(elements.size());
+        List<PointsLedger.Debit> debits = new ArrayList<>(elements.size());
+        List<String> parked = new ArrayList<>();
+        for (String element : elements) {
+            try {
+                debits.add(PointsLedger.Debit.parse(element));
+                parsedElements.add(element);
+            } catch (Exception e) {
+                // 无法解析的元素不能阻塞队列，也不能丢弃（用户的待结算总数仍包含它），停放等待人工处理
+                log.error("【积分系统告警】无法解析的积分扣减已移入停放队列: {}", element, e);
+                parked.add(element);
+            }
+        }
+        List<PointsLedger.Debit> settled = debits;
+        List<String> requeued = new ArrayList<>();
+        try {
+            settleInTransaction(debits);
+        } catch (RuntimeException e) {
+            log.warn("积分结算批次失败，改为逐条结算: {}", e.getMessage());
+            settled = settleIndividually(debits, parsedElements, requeued, parked, e);
+        }
+        acknowledge(settled, elements.size(), requeued, parked);
+        parkedCounter.increment(parked.size());
+
+        batchSizeSummary.record(elements.size());
+        Timer.builder("ai_code_points_settle_seconds")
+                .description("每批积分结算耗时")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return elements.size();
+    }
+
+    /**
+     * 逐条结算，隔离导致整批失败的扣减
+     * 全部失败时视为数据库等整体故障，抛出原异常，队列保持不变
+     *
+     * @return 结算成功的扣减
+     */
+    private List<PointsLedger.Debit> settleIndividually(List<PointsLedger.Debit> debits, List<String> elements,
+                                                        List<String> requeued, List<String> parked,
+                                                        RuntimeException batchError) {
+        List<PointsLedger.Debit> settled = new ArrayList<>(debits.size());
+        Map<Integer, Exception> failures = new LinkedHashMap<>();
+        for (int i = 0; i < debits.size(); i++) {
+            PointsLedger.Debit debit = debits.get(i);
+            try {
+                settleInTransaction(List.of(debit));
+                settled.add(debit);
+                failedAttempts.remove(debit.getId());
+            } catch (Exception e) {
+                failures.put(i, e);
+            }
+        }
+        if (settled.isEmpty()) {
+            throw batchError;
+        }
+        failures.forEach((index, e) -> {
+            PointsLedger.Debit debit = debits.get(index);
+            int attempts = failedAttempts.merge(debit.getId(), 1, Integer::sum);
+            if (attempts >= maxAttempts) {
+                failedAttempts.remove(debit.getId());
+                parked.add(elements.get(index));
+                log.error("【积分系统告警】用户 {} 的积分扣减 {} 连续 {} 次结算失败，已移入停放队列",
+                        debit.getUserId(), debit.getId(), attempts, e);
+            } else {
+                requeued.add(elements.get(index));
+                log.warn("用户 {} 的积分扣减 {} 第 {} 次结算失败，排到队尾重试: {}",
+                        debit.getUserId(), debit.getId(), attempts, e.getMessage());
+            }
+        });
+        return settled;
+    }
+
+    /**
+     * 在一个事务内写入一批扣减；发放明细被积分过期并发修改时重新读取后重试
+     */
+    private void settleInTransaction(List<PointsLedger.Debit> debits) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeToDatabase(debits));
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_CONFLICT_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("积分明细被并发修改，第 {} 次重试结算: {}", attempt, e.getMessage());
+            }
+        }
+    }
+
+    private void writeToDatabase(List<PointsLedger.Debit> debits) {
+        if (debits.isEmpty()) {
+            return;
+        }
+        // 上次已写入但未从队列移除的扣减
+        Set<Long> settledIds = pointsRecordService.list(QueryWrapper.create()
+                        .select(PointsRecord::getId)
+                        .in(PointsRecord::getId, debits.stream().map(PointsLedger.Debit::getId).toList()))
+                .stream()
+                .map(PointsRecord::getId)
+                .collect(Collectors.toSet());
+        List<PointsLedger.Debit> pending = debits.stream()
+                .filter(debit -> !settledIds.contains(debit.getId()))
+                .toList();
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Deque<PointsRecord>> grantsByUser = loadAvailableGrants(
+                pending.stream().map(PointsLedger.Debit::getUserId).collect(Collectors.toSet()));
+        Map<Long, PointsRecord> changedGrants = new LinkedHashMap<>();
+        // 发放明细读取时的剩余积分，作为条件更新的依据
+        Map<Long, Integer> expectedRemaining = new HashMap<>();
+        List<PointsRecord> debitRecords = new ArrayList<>(pending.size());
+        Map<Long, Integer> totalByUser = new LinkedHashMap<>();
+
+        for (PointsLedger.Debit debit : pending) {
+            Deque<PointsRecord> grants = grantsByUser.getOrDefault(debit.getUserId(), new ArrayDeque<>());
+            int remaining = debit.getPoints();
+            int consumedRecordCount = 0;
+            // 按FIFO顺序逐笔扣减
+            while (remaining > 0 && !grants.isEmpty()) {
+                PointsRecord grant = grants.peekFirst();
+                int grantRemaining = remainingOf(grant);
+                expectedRemaining.putIfAbsent(grant.getId(), grantRemaining);
+                int deductAmount = Math.min(grantRemaining, remaining);
+                if (deductAmount >= grantRemaining) {
+                    grant.setStatus(PointsStatusEnum.CONSUMED.getValue());
+                    grant.setRemainingPoints(0);
+                    grants.pollFirst();
+                } else {
+                    grant.setStatus(PointsStatusEnum.PARTIAL_CONSUMED.getValue());
+                    grant.setRemainingPoints(grantRemaining - deductAmount);
+                }
+                changedGrants.put(grant.getId(), grant);
+                remaining -= deductAmount;
+                consumedRecordCount++;
+            }
+            if (remaining > 0) {
+                // 余额已在 Redis 中扣除，明细不足说明账户与明细不一致，照常记账，由一致性检查处理
+                log.warn("用户 {} 的可用积分明细不足以结算扣减 {}，差 {} 积分", debit.getUserId(), debit.getPoints(), remaining);
+            }
+
+            debitRecords.add(PointsRecord.builder()
+                    .id(debit.getId())
+                    .userId(debit.getUserId())
+                    .points(-debit.getPoints())
+                    .balance(debit.getBalance())
+                    .type(debit.getType())
+                    .status(PointsStatusEnum.CONSUMED.getValue())
+                    .reason(debit.getReason() + String.format("（FIFO策略，消耗%d笔记录）", consumedRecordCount))
+                    .relatedId(debit.getRelatedId())
+                    .modelKey(debit.getModelKey())
+                    .tokenCount(debit.getTokenCount())
+                    .createTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(debit.getCreateTime()), ZoneId.systemDefault()))
+                    .build());
+            totalByUser.merge(debit.getUserId(), debit.getPoints(), Integer::sum);
+        }
+
+        for (PointsRecord grant : changedGrants.values()) {
+            int updated = pointsRecordMapper.consumeIfUnchanged(grant.getId(), grant.getStatus(),
+                    grant.getRemainingPoints(), expectedRemaining.get(grant.getId()));
+            if (updated == 0) {
+                throw new OptimisticLockingFailureException("积分明细 " + grant.getId() + " 已被并发修改");
+            }
+        }
+        pointsRecordService.saveBatch(debitRecords);
+        totalByUser.forEach((userId, total) -> userPointsMapper.addAvailablePoints(userId, -total));
+        log.info("积分结算：{} 笔扣减，{} 个用户，更新 {} 笔积分明细", pending.size(), totalByUser.size(), changedGrants.size());
+    }
+
+    /**
+     * 一次查询批次内所有用户未过期且有剩余的积分明细，按过期时间、创建时间排序
+     */
+    private Map<Long, Deque<PointsRecord>> loadAvailableGrants(Set<Long> userIds) {
+        LocalDateTime now = LocalDateTime.now();
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .in(PointsRecord::getUserId, userIds)
+                .gt(PointsRecord::getPoints, 0)
+                .in(PointsRecord::getStatus, Arrays.asList(
+                        PointsStatusEnum.ACTIVE.getValue(),
+                        PointsStatusEnum.PARTIAL_CONSUMED.getValue(),
+                        null  // 兼容旧数据
+                ))
+                .and((Consumer<QueryWrapper>) (qw -> qw.isNull(PointsRecord::getExpireTime)
+                        .or((Consumer<QueryWrapper>) (qw2 -> qw2.gt(PointsRecord::getExpireTime, now)))))
+                .orderBy(PointsRecord::getExpireTime, true)
+                .orderBy(PointsRecord::getCreateTime, true);
+        Map<Long, Deque<PointsRecord>> grantsByUser = new HashMap<>();
+        for (PointsRecord grant : pointsRecordService.list(queryWrapper)) {
+            if (remainingOf(grant) > 0) {
+                grantsByUser.computeIfAbsent(grant.getUserId(), id -> new ArrayDeque<>()).addLast(grant);
+            }
+        }
+        return grantsByUser;
+    }
+
+    /**
+     * 事务提交后从队列移除本批元素，减少已结算用户的未结算扣减总数，
+     * 并把需要重试的元素排到队尾、停放的元素移入停放队列
+     */
+    private void acknowledge(List<PointsLedger.Debit> settled, int count, List<String> requeued, List<String> parked) {
+        Map<Long, Integer> pointsByUser = new LinkedHashMap<>();
+        for (PointsLedger.Debit debit : settled) {
+            pointsByUser.merge(debit.getUserId(), debit.getPoints(), Integer::sum);
+        }
+        List<String> keys = new ArrayList<>(pointsByUser.size() + 2);
+        List<String> args = new ArrayList<>(pointsByUser.size() + requeued.size() + parked.size() + 3);
+        keys.add(PointsLedger.SETTLE_QUEUE_KEY);
+        keys.add(PointsLedger.PARKED_QUEUE_KEY);
+        args.add(String.valueOf(count));
+        args.add(String.valueOf(requeued.size()));
+        args.add(String.valueOf(parked.size()));
+        pointsByUser.forEach((userId, points) -> {
+            keys.add(PointsLedger.PENDING_KEY_PREFIX + userId);
+            args.add(String.valueOf(points));
+        });
+        args.addAll(requeued);
+        args.addAll(parked);
+        stringRedisTemplate.execute(ACK_SCRIPT, keys, args.toArray());
+    }
+
+    /**
+     * 明细的剩余积分（兼容没有 remainingPoints 的旧数据）
+     */
+    private static int remainingOf(PointsRecord grant) {
+        Integer remainingPoints = grant.getRemainingPoints();
+        return remainingPoints == null || remainingPoints <= 0 ? grant.getPoints() : remainingPoints;
+    }
+}
@@ -2,19 +2,21 @@ package com.spring.aicodemother.service.impl;
 
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.ZipUtil;
+import com.spring.aicodemother.core.download.ProjectArchiveCache;
 import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.exception.ThrowUtils;
 import com.spring.aicodemother.service.ProjectDownloadService;
+import com.spring.aicodemother.utils.FileTransferUtils;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Set;
 
@@ -47,27 +49,32 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
             ".cache"
     );
 
+    @Resource
+    private ProjectArchiveCache projectArchiveCache;
 
     @Override
-    public void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response) {
-        // 基础校验
-        ThrowUtils.throwIf(StrUtil.isBlank(projectPath), ErrorCode.PARAMS_ERROR, "项目路径不能为空");
+    public void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletRequest request, HttpServletResponse response) {
+        File projectDir = validateProjectDir(projectPath);
         ThrowUtils.throwIf(StrUtil.isBlank(downloadFileName), ErrorCode.PARAMS_ERROR, "下载文件名不能为空");
-        File projectDir = new File(projectPath);
-        ThrowUtils.throwIf(!projectDir.exists(), ErrorCode.PARAMS_ERROR, "项目路径不存在");
-        ThrowUtils.throwIf(!projectDir.isDirectory(), ErrorCode.PARAMS_ERROR, "项目路径不是一个目录");
         log.info("开始打包下载项目: {} -> {}.zip", projectPath, downloadFileName);
-        // 设置 HTTP 响应头
-        response.setStatus(HttpServletResponse.SC_OK);
-        response.setContentType("application/zip");
-        response.addHeader("Content-Disposition",
-                String.format("attachment; filename=\"%s.zip\"", downloadFileName));
-        // 定义文件过滤器
-        FileFilter filter = file -> isPathAllowed(projectDir.toPath(), file.toPath());
-        // 压缩
         try {
-            // 使用 Hutool 的 ZipUtil 直接将过滤后的目录压缩到响应输出流
-            ZipUtil.zip(response.getOutputStream(), StandardCharsets.UTF_8, false, filter, projectDir);
+            // 内容未变化时直接使用缓存的压缩包，否则先打包到缓存目录
+            ProjectArchiveCache.Archive archive = projectArchiveCache.getOrBuild(projectDir.toPath(), this::isPathAllowed);
+            String etag = "\"" + archive.fingerprint() + "\"";
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            // 设置 HTTP 响应头
+            File zipFile = archive.file().toFile();
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType("application/zip");
+            response.setContentLengthLong(zipFile.length());
+            response.addHeader("Content-Disposition",
+                    String.format("attachment; filename=\"%s.zip\"", downloadFileName));
+            FileTransferUtils.transfer(zipFile, 0, zipFile.length(), request, response);
             log.info("打包下载项目成功: {} -> {}.zip", projectPath, downloadFileName);
         } catch (IOException e) {
             log.error("打包下载项目失败", e);
@@ -75,16 +82,33 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
         }
     }
 
+    @Override
+    public boolean prepareProjectZip(String projectPath) {
+        File projectDir = validateProjectDir(projectPath);
+        try {
+            return projectArchiveCache.prepare(projectDir.toPath(), this::isPathAllowed);
+        } catch (IOException e) {
+            log.error("准备项目压缩包失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "准备项目压缩包失败");
+        }
+    }
+
+    private File validateProjectDir(String projectPath) {
+        // 基础校验
+        ThrowUtils.throwIf(StrUtil.isBlank(projectPath), ErrorCode.PARAMS_ERROR, "项目路径不能为空");
+        File projectDir = new File(projectPath);
+        ThrowUtils.throwIf(!projectDir.exists(), ErrorCode.PARAMS_ERROR, "项目路径不存在");
+        ThrowUtils.throwIf(!projectDir.isDirectory(), ErrorCode.PARAMS_ERROR, "项目路径不是一个目录");
+        return projectDir;
+    }
+
     /**
      * 校验路径是否允许包含在压缩包中
      *
-     * @param projectRoot 项目根目录
-     * @param fullPath    完整路径
+     * @param relativePath 相对项目根目录的路径
      * @return 是否允许
      */
-    private boolean isPathAllowed(Path projectRoot, Path fullPath) {
-        // 获取相对路径
-        Path relativePath = projectRoot.relativize(fullPath);
+    private boolean isPathAllowed(Path relativePath) {
         // 检查路径中的每一部分是否符合要求
         for (Path part : relativePath) {
             String partName = part.toString();
@@ -1,20 +1,22 @@
 package com.spring.aicodemother.service.impl;
 
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
+import com.spring.aicodemother.core.screenshot.BrowserPool;
 import com.spring.aicodemother.exception.ErrorCode;
 import com.spring.aicodemother.exception.ThrowUtils;
 import com.spring.aicodemother.manager.CosManager;
 import com.spring.aicodemother.service.ScreenshotService;
 import com.spring.aicodemother.utils.WebScreenshotUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -23,8 +25,14 @@ public class ScreenshotServiceImpl implements ScreenshotService {
     @Resource
     private CosManager cosManager;
 
+    @Resource
+    private BrowserPool browserPool;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
     /**
-     * 生成本地截图并上传到存储对象
+     * 生成截图并上传到存储对象（截图和压缩都在内存中完成，不落本地文件）
      * @param webUrl 网址
      * @return 存储对象的 URL
      */
@@ -32,40 +40,36 @@ public class ScreenshotServiceImpl implements ScreenshotService {
     public String generateAndUploadScreenshot(String webUrl) {
         ThrowUtils.throwIf(StrUtil.isBlank(webUrl), ErrorCode.PARAMS_ERROR, "网页URL不能为空");
         log.info("开始生成网页截图，URL: {}", webUrl);
-        // 1. 生成本地截图
-        String localScreenshotPath = WebScreenshotUtils.saveWebPageScreenshot(webUrl);
-        ThrowUtils.throwIf(StrUtil.isBlank(localScreenshotPath), ErrorCode.OPERATION_ERROR, "本地截图生成失败");
-        try {
-            // 2. 上传到对象存储
-            String cosUrl = uploadScreenshotToCos(localScreenshotPath);
-            ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "截图上传对象存储失败");
-            log.info("网页截图生成并上传成功: {} -> {}", webUrl, cosUrl);
-            return cosUrl;
-        } finally {
-            // 3. 清理本地文件
-            cleanupLocalFile(localScreenshotPath);
-        }
+        // 1. 借用浏览器截图
+        byte[] imageBytes = captureScreenshot(webUrl);
+        ThrowUtils.throwIf(imageBytes == null || imageBytes.length == 0, ErrorCode.OPERATION_ERROR, "截图生成失败");
+        // 2. 上传到对象存储
+        String fileName = UUID.randomUUID().toString().substring(0, 8) + "_compressed.jpg";
+        String cosUrl = cosManager.uploadBytes(generateScreenshotKey(fileName), imageBytes, "image/jpeg");
+        ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "截图上传对象存储失败");
+        log.info("网页截图生成并上传成功: {} -> {}", webUrl, cosUrl);
+        return cosUrl;
     }
 
     /**
-     * 上传截图到对象存储
-     *
-     * @param localScreenshotPath 本地截图路径
-     * @return 对象存储访问URL，失败返回null
+     * 借用浏览器池中的浏览器截图，记录截图耗时
      */
-    private String uploadScreenshotToCos(String localScreenshotPath) {
-        if (StrUtil.isBlank(localScreenshotPath)) {
-            return null;
-        }
-        File screenshotFile = new File(localScreenshotPath);
-        if (!screenshotFile.exists()) {
-            log.error("截图文件不存在: {}", localScreenshotPath);
+    private byte[] captureScreenshot(String webUrl) {
+        long start = System.nanoTime();
+        String status = "success";
+        try {
+            return browserPool.execute(driver -> WebScreenshotUtils.captureCompressed(driver, webUrl));
+        } catch (RuntimeException e) {
+            status = "error";
+            log.error("网页截图失败：{}", webUrl, e);
             return null;
+        } finally {
+            Timer.builder("ai_code_screenshot_capture_seconds")
+                    .description("网页截图耗时（含页面加载与压缩）")
+                    .tag("status", status)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        // 生成 COS 对象键
-        String fileName = UUID.randomUUID().toString().substring(0, 8) + "_compressed.jpg";
-        String cosKey = generateScreenshotKey(fileName);
-        return cosManager.uploadFile(cosKey, screenshotFile);
     }
 
     /**
@@ -76,20 +80,4 @@ public class ScreenshotServiceImpl implements ScreenshotService {
         String datePath = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
         return String.format("/screenshots/%s/%s", datePath, fileName);
     }
-
-    /**
-     * 清理本地文件
-     *
-     * @param localFilePath 本地文件路径
-     */
-    private void cleanupLocalFile(String localFilePath) {
-        File localFile = new File(localFilePath);
-        if (localFile.exists()) {
-            File parentDir = localFile.getParentFile();
-            FileUtil.del(parentDir);
-            log.info("本地截图文件已清理: {}", localFilePath);
-        }
-    }
 }
-
-
@@ -0,0 +1,51 @@
+package com.spring.aicodemother.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件发送工具类
+ * 优先交给 Tomcat 用 sendfile 发送（内容不经过 JVM 堆），不支持时用 FileChannel.transferTo 写入响应
+ */
+public class FileTransferUtils {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    /**
+     * 把文件的指定区间写入响应（调用方需已设置 Content-Length）
+     *
+     * @param file   文件
+     * @param start  起始位置
+     * @param length 字节数
+     */
+    public static void transfer(File file, long start, long length, HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由 Tomcat 在响应提交后直接用 sendfile 发送
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.getAbsolutePath());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", start + length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+}
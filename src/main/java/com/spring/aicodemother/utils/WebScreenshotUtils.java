@@ -1,6 +1,7 @@
 package com.spring.aicodemother.utils;
 
 
+import cn.hutool.core.img.Img;
 import cn.hutool.core.img.ImgUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
@@ -8,7 +9,6 @@ import cn.hutool.core.util.StrUtil;
 import com.spring.aicodemother.exception.BusinessException;
 import com.spring.aicodemother.exception.ErrorCode;
 import io.github.bonigarcia.wdm.WebDriverManager;
-import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.OutputType;
@@ -16,37 +16,47 @@ import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * 截图工具类
+ * 浏览器由 BrowserPool 统一管理，这里只提供创建浏览器、等待页面就绪、截图和压缩的方法
  */
 @Slf4j
 public class WebScreenshotUtils {
 
-    private static final WebDriver webDriver;
+    /**
+     * 压缩图片质量（0.1 = 10% 质量）
+     */
+    private static final float COMPRESSION_QUALITY = 0.3f;
 
-    // 全局静态初始化，避免重复初始化驱动程序：
-    static {
-        final int DEFAULT_WIDTH = 1600;
-        final int DEFAULT_HEIGHT = 900;
-        webDriver = initChromeDriver(DEFAULT_WIDTH, DEFAULT_HEIGHT);
-    }
+    /**
+     * 网络空闲判定时长：资源请求数在这段时间内没有变化即认为页面已就绪
+     */
+    private static final long NETWORK_IDLE_MILLIS = 500;
 
     /**
-     * 退出时销毁
+     * 等待页面就绪的最长时间
      */
-    @PreDestroy
-    public void destroy() {
-        webDriver.quit();
-    }
+    private static final long MAX_READY_WAIT_MILLIS = 10_000;
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
 
     /**
-     * 生成网页截图
+     * 页面状态：加载状态、已完成的资源请求数、字体是否加载完成
+     */
+    private static final String READINESS_SCRIPT = "return [document.readyState,"
+            + " performance.getEntriesByType('resource').length,"
+            + " !document.fonts || document.fonts.status === 'loaded'];";
+
+    /**
+     * 生成网页截图（临时创建浏览器，用完即关闭，仅用于调试；业务截图请通过 BrowserPool）
      *
      * @param webUrl 要截图的网址
      * @return 压缩后的截图文件路径，失败返回 null
@@ -57,41 +67,46 @@ public class WebScreenshotUtils {
             log.error("网页截图失败，url为空");
             return null;
         }
-        // 创建临时目录
+        WebDriver driver = null;
         try {
+            driver = createChromeDriver(1600, 900);
+            byte[] imageBytes = captureCompressed(driver, webUrl);
             String rootPath = System.getProperty("user.dir") + "/tmp/screenshots/" + UUID.randomUUID().toString().substring(0, 8);
-            FileUtil.mkdir(rootPath);
-            // 图片后缀
-            final String IMAGE_SUFFIX = ".png";
-            // 原始图片保存路径
-            String imageSavePath = rootPath + File.separator + RandomUtil.randomNumbers(5) + IMAGE_SUFFIX;
-            // 访问网页
-            webDriver.get(webUrl);
-            // 等待网页加载
-            waitForPageLoad();
-            // 截图
-            byte[] screenshotBytes = ((TakesScreenshot) webDriver).getScreenshotAs(OutputType.BYTES);
-            // 保存原始图片
-            saveImage(screenshotBytes, imageSavePath);
-            log.info("原始截图保存成功：{}", imageSavePath);
-            // 压缩图片
-            final String COMPRESS_SUFFIX = "_compressed.jpg";
-            String compressedImagePath = rootPath + File.separator + RandomUtil.randomNumbers(5) + COMPRESS_SUFFIX;
-            compressImage(imageSavePath, compressedImagePath);
+            String compressedImagePath = rootPath + File.separator + RandomUtil.randomNumbers(5) + "_compressed.jpg";
+            FileUtil.writeBytes(imageBytes, compressedImagePath);
             log.info("压缩图片保存成功：{}", compressedImagePath);
-            // 删除原始图片
-            FileUtil.del(imageSavePath);
             return compressedImagePath;
         } catch (Exception e) {
             log.error("网页截图失败：{}", webUrl, e);
             return null;
+        } finally {
+            if (driver != null) {
+                driver.quit();
+            }
         }
     }
 
+    /**
+     * 访问网页，等待网络空闲后截图并压缩为 JPEG（全程在内存中完成）
+     *
+     * @param driver 浏览器
+     * @param webUrl 要截图的网址
+     * @return JPEG 图片内容
+     */
+    public static byte[] captureCompressed(WebDriver driver, String webUrl) {
+        // 访问网页
+        driver.get(webUrl);
+        // 等待网页加载
+        waitForNetworkIdle(driver);
+        // 截图
+        byte[] screenshotBytes = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+        return compressToJpeg(screenshotBytes);
+    }
+
     /**
      * 初始化 Chrome 浏览器驱动
      */
-    private static WebDriver initChromeDriver(int width, int height) {
+    public static WebDriver createChromeDriver(int width, int height) {
         try {
             // 自动管理 ChromeDriver
             WebDriverManager.chromedriver().setup();
@@ -125,59 +140,55 @@ public class WebScreenshotUtils {
     }
 
     /**
-     * 保存图片到文件
-     *
-     * @param imageBytes
-     * @param imagePath
-     */
-    private static void saveImage(byte[] imageBytes, String imagePath) {
-        try {
-            FileUtil.writeBytes(imageBytes, imagePath);
-        } catch (Exception e) {
-            log.error("保存图片失败：{}", imagePath, e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存图片失败");
-        }
-    }
-
-    /**
-     * 压缩图片
+     * 在内存中把 PNG 截图压缩为 JPEG
      *
-     * @param originImagePath
-     * @param compressedImagePath
+     * @param pngBytes 原始截图
+     * @return JPEG 图片内容
      */
-    private static void compressImage(String originImagePath, String compressedImagePath) {
-        // 压缩图片质量（0.1 = 10% 质量）
-        final float COMPRESSION_QUALITY = 0.3f;
+    public static byte[] compressToJpeg(byte[] pngBytes) {
         try {
-            ImgUtil.compress(
-                    FileUtil.file(originImagePath),
-                    FileUtil.file(compressedImagePath),
-                    COMPRESSION_QUALITY
-            );
+            ByteArrayOutputStream out = new ByteArrayOutputStream(pngBytes.length / 4);
+            Img.from(new ByteArrayInputStream(pngBytes))
+                    .setTargetImageType(ImgUtil.IMAGE_TYPE_JPG)
+                    .setQuality(COMPRESSION_QUALITY)
+                    .write(out);
+            return out.toByteArray();
         } catch (Exception e) {
-            log.error("压缩图片失败：{} -> {}", originImagePath, compressedImagePath, e);
+            log.error("压缩图片失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "压缩图片失败");
         }
     }
 
     /**
-     * 等待页面加载完成
+     * 等待页面就绪：文档加载完成、字体加载完成，且资源请求数连续 NETWORK_IDLE_MILLIS 没有变化
+     * 静态页面通常几百毫秒即可就绪，超过 MAX_READY_WAIT_MILLIS 时直接截图
      */
-    private static void waitForPageLoad() {
+    private static void waitForNetworkIdle(WebDriver driver) {
+        long start = System.currentTimeMillis();
+        long deadline = start + MAX_READY_WAIT_MILLIS;
+        long lastCount = -1;
+        long stableSince = start;
         try {
-            // 创建等待页面加载对象
-            WebDriverWait wait = new WebDriverWait(WebScreenshotUtils.webDriver, Duration.ofSeconds(10));
-            // 等待 document.readyState 为 complete
-            wait.until(driver -> ((JavascriptExecutor) driver)
-                    .executeScript("return document.readyState").
-                    equals("complete")
-            );
-            // 额外等待一段时间，确保动态内容加载完成
-            Thread.sleep(2000);
-            log.info("页面加载完成");
+            while (System.currentTimeMillis() < deadline) {
+                List<?> state = (List<?>) ((JavascriptExecutor) driver).executeScript(READINESS_SCRIPT);
+                long now = System.currentTimeMillis();
+                long count = ((Number) state.get(1)).longValue();
+                if (count != lastCount) {
+                    lastCount = count;
+                    stableSince = now;
+                }
+                boolean loaded = "complete".equals(state.get(0)) && Boolean.TRUE.equals(state.get(2));
+                if (loaded && now - stableSince >= NETWORK_IDLE_MILLIS) {
+                    log.info("页面加载完成，耗时 {} ms", now - start);
+                    return;
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            log.warn("等待页面网络空闲超时（{} ms），继续执行截图", MAX_READY_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("等待页面加载时出现异常，继续执行截图", e);
         }
     }
 }
-
@@ -0,0 +1,21 @@
+-- 生成前准入检查（原子执行）
+-- KEYS[1] 禁止生成标记  KEYS[2] 今日生成次数  KEYS[3] 今日 Token 消耗  KEYS[4] 24 小时需求哈希集合
+-- ARGV[1] 需求哈希  ARGV[2] 每日生成次数上限  ARGV[3] 每日 Token 上限  ARGV[4] 到今日结束的秒数
+-- 返回 {状态, 今日生成次数, 今日 Token 消耗}，状态：0 通过 1 已禁止 2 次数超限 3 Token 超限 4 重复需求
+if redis.call('GET', KEYS[1]) == '1' then
+    return {1, 0, 0}
+end
+local count = tonumber(redis.call('GET', KEYS[2]) or '0')
+if count >= tonumber(ARGV[2]) then
+    return {2, count, 0}
+end
+local tokens = tonumber(redis.call('GET', KEYS[3]) or '0')
+if tokens >= tonumber(ARGV[3]) then
+    return {3, count, tokens}
+end
+if redis.call('SISMEMBER', KEYS[4], ARGV[1]) == 1 then
+    return {4, count, tokens}
+end
+count = redis.call('INCR', KEYS[2])
+redis.call('EXPIRE', KEYS[2], ARGV[4])
+return {0, count, tokens}
@@ -0,0 +1,6 @@
+-- 登记一次进行中的余额调整（发放、过期等写库事务开始前执行）
+-- KEYS[1] 进行中的调整数
+-- ARGV[1] 登记过期秒数（进程在事务结束前退出时，超时后自动清除）
+local adjusting = redis.call('INCR', KEYS[1])
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+return adjusting
@@ -0,0 +1,14 @@
+-- 完成一次余额调整（写库事务结束后执行），并递增余额版本
+-- KEYS[1] 余额  KEYS[2] 待对账用户集合  KEYS[3] 进行中的调整数  KEYS[4] 余额版本
+-- ARGV[1] 变动积分（负数为减少，事务回滚时为 0）  ARGV[2] 用户ID  ARGV[3] 余额过期秒数
+-- 返回调整后的余额；余额未加载时返回 false，下次扣减时从数据库加载
+if redis.call('DECR', KEYS[3]) <= 0 then
+    redis.call('DEL', KEYS[3])
+end
+redis.call('INCR', KEYS[4])
+redis.call('EXPIRE', KEYS[4], ARGV[3])
+redis.call('SADD', KEYS[2], ARGV[2])
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return false
+end
+return redis.call('INCRBY', KEYS[1], ARGV[1])
@@ -0,0 +1,39 @@
+-- 积分扣减（原子执行，不加分布式锁）
+-- KEYS[1] 余额  KEYS[2] 待结算扣减总数  KEYS[3] 结算队列  KEYS[4] 待对账用户集合  KEYS[5] 进行中的调整数  KEYS[6] 余额版本
+-- ARGV[1] 扣减积分  ARGV[2] 数据库可用积分（为空时不加载）  ARGV[3] 扣减明细 JSON  ARGV[4] 余额过期秒数  ARGV[5] 用户ID
+-- ARGV[6] 读取数据库可用积分之前的余额版本
+-- 返回 {状态, 余额}，状态：1 成功 0 余额不足 -1 余额未加载（第二项为当前余额版本，需读取数据库后带上版本重试）
+local balance = redis.call('GET', KEYS[1])
+local cached = true
+if balance then
+    balance = tonumber(balance)
+else
+    if ARGV[2] == '' then
+        return {-1, tonumber(redis.call('GET', KEYS[6]) or '0')}
+    end
+    -- 数据库中还没扣掉的部分记在待结算总数里
+    balance = tonumber(ARGV[2]) - tonumber(redis.call('GET', KEYS[2]) or '0')
+    -- 读取数据库期间有调整进行中或已完成时，读到的值不确定是否包含该调整：只用于本次判断，不写入缓存
+    cached = tonumber(redis.call('GET', KEYS[5]) or '0') <= 0
+            and (redis.call('GET', KEYS[6]) or '0') == ARGV[6]
+    if cached then
+        redis.call('SET', KEYS[1], balance, 'EX', ARGV[4])
+    end
+end
+local points = tonumber(ARGV[1])
+if balance < points then
+    return {0, balance}
+end
+if cached then
+    balance = redis.call('DECRBY', KEYS[1], points)
+    redis.call('EXPIRE', KEYS[1], ARGV[4])
+else
+    balance = balance - points
+end
+-- 待结算总数不设过期：停放或积压的扣减在数据库中尚未扣除，计数丢失会让对账与余额加载把这部分积分退回
+-- 只由结算确认在归零时删除；PERSIST 清除旧版本脚本留下的过期时间
+redis.call('INCRBY', KEYS[2], points)
+redis.call('PERSIST', KEYS[2])
+redis.call('RPUSH', KEYS[3], balance .. ':' .. ARGV[3])
+redis.call('SADD', KEYS[4], ARGV[5])
+return {1, balance}
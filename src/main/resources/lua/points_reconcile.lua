@@ -0,0 +1,18 @@
+-- 对账：没有待结算扣减、没有进行中的调整且余额版本未变时，把 Redis 余额修正为数据库可用积分
+-- KEYS[1] 余额  KEYS[2] 待结算扣减总数  KEYS[3] 进行中的调整数  KEYS[4] 余额版本
+-- ARGV[1] 数据库可用积分  ARGV[2] 余额过期秒数  ARGV[3] 读取数据库可用积分之前的余额版本
+-- 返回 {状态, 修正前余额}，状态：-1 有未结算扣减或调整，跳过  0 一致或未加载  1 已修正
+if tonumber(redis.call('GET', KEYS[2]) or '0') > 0
+        or tonumber(redis.call('GET', KEYS[3]) or '0') > 0
+        or (redis.call('GET', KEYS[4]) or '0') ~= ARGV[3] then
+    return {-1, 0}
+end
+local balance = redis.call('GET', KEYS[1])
+if not balance then
+    return {0, 0}
+end
+if tonumber(balance) == tonumber(ARGV[1]) then
+    return {0, tonumber(balance)}
+end
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+return {1, tonumber(balance)}
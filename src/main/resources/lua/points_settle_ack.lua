@@ -0,0 +1,23 @@
+-- 确认一批扣减的处理结果（数据库事务提交后执行）
+-- KEYS[1] 结算队列  KEYS[2] 停放队列  KEYS[3..n] 各用户的待结算扣减总数
+-- ARGV[1] 本批条数  ARGV[2] 重新排队的条数 r  ARGV[3] 停放的条数 p
+-- ARGV[4..n+1] 与 KEYS[3..n] 对应的已结算积分，之后依次为 r 个重新排队的元素、p 个停放的元素
+-- 停放的扣减仍计入待结算总数：Redis 余额已扣除、数据库尚未扣除，该用户的对账会一直跳过直到人工处理
+-- 待结算总数没有过期时间，只在这里归零时删除
+redis.call('LTRIM', KEYS[1], ARGV[1], -1)
+for i = 3, #KEYS do
+    local pending = redis.call('DECRBY', KEYS[i], ARGV[i + 1])
+    if pending <= 0 then
+        redis.call('DEL', KEYS[i])
+    end
+end
+local offset = #KEYS + 2
+local requeued = tonumber(ARGV[2])
+for i = 0, requeued - 1 do
+    redis.call('RPUSH', KEYS[1], ARGV[offset + i])
+end
+offset = offset + requeued
+for i = 0, tonumber(ARGV[3]) - 1 do
+    redis.call('RPUSH', KEYS[2], ARGV[offset + i])
+end
+return 1
@@ -0,0 +1,64 @@
+-- 从分布式滑动窗口限流器租借一批令牌（原子执行）
+-- 与 Redisson RRateLimiter（OVERALL）语义一致：任意一个窗口内发放的令牌数不超过 rate，没有首个窗口的突发
+-- KEYS[1] 限流参数（哈希：rate 每个窗口的令牌数、interval 窗口毫秒、used 窗口内已发放的令牌数、seq 租借序号）
+-- KEYS[2] 窗口内的租借记录（有序集合：score 为租借时间，member 为 "序号:令牌数"）
+-- ARGV[1] 每个窗口的令牌数  ARGV[2] 窗口毫秒  ARGV[3] 请求的令牌数
+-- 返回 {租到的令牌数, 无令牌时距最早一批令牌滑出窗口的毫秒数}
+-- 限流参数只在创建时写入，之后沿用已保存的参数（与 trySetRate 语义一致），不需要单独下发
+local now = redis.call('TIME')
+now = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000)
+local params = redis.call('HMGET', KEYS[1], 'rate', 'interval', 'used')
+local rate = tonumber(params[1])
+local interval = tonumber(params[2])
+local used = tonumber(params[3])
+if rate == nil or interval == nil then
+    rate = tonumber(ARGV[1])
+    interval = tonumber(ARGV[2])
+    used = nil
+end
+
+local function count(member)
+    return tonumber(string.match(member, ':(%d+)$'))
+end
+
+-- 参数被淘汰时按租借记录重新统计已发放的令牌数
+if used == nil then
+    used = 0
+    for _, member in ipairs(redis.call('ZRANGE', KEYS[2], 0, -1)) do
+        used = used + count(member)
+    end
+end
+
+-- 归还已滑出窗口的令牌
+local boundary = now - interval
+local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', boundary)
+if #expired > 0 then
+    for _, member in ipairs(expired) do
+        used = used - count(member)
+    end
+    redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', boundary)
+end
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    used = 0
+end
+
+local granted = math.max(0, math.min(tonumber(ARGV[3]), rate - used))
+if granted > 0 then
+    local seq = redis.call('HINCRBY', KEYS[1], 'seq', 1)
+    redis.call('ZADD', KEYS[2], now, seq .. ':' .. granted)
+    used = used + granted
+end
+redis.call('HSET', KEYS[1], 'rate', rate, 'interval', interval, 'used', used)
+-- 租借记录一个窗口后全部滑出，空闲一个窗口后可以直接删除
+redis.call('PEXPIRE', KEYS[1], interval)
+redis.call('PEXPIRE', KEYS[2], interval)
+
+local wait = 0
+if granted == 0 then
+    local oldest = redis.call('ZRANGE', KEYS[2], 0, 0, 'WITHSCORES')
+    if #oldest > 0 then
+        wait = tonumber(oldest[2]) + interval - now
+    end
+    wait = math.max(1, wait)
+end
+return {granted, wait}
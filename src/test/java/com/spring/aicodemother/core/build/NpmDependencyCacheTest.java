@@ -0,0 +1,139 @@
+package com.spring.aicodemother.core.build;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+/**
+ * 依赖缓存测试：发布时的目标状态判断、项目内安装前解除链接、过期与超额条目的清理
+ */
+class NpmDependencyCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path projectDir;
+
+    private Path cacheRoot;
+
+    private NpmDependencyCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        projectDir = Files.createDirectories(tempDir.resolve("vue_project_1"));
+        Files.writeString(projectDir.resolve("package.json"), "{\"dependencies\":{\"vue\":\"^3.5.0\"}}");
+        cacheRoot = tempDir.resolve("npm-cache");
+        cache = new NpmDependencyCache();
+        ReflectionTestUtils.setField(cache, "cacheRoot", cacheRoot);
+        ReflectionTestUtils.setField(cache, "maxIdleDays", 7);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+    }
+
+    @Test
+    void testConcurrentPublishKeepsFirstEntry() throws IOException {
+        String key = cache.resolveKey(projectDir.toFile());
+        File first = install(key, "first");
+        File second = install(key, "second");
+
+        cache.publish(first, key);
+        cache.publish(second, key);
+
+        Assertions.assertTrue(cache.isReady(key));
+        Assertions.assertFalse(second.exists());
+        Assertions.assertEquals("first", Files.readString(cacheRoot.resolve(key).resolve("node_modules/marker")));
+    }
+
+    @Test
+    void testUnfinishedTargetIsReplaced() throws IOException {
+        String key = cache.resolveKey(projectDir.toFile());
+        // 目标目录存在但没有完成标记（例如上次发布中途失败留下的目录）
+        Files.createDirectories(cacheRoot.resolve(key).resolve("node_modules"));
+        File staging = install(key, "staging");
+
+        cache.publish(staging, key);
+
+        Assertions.assertTrue(cache.isReady(key));
+        Assertions.assertFalse(staging.exists());
+        Assertions.assertEquals("staging", Files.readString(cacheRoot.resolve(key).resolve("node_modules/marker")));
+    }
+
+    @Test
+    void testUnlinkRemovesOnlySymlink() throws IOException {
+        String key = cache.resolveKey(projectDir.toFile());
+        cache.publish(install(key, "cached"), key);
+        Assertions.assertTrue(cache.link(projectDir.toFile(), key));
+
+        Assertions.assertTrue(cache.unlink(projectDir.toFile()));
+        Assertions.assertFalse(Files.exists(projectDir.resolve("node_modules"), LinkOption.NOFOLLOW_LINKS));
+        // 缓存条目不受影响
+        Assertions.assertEquals("cached", Files.readString(cacheRoot.resolve(key).resolve("node_modules/marker")));
+
+        // 项目内安装的真实目录保留
+        Files.createDirectories(projectDir.resolve("node_modules"));
+        Assertions.assertTrue(cache.unlink(projectDir.toFile()));
+        Assertions.assertTrue(Files.isDirectory(projectDir.resolve("node_modules")));
+    }
+
+    @Test
+    void testSweepRemovesIdleUnfinishedAndLeastRecentlyUsed() throws IOException {
+        String idle = publish("idle", Duration.ofDays(8));
+        String oldest = publish("oldest", Duration.ofDays(3));
+        String older = publish("older", Duration.ofDays(2));
+        String recent = publish("recent", Duration.ofDays(1));
+        Path unfinished = Files.createDirectories(cacheRoot.resolve("unfinished/node_modules")).getParent();
+        File leftover = cache.prepareStaging(projectDir.toFile(), "leftover");
+        age(leftover.toPath(), Duration.ofHours(2));
+        File installing = cache.prepareStaging(projectDir.toFile(), "installing");
+
+        cache.sweep();
+
+        Assertions.assertFalse(cache.isReady(idle));
+        // 超过 2 个条目上限，淘汰最久未使用的
+        Assertions.assertFalse(cache.isReady(oldest));
+        Assertions.assertTrue(cache.isReady(older));
+        Assertions.assertTrue(cache.isReady(recent));
+        Assertions.assertFalse(Files.exists(unfinished));
+        Assertions.assertFalse(leftover.exists());
+        Assertions.assertTrue(installing.exists());
+        try (var children = Files.list(cacheRoot)) {
+            Assertions.assertEquals(3, children.count());
+        }
+    }
+
+    @Test
+    void testMarkUsedKeepsEntry() throws IOException {
+        String key = publish("used", Duration.ofDays(8));
+        cache.markUsed(key);
+
+        cache.sweep();
+
+        Assertions.assertTrue(cache.isReady(key));
+    }
+
+    private String publish(String key, Duration lastUsed) throws IOException {
+        cache.publish(install(key, key), key);
+        age(cacheRoot.resolve(key).resolve(".ready"), lastUsed);
+        return key;
+    }
+
+    private static void age(Path path, Duration age) throws IOException {
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - age.toMillis()));
+    }
+
+    private File install(String key, String marker) throws IOException {
+        File staging = cache.prepareStaging(projectDir.toFile(), key);
+        Path nodeModules = Files.createDirectories(staging.toPath().resolve("node_modules"));
+        Files.writeString(nodeModules.resolve("marker"), marker);
+        return staging;
+    }
+}
@@ -0,0 +1,150 @@
+package com.spring.aicodemother.core.control;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.spring.aicodemother.core.control.GenerationControlRegistry.GenerationControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.codec.Codec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 跨节点取消与运行续期测试：用内存中的 Mock 代替 Redisson 的 Bucket 与 Topic，不需要 Redis
+ */
+class GenerationControlRegistryClusterTest {
+
+    private final Map<String, String> buckets = new ConcurrentHashMap<>();
+
+    private final List<MessageListener<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 每个运行信息 key 被续期的次数
+     */
+    private final Map<String, AtomicInteger> expirations = new ConcurrentHashMap<>();
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private GenerationControlRegistry streamNode;
+
+    private GenerationControlRegistry stopNode;
+
+    @BeforeEach
+    void setUp() {
+        RedissonClient redissonClient = mockRedisson();
+        streamNode = newRegistry(redissonClient, "stream-node");
+        stopNode = newRegistry(redissonClient, "stop-node");
+    }
+
+    @Test
+    void cancelPropagatesAcrossNodes() {
+        GenerationControl control = streamNode.register("run-1", "1001", 1L);
+
+        GenerationControlRegistry.RunInfo runInfo = stopNode.find("run-1");
+        assertNotNull(runInfo);
+        assertEquals("1001", runInfo.ownerUserId());
+        assertEquals(1L, runInfo.appId());
+        assertEquals("stream-node", runInfo.nodeId());
+        assertNull(stopNode.get("run-1"));
+
+        // 停止请求落在另一个节点：经发布/订阅转发给持有运行的节点
+        stopNode.cancel("run-1");
+        assertTrue(control.isCancelled());
+        assertTrue(streamNode.isCancelled("run-1"));
+        assertFalse(stopNode.isCancelled("run-1"));
+
+        streamNode.remove("run-1");
+        assertNull(streamNode.get("run-1"));
+        assertNull(stopNode.find("run-1"));
+    }
+
+    @Test
+    void activeRunIsRenewedAndIdleRunExpires() {
+        streamNode.register("run-2", "1001", 1L);
+        String key = "ai_code:generation:run:run-2";
+
+        // 不到 TTL 的三分之一：只续期本地条目，不访问 Redis
+        advanceMinutes(5);
+        streamNode.touch("run-2");
+        assertEquals(0, expirationCount(key));
+
+        // 运行持续产出，累计时间超过 TTL 仍然有效，Redis 运行信息按节流续期
+        advanceMinutes(20);
+        streamNode.touch("run-2");
+        advanceMinutes(20);
+        streamNode.touch("run-2");
+        streamNode.touch("run-2");
+        assertNotNull(streamNode.get("run-2"));
+        assertEquals(2, expirationCount(key));
+
+        // 超过 TTL 没有活动：本地条目过期，停止请求找不到本地运行
+        advanceMinutes(31);
+        assertNull(streamNode.get("run-2"));
+        assertFalse(streamNode.isCancelled("run-2"));
+    }
+
+    private GenerationControlRegistry newRegistry(RedissonClient redissonClient, String nodeId) {
+        GenerationControlRegistry registry = new GenerationControlRegistry(redissonClient, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "nodeId", nodeId);
+        ReflectionTestUtils.setField(registry, "ticker", (Ticker) nanos::get);
+        registry.init();
+        return registry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedissonClient mockRedisson() {
+        RedissonClient redissonClient = Mockito.mock(RedissonClient.class);
+        RTopic topic = Mockito.mock(RTopic.class);
+        Mockito.when(redissonClient.getTopic(Mockito.anyString(), Mockito.any(Codec.class))).thenReturn(topic);
+        Mockito.when(topic.addListener(Mockito.eq(String.class), Mockito.<MessageListener<String>>any()))
+                .thenAnswer(invocation -> {
+                    listeners.add(invocation.getArgument(1));
+                    return listeners.size();
+                });
+        Mockito.when(topic.publish(Mockito.any())).thenAnswer(invocation -> {
+            listeners.forEach(listener -> listener.onMessage("cancel", invocation.getArgument(0)));
+            return (long) listeners.size();
+        });
+        Mockito.when(redissonClient.getBucket(Mockito.anyString(), Mockito.any(Codec.class))).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            RBucket<String> bucket = Mockito.mock(RBucket.class);
+            Mockito.doAnswer(set -> buckets.put(name, set.getArgument(0)))
+                    .when(bucket).set(Mockito.anyString(), Mockito.any(Duration.class));
+            Mockito.when(bucket.get()).thenAnswer(get -> buckets.get(name));
+            Mockito.when(bucket.deleteAsync()).thenAnswer(delete -> {
+                buckets.remove(name);
+                return null;
+            });
+            Mockito.when(bucket.expireAsync(Mockito.any(Duration.class))).thenAnswer(expire -> {
+                expirations.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+                return null;
+            });
+            return bucket;
+        });
+        return redissonClient;
+    }
+
+    private void advanceMinutes(long minutes) {
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(minutes));
+    }
+
+    private int expirationCount(String key) {
+        AtomicInteger count = expirations.get(key);
+        return count == null ? 0 : count.get();
+    }
+}
@@ -0,0 +1,71 @@
+package com.spring.aicodemother.core.control;
+
+import com.spring.aicodemother.core.control.GenerationControlRegistry.GenerationControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 两个注册表实例共享同一个本地 Redis，模拟 SSE 流与停止请求落在不同节点
+ * 需要本地 Redis（127.0.0.1:6379），不可用时跳过
+ */
+class GenerationControlRegistryTest {
+
+    private RedissonClient redissonClient;
+
+    private GenerationControlRegistry streamNode;
+
+    private GenerationControlRegistry stopNode;
+
+    @BeforeEach
+    void setUp() {
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:6379").setConnectTimeout(1000).setRetryAttempts(0);
+        try {
+            redissonClient = Redisson.create(config);
+        } catch (Exception e) {
+            assumeTrue(false, "本地 Redis 不可用: " + e.getMessage());
+        }
+        streamNode = new GenerationControlRegistry(redissonClient, new SimpleMeterRegistry());
+        streamNode.init();
+        stopNode = new GenerationControlRegistry(redissonClient, new SimpleMeterRegistry());
+        stopNode.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (redissonClient != null) {
+            streamNode.destroy();
+            stopNode.destroy();
+            redissonClient.shutdown();
+        }
+    }
+
+    @Test
+    void cancelPropagatesAcrossNodes() {
+        String runId = UUID.randomUUID().toString();
+        GenerationControl control = streamNode.register(runId, "1001", 1L);
+
+        GenerationControlRegistry.RunInfo runInfo = stopNode.find(runId);
+        assertNotNull(runInfo);
+        assertEquals("1001", runInfo.ownerUserId());
+        assertNull(stopNode.get(runId));
+
+        stopNode.cancel(runId);
+        assertEquals(1, control.cancelFlux().blockFirst(Duration.ofSeconds(5)));
+        assertTrue(streamNode.isCancelled(runId));
+
+        streamNode.remove(runId);
+        assertNull(streamNode.get(runId));
+    }
+}
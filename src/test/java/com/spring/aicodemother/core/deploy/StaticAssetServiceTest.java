@@ -0,0 +1,34 @@
+package com.spring.aicodemother.core.deploy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 静态资源缓存策略测试：只有 Vite 输出的带哈希文件长期缓存
+ */
+class StaticAssetServiceTest {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    @Test
+    void viteHashedAssetsAreImmutable() {
+        assertEquals(IMMUTABLE, StaticAssetService.cacheControl("assets/index-B3xk9aQz.js"));
+        assertEquals(IMMUTABLE, StaticAssetService.cacheControl("assets/index-DiwrgTda.css"));
+        assertEquals(IMMUTABLE, StaticAssetService.cacheControl("assets/logo-a1b2c3d4.png"));
+        assertEquals(IMMUTABLE, StaticAssetService.cacheControl("assets/vendor-C_x-9aQz.mjs"));
+    }
+
+    @Test
+    void ordinaryHyphenatedNamesAreRevalidated() {
+        assertEquals("no-cache", StaticAssetService.cacheControl("hero-background.jpg"));
+        assertEquals("no-cache", StaticAssetService.cacheControl("my-component.js"));
+        assertEquals("no-cache", StaticAssetService.cacheControl("user-settings.css"));
+        // public/assets 下原样复制的文件
+        assertEquals("no-cache", StaticAssetService.cacheControl("assets/user-settings.css"));
+        assertEquals("no-cache", StaticAssetService.cacheControl("assets/hero-background.jpg"));
+        // 不在 assets 目录下的同形文件名
+        assertEquals("no-cache", StaticAssetService.cacheControl("index-B3xk9aQz.js"));
+        assertEquals("no-cache", StaticAssetService.cacheControl("index.html"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.spring.aicodemother.core.deploy;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.RandomUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 静态站点资源请求开销基准
+ * <p>
+ * legacyFullCopy：每次请求打开文件并整体复制到响应（改造前 FileSystemResource 链路）
+ * revalidated：浏览器携带 If-None-Match 重新校验，命中后返回 304，不读取文件内容
+ * gzipVariant：Accept-Encoding: gzip，直接发送部署时生成的 .gz 副本
+ * <p>
+ * 运行方式：直接执行 main 方法，结果中的 gc.alloc.rate.norm 即每次请求分配字节数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticAssetServingBenchmark {
+
+    @Param({"16384", "524288"})
+    private int fileSize;
+
+    private File siteDir;
+
+    private File file;
+
+    private StaticAssetService service;
+
+    private String etag;
+
+    @Setup
+    public void setup() throws Exception {
+        siteDir = Files.createTempDirectory("static-asset-bench").toFile();
+        file = new File(siteDir, "assets/index-B3xk9aQz.js");
+        StringBuilder content = new StringBuilder(fileSize);
+        while (content.length() < fileSize) {
+            content.append("export const value_").append(RandomUtil.randomString(6)).append(" = 1;\n");
+        }
+        FileUtil.writeUtf8String(content.substring(0, fileSize), file);
+        new StaticAssetPreparer().prepare(siteDir);
+        service = new StaticAssetService();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(siteDir, "assets/index-B3xk9aQz.js", new MockHttpServletRequest("GET", "/"), response);
+        etag = response.getHeader("ETag");
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.del(siteDir);
+    }
+
+    @Benchmark
+    public void legacyFullCopy(Blackhole blackhole) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setContentType("application/javascript; charset=UTF-8");
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            in.transferTo(response.getOutputStream());
+        }
+        blackhole.consume(response.getContentLength());
+    }
+
+    @Benchmark
+    public void revalidated(Blackhole blackhole) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("If-None-Match", etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(siteDir, "assets/index-B3xk9aQz.js", request, response);
+        blackhole.consume(response.getStatus());
+    }
+
+    @Benchmark
+    public void gzipVariant(Blackhole blackhole) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(siteDir, "assets/index-B3xk9aQz.js", request, response);
+        blackhole.consume(response.getContentLength());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StaticAssetServingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
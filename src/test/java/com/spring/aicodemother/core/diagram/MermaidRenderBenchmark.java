@@ -0,0 +1,81 @@
+package com.spring.aicodemother.core.diagram;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mermaid 渲染单张图表延迟基准（4 个线程并发请求）
+ * <p>
+ * cli：每张图启动一次 mmdc（改造前的方式，Node 与无头浏览器每次冷启动）
+ * pool：常驻浏览器池渲染（pool-size = 2）
+ * <p>
+ * 运行前需要本机安装 Chrome 与 @mermaid-js/mermaid-cli（npm i -g），直接执行 main 方法，
+ * 结果为每张图的延迟分布（p50/p90/p99）；实际渲染方式与 mode 不符时（如 pool 模式找不到 mermaid.js）直接失败
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MermaidRenderBenchmark {
+
+    @Param({"cli", "pool"})
+    private String mode;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private MermaidRenderer renderer;
+
+    @Setup
+    public void setup() {
+        renderer = new MermaidRenderer();
+        ReflectionTestUtils.setField(renderer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(renderer, "poolSize", 2);
+        ReflectionTestUtils.setField(renderer, "maxRendersPerBrowser", 200);
+        ReflectionTestUtils.setField(renderer, "renderTimeoutSeconds", 30L);
+        ReflectionTestUtils.setField(renderer, "leaseTimeoutSeconds", 120L);
+        // 指定一个不存在的脚本路径即退回到 mmdc
+        ReflectionTestUtils.setField(renderer, "scriptPath", "cli".equals(mode) ? "/nonexistent/mermaid.min.js" : "");
+        renderer.init();
+        // 先渲染一张图确认实际使用的渲染方式：pool 模式找不到 mermaid.js 会静默退回 mmdc，两组结果将没有可比性
+        renderDiagram();
+        boolean pooled = !((String) ReflectionTestUtils.getField(renderer, "mermaidScript")).isEmpty();
+        if (pooled != "pool".equals(mode)) {
+            throw new IllegalStateException("渲染方式与 mode=" + mode + " 不符，请安装 mermaid-cli 或设置 scriptPath");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.shutdown();
+    }
+
+    @Benchmark
+    public String renderDiagram() {
+        long n = sequence.incrementAndGet();
+        return renderer.renderSvg("""
+                flowchart LR
+                    Client[客户端 %d] --> Gateway[网关]
+                    Gateway --> Service{服务}
+                    Service -->|读| Cache[(缓存)]
+                    Service -->|写| Database[(数据库)]
+                """.formatted(n));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MermaidRenderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
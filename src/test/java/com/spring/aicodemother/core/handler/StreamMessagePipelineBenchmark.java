@@ -0,0 +1,72 @@
+package com.spring.aicodemother.core.handler;
+
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.ai.model.message.AiResponseMessage;
+import com.spring.aicodemother.ai.model.message.StreamMessage;
+import com.spring.aicodemother.ai.model.message.StreamMessageTypeEnum;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VUE_PROJECT 流式消息单 token 处理开销基准
+ * <p>
+ * legacyJsonRoundTrip：门面序列化 -> 处理器反序列化两次 -> SSE 出口再序列化（改造前链路）
+ * typedPipeline：门面直接发出 StreamMessage -> 处理器 instanceof 分派 -> SSE 出口序列化一次
+ * <p>
+ * 运行方式：直接执行 main 方法，结果中的 gc.alloc.rate.norm 即每 token 分配字节数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamMessagePipelineBenchmark {
+
+    @Param({"短token", "这是一段较长的模型输出片段，包含中文、\"引号\"和换行\n以及 <div class=\"app\"></div> 之类的代码内容"})
+    private String token;
+
+    @Benchmark
+    public void legacyJsonRoundTrip(Blackhole blackhole) {
+        // 门面：每个 token 序列化为 JSON 字符串
+        String chunk = JSONUtil.toJsonStr(new AiResponseMessage(token));
+        // 处理器：先解析类型，再按具体类型解析一次
+        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
+        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
+        String data = null;
+        if (typeEnum == StreamMessageTypeEnum.AI_RESPONSE) {
+            data = JSONUtil.toBean(chunk, AiResponseMessage.class).getData();
+        }
+        // SSE 出口：包装后再次序列化
+        blackhole.consume(JSONUtil.toJsonStr(Map.of("d", data)));
+    }
+
+    @Benchmark
+    public void typedPipeline(Blackhole blackhole) {
+        // 门面：直接发出类型化消息
+        StreamMessage message = new AiResponseMessage(token);
+        // 处理器：按类型分派
+        String data = null;
+        if (message instanceof AiResponseMessage aiMessage) {
+            data = aiMessage.getData();
+        }
+        // SSE 出口：唯一一次序列化
+        blackhole.consume("{\"d\":" + JSONUtil.quote(data) + "}");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StreamMessagePipelineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
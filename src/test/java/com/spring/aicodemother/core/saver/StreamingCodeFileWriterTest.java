@@ -0,0 +1,100 @@
+package com.spring.aicodemother.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import com.spring.aicodemother.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCodeFileWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeMultiFileCodeIncrementally() {
+        StreamingCodeFileWriter writer = new StreamingCodeFileWriter(CodeGenTypeEnum.MULTI_FILE, tempDir);
+        // 按不规则的 token 边界切分，代码块标记也会被拆开
+        String[] tokens = {
+                "创建一个完整的网页：\n`", "``ht", "ml\n\n<!DOCTYPE html>\n<ht", "ml>\n",
+                "  <body><h1>Hello</h1></body>\n</html>\n\n``", "`\n",
+                "```css\nbody {\n  margin: 0;\n}\n```\n",
+                "```javascript\nconsole.log('hi');\n```\n", "随便写一段描述"
+        };
+        for (String token : tokens) {
+            writer.append(token);
+        }
+        writer.complete();
+
+        assertEquals("<!DOCTYPE html>\n<html>\n  <body><h1>Hello</h1></body>\n</html>\n",
+                FileUtil.readUtf8String(tempDir.resolve("index.html").toFile()));
+        assertEquals("body {\n  margin: 0;\n}\n", FileUtil.readUtf8String(tempDir.resolve("style.css").toFile()));
+        assertEquals("console.log('hi');\n", FileUtil.readUtf8String(tempDir.resolve("script.js").toFile()));
+    }
+
+    @Test
+    void fallbackToWholeContentWithoutHtmlBlock() {
+        StreamingCodeFileWriter writer = new StreamingCodeFileWriter(CodeGenTypeEnum.HTML, tempDir);
+        writer.append("<html><body>");
+        writer.append("Hello</body></html>");
+        writer.complete();
+
+        assertEquals("<html><body>Hello</body></html>", FileUtil.readUtf8String(tempDir.resolve("index.html").toFile()));
+    }
+
+    @Test
+    void abortKeepsPreviousFilesAndRemovesPartialOutput() throws IOException {
+        FileUtil.writeUtf8String("<html>old</html>", tempDir.resolve("index.html").toFile());
+        FileUtil.writeUtf8String("body {}", tempDir.resolve("style.css").toFile());
+        StreamingCodeFileWriter writer = new StreamingCodeFileWriter(CodeGenTypeEnum.MULTI_FILE, tempDir);
+        writer.append("```html\n<html>\n  <body>new");
+        writer.append("</body>\n</html>\n```\n```css\nh1 {");
+
+        // 生成过程中正式文件保持原样
+        assertEquals("<html>old</html>", FileUtil.readUtf8String(tempDir.resolve("index.html").toFile()));
+        writer.abort();
+
+        assertEquals("<html>old</html>", FileUtil.readUtf8String(tempDir.resolve("index.html").toFile()));
+        assertEquals("body {}", FileUtil.readUtf8String(tempDir.resolve("style.css").toFile()));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void partialOutputIsReadableFromInProgressFile() throws InterruptedException {
+        FileUtil.writeUtf8String("<html>old</html>", tempDir.resolve("index.html").toFile());
+        StreamingCodeFileWriter writer = new StreamingCodeFileWriter(CodeGenTypeEnum.MULTI_FILE, tempDir);
+        writer.append("```html\n<html>\n  <body>");
+        // 超过刷盘间隔后的下一段输出会把已写内容刷到临时文件
+        Thread.sleep(250);
+        writer.append("new");
+
+        Path inProgress = StreamingCodeFileWriter.inProgressFile(tempDir.resolve("index.html"));
+        assertTrue(FileUtil.readUtf8String(inProgress.toFile()).startsWith("<html>\n  <body>"));
+        assertEquals("<html>old</html>", FileUtil.readUtf8String(tempDir.resolve("index.html").toFile()));
+
+        writer.append("</body>\n</html>\n```\n");
+        writer.complete();
+        assertFalse(Files.exists(inProgress));
+        assertEquals("<html>\n  <body>new</body>\n</html>\n",
+                FileUtil.readUtf8String(tempDir.resolve("index.html").toFile()));
+    }
+
+    @Test
+    void abortHtmlFallbackLeavesNoRawFile() throws IOException {
+        StreamingCodeFileWriter writer = new StreamingCodeFileWriter(CodeGenTypeEnum.HTML, tempDir);
+        writer.append("<html><body>");
+        writer.abort();
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
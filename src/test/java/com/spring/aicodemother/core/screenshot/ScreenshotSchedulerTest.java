@@ -0,0 +1,79 @@
+package com.spring.aicodemother.core.screenshot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 截图调度测试：同一应用的截图串行执行，不同应用并行
+ */
+class ScreenshotSchedulerTest {
+
+    private ScreenshotScheduler scheduler;
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ScreenshotScheduler();
+        ReflectionTestUtils.setField(scheduler, "maxParallel", 2);
+        ReflectionTestUtils.setField(scheduler, "maxQueued", 10);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+        scheduler.initMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void resubmittedAppWaitsForRunningCapture() throws InterruptedException {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        scheduler.submit(1L, () -> {
+            events.add("first-start");
+            firstStarted.countDown();
+            await(releaseFirst);
+            events.add("first-end");
+        });
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+        // 截图期间同一应用再次提交：有空闲槽位也要等当前截图完成
+        scheduler.submit(1L, () -> {
+            events.add("second");
+            secondDone.countDown();
+        });
+        // 其他应用照常使用空闲槽位
+        scheduler.submit(2L, () -> {
+            events.add("other");
+            otherDone.countDown();
+        });
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        assertFalse(events.contains("second"));
+
+        releaseFirst.countDown();
+        assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+        assertTrue(events.indexOf("first-end") < events.indexOf("second"), "执行顺序: " + events);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
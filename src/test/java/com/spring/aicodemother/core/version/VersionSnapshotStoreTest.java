@@ -0,0 +1,135 @@
+package com.spring.aicodemother.core.version;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.spring.aicodemother.manager.CosManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 版本快照存储测试：未配置 COS，快照写入本地目录
+ */
+class VersionSnapshotStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path codeDir;
+
+    private MeterRegistry meterRegistry;
+
+    private VersionSnapshotStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        codeDir = Files.createDirectories(tempDir.resolve("code/vue_project_1"));
+        meterRegistry = new SimpleMeterRegistry();
+        store = new VersionSnapshotStore();
+        ReflectionTestUtils.setField(store, "cosManager", Mockito.mock(CosManager.class));
+        ReflectionTestUtils.setField(store, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(store, "localDir", tempDir.resolve("store").toString());
+        store.init();
+    }
+
+    @Test
+    void testConsecutiveVersionsOnlyUploadChangedFiles() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            write("src/components/Part" + i + ".vue", "<template><div>" + i + "</div></template>");
+        }
+        write("src/App.vue", "<template>v1</template>");
+        write("node_modules/vue/index.js", "ignored");
+        String v1 = store.save(1L, 1, "vue_project", codeDir.toFile(), null);
+        Assertions.assertEquals(21.0, uploaded());
+
+        write("src/App.vue", "<template>v2</template>");
+        String v2 = store.save(1L, 2, "vue_project", codeDir.toFile(), v1);
+        // 只上传变化的 App.vue
+        Assertions.assertEquals(22.0, uploaded());
+        Assertions.assertEquals(21, store.loadManifest(v2).getFiles().size());
+    }
+
+    @Test
+    void testContentSavedByOtherAppIsNotUploadedAgain() throws IOException {
+        write("src/App.vue", "<template>shared</template>");
+        store.save(1L, 1, "vue_project", codeDir.toFile(), null);
+
+        // 另一个应用的第一个版本，没有上一版本清单：按内容查询到已存在，不再上传
+        write("src/main.js", "console.log('app2')");
+        store.save(2L, 1, "vue_project", codeDir.toFile(), null);
+
+        Assertions.assertEquals(2.0, uploaded());
+        Assertions.assertEquals(1.0, meterRegistry.get("ai_code_version_blob_total").tag("result", "reused").counter().count());
+    }
+
+    @Test
+    void testRestoreOnlyRewritesDifferentPaths() throws IOException {
+        write("index.html", "<html>v1</html>");
+        write("src/main.js", "console.log(1)");
+        String v1 = store.save(1L, 1, "vue_project", codeDir.toFile(), null);
+
+        write("index.html", "<html>v2</html>");
+        write("src/extra/New.vue", "<template>new</template>");
+        write("node_modules/vue/index.js", "kept");
+        write("dist/index.html", "<html>v2 build</html>");
+        long mainModified = Files.getLastModifiedTime(codeDir.resolve("src/main.js")).toMillis();
+
+        int written = store.restore(store.loadManifest(v1), codeDir.toFile());
+
+        Assertions.assertEquals(1, written);
+        Assertions.assertEquals("<html>v1</html>", Files.readString(codeDir.resolve("index.html")));
+        Assertions.assertFalse(Files.exists(codeDir.resolve("src/extra")));
+        Assertions.assertEquals(mainModified, Files.getLastModifiedTime(codeDir.resolve("src/main.js")).toMillis());
+        Assertions.assertEquals("kept", Files.readString(codeDir.resolve("node_modules/vue/index.js")));
+        // 新版本的构建产物随回滚删除，等待重新构建
+        Assertions.assertFalse(Files.exists(codeDir.resolve("dist")));
+    }
+
+    @Test
+    void testRestoreWithoutChangesKeepsDist() throws IOException {
+        write("index.html", "<html>v1</html>");
+        String v1 = store.save(1L, 1, "vue_project", codeDir.toFile(), null);
+        write("dist/index.html", "<html>v1 build</html>");
+
+        Assertions.assertEquals(0, store.restore(store.loadManifest(v1), codeDir.toFile()));
+        Assertions.assertTrue(Files.exists(codeDir.resolve("dist/index.html")));
+    }
+
+    @Test
+    void testWithoutCosOrLocalDirFallsBackToDatabase() throws IOException {
+        VersionSnapshotStore defaultStore = new VersionSnapshotStore();
+        ReflectionTestUtils.setField(defaultStore, "cosManager", Mockito.mock(CosManager.class));
+        ReflectionTestUtils.setField(defaultStore, "meterRegistry", meterRegistry);
+        defaultStore.init();
+        Assertions.assertFalse(defaultStore.isDurable());
+        Assertions.assertTrue(store.isDurable());
+
+        write("src/App.vue", "<template>db</template>");
+        write("node_modules/vue/index.js", "ignored");
+        JSONObject json = JSONUtil.parseObj(defaultStore.packToJson("vue_project", codeDir.toFile()));
+        // 旧格式整包 JSON：回滚时按 codeGenType 和 files 写回
+        Assertions.assertEquals("vue_project", json.getStr("codeGenType"));
+        Assertions.assertEquals(1, json.getJSONArray("files").size());
+        Assertions.assertEquals("src/App.vue", json.getJSONArray("files").getJSONObject(0).getStr("path"));
+        Assertions.assertEquals("<template>db</template>", json.getJSONArray("files").getJSONObject(0).getStr("content"));
+    }
+
+    private double uploaded() {
+        return meterRegistry.get("ai_code_version_blob_total").tag("result", "uploaded").counter().count();
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = codeDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
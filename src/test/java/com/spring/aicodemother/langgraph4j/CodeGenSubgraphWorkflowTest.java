@@ -1,6 +1,7 @@
 package com.spring.aicodemother.langgraph4j;
 
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
+import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -8,9 +9,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 @SpringBootTest
 class CodeGenSubgraphWorkflowTest {
 
+    @Resource
+    private CodeGenSubgraphWorkflow codeGenSubgraphWorkflow;
+
     @Test
     void testSubgraphWorkflow() {
-        WorkflowContext result = new CodeGenSubgraphWorkflow().executeWorkflow("创建一个在线学习平台，需要课程展示、视频播放和学习进度跟踪");
+        WorkflowContext result = codeGenSubgraphWorkflow.executeWorkflow("创建一个在线学习平台，需要课程展示、视频播放和学习进度跟踪");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -20,7 +24,7 @@ class CodeGenSubgraphWorkflowTest {
 
     @Test
     void testPortfolioWorkflow() {
-        WorkflowContext result = new CodeGenSubgraphWorkflow().executeWorkflow("创建一个个人作品集网站，展示项目案例和技能介绍");
+        WorkflowContext result = codeGenSubgraphWorkflow.executeWorkflow("创建一个个人作品集网站，展示项目案例和技能介绍");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -1,6 +1,7 @@
 package com.spring.aicodemother.langgraph4j;
 
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
+import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -8,9 +9,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 @SpringBootTest
 class CodeGenWorkflowTest {
 
+    @Resource
+    private CodeGenWorkflow codeGenWorkflow;
+
     @Test
     void testTechBlogWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建一个技术博客网站，需要展示编程教程和系统架构");
+        WorkflowContext result = codeGenWorkflow.executeWorkflow("创建一个技术博客网站，需要展示编程教程和系统架构");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -19,7 +23,7 @@ class CodeGenWorkflowTest {
 
     @Test
     void testCorporateWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建企业官网，展示公司形象和业务介绍");
+        WorkflowContext result = codeGenWorkflow.executeWorkflow("创建企业官网，展示公司形象和业务介绍");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -28,7 +32,7 @@ class CodeGenWorkflowTest {
 
     @Test
     void testVueProjectWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建一个Vue前端项目，包含用户管理和数据展示功能");
+        WorkflowContext result = codeGenWorkflow.executeWorkflow("创建一个Vue前端项目，包含用户管理和数据展示功能");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -37,7 +41,7 @@ class CodeGenWorkflowTest {
 
     @Test
     void testSimpleHtmlWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建一个简单的个人主页");
+        WorkflowContext result = codeGenWorkflow.executeWorkflow("创建一个简单的个人主页");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -0,0 +1,125 @@
+package com.spring.aicodemother.langgraph4j;
+
+import com.spring.aicodemother.langgraph4j.model.ImageResource;
+import com.spring.aicodemother.langgraph4j.tools.ImageResultCache;
+import com.spring.aicodemother.langgraph4j.tools.ImageSearchTool;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+/**
+ * 用本地桩服务模拟 Pexels 接口（每次请求延迟 300 ms），对比串行与并发收集的耗时
+ */
+class ImageTaskRunnerTest {
+
+    private static final long STUB_DELAY_MILLIS = 300;
+
+    private static final String STUB_RESPONSE =
+            "{\"photos\":[{\"alt\":\"stub\",\"src\":{\"medium\":\"http://localhost/stub.jpg\"}}]}";
+
+    private HttpServer stubServer;
+
+    private ImageSearchTool imageSearchTool;
+
+    private ImageTaskRunner taskRunner;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stubServer.createContext("/v1/search", exchange -> {
+            try {
+                long delay = exchange.getRequestURI().getQuery().contains("slow") ? 5000 : STUB_DELAY_MILLIS;
+                Thread.sleep(delay);
+                byte[] body = STUB_RESPONSE.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        stubServer.start();
+
+        // 未配置 Redis 的缓存（只有本地缓存），每个用例使用不同的查询词，不会命中
+        ImageResultCache imageResultCache = new ImageResultCache();
+        ReflectionTestUtils.setField(imageResultCache, "stringRedisTemplate", Mockito.mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(imageResultCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(imageResultCache, "localMaxSize", 100L);
+        ReflectionTestUtils.setField(imageResultCache, "pexelsTtlMinutes", 10L);
+        ReflectionTestUtils.setField(imageResultCache, "pixabayTtlMinutes", 10L);
+        ReflectionTestUtils.setField(imageResultCache, "logoTtlMinutes", 10L);
+        ReflectionTestUtils.setField(imageResultCache, "mermaidTtlMinutes", 10L);
+        imageResultCache.init();
+
+        imageSearchTool = new ImageSearchTool();
+        ReflectionTestUtils.setField(imageSearchTool, "imageResultCache", imageResultCache);
+        ReflectionTestUtils.setField(imageSearchTool, "pexelsApiUrl",
+                "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/v1/search");
+        ReflectionTestUtils.setField(imageSearchTool, "pexelsApiKey", "stub");
+
+        taskRunner = new ImageTaskRunner();
+        ReflectionTestUtils.setField(taskRunner, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(taskRunner, "taskTimeoutSeconds", 2L);
+        ReflectionTestUtils.setField(taskRunner, "contentConcurrency", 4);
+        ReflectionTestUtils.setField(taskRunner, "illustrationConcurrency", 4);
+        ReflectionTestUtils.setField(taskRunner, "diagramConcurrency", 2);
+        ReflectionTestUtils.setField(taskRunner, "logoConcurrency", 2);
+        taskRunner.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskRunner.shutdown();
+        stubServer.stop(0);
+    }
+
+    @Test
+    void testParallelFasterThanSequential() {
+        List<String> queries = IntStream.range(0, 8).mapToObj(i -> "query-" + i).toList();
+
+        long start = System.nanoTime();
+        List<ImageResource> sequential = new ArrayList<>();
+        for (String query : queries) {
+            sequential.addAll(imageSearchTool.searchContentImages(query));
+        }
+        long sequentialMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<String> parallelQueries = queries.stream().map(query -> "parallel-" + query).toList();
+        List<ImageResource> parallel = taskRunner.runAll(ImageTaskRunner.CONTENT, parallelQueries,
+                imageSearchTool::searchContentImages);
+        long parallelMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("串行: %d ms, 并发(上限 4): %d ms%n", sequentialMillis, parallelMillis);
+        Assertions.assertEquals(sequential.size(), parallel.size());
+        // 8 个任务、并发上限 4，理论上约为串行耗时的 1/4
+        Assertions.assertTrue(parallelMillis * 2 < sequentialMillis);
+    }
+
+    @Test
+    void testTimeoutKeepsPartialResults() {
+        List<String> queries = List.of("fast-1", "slow", "fast-2");
+        long start = System.nanoTime();
+        List<ImageResource> images = taskRunner.runAll(ImageTaskRunner.CONTENT, queries,
+                imageSearchTool::searchContentImages);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // 超时任务被跳过，其余任务结果保留
+        Assertions.assertEquals(2, images.size());
+        Assertions.assertTrue(elapsedMillis < 4000);
+    }
+}
@@ -2,6 +2,7 @@ package com.spring.aicodemother.langgraph4j.node.concurrent;
 
 import com.spring.aicodemother.langgraph4j.CodeGenConcurrentWorkflow;
 import com.spring.aicodemother.langgraph4j.state.WorkflowContext;
+import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -9,9 +10,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 @SpringBootTest
 class CodeGenConcurrentWorkflowTest {
 
+    @Resource
+    private CodeGenConcurrentWorkflow codeGenConcurrentWorkflow;
+
     @Test
     void testConcurrentWorkflow() {
-        WorkflowContext result = new CodeGenConcurrentWorkflow().executeWorkflow("创建一个技术博客网站，需要展示编程教程和系统架构");
+        WorkflowContext result = codeGenConcurrentWorkflow.executeWorkflow("创建一个技术博客网站，需要展示编程教程和系统架构");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -21,7 +25,7 @@ class CodeGenConcurrentWorkflowTest {
 
     @Test
     void testEcommerceWorkflow() {
-        WorkflowContext result = new CodeGenConcurrentWorkflow().executeWorkflow("创建一个电子商务网站，需要商品展示、购物车和支付功能");
+        WorkflowContext result = codeGenConcurrentWorkflow.executeWorkflow("创建一个电子商务网站，需要商品展示、购物车和支付功能");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -0,0 +1,52 @@
+package com.spring.aicodemother.langgraph4j.quality;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class LocalCodeCheckerTest {
+
+    @Test
+    void testValidCodeHasNoErrors() {
+        assertNoErrors("main.js", """
+                const re = /[(]/g; // don't
+                const text = `total: ${ {a: 1}.a } ${items.map(i => `<li>${i}</li>`).join('')}`;
+                function half(a, b) { return (a + b) / 2; }
+                """);
+        assertNoErrors("style.css", "a { background: url(http://x.com/a.png); content: \"}\"; }");
+        assertNoErrors("App.vue", """
+                <template><div :class="{active: on}">Don't</div></template>
+                <script setup>
+                const list = [1, 2];
+                </script>
+                <style scoped lang="scss">
+                // it's nested
+                .a { .b { color: red; } }
+                </style>
+                """);
+        assertNoErrors("package.json", "{\"name\": \"demo\"}");
+    }
+
+    @Test
+    void testReportsBrokenCode() {
+        assertError("main.js", "if (x) {\n  foo(;\n", "main.js:2");
+        assertError("App.vue", "<template><div></div></template>\n<script setup>\nconst x = [1, 2\n</script>", "App.vue:3");
+        assertError("index.html", "<html><script>let a = 1;</html>", "<script>");
+        assertError("package.json", "{\"name\": ", "JSON");
+    }
+
+    private static void assertNoErrors(String path, String content) {
+        List<String> errors = new ArrayList<>();
+        LocalCodeChecker.checkFile(path, content, errors);
+        Assertions.assertEquals(List.of(), errors);
+    }
+
+    private static void assertError(String path, String content, String expected) {
+        List<String> errors = new ArrayList<>();
+        LocalCodeChecker.checkFile(path, content, errors);
+        Assertions.assertEquals(1, errors.size(), errors.toString());
+        Assertions.assertTrue(errors.get(0).contains(expected), errors.get(0));
+    }
+}
@@ -0,0 +1,137 @@
+package com.spring.aicodemother.langgraph4j.tools;
+
+import com.spring.aicodemother.langgraph4j.model.ImageResource;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片工具两级缓存测试：本地桩服务模拟 Pexels 接口（延迟 200 ms），Redis 用内存 Map 模拟
+ */
+class ImageResultCacheTest {
+
+    private static final String STUB_RESPONSE =
+            "{\"photos\":[{\"alt\":\"stub\",\"src\":{\"medium\":\"http://localhost/stub.jpg\"}}]}";
+
+    private final AtomicInteger stubRequests = new AtomicInteger();
+
+    private final Map<String, String> redisStore = new ConcurrentHashMap<>();
+
+    private HttpServer stubServer;
+
+    private MeterRegistry meterRegistry;
+
+    private String stubUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.setExecutor(Executors.newCachedThreadPool());
+        stubServer.createContext("/v1/search", exchange -> {
+            stubRequests.incrementAndGet();
+            try {
+                Thread.sleep(200);
+                byte[] body = STUB_RESPONSE.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        stubServer.start();
+        stubUrl = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/v1/search";
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubServer.stop(0);
+    }
+
+    @Test
+    void testLocalHitSkipsProvider() {
+        ImageSearchTool tool = createTool(createCache());
+        List<ImageResource> first = tool.searchContentImages("Mountain  Lake");
+        long start = System.nanoTime();
+        // 规范化后与第一次查询相同
+        List<ImageResource> second = tool.searchContentImages(" mountain lake ");
+        long hitMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Assertions.assertEquals(1, stubRequests.get());
+        Assertions.assertEquals(first, second);
+        Assertions.assertTrue(hitMillis < 100);
+        Assertions.assertEquals(1.0, meterRegistry.get("ai_code_image_cache_total")
+                .tags("provider", ImageResultCache.PEXELS, "result", "local_hit").counter().count());
+        Assertions.assertTrue(meterRegistry.get("ai_code_image_cache_saved_seconds_total").counter().count() > 0.1);
+    }
+
+    @Test
+    void testRedisHitAcrossInstances() {
+        createTool(createCache()).searchContentImages("city night");
+        // 模拟另一个节点：本地缓存为空，从 Redis 读取
+        ImageSearchTool otherNode = createTool(createCache());
+        List<ImageResource> images = otherNode.searchContentImages("city night");
+
+        Assertions.assertEquals(1, stubRequests.get());
+        Assertions.assertEquals(1, images.size());
+        Assertions.assertEquals("http://localhost/stub.jpg", images.get(0).getUrl());
+        Assertions.assertEquals(1.0, meterRegistry.get("ai_code_image_cache_total")
+                .tags("provider", ImageResultCache.PEXELS, "result", "redis_hit").counter().count());
+    }
+
+    @Test
+    void testCallerChangesDoNotLeakIntoCache() {
+        ImageSearchTool tool = createTool(createCache());
+        tool.searchContentImages("forest").get(0).setDescription("changed");
+        Assertions.assertEquals("stub", tool.searchContentImages("forest").get(0).getDescription());
+    }
+
+    private ImageSearchTool createTool(ImageResultCache cache) {
+        ImageSearchTool tool = new ImageSearchTool();
+        ReflectionTestUtils.setField(tool, "imageResultCache", cache);
+        ReflectionTestUtils.setField(tool, "pexelsApiUrl", stubUrl);
+        ReflectionTestUtils.setField(tool, "pexelsApiKey", "stub");
+        return tool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ImageResultCache createCache() {
+        ValueOperations<String, String> valueOperations = Mockito.mock(ValueOperations.class);
+        Mockito.when(valueOperations.get(Mockito.anyString()))
+                .thenAnswer(invocation -> redisStore.get(invocation.<String>getArgument(0)));
+        Mockito.doAnswer(invocation -> redisStore.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(Mockito.anyString(), Mockito.anyString(), Mockito.any(Duration.class));
+        StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        ImageResultCache cache = new ImageResultCache();
+        ReflectionTestUtils.setField(cache, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "localMaxSize", 100L);
+        ReflectionTestUtils.setField(cache, "pexelsTtlMinutes", 10L);
+        ReflectionTestUtils.setField(cache, "pixabayTtlMinutes", 10L);
+        ReflectionTestUtils.setField(cache, "logoTtlMinutes", 10L);
+        ReflectionTestUtils.setField(cache, "mermaidTtlMinutes", 10L);
+        cache.init();
+        return cache;
+    }
+}
@@ -0,0 +1,114 @@
+package com.spring.aicodemother.manager.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对象存储传输测试：使用本地磁盘后端，离线运行
+ */
+class ObjectTransferManagerTest {
+
+    private static final int KB = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ObjectTransferManager transferManager;
+
+    @AfterEach
+    void tearDown() {
+        transferManager.close();
+    }
+
+    @Test
+    void testMultipartStreamRoundTripWithRetry() throws IOException {
+        AtomicInteger failures = new AtomicInteger();
+        LocalStorageBackend backend = new LocalStorageBackend(tempDir.resolve("store")) {
+            @Override
+            public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) throws IOException {
+                // 第 3 个分片第一次上传失败
+                if (partNumber == 3 && failures.getAndIncrement() == 0) {
+                    throw new IOException("connection reset");
+                }
+                return super.uploadPart(key, uploadId, partNumber, data, length);
+            }
+        };
+        transferManager = new ObjectTransferManager(backend, 256 * KB, 64 * KB, 4, 2, 1, meterRegistry);
+        byte[] content = randomBytes(1000 * KB);
+
+        String url = transferManager.upload("blobs/big.bin", new ByteArrayInputStream(content), "application/octet-stream").join();
+
+        Assertions.assertTrue(url.endsWith("blobs/big.bin"));
+        Assertions.assertEquals(16.0, meterRegistry.get("ai_code_storage_multipart_parts_total").counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("ai_code_storage_retries_total").tag("op", "upload_part").counter().count());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assertions.assertTrue(transferManager.download("blobs/big.bin", out).join());
+        Assertions.assertArrayEquals(content, out.toByteArray());
+        // 合并后不留分片
+        try (var parts = Files.list(tempDir.resolve("store/.multipart"))) {
+            Assertions.assertEquals(0, parts.count());
+        }
+    }
+
+    @Test
+    void testSmallUploadAndMissingObject() throws IOException {
+        transferManager = new ObjectTransferManager(new LocalStorageBackend(tempDir.resolve("store")),
+                256 * KB, 64 * KB, 4, 2, 1, meterRegistry);
+        byte[] content = randomBytes(10 * KB);
+        Path source = Files.write(tempDir.resolve("source.bin"), content);
+
+        transferManager.upload("a/source.bin", source, "application/octet-stream").join();
+
+        Path target = tempDir.resolve("download/source.bin");
+        Assertions.assertTrue(transferManager.download("a/source.bin", target).join());
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertArrayEquals(content, transferManager.getBytes("a/source.bin").join());
+        Assertions.assertFalse(transferManager.download("a/missing.bin", tempDir.resolve("download/missing.bin")).join());
+        Assertions.assertFalse(Files.exists(tempDir.resolve("download/missing.bin")));
+        Assertions.assertNull(transferManager.getBytes("a/missing.bin").join());
+    }
+
+    @Test
+    void testFailedMultipartUploadIsAborted() throws IOException {
+        LocalStorageBackend backend = new LocalStorageBackend(tempDir.resolve("store")) {
+            @Override
+            public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) throws IOException {
+                if (partNumber == 2) {
+                    throw new IOException("disk full");
+                }
+                return super.uploadPart(key, uploadId, partNumber, data, length);
+            }
+        };
+        transferManager = new ObjectTransferManager(backend, 256 * KB, 64 * KB, 4, 1, 1, meterRegistry);
+
+        CompletionException e = Assertions.assertThrows(CompletionException.class, () -> transferManager
+                .upload("blobs/big.bin", randomBytes(1000 * KB), "application/octet-stream").join());
+
+        Assertions.assertEquals("disk full", e.getCause().getMessage());
+        Assertions.assertFalse(backend.exists("blobs/big.bin"));
+        try (var parts = Files.list(tempDir.resolve("store/.multipart"))) {
+            Assertions.assertEquals(0, parts.count());
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
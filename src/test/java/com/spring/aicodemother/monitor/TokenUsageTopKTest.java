@@ -0,0 +1,61 @@
+package com.spring.aicodemother.monitor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Token 消耗 Top-K 草图测试：候选集合有界、重度用户排在前面，窗口到期后旧数据只保留一个窗口
+ */
+class TokenUsageTopKTest {
+
+    @Test
+    void testTopKIsBoundedAndKeepsHeavyHitters() {
+        TokenUsageTopK topK = new TokenUsageTopK(10, 60_000);
+        Set<String> heavy = Set.of("heavy-1", "heavy-2", "heavy-3", "heavy-4", "heavy-5");
+        for (int i = 0; i < 5000; i++) {
+            topK.add("light-" + i, 1);
+            if (i % 1000 == 0) {
+                heavy.forEach(key -> topK.add(key, 200));
+            }
+        }
+
+        List<TokenUsageTopK.Entry> top = topK.currentTop(5);
+        Assertions.assertEquals(heavy, top.stream().map(TokenUsageTopK.Entry::key).collect(Collectors.toSet()));
+        // Count-Min Sketch 只会高估
+        top.forEach(entry -> Assertions.assertTrue(entry.tokens() >= 1000, entry.toString()));
+        // 候选集合最多保留 2 倍容量，之后裁剪
+        Assertions.assertTrue(topK.currentTop(Integer.MAX_VALUE).size() <= 20);
+    }
+
+    @Test
+    void testWindowRotationDropsOldUsage() throws InterruptedException {
+        TokenUsageTopK topK = new TokenUsageTopK(10, 100);
+        topK.add("1", 50);
+        Assertions.assertEquals(List.of(new TokenUsageTopK.Entry("1", 50)), topK.currentTop(10));
+        Assertions.assertTrue(topK.previousTop(10).isEmpty());
+
+        Thread.sleep(150);
+        // 窗口到期：当前窗口清零，上一窗口保留完整统计
+        Assertions.assertTrue(topK.currentTop(10).isEmpty());
+        Assertions.assertEquals(List.of(new TokenUsageTopK.Entry("1", 50)), topK.previousTop(10));
+
+        topK.add("2", 30);
+        Thread.sleep(150);
+        // 再过一个窗口，最早的统计不再出现
+        Assertions.assertEquals(List.of(new TokenUsageTopK.Entry("2", 30)), topK.previousTop(10));
+        Assertions.assertTrue(topK.currentTop(10).isEmpty());
+    }
+
+    @Test
+    void testIgnoresMissingKeysAndNonPositiveCounts() {
+        TokenUsageTopK topK = new TokenUsageTopK(10, 60_000);
+        topK.add(null, 100);
+        topK.add("1", 0);
+        topK.add("1", -5);
+        Assertions.assertTrue(topK.currentTop(10).isEmpty());
+    }
+}
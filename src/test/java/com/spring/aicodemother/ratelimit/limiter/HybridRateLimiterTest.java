@@ -0,0 +1,74 @@
+package com.spring.aicodemother.ratelimit.limiter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 混合限流测试：用内存中的固定令牌数代替 Redis 租借脚本
+ */
+class HybridRateLimiterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testLeasedTokensServedLocally() {
+        FakeBucketLimiter limiter = new FakeBucketLimiter(100, 0.1, 60_000);
+
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(limiter.tryAcquire("api:test", 100, 60));
+        }
+        Assertions.assertFalse(limiter.tryAcquire("api:test", 100, 60));
+
+        // 每次租借 10 个令牌：10 次放行的租借 + 1 次无令牌
+        Assertions.assertEquals(11, limiter.calls.get());
+        Assertions.assertEquals(90.0, count("local"));
+        Assertions.assertEquals(10.0, count("remote"));
+    }
+
+    @Test
+    void testLowRateIsStrictAndRejectionCachedLocally() {
+        FakeBucketLimiter limiter = new FakeBucketLimiter(5, 0.1, 60_000);
+
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(limiter.tryAcquire("user:1", 5, 60));
+        }
+        Assertions.assertEquals(5, limiter.calls.get());
+        Assertions.assertFalse(limiter.tryAcquire("user:1", 5, 60));
+        // 下一个令牌补充前不再访问 Redis
+        Assertions.assertFalse(limiter.tryAcquire("user:1", 5, 60));
+        Assertions.assertFalse(limiter.tryAcquire("user:1", 5, 60));
+        Assertions.assertEquals(6, limiter.calls.get());
+        Assertions.assertEquals(2.0, count("rejected_local"));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("ai_code_rate_limit_requests_total").tag("result", result).counter().count();
+    }
+
+    /**
+     * 不归还令牌的限流窗口，记录租借次数
+     */
+    private class FakeBucketLimiter extends HybridRateLimiter {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private int tokens;
+
+        FakeBucketLimiter(int tokens, double leaseRatio, long leaseMillis) {
+            super(null, leaseRatio, leaseMillis, meterRegistry);
+            this.tokens = tokens;
+        }
+
+        @Override
+        protected long[] lease(String windowKey, int rate, long intervalMillis, int requested) {
+            calls.incrementAndGet();
+            int granted = Math.min(tokens, requested);
+            tokens -= granted;
+            return new long[]{granted, granted == 0 ? intervalMillis / rate : 0};
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.spring.aicodemother.ratelimit.limiter;
+
+import cn.hutool.core.util.IdUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 限流租借脚本测试：任意一个窗口内发放的令牌数不超过速率（与 Redisson OVERALL 一致，没有首个窗口的突发）
+ * 需要本地 Redis（127.0.0.1:6379），使用 15 号库，不可用时跳过
+ */
+class RateLimitLeaseScriptTest {
+
+    private static final long INTERVAL_MILLIS = 1000;
+
+    private JedisConnectionFactory connectionFactory;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private HybridRateLimiter limiter;
+
+    private final String key = "test:" + IdUtil.getSnowflakeNextIdStr();
+
+    private final String windowKey = HybridRateLimiter.windowKey(key);
+
+    @BeforeEach
+    void setUp() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration("127.0.0.1", 6379);
+        configuration.setDatabase(15);
+        connectionFactory = new JedisConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+        } catch (Exception e) {
+            connectionFactory.destroy();
+            connectionFactory = null;
+            assumeTrue(false, "本地 Redis 不可用: " + e.getMessage());
+        }
+        limiter = new HybridRateLimiter(stringRedisTemplate, 0.4, 1000, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (connectionFactory != null) {
+            stringRedisTemplate.delete(List.of(windowKey, windowKey + HybridRateLimiter.PERMITS_SUFFIX));
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void newWindowGrantsAtMostRate() {
+        assertEquals(4, lease(10, 4)[0]);
+        assertEquals(4, lease(10, 4)[0]);
+        // 只剩 2 个
+        assertEquals(2, lease(10, 4)[0]);
+
+        long[] denied = lease(10, 4);
+        assertEquals(0, denied[0]);
+        assertTrue(denied[1] > 0 && denied[1] <= INTERVAL_MILLIS, "等待时间: " + denied[1]);
+    }
+
+    @Test
+    void noRefillBeforeLeasesSlideOut() throws InterruptedException {
+        assertEquals(10, lease(10, 10)[0]);
+
+        // 令牌桶在半个窗口后会补充一半令牌，滑动窗口在最早的租借滑出前不发放
+        Thread.sleep(INTERVAL_MILLIS / 2);
+        long[] denied = lease(10, 10);
+        assertEquals(0, denied[0]);
+
+        Thread.sleep(denied[1] + 20);
+        assertEquals(10, lease(10, 10)[0]);
+    }
+
+    @Test
+    void leasesSlideOutIndividually() throws InterruptedException {
+        assertEquals(6, lease(10, 6)[0]);
+        Thread.sleep(INTERVAL_MILLIS / 2);
+        assertEquals(4, lease(10, 6)[0]);
+
+        // 第一批滑出窗口后只归还这一批
+        Thread.sleep(INTERVAL_MILLIS / 2 + 20);
+        assertEquals(6, lease(10, 10)[0]);
+        assertEquals(0, lease(10, 10)[0]);
+    }
+
+    @Test
+    void parametersFixedAtCreation() {
+        assertEquals(5, lease(5, 10)[0]);
+        // 之后请求携带的参数不生效
+        assertEquals(0, lease(100, 10)[0]);
+    }
+
+    @Test
+    void lostParametersAreRecountedFromLeases() {
+        assertEquals(8, lease(10, 8)[0]);
+        stringRedisTemplate.delete(windowKey);
+
+        assertEquals(2, lease(10, 8)[0]);
+    }
+
+    @Test
+    void limiterNeverExceedsRateWithinWindow() {
+        int allowed = 0;
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < INTERVAL_MILLIS / 2) {
+            if (limiter.tryAcquire(key, 20, 1)) {
+                allowed++;
+            }
+        }
+        assertEquals(20, allowed);
+    }
+
+    private long[] lease(int rate, int requested) {
+        return limiter.lease(windowKey, rate, INTERVAL_MILLIS, requested);
+    }
+}
@@ -0,0 +1,115 @@
+package com.spring.aicodemother.ratelimit.limiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redisson.Redisson;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 限流检查开销基准：5000 次/秒 的请求打到同一个接口级限流key（每秒 6000 次）
+ * <p>
+ * redisson：改造前的切面，每次请求 expire + trySetRate + tryAcquire 三次 Redis 往返
+ * hybrid：本地租约 + Redis 滑动窗口，每次租借 600 个令牌，大部分请求不访问 Redis
+ * <p>
+ * 需要本地 Redis（localhost:6379）；请求节奏在每次调用前按 5000 次/秒 控制，结果为每次限流检查的耗时分布
+ * 运行方式：直接执行 main 方法
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(RateLimiterBenchmark.THREADS)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    static final int THREADS = 8;
+
+    private static final int REQUESTS_PER_SECOND = 5000;
+
+    private static final int RATE = 6000;
+
+    @State(Scope.Benchmark)
+    public static class Clients {
+
+        private RedissonClient redissonClient;
+
+        private JedisConnectionFactory connectionFactory;
+
+        private HybridRateLimiter hybridRateLimiter;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Config config = new Config();
+            config.useSingleServer().setAddress("redis://localhost:6379");
+            redissonClient = Redisson.create(config);
+            connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("localhost", 6379));
+            connectionFactory.afterPropertiesSet();
+            connectionFactory.start();
+            hybridRateLimiter = new HybridRateLimiter(new StringRedisTemplate(connectionFactory), 0.1, 1000,
+                    new SimpleMeterRegistry());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            redissonClient.shutdown();
+            connectionFactory.destroy();
+        }
+    }
+
+    /**
+     * 每个线程按 THREADS / 5000 秒的间隔发出请求，总计 5000 次/秒
+     */
+    @State(Scope.Thread)
+    public static class Pacer {
+
+        private final long intervalNanos = TimeUnit.SECONDS.toNanos(1) * THREADS / REQUESTS_PER_SECOND;
+
+        private long next = System.nanoTime();
+
+        @Setup(Level.Invocation)
+        public void awaitSlot() {
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (-wait > intervalNanos * 10) {
+                // 落后太多时不补发
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean redisson(Clients clients, Pacer pacer) {
+        RRateLimiter rateLimiter = clients.redissonClient.getRateLimiter("rate_limit:bench:api:redisson");
+        rateLimiter.expire(Duration.ofHours(1));
+        rateLimiter.trySetRate(RateType.OVERALL, RATE, Duration.ofSeconds(1));
+        return rateLimiter.tryAcquire(1);
+    }
+
+    @Benchmark
+    public boolean hybrid(Clients clients, Pacer pacer) {
+        return clients.hybridRateLimiter.tryAcquire("bench:api:hybrid", RATE, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,195 @@
+package com.spring.aicodemother.schedule;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.resource.ResourceUtil;
+import com.mybatisflex.core.MybatisFlexBootstrap;
+import com.mybatisflex.spring.FlexTransactionManager;
+import com.spring.aicodemother.mapper.PointsRecordMapper;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 积分过期引擎基准：H2 文件库（页缓存固定为 16MB）中预置大量已过期的积分明细，每次调用执行一整轮过期
+ * <p>
+ * 数据不放在堆内，堆上只有引擎自身与固定大小的页缓存；每个用户 10 笔过期明细，fork 的堆上限为 256MB，
+ * 一次性加载全部明细（改造前的做法）在百万行时无法完成
+ * 每次调用结束后打印老年代峰值与每秒处理的明细数：峰值不随行数增长、吞吐保持稳定，即耗时与行数线性相关
+ * <p>
+ * 运行方式：直接执行 main 方法
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+@State(Scope.Benchmark)
+public class PointsExpiryBenchmark {
+
+    private static final int RECORDS_PER_USER = 10;
+
+    private static final int POINTS_PER_RECORD = 10;
+
+    @Param({"250000", "500000", "1000000"})
+    private int rows;
+
+    private Path databaseDir;
+
+    private HikariDataSource dataSource;
+
+    private PointsExpiryEngine engine;
+
+    private long startNanos;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        databaseDir = Files.createTempDirectory("points_bench");
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:file:" + databaseDir.resolve("points").toAbsolutePath()
+                + ";DATABASE_TO_UPPER=FALSE;CACHE_SIZE=16384");
+        dataSource.setMaximumPoolSize(8);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            // 与单元测试使用同一份表结构
+            for (String sql : ResourceUtil.readUtf8Str("h2/schema.sql").split(";")) {
+                if (!sql.replaceAll("--.*", "").isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+        seed();
+
+        MybatisFlexBootstrap bootstrap = MybatisFlexBootstrap.getInstance()
+                .setDataSource(dataSource)
+                .addMapper(PointsRecordMapper.class)
+                .addMapper(UserPointsMapper.class)
+                .start();
+        engine = new PointsExpiryEngine(bootstrap.getMapper(PointsRecordMapper.class),
+                bootstrap.getMapper(UserPointsMapper.class), new TransactionTemplate(new FlexTransactionManager()),
+                new InMemoryCheckpointStore(), null, null, 500, 4, new SimpleMeterRegistry());
+    }
+
+    /**
+     * 恢复为全部未过期处理的状态
+     */
+    @Setup(Level.Invocation)
+    public void reset() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM points_record WHERE type = 'EXPIRE'");
+            statement.execute("UPDATE points_record SET status = 'ACTIVE', remaining_points = points, " +
+                    "expired_amount = 0, actual_expire_time = NULL");
+            statement.execute("UPDATE user_points SET availablePoints = totalPoints");
+        }
+        System.gc();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        startNanos = System.nanoTime();
+    }
+
+    @Benchmark
+    public PointsExpiryEngine.Result expireAll() {
+        return engine.start();
+    }
+
+    @TearDown(Level.Invocation)
+    public void report() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long oldGenPeak = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .filter(pool -> pool.getName().contains("Old") || pool.getName().contains("Tenured"))
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+        System.out.printf("%n[rows=%d] %.0f records/s, old gen peak %d MB%n",
+                rows, rows / seconds, oldGenPeak / 1024 / 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+        FileUtil.del(databaseDir);
+    }
+
+    private void seed() throws Exception {
+        int users = rows / RECORDS_PER_USER;
+        LocalDateTime now = LocalDateTime.now();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement record = connection.prepareStatement("INSERT INTO points_record " +
+                    "(id, userId, points, balance, type, status, reason, expireTime, remaining_points, createTime) " +
+                    "VALUES (?, ?, ?, ?, 'SIGN_IN', 'ACTIVE', '签到奖励', ?, ?, ?)");
+                 PreparedStatement account = connection.prepareStatement("INSERT INTO user_points " +
+                         "(id, userId, totalPoints, availablePoints) VALUES (?, ?, ?, ?)")) {
+                long id = 0;
+                for (long userId = 1; userId <= users; userId++) {
+                    for (int i = 0; i < RECORDS_PER_USER; i++) {
+                        record.setLong(1, ++id);
+                        record.setLong(2, userId);
+                        record.setInt(3, POINTS_PER_RECORD);
+                        record.setInt(4, (i + 1) * POINTS_PER_RECORD);
+                        record.setTimestamp(5, Timestamp.valueOf(now.minusDays(RECORDS_PER_USER - i)));
+                        record.setInt(6, POINTS_PER_RECORD);
+                        record.setTimestamp(7, Timestamp.valueOf(now.minusDays(30 + RECORDS_PER_USER - i)));
+                        record.addBatch();
+                    }
+                    int total = RECORDS_PER_USER * POINTS_PER_RECORD;
+                    account.setLong(1, userId);
+                    account.setLong(2, userId);
+                    account.setInt(3, total);
+                    account.setInt(4, total);
+                    account.addBatch();
+                    if (userId % 1000 == 0) {
+                        record.executeBatch();
+                        account.executeBatch();
+                    }
+                }
+                record.executeBatch();
+                account.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    private static class InMemoryCheckpointStore implements PointsExpiryEngine.CheckpointStore {
+
+        private volatile PointsExpiryEngine.Checkpoint checkpoint;
+
+        @Override
+        public PointsExpiryEngine.Checkpoint load() {
+            return checkpoint;
+        }
+
+        @Override
+        public void save(PointsExpiryEngine.Checkpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public void clear() {
+            checkpoint = null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PointsExpiryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
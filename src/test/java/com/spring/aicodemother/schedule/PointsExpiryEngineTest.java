@@ -0,0 +1,204 @@
+package com.spring.aicodemother.schedule;
+
+import cn.hutool.core.util.IdUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.spring.aicodemother.mapper.PointsRecordMapper;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.spring.aicodemother.model.entity.PointsRecord;
+import com.spring.aicodemother.model.entity.UserPoints;
+import com.spring.aicodemother.model.enums.PointsStatusEnum;
+import com.spring.aicodemother.support.EmbeddedDatabase;
+import com.spring.aicodemother.support.MapperHooks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 积分过期引擎测试（H2）：检查点续跑、单个用户失败只回滚该用户、与结算并发修改同一笔明细、未结算扣减不参与过期
+ */
+class PointsExpiryEngineTest {
+
+    private static final EmbeddedDatabase DATABASE = EmbeddedDatabase.get();
+
+    private final PointsRecordMapper pointsRecordMapper = DATABASE.mapper(PointsRecordMapper.class);
+
+    private final UserPointsMapper userPointsMapper = DATABASE.mapper(UserPointsMapper.class);
+
+    private final RecordingCheckpointStore checkpointStore = new RecordingCheckpointStore();
+
+    @BeforeEach
+    void setUp() {
+        DATABASE.execute("DELETE FROM points_record");
+        DATABASE.execute("DELETE FROM user_points");
+    }
+
+    @Test
+    void resumeContinuesAfterCheckpoint() {
+        Long done = grantExpired(101L, 10);
+        Long second = grantExpired(102L, 10);
+        Long third = grantExpired(103L, 10);
+        LocalDateTime cutoff = LocalDateTime.now();
+        checkpointStore.save(new PointsExpiryEngine.Checkpoint(cutoff, 101L));
+        checkpointStore.saved.clear();
+
+        PointsExpiryEngine.Result result = newEngine(pointsRecordMapper, null).resume();
+
+        assertTrue(result.isResumed());
+        assertEquals(2, result.getUsers());
+        assertEquals(20, result.getExpiredPoints());
+        // 检查点之前的用户不再处理
+        assertEquals(PointsStatusEnum.ACTIVE.getValue(), pointsRecordMapper.selectOneById(done).getStatus());
+        assertEquals(PointsStatusEnum.EXPIRED.getValue(), pointsRecordMapper.selectOneById(second).getStatus());
+        assertEquals(PointsStatusEnum.EXPIRED.getValue(), pointsRecordMapper.selectOneById(third).getStatus());
+        // 每页一个用户，每页完成后保存检查点，沿用原截止时间，全部完成后清除
+        assertEquals(List.of(102L, 103L), checkpointStore.saved.stream()
+                .map(PointsExpiryEngine.Checkpoint::getLastUserId).toList());
+        assertTrue(checkpointStore.saved.stream().allMatch(checkpoint -> cutoff.equals(checkpoint.getCutoff())));
+        assertNull(checkpointStore.load());
+        assertNull(newEngine(pointsRecordMapper, null).resume());
+    }
+
+    @Test
+    void failedUserIsRolledBackAlone() {
+        Long ok = grantExpired(201L, 10);
+        Long failing = grantExpired(202L, 10);
+        ObjIntConsumer<Long> listener = (userId, delta) -> {
+            if (userId == 202L) {
+                throw new IllegalStateException("模拟写入失败");
+            }
+        };
+
+        PointsExpiryEngine.Result result = newEngine(pointsRecordMapper, listener).start();
+
+        assertEquals(1, result.getUsers());
+        assertEquals(1, result.getFailedUsers());
+        assertEquals(PointsStatusEnum.EXPIRED.getValue(), pointsRecordMapper.selectOneById(ok).getStatus());
+        assertEquals(0, availablePoints(201L));
+        // 失败用户的明细、账户与流水都保持原状，下一轮重新处理
+        PointsRecord untouched = pointsRecordMapper.selectOneById(failing);
+        assertEquals(PointsStatusEnum.ACTIVE.getValue(), untouched.getStatus());
+        assertEquals(10, untouched.getRemainingPoints());
+        assertEquals(10, availablePoints(202L));
+        assertEquals(0, pointsRecordMapper.selectCountByQuery(QueryWrapper.create()
+                .eq(PointsRecord::getUserId, 202L).eq(PointsRecord::getType, "EXPIRE")));
+    }
+
+    @Test
+    void concurrentSettlementIsNotOverwritten() {
+        Long grant = grantExpired(301L, 100);
+        // 引擎读取明细后、更新前，结算消费了 60 积分并已提交
+        PointsRecordMapper racingMapper = MapperHooks.beforeFirstCall(pointsRecordMapper, PointsRecordMapper.class,
+                "expireIfUnchanged", () -> {
+                    DATABASE.execute("UPDATE points_record SET status = 'PARTIAL_CONSUMED', remaining_points = 40 WHERE id = " + grant);
+                    DATABASE.execute("UPDATE user_points SET availablePoints = 40 WHERE userId = 301");
+                });
+
+        PointsExpiryEngine.Result result = newEngine(racingMapper, null).start();
+
+        assertEquals(0, result.getFailedUsers());
+        assertEquals(40, result.getExpiredPoints());
+        PointsRecord expired = pointsRecordMapper.selectOneById(grant);
+        assertEquals(PointsStatusEnum.EXPIRED.getValue(), expired.getStatus());
+        assertEquals(40, expired.getExpiredAmount());
+        assertEquals(0, expired.getRemainingPoints());
+        assertEquals(0, availablePoints(301L));
+    }
+
+    @Test
+    void pendingDebitsAreNotExpired() {
+        Long grant = grantExpired(401L, 100);
+        // Redis 中已扣除 30 积分，扣减还在结算队列里
+        ToIntFunction<Long> pendingDebits = userId -> userId == 401L ? 30 : 0;
+
+        PointsExpiryEngine.Result result = newEngine(pointsRecordMapper, null, pendingDebits).start();
+
+        assertEquals(70, result.getExpiredPoints());
+        assertEquals(30, availablePoints(401L));
+        // 明细保留 30 积分，结算时从这里扣除，而不是在明细不足时另外扣账户
+        PointsRecord partial = pointsRecordMapper.selectOneById(grant);
+        assertEquals(PointsStatusEnum.PARTIAL_CONSUMED.getValue(), partial.getStatus());
+        assertEquals(30, partial.getRemainingPoints());
+        assertEquals(70, partial.getExpiredAmount());
+    }
+
+    @Test
+    void pendingDebitsCoveringBalanceExpireNothing() {
+        Long grant = grantExpired(402L, 20);
+
+        PointsExpiryEngine.Result result = newEngine(pointsRecordMapper, null, userId -> 25).start();
+
+        assertEquals(0, result.getExpiredPoints());
+        assertEquals(20, availablePoints(402L));
+        assertEquals(PointsStatusEnum.ACTIVE.getValue(), pointsRecordMapper.selectOneById(grant).getStatus());
+    }
+
+    private PointsExpiryEngine newEngine(PointsRecordMapper recordMapper, ObjIntConsumer<Long> listener) {
+        return newEngine(recordMapper, listener, null);
+    }
+
+    private PointsExpiryEngine newEngine(PointsRecordMapper recordMapper, ObjIntConsumer<Long> listener,
+                                         ToIntFunction<Long> pendingDebits) {
+        return new PointsExpiryEngine(recordMapper, userPointsMapper, DATABASE.transactionTemplate(), checkpointStore,
+                listener, pendingDebits, 1, 2, new SimpleMeterRegistry());
+    }
+
+    private Long grantExpired(Long userId, int points) {
+        userPointsMapper.insert(UserPoints.builder()
+                .id(IdUtil.getSnowflakeNextId())
+                .userId(userId)
+                .totalPoints(points)
+                .availablePoints(points)
+                .build());
+        PointsRecord grant = PointsRecord.builder()
+                .id(IdUtil.getSnowflakeNextId())
+                .userId(userId)
+                .points(points)
+                .balance(points)
+                .type("SIGN_IN")
+                .status(PointsStatusEnum.ACTIVE.getValue())
+                .remainingPoints(points)
+                .expireTime(LocalDateTime.now().minusDays(1))
+                .build();
+        pointsRecordMapper.insert(grant);
+        return grant.getId();
+    }
+
+    private int availablePoints(Long userId) {
+        return userPointsMapper.selectOneByQuery(QueryWrapper.create().eq(UserPoints::getUserId, userId))
+                .getAvailablePoints();
+    }
+
+    /**
+     * 内存检查点，记录每次保存的内容
+     */
+    private static class RecordingCheckpointStore implements PointsExpiryEngine.CheckpointStore {
+
+        private final List<PointsExpiryEngine.Checkpoint> saved = new ArrayList<>();
+
+        private PointsExpiryEngine.Checkpoint checkpoint;
+
+        @Override
+        public synchronized PointsExpiryEngine.Checkpoint load() {
+            return checkpoint;
+        }
+
+        @Override
+        public synchronized void save(PointsExpiryEngine.Checkpoint checkpoint) {
+            saved.add(new PointsExpiryEngine.Checkpoint(checkpoint.getCutoff(), checkpoint.getLastUserId()));
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public synchronized void clear() {
+            checkpoint = null;
+        }
+    }
+}
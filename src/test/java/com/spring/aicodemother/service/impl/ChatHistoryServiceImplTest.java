@@ -0,0 +1,70 @@
+package com.spring.aicodemother.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import com.mybatisflex.core.paginate.Page;
+import com.spring.aicodemother.mapper.ChatHistoryMapper;
+import com.spring.aicodemother.model.entity.App;
+import com.spring.aicodemother.model.entity.ChatHistory;
+import com.spring.aicodemother.model.entity.User;
+import com.spring.aicodemother.service.AppService;
+import com.spring.aicodemother.support.EmbeddedDatabase;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 对话历史分页测试：合并写缓冲中的消息时，已落库的消息不重复计数
+ */
+class ChatHistoryServiceImplTest {
+
+    private static final EmbeddedDatabase DATABASE = EmbeddedDatabase.get();
+
+    @Test
+    void testTotalRowCountsPersistedPendingOnce() {
+        DATABASE.execute("DELETE FROM chat_history");
+        ChatHistoryMapper chatHistoryMapper = DATABASE.mapper(ChatHistoryMapper.class);
+        LocalDateTime now = LocalDateTime.now();
+        ChatHistory stored = message(now.minusMinutes(2));
+        // 已落库、但写缓冲尚未清除（批次刚提交）
+        ChatHistory committed = message(now.minusMinutes(1));
+        ChatHistory unsaved = message(now);
+        chatHistoryMapper.insertBatch(List.of(stored, committed));
+
+        ChatHistoryWriteBuffer buffer = Mockito.mock(ChatHistoryWriteBuffer.class);
+        Mockito.when(buffer.pendingFor(10L)).thenReturn(List.of(committed, unsaved));
+        AppService appService = Mockito.mock(AppService.class);
+        App app = new App();
+        app.setId(10L);
+        app.setUserId(1L);
+        Mockito.when(appService.getById(10L)).thenReturn(app);
+        ChatHistoryServiceImpl service = new ChatHistoryServiceImpl();
+        ReflectionTestUtils.setField(service, "mapper", chatHistoryMapper);
+        ReflectionTestUtils.setField(service, "appService", appService);
+        ReflectionTestUtils.setField(service, "chatHistoryWriteBuffer", buffer);
+        User user = new User();
+        user.setId(1L);
+        user.setUserRole("user");
+
+        Page<ChatHistory> page = service.listAppChatHistoryByPage(10L, 10, null, user);
+
+        Assertions.assertEquals(3, page.getTotalRow());
+        Assertions.assertEquals(List.of(unsaved.getId(), committed.getId(), stored.getId()),
+                page.getRecords().stream().map(ChatHistory::getId).toList());
+    }
+
+    private static ChatHistory message(LocalDateTime createTime) {
+        return ChatHistory.builder()
+                .id(IdUtil.getSnowflakeNextId())
+                .appId(10L)
+                .userId(1L)
+                .messageType("user")
+                .message("hello")
+                .createTime(createTime)
+                .updateTime(createTime)
+                .build();
+    }
+}
@@ -0,0 +1,161 @@
+package com.spring.aicodemother.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.spring.aicodemother.mapper.ChatHistoryMapper;
+import com.spring.aicodemother.model.entity.ChatHistory;
+import com.spring.aicodemother.support.EmbeddedDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 对话历史写缓冲测试：写入 H2 内存库（chat_history 的 NOT NULL 约束与线上一致）
+ */
+class ChatHistoryWriteBufferTest {
+
+    private static final EmbeddedDatabase DATABASE = EmbeddedDatabase.get();
+
+    @TempDir
+    Path tempDir;
+
+    private final ChatHistoryMapper chatHistoryMapper = DATABASE.mapper(ChatHistoryMapper.class);
+
+    private ChatHistoryWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        DATABASE.execute("DELETE FROM chat_history");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (buffer != null) {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    void testBatchInsertWithoutUpdateTime() throws Exception {
+        buffer = newBuffer(10, 50);
+        for (int i = 0; i < 25; i++) {
+            // 与 addChatMessage 旧写法一致，不设置 updateTime
+            ChatHistory history = message(1L, "m" + i);
+            history.setUpdateTime(null);
+            Assertions.assertTrue(buffer.offer(history));
+        }
+
+        await(() -> count(1L) == 25);
+        List<ChatHistory> stored = chatHistoryMapper.selectListByQuery(QueryWrapper.create().eq("appId", 1L));
+        Assertions.assertTrue(stored.stream().allMatch(history -> history.getUpdateTime() != null));
+        Assertions.assertTrue(buffer.pendingFor(1L).isEmpty());
+    }
+
+    @Test
+    void testPendingVisibleWhileBatchIsFilling() throws Exception {
+        // 批次攒不满，刷新间隔内消息一直在攒批中
+        buffer = newBuffer(100, 1000);
+        ChatHistory history = message(2L, "hello");
+        buffer.offer(history);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(800);
+        while (System.nanoTime() < deadline) {
+            boolean pending = buffer.pendingFor(2L).stream().anyMatch(h -> h.getId().equals(history.getId()));
+            Assertions.assertTrue(pending || count(2L) == 1, "消息既不在缓冲中也未落库");
+            Thread.sleep(5);
+        }
+        await(() -> count(2L) == 1);
+    }
+
+    @Test
+    void testDiscardedMessagesAreNotWrittenAfterDelete() throws Exception {
+        buffer = newBuffer(100, 300);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(message(3L, "deleted" + i));
+            buffer.offer(message(4L, "kept" + i));
+        }
+        // 与 deleteByAppId 相同的顺序：先丢弃缓冲，再删除数据库记录
+        buffer.discard(3L);
+        chatHistoryMapper.deleteByQuery(QueryWrapper.create().eq("appId", 3L));
+
+        await(() -> count(4L) == 5);
+        Thread.sleep(400);
+        Assertions.assertEquals(0, count(3L));
+        Assertions.assertTrue(buffer.pendingFor(3L).isEmpty());
+    }
+
+    @Test
+    void testReplaySkipsDiscardedApps() throws Exception {
+        ChatHistory deleted = message(5L, "deleted");
+        ChatHistory kept = message(6L, "kept");
+        ChatHistory afterDelete = message(5L, "after delete");
+        Path journal = tempDir.resolve("pending.jsonl");
+        FileUtil.writeUtf8Lines(List.of(
+                json(deleted),
+                json(kept),
+                "{\"discard\":5}",
+                json(afterDelete),
+                "{\"id\":"), journal.toFile());
+
+        buffer = newBuffer(100, 50);
+
+        Assertions.assertEquals(1, count(6L));
+        List<ChatHistory> replayed = chatHistoryMapper.selectListByQuery(QueryWrapper.create().eq("appId", 5L));
+        Assertions.assertEquals(List.of(afterDelete.getId()), replayed.stream().map(ChatHistory::getId).toList());
+        Assertions.assertFalse(journal.toFile().exists());
+    }
+
+    private ChatHistoryWriteBuffer newBuffer(int batchSize, long flushIntervalMillis) {
+        ChatHistoryWriteBuffer writeBuffer = new ChatHistoryWriteBuffer();
+        ReflectionTestUtils.setField(writeBuffer, "chatHistoryMapper", chatHistoryMapper);
+        ReflectionTestUtils.setField(writeBuffer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writeBuffer, "capacity", 1000);
+        ReflectionTestUtils.setField(writeBuffer, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writeBuffer, "flushIntervalMillis", flushIntervalMillis);
+        ReflectionTestUtils.setField(writeBuffer, "journalPath", tempDir.resolve("pending.jsonl"));
+        writeBuffer.start();
+        return writeBuffer;
+    }
+
+    private static ChatHistory message(Long appId, String text) {
+        LocalDateTime now = LocalDateTime.now();
+        return ChatHistory.builder()
+                .id(IdUtil.getSnowflakeNextId())
+                .appId(appId)
+                .userId(1L)
+                .messageType("user")
+                .message(text)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+    }
+
+    private static String json(ChatHistory history) {
+        return String.format("{\"id\":%d,\"appId\":%d,\"userId\":%d,\"messageType\":\"%s\",\"message\":\"%s\",\"createTime\":\"%s\"}",
+                history.getId(), history.getAppId(), history.getUserId(), history.getMessageType(),
+                history.getMessage(), history.getCreateTime());
+    }
+
+    private long count(Long appId) {
+        return chatHistoryMapper.selectCountByQuery(QueryWrapper.create().eq("appId", appId));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(20);
+        }
+    }
+}
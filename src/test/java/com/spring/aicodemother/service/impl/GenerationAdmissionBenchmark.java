@@ -0,0 +1,115 @@
+package com.spring.aicodemother.service.impl;
+
+import com.spring.aicodemother.model.entity.User;
+import com.spring.aicodemother.service.UserPointsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 生成准入检查中 Redis 部分的耗时基准
+ * <p>
+ * sequential：改造前 AppServiceImpl 中的顺序调用，禁止标记、次数、Token、重复需求各查一次，再 INCR + EXPIRE，共 6 次往返
+ * script：checkAdmission，一次 Lua 脚本完成检查与计数；积分余额由 Mock 提供，不计数据库耗时
+ * <p>
+ * 只衡量准入脚本本身，不衡量 SSE 接口的首字节耗时：两者都不含 MySQL 查询（改造前还有管理员、积分余额、模型配置三次查询），
+ * 也不含应用查询、模型调用和响应写出，结果不能作为首字节耗时改善的依据。
+ * 首字节耗时只能以 ai_code_sse_first_byte_seconds 指标在部署环境对比改造前后的 p50/p95/p99
+ * 需要本地 Redis（localhost:6379），使用 15 号库，结束时清空该库；每次调用使用新的用户ID，不会触发每日上限
+ * 运行方式：直接执行 main 方法
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(GenerationAdmissionBenchmark.THREADS)
+@Fork(1)
+public class GenerationAdmissionBenchmark {
+
+    static final int THREADS = 8;
+
+    private static final String MESSAGE = "生成一个带登录页的待办事项应用";
+
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        private final AtomicLong userIds = new AtomicLong(1_000_000_000L);
+
+        private JedisConnectionFactory connectionFactory;
+
+        private StringRedisTemplate stringRedisTemplate;
+
+        private GenerationValidationServiceImpl service;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration("localhost", 6379);
+            configuration.setDatabase(15);
+            connectionFactory = new JedisConnectionFactory(configuration);
+            connectionFactory.afterPropertiesSet();
+            connectionFactory.start();
+            stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+            UserPointsService userPointsService = Mockito.mock(UserPointsService.class);
+            Mockito.when(userPointsService.getAvailablePoints(Mockito.anyLong())).thenReturn(1000);
+            service = new GenerationValidationServiceImpl();
+            ReflectionTestUtils.setField(service, "stringRedisTemplate", stringRedisTemplate);
+            ReflectionTestUtils.setField(service, "userPointsService", userPointsService);
+            ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(service, "balanceCacheSeconds", 10L);
+            service.initBalanceCache();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+                connection.serverCommands().flushDb();
+                return null;
+            });
+            connectionFactory.destroy();
+        }
+
+        private User nextUser() {
+            User user = new User();
+            user.setId(userIds.incrementAndGet());
+            user.setUserRole("user");
+            return user;
+        }
+    }
+
+    @Benchmark
+    public boolean sequential(Service state) {
+        Long userId = state.nextUser().getId();
+        GenerationValidationServiceImpl service = state.service;
+        if (service.isUserBannedToday(userId) || service.isGenerationCountExceeded(userId)
+                || service.isTokenLimitExceeded(userId) || service.isDuplicateGeneration(userId, MESSAGE)) {
+            return false;
+        }
+        return service.incrementGenerationCount(userId) > 0;
+    }
+
+    @Benchmark
+    public boolean script(Service state) {
+        state.service.checkAdmission(state.nextUser(), MESSAGE, 50);
+        return true;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GenerationAdmissionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,269 @@
+package com.spring.aicodemother.service.impl;
+
+import cn.hutool.core.util.RandomUtil;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.spring.aicodemother.model.entity.UserPoints;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 积分 Lua 脚本测试（扣减、结算确认、对账，以及发放与对账的并发顺序）
+ * 需要本地 Redis（127.0.0.1:6379），使用 15 号库，不可用时跳过；数据库可用积分由 Mock 提供
+ */
+class PointsLedgerScriptTest {
+
+    private static final RedisScript<Long> ACK_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/points_settle_ack.lua"), Long.class);
+
+    private JedisConnectionFactory connectionFactory;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private PointsLedger pointsLedger;
+
+    /**
+     * 数据库中的可用积分
+     */
+    private final AtomicInteger databaseBalance = new AtomicInteger();
+
+    /**
+     * 读取数据库可用积分时执行的动作（模拟读取期间并发完成的发放）
+     */
+    private Runnable onDatabaseRead = () -> {
+    };
+
+    private final Long userId = RandomUtil.randomLong(1_000_000, 9_000_000);
+
+    @BeforeEach
+    void setUp() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration("127.0.0.1", 6379);
+        configuration.setDatabase(15);
+        connectionFactory = new JedisConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+        } catch (Exception e) {
+            connectionFactory.destroy();
+            connectionFactory = null;
+            assumeTrue(false, "本地 Redis 不可用: " + e.getMessage());
+        }
+        cleanKeys();
+
+        UserPointsMapper userPointsMapper = Mockito.mock(UserPointsMapper.class);
+        Mockito.when(userPointsMapper.selectOneByQuery(Mockito.any())).thenAnswer(invocation -> {
+            UserPoints userPoints = UserPoints.builder().userId(userId).availablePoints(databaseBalance.get()).build();
+            onDatabaseRead.run();
+            return userPoints;
+        });
+        pointsLedger = new PointsLedger();
+        ReflectionTestUtils.setField(pointsLedger, "balanceTtlHours", 1L);
+        ReflectionTestUtils.setField(pointsLedger, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(pointsLedger, "userPointsMapper", userPointsMapper);
+        ReflectionTestUtils.setField(pointsLedger, "meterRegistry", new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (connectionFactory != null) {
+            cleanKeys();
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void debitLoadsBalanceAndQueuesDebit() {
+        databaseBalance.set(100);
+
+        assertEquals(70, pointsLedger.debit(debit(30)));
+        assertNull(pointsLedger.debit(debit(80)));
+
+        assertEquals("70", stringRedisTemplate.opsForValue().get(PointsLedger.BALANCE_KEY_PREFIX + userId));
+        assertEquals("30", stringRedisTemplate.opsForValue().get(PointsLedger.PENDING_KEY_PREFIX + userId));
+        List<String> queued = stringRedisTemplate.opsForList().range(PointsLedger.SETTLE_QUEUE_KEY, 0, -1);
+        assertEquals(1, queued.size());
+        PointsLedger.Debit parsed = PointsLedger.Debit.parse(queued.get(0));
+        assertEquals(70, parsed.getBalance());
+        assertEquals(30, parsed.getPoints());
+    }
+
+    @Test
+    void settleAckTrimsRequeuesAndParks() {
+        String pendingKey = PointsLedger.PENDING_KEY_PREFIX + userId;
+        stringRedisTemplate.opsForList().rightPushAll(PointsLedger.SETTLE_QUEUE_KEY, "a", "b", "c", "d");
+        stringRedisTemplate.opsForValue().set(pendingKey, "30");
+
+        // 本批 3 条：a 已结算 20 积分，b 重新排队，c 停放
+        stringRedisTemplate.execute(ACK_SCRIPT,
+                List.of(PointsLedger.SETTLE_QUEUE_KEY, PointsLedger.PARKED_QUEUE_KEY, pendingKey),
+                "3", "1", "1", "20", "b", "c");
+
+        assertEquals(List.of("d", "b"), stringRedisTemplate.opsForList().range(PointsLedger.SETTLE_QUEUE_KEY, 0, -1));
+        assertEquals(List.of("c"), stringRedisTemplate.opsForList().range(PointsLedger.PARKED_QUEUE_KEY, 0, -1));
+        assertEquals("10", stringRedisTemplate.opsForValue().get(pendingKey));
+
+        stringRedisTemplate.execute(ACK_SCRIPT,
+                List.of(PointsLedger.SETTLE_QUEUE_KEY, PointsLedger.PARKED_QUEUE_KEY, pendingKey),
+                "2", "0", "0", "10");
+        assertFalse(stringRedisTemplate.hasKey(pendingKey));
+        assertEquals(0, stringRedisTemplate.opsForList().size(PointsLedger.SETTLE_QUEUE_KEY));
+    }
+
+    @Test
+    void parkedDebitSurvivesIdleUser() {
+        String pendingKey = PointsLedger.PENDING_KEY_PREFIX + userId;
+        databaseBalance.set(100);
+        // 旧版本脚本给待结算总数设置了过期时间
+        stringRedisTemplate.opsForValue().set(pendingKey, "0", Duration.ofHours(1));
+        assertEquals(70, pointsLedger.debit(debit(30)));
+        assertEquals(-1, stringRedisTemplate.getExpire(pendingKey));
+
+        // 这笔扣减被停放，数据库没有扣除
+        String element = stringRedisTemplate.opsForList().leftPop(PointsLedger.SETTLE_QUEUE_KEY);
+        stringRedisTemplate.opsForList().rightPush(PointsLedger.SETTLE_QUEUE_KEY, element);
+        stringRedisTemplate.execute(ACK_SCRIPT,
+                List.of(PointsLedger.SETTLE_QUEUE_KEY, PointsLedger.PARKED_QUEUE_KEY, pendingKey),
+                "1", "0", "1", "0", element);
+
+        // 用户长时间没有扣减：余额过期，待结算总数仍在
+        stringRedisTemplate.delete(PointsLedger.BALANCE_KEY_PREFIX + userId);
+        assertEquals("30", stringRedisTemplate.opsForValue().get(pendingKey));
+        assertEquals(-1, stringRedisTemplate.getExpire(pendingKey));
+
+        // 重新加载不会把停放的 30 积分退回
+        assertEquals(70, pointsLedger.getBalance(userId));
+        assertEquals(0, pointsLedger.reconcile(userId));
+        assertNull(pointsLedger.debit(debit(80)));
+        assertEquals(60, pointsLedger.debit(debit(10)));
+    }
+
+    @Test
+    void reconcileCorrectsDriftOnlyWithoutPendingDebits() {
+        databaseBalance.set(100);
+        pointsLedger.debit(debit(30));
+        databaseBalance.set(50);
+
+        // 有未结算的扣减：跳过
+        assertEquals(0, pointsLedger.reconcile(userId));
+        stringRedisTemplate.delete(PointsLedger.PENDING_KEY_PREFIX + userId);
+
+        assertEquals(20, pointsLedger.reconcile(userId));
+        assertEquals("50", stringRedisTemplate.opsForValue().get(PointsLedger.BALANCE_KEY_PREFIX + userId));
+    }
+
+    @Test
+    void reconcileDuringGrantDoesNotCreditTwice() {
+        databaseBalance.set(100);
+        pointsLedger.debit(debit(10));
+        stringRedisTemplate.delete(PointsLedger.PENDING_KEY_PREFIX + userId);
+        databaseBalance.set(90);
+
+        // 发放已提交到数据库、事务提交后的调整尚未执行时对账
+        inTransaction(true, () -> {
+            pointsLedger.adjustAfterCommit(userId, 50);
+            databaseBalance.addAndGet(50);
+            assertEquals(0, pointsLedger.reconcile(userId));
+        });
+
+        assertEquals("140", stringRedisTemplate.opsForValue().get(PointsLedger.BALANCE_KEY_PREFIX + userId));
+        assertEquals(0, pointsLedger.reconcile(userId));
+    }
+
+    @Test
+    void reconcileSkipsWhenGrantCompletesWhileReadingDatabase() {
+        databaseBalance.set(100);
+        pointsLedger.debit(debit(10));
+        stringRedisTemplate.delete(PointsLedger.PENDING_KEY_PREFIX + userId);
+        databaseBalance.set(90);
+
+        // 对账读到的是发放前的数据库值，读取后发放完成并调整了 Redis 余额
+        onDatabaseRead = () -> {
+            onDatabaseRead = () -> {
+            };
+            inTransaction(true, () -> {
+                pointsLedger.adjustAfterCommit(userId, 50);
+                databaseBalance.addAndGet(50);
+            });
+        };
+        assertEquals(0, pointsLedger.reconcile(userId));
+
+        assertEquals("140", stringRedisTemplate.opsForValue().get(PointsLedger.BALANCE_KEY_PREFIX + userId));
+    }
+
+    @Test
+    void balanceLoadedDuringGrantIsNotCached() {
+        databaseBalance.set(100);
+
+        inTransaction(true, () -> {
+            pointsLedger.adjustAfterCommit(userId, 50);
+            databaseBalance.addAndGet(50);
+            // 余额未加载，读到的数据库值已包含发放：只用于本次扣减，不写入缓存
+            assertEquals(140, pointsLedger.debit(debit(10)));
+            assertNull(stringRedisTemplate.opsForValue().get(PointsLedger.BALANCE_KEY_PREFIX + userId));
+        });
+
+        assertEquals(140, pointsLedger.getBalance(userId));
+        assertEquals(130, pointsLedger.debit(debit(10)));
+    }
+
+    @Test
+    void rolledBackGrantOnlyReleasesRegistration() {
+        databaseBalance.set(100);
+        pointsLedger.debit(debit(10));
+
+        inTransaction(false, () -> pointsLedger.adjustAfterCommit(userId, 50));
+
+        assertEquals("90", stringRedisTemplate.opsForValue().get(PointsLedger.BALANCE_KEY_PREFIX + userId));
+        assertFalse(stringRedisTemplate.hasKey(PointsLedger.ADJUSTING_KEY_PREFIX + userId));
+    }
+
+    /**
+     * 模拟事务：执行动作后按提交或回滚触发事务同步回调
+     */
+    private static void inTransaction(boolean commit, Runnable action) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            action.run();
+            int status = commit ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK;
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(status));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private PointsLedger.Debit debit(int points) {
+        return new PointsLedger.Debit(userId, points, "AI_GENERATE", "生成", null, null, null);
+    }
+
+    private void cleanKeys() {
+        stringRedisTemplate.delete(List.of(
+                PointsLedger.BALANCE_KEY_PREFIX + userId,
+                PointsLedger.PENDING_KEY_PREFIX + userId,
+                PointsLedger.ADJUSTING_KEY_PREFIX + userId,
+                PointsLedger.VERSION_KEY_PREFIX + userId,
+                PointsLedger.SETTLE_QUEUE_KEY,
+                PointsLedger.PARKED_QUEUE_KEY,
+                PointsLedger.DIRTY_USERS_KEY));
+    }
+}
@@ -0,0 +1,231 @@
+package com.spring.aicodemother.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.spring.aicodemother.mapper.PointsRecordMapper;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.spring.aicodemother.model.entity.PointsRecord;
+import com.spring.aicodemother.model.entity.UserPoints;
+import com.spring.aicodemother.model.enums.PointsStatusEnum;
+import com.spring.aicodemother.support.EmbeddedDatabase;
+import com.spring.aicodemother.support.MapperHooks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 积分结算测试：数据库为 H2，Redis 队列与确认脚本用 Mock 代替
+ * - 事务提交后、确认前中断，重放同一批扣减不会重复入库
+ * - 无法解析与反复失败的扣减移入停放队列，其余扣减照常结算
+ * - 发放明细被积分过期并发修改时重新读取，不覆盖过期的写入
+ */
+class PointsSettlerTest {
+
+    private static final EmbeddedDatabase DATABASE = EmbeddedDatabase.get();
+
+    private final PointsRecordMapper pointsRecordMapper = DATABASE.mapper(PointsRecordMapper.class);
+
+    private final UserPointsMapper userPointsMapper = DATABASE.mapper(UserPointsMapper.class);
+
+    private final List<String> queue = new ArrayList<>();
+
+    /**
+     * 每次调用确认脚本的参数
+     */
+    private final List<List<String>> acknowledgements = new ArrayList<>();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private PointsSettler settler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        DATABASE.execute("DELETE FROM points_record");
+        DATABASE.execute("DELETE FROM user_points");
+        queue.clear();
+        acknowledgements.clear();
+
+        stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        ListOperations<String, String> listOperations = Mockito.mock(ListOperations.class);
+        Mockito.when(stringRedisTemplate.opsForList()).thenReturn(listOperations);
+        Mockito.when(listOperations.range(Mockito.eq(PointsLedger.SETTLE_QUEUE_KEY), Mockito.anyLong(), Mockito.anyLong()))
+                .thenAnswer(invocation -> new ArrayList<>(queue));
+        RedissonClient redissonClient = Mockito.mock(RedissonClient.class);
+        RLock lock = Mockito.mock(RLock.class);
+        Mockito.when(redissonClient.getLock(Mockito.anyString())).thenReturn(lock);
+        Mockito.when(lock.tryLock(Mockito.anyLong(), Mockito.any(TimeUnit.class))).thenReturn(true);
+
+        PointsRecordServiceImpl pointsRecordService = new PointsRecordServiceImpl();
+        ReflectionTestUtils.setField(pointsRecordService, "mapper", pointsRecordMapper);
+        settler = new PointsSettler();
+        ReflectionTestUtils.setField(settler, "batchSize", 200);
+        ReflectionTestUtils.setField(settler, "maxAttempts", 2);
+        ReflectionTestUtils.setField(settler, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(settler, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(settler, "pointsLedger", Mockito.mock(PointsLedger.class));
+        ReflectionTestUtils.setField(settler, "pointsRecordService", pointsRecordService);
+        ReflectionTestUtils.setField(settler, "pointsRecordMapper", pointsRecordMapper);
+        ReflectionTestUtils.setField(settler, "userPointsMapper", userPointsMapper);
+        ReflectionTestUtils.setField(settler, "transactionTemplate", DATABASE.transactionTemplate());
+        ReflectionTestUtils.setField(settler, "meterRegistry", new SimpleMeterRegistry());
+        settler.init();
+    }
+
+    @Test
+    void testReplayAfterLostAcknowledgementIsIdempotent() {
+        Long grantId = grant(1L, 100);
+        PointsLedger.Debit debit = debit(1L, 30, "AI_GENERATE");
+        queue.add(element(debit, 70));
+
+        // 第一次：事务已提交，确认脚本失败（进程在确认前中断）
+        onAcknowledge(true);
+        settler.settleAll();
+        // 第二次：重放同一批元素
+        onAcknowledge(false);
+        settler.settleAll();
+
+        Assertions.assertEquals(1, countRecords(debit.getId()));
+        Assertions.assertEquals(70, availablePoints(1L));
+        Assertions.assertEquals(70, pointsRecordMapper.selectOneById(grantId).getRemainingPoints());
+        // 确认参数：本批 1 条，重新排队 0 条，停放 0 条，用户 1 已结算 30 积分
+        Assertions.assertEquals(List.of("1", "0", "0", "30"), acknowledgements.get(1));
+    }
+
+    @Test
+    void testFailingAndUnparseableDebitsAreParked() {
+        grant(2L, 100);
+        grant(3L, 100);
+        PointsLedger.Debit first = debit(2L, 10, "AI_GENERATE");
+        // type 超出列长度，写库必然失败
+        PointsLedger.Debit poison = debit(3L, 20, "X".repeat(40));
+        PointsLedger.Debit last = debit(2L, 5, "AI_GENERATE");
+        queue.addAll(List.of(element(first, 90), element(poison, 80), "not-a-debit", element(last, 85)));
+        onAcknowledge(false);
+
+        settler.settleAll();
+
+        // 第一次失败：排到队尾重试，其余扣减照常结算
+        Assertions.assertEquals(1, countRecords(first.getId()));
+        Assertions.assertEquals(1, countRecords(last.getId()));
+        Assertions.assertEquals(85, availablePoints(2L));
+        Assertions.assertEquals(List.of("4", "1", "1", "15", element(poison, 80), "not-a-debit"),
+                acknowledgements.get(0));
+
+        // 第二次失败：达到最大次数，移入停放队列，待结算总数不减少
+        PointsLedger.Debit next = debit(2L, 1, "AI_GENERATE");
+        queue.clear();
+        queue.addAll(List.of(element(poison, 80), element(next, 84)));
+        settler.settleAll();
+
+        Assertions.assertEquals(0, countRecords(poison.getId()));
+        Assertions.assertEquals(100, availablePoints(3L));
+        Assertions.assertEquals(List.of("2", "0", "1", "1", element(poison, 80)), acknowledgements.get(1));
+    }
+
+    @Test
+    void testDatabaseOutageLeavesQueueUntouched() {
+        PointsLedger.Debit debit = debit(4L, 10, "X".repeat(40));
+        queue.add(element(debit, 0));
+        onAcknowledge(false);
+
+        // 逐条结算也全部失败：视为整体故障，不确认、不停放，settleAll 不抛出异常
+        Assertions.assertEquals(0, settler.settleAll());
+        Assertions.assertTrue(acknowledgements.isEmpty());
+    }
+
+    @Test
+    void testGrantExpiredConcurrentlyIsNotOverwritten() {
+        Long expiring = grant(5L, 50);
+        Long later = grant(5L, 100, LocalDateTime.now().plusDays(60));
+        DATABASE.execute("UPDATE user_points SET availablePoints = 150 WHERE userId = 5");
+        // 结算读取明细后、更新前，积分过期处理了第一笔明细并已提交
+        ReflectionTestUtils.setField(settler, "pointsRecordMapper", MapperHooks.beforeFirstCall(pointsRecordMapper,
+                PointsRecordMapper.class, "consumeIfUnchanged", () -> DATABASE.execute(
+                        "UPDATE points_record SET status = 'EXPIRED', remaining_points = 0, expired_amount = 50 WHERE id = " + expiring)));
+        PointsLedger.Debit debit = debit(5L, 30, "AI_GENERATE");
+        queue.add(element(debit, 70));
+        onAcknowledge(false);
+
+        settler.settleAll();
+
+        PointsRecord expired = pointsRecordMapper.selectOneById(expiring);
+        Assertions.assertEquals(PointsStatusEnum.EXPIRED.getValue(), expired.getStatus());
+        Assertions.assertEquals(50, expired.getExpiredAmount());
+        Assertions.assertEquals(70, pointsRecordMapper.selectOneById(later).getRemainingPoints());
+        Assertions.assertEquals(1, countRecords(debit.getId()));
+    }
+
+    private void onAcknowledge(boolean fail) {
+        Mockito.doAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            Object[] scriptArgs = arguments.length == 3 && arguments[2] instanceof Object[] array
+                    ? array : Arrays.copyOfRange(arguments, 2, arguments.length);
+            acknowledgements.add(Arrays.stream(scriptArgs).map(String::valueOf).toList());
+            if (fail) {
+                throw new IllegalStateException("Redis 连接中断");
+            }
+            return 1L;
+        }).when(stringRedisTemplate).execute(Mockito.any(RedisScript.class), Mockito.anyList(), Mockito.any(Object[].class));
+    }
+
+    private Long grant(Long userId, int points) {
+        userPointsMapper.insert(UserPoints.builder()
+                .id(IdUtil.getSnowflakeNextId())
+                .userId(userId)
+                .totalPoints(points)
+                .availablePoints(points)
+                .build());
+        return grant(userId, points, LocalDateTime.now().plusDays(30));
+    }
+
+    private Long grant(Long userId, int points, LocalDateTime expireTime) {
+        PointsRecord grant = PointsRecord.builder()
+                .id(IdUtil.getSnowflakeNextId())
+                .userId(userId)
+                .points(points)
+                .balance(points)
+                .type("SIGN_IN")
+                .status(PointsStatusEnum.ACTIVE.getValue())
+                .remainingPoints(points)
+                .expireTime(expireTime)
+                .build();
+        pointsRecordMapper.insert(grant);
+        return grant.getId();
+    }
+
+    private static PointsLedger.Debit debit(Long userId, int points, String type) {
+        PointsLedger.Debit debit = new PointsLedger.Debit(userId, points, type, "生成", null, null, null);
+        debit.setId(IdUtil.getSnowflakeNextId());
+        debit.setCreateTime(System.currentTimeMillis());
+        return debit;
+    }
+
+    private static String element(PointsLedger.Debit debit, int balance) {
+        return balance + ":" + JSONUtil.toJsonStr(debit);
+    }
+
+    private long countRecords(Long id) {
+        return pointsRecordMapper.selectCountByQuery(QueryWrapper.create().eq(PointsRecord::getId, id));
+    }
+
+    private int availablePoints(Long userId) {
+        return userPointsMapper.selectOneByQuery(QueryWrapper.create().eq(UserPoints::getUserId, userId))
+                .getAvailablePoints();
+    }
+}
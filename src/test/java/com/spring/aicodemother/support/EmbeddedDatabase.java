@@ -0,0 +1,75 @@
+package com.spring.aicodemother.support;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import com.mybatisflex.core.MybatisFlexBootstrap;
+import com.mybatisflex.spring.FlexTransactionManager;
+import com.spring.aicodemother.mapper.ChatHistoryMapper;
+import com.spring.aicodemother.mapper.PointsRecordMapper;
+import com.spring.aicodemother.mapper.UserPointsMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 单元测试共用的 H2 内存库与 MyBatis-Flex 映射器（同一个 JVM 内只初始化一次）
+ * 使用 H2 默认模式而不是 MySQL 兼容模式：向 NOT NULL 列写入 NULL 会直接报错，与严格模式的 MySQL 一致
+ */
+public final class EmbeddedDatabase {
+
+    private static EmbeddedDatabase instance;
+
+    private final HikariDataSource dataSource;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private EmbeddedDatabase() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:unit;DATABASE_TO_UPPER=FALSE;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(8);
+        for (String sql : ResourceUtil.readUtf8Str("h2/schema.sql").split(";")) {
+            if (!sql.replaceAll("--.*", "").isBlank()) {
+                execute(sql);
+            }
+        }
+        MybatisFlexBootstrap.getInstance()
+                .setDataSource(dataSource)
+                .addMapper(ChatHistoryMapper.class)
+                .addMapper(PointsRecordMapper.class)
+                .addMapper(UserPointsMapper.class)
+                .start();
+        transactionTemplate = new TransactionTemplate(new FlexTransactionManager());
+    }
+
+    public static synchronized EmbeddedDatabase get() {
+        if (instance == null) {
+            instance = new EmbeddedDatabase();
+        }
+        return instance;
+    }
+
+    public <T> T mapper(Class<T> mapperClass) {
+        return MybatisFlexBootstrap.getInstance().getMapper(mapperClass);
+    }
+
+    public TransactionTemplate transactionTemplate() {
+        return transactionTemplate;
+    }
+
+    public HikariDataSource dataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 执行一条 SQL（建表、清理数据）
+     */
+    public void execute(String sql) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
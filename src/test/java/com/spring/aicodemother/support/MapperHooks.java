@@ -0,0 +1,30 @@
+package com.spring.aicodemother.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在映射器方法首次调用前插入一段动作，用来在读取与写入之间模拟其他事务的并发修改
+ */
+public final class MapperHooks {
+
+    private MapperHooks() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T beforeFirstCall(T mapper, Class<T> mapperClass, String methodName, Runnable action) {
+        AtomicBoolean fired = new AtomicBoolean();
+        return (T) Proxy.newProxyInstance(mapperClass.getClassLoader(), new Class<?>[]{mapperClass},
+                (proxy, method, args) -> {
+                    if (method.getName().equals(methodName) && fired.compareAndSet(false, true)) {
+                        action.run();
+                    }
+                    try {
+                        return method.invoke(mapper, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,46 @@
+-- 单元测试使用的 H2 表结构（与 sql/create_table.sql 及迁移脚本保持一致，NOT NULL 约束不放宽）
+create table chat_history
+(
+    id          bigint primary key,
+    message     text                               not null,
+    messageType varchar(32)                        not null,
+    appId       bigint                             not null,
+    userId      bigint                             not null,
+    createTime  datetime default CURRENT_TIMESTAMP not null,
+    updateTime  datetime default CURRENT_TIMESTAMP not null,
+    isDelete    tinyint  default 0                 not null
+);
+create index idx_appId_createTime on chat_history (appId, createTime);
+
+create table user_points
+(
+    id              bigint primary key,
+    userId          bigint not null unique,
+    totalPoints     int      default 0,
+    availablePoints int      default 0,
+    frozenPoints    int      default 0,
+    createTime      datetime default CURRENT_TIMESTAMP,
+    updateTime      datetime default CURRENT_TIMESTAMP,
+    isDelete        tinyint  default 0
+);
+
+create table points_record
+(
+    id                 bigint primary key,
+    userId             bigint      not null,
+    points             int         not null,
+    balance            int         not null,
+    type               varchar(20) not null,
+    status             varchar(20) default 'ACTIVE',
+    reason             varchar(200),
+    relatedId          bigint,
+    model_key          varchar(64),
+    token_count        int,
+    expireTime         datetime,
+    expired_amount     int         default 0,
+    remaining_points   int,
+    actual_expire_time datetime,
+    createTime         datetime    default CURRENT_TIMESTAMP,
+    isDelete           tinyint     default 0
+);
+create index idx_user_status_expire on points_record (userId, status, expireTime);